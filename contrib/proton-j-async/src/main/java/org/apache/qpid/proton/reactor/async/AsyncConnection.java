@@ -0,0 +1,428 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.async;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.ProtonException;
+import org.apache.qpid.proton.amqp.transport.ErrorCondition;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.reactor.FlowController;
+import org.apache.qpid.proton.reactor.Handshaker;
+import org.apache.qpid.proton.reactor.Reactor;
+
+/**
+ * An AMQP connection whose operations return {@link CompletableFuture}s.
+ * <p>
+ * Each connection runs its own {@link Reactor} on a dedicated daemon thread.
+ * The methods of this class and of the senders and receivers it creates may
+ * be called from any thread: the work is handed to the reactor thread, which
+ * is woken up to carry it out.
+ * <p>
+ * Futures are completed on the reactor thread, in batches, once the reactor
+ * has dispatched all the events it has outstanding.  Dependent stages that
+ * are not registered with one of the <code>...Async</code> methods of
+ * {@link CompletableFuture} therefore also run on the reactor thread, and
+ * must not block.
+ */
+public final class AsyncConnection {
+
+    /** The default for the <code>prefetch</code> argument of {@link #connect(String, int, int)}. */
+    public static final int DEFAULT_PREFETCH = 1024;
+
+    // Work handed to the reactor thread, together with the future to fail
+    // if the connection has stopped before the work could be done.
+    private static final class Command {
+        private final CompletableFuture<?> future;
+        private final Runnable work;
+
+        private Command(CompletableFuture<?> future, Runnable work) {
+            this.future = future;
+            this.work = work;
+        }
+    }
+
+    private final Reactor reactor;
+    private final String address;
+    private final Thread thread;
+
+    // Guarded by lock, which is not a monitor so that virtual threads
+    // handing over work are never pinned to their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private ArrayDeque<Command> commands = new ArrayDeque<>();
+    private boolean stopped;
+
+    // Only used on the reactor thread
+    private ArrayDeque<Command> running = new ArrayDeque<>();
+    private List<Runnable> completions = new ArrayList<>();
+    private List<Runnable> completing = new ArrayList<>();
+    private final List<AsyncSender> senders = new ArrayList<>();
+    private final List<AsyncReceiver> receivers = new ArrayList<>();
+    private Connection connection;
+    private Session session;
+    private int nextLink;
+
+    private final CompletableFuture<Void> opened = new CompletableFuture<>();
+    private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+    /**
+     * Connects to an AMQP peer, with the default prefetch.
+     * @see #connect(String, int, int)
+     */
+    public static AsyncConnection connect(String host, int port) throws IOException {
+        return connect(host, port, DEFAULT_PREFETCH);
+    }
+
+    /**
+     * Connects to an AMQP peer.  The connection is opened in the background:
+     * senders and receivers may be created, and messages sent, straight away.
+     * @param host the host name or address of the peer.
+     * @param port the port the peer is listening on.
+     * @param prefetch how many messages each receiver allows the peer to send
+     *                 ahead of calls to {@link AsyncReceiver#receive()}.
+     * @return the new connection.
+     * @throws IOException if the reactor for the connection cannot be created.
+     */
+    public static AsyncConnection connect(String host, int port, int prefetch) throws IOException {
+        AsyncConnection connection = new AsyncConnection(host + ":" + port, prefetch);
+        connection.thread.start();
+        return connection;
+    }
+
+    private AsyncConnection(String address, int prefetch) throws IOException {
+        this.address = address;
+        ConnectionHandler handler = new ConnectionHandler();
+        handler.add(new Handshaker());
+        // The flow controller must come after the handler that consumes
+        // deliveries, so that it sees the credit they used up
+        handler.add(new FlowController(prefetch));
+        reactor = Proton.reactor(new ReactorHandler(handler));
+        thread = new Thread(this::run, "proton-async-" + address);
+        thread.setDaemon(true);
+    }
+
+    /**
+     * @return a future that completes once the peer has opened the connection.
+     */
+    public CompletableFuture<Void> opened() {
+        return opened;
+    }
+
+    /**
+     * @return a future that completes once the connection's reactor has
+     *         stopped.
+     */
+    public CompletableFuture<Void> closed() {
+        return closed;
+    }
+
+    /**
+     * Runs a task on the connection's reactor thread, for building other
+     * APIs on top of this connection.  The task is given the connection's
+     * session, and may create links on it.  Links given their own handler
+     * with {@link org.apache.qpid.proton.engine.BaseHandler#setHandler(org.apache.qpid.proton.engine.Extendable, org.apache.qpid.proton.engine.Handler)}
+     * have their events dispatched to that handler, on the reactor thread,
+     * rather than to the connection's, and so are not subject to its flow
+     * control.
+     * @param task the task to run, which must not block.
+     * @return a future that completes with the result of the task, or
+     *         exceptionally if it throws or the connection has stopped.
+     */
+    public <T> CompletableFuture<T> submit(Function<Session, T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        execute(future, () -> {
+            T result;
+            try {
+                result = task.apply(session);
+            } catch (RuntimeException e) {
+                fail(future, e);
+                return;
+            }
+            complete(future, result);
+        });
+        return future;
+    }
+
+    /**
+     * Creates a sender that sends messages to the given address on the peer.
+     * @param address the target address.
+     * @return the new sender.
+     */
+    public AsyncSender createSender(String address) {
+        AsyncSender sender = new AsyncSender(this);
+        execute(sender.opened(), () -> {
+            senders.add(sender);
+            sender.open(session, "sender-" + nextLink++, address);
+        });
+        return sender;
+    }
+
+    /**
+     * Creates a receiver that receives messages from the given address on
+     * the peer.
+     * @param address the source address.
+     * @return the new receiver.
+     */
+    public AsyncReceiver createReceiver(String address) {
+        AsyncReceiver receiver = new AsyncReceiver(this);
+        execute(receiver.opened(), () -> {
+            receivers.add(receiver);
+            receiver.open(session, "receiver-" + nextLink++, address);
+        });
+        return receiver;
+    }
+
+    /**
+     * Closes the connection.  Outstanding sends and receives complete
+     * exceptionally.
+     * @return a future that completes once the connection's reactor has
+     *         stopped.
+     */
+    public CompletableFuture<Void> close() {
+        // A separate future, so that closing an already closed connection
+        // doesn't fail the one returned
+        execute(new CompletableFuture<Void>(), () -> connection.close());
+        return closed;
+    }
+
+    // Runs work on the reactor thread.  If the connection has already
+    // stopped, the future is failed instead.
+    void execute(CompletableFuture<?> future, Runnable work) {
+        boolean queued;
+        boolean wakeup = false;
+        lock.lock();
+        try {
+            queued = !stopped;
+            if (queued) {
+                // Only the first command since the reactor last took the
+                // queue needs to wake it up
+                wakeup = commands.isEmpty();
+                commands.add(new Command(future, work));
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!queued) {
+            future.completeExceptionally(new ProtonException("Connection to " + address + " is closed"));
+        } else if (wakeup) {
+            reactor.wakeup();
+        }
+    }
+
+    // Completes a future once the reactor has dispatched its outstanding
+    // events.  Only called on the reactor thread.
+    <T> void complete(CompletableFuture<T> future, T value) {
+        completions.add(() -> future.complete(value));
+    }
+
+    // Runs a completion once the reactor has dispatched its outstanding
+    // events.  Only called on the reactor thread.
+    void defer(Runnable completion) {
+        completions.add(completion);
+    }
+
+    <T> void fail(CompletableFuture<T> future, Throwable cause) {
+        completions.add(() -> future.completeExceptionally(cause));
+    }
+
+    static ProtonException error(String message, ErrorCondition condition) {
+        if (condition != null && condition.getCondition() != null) {
+            return new ProtonException(message + ": " + condition.getCondition()
+                    + (condition.getDescription() != null ? " " + condition.getDescription() : ""));
+        }
+        return new ProtonException(message);
+    }
+
+    private void runCommands() {
+        lock.lock();
+        try {
+            ArrayDeque<Command> swap = running;
+            running = commands;
+            commands = swap;
+        } finally {
+            lock.unlock();
+        }
+        Command command;
+        while ((command = running.poll()) != null) {
+            command.work.run();
+        }
+    }
+
+    private void runCompletions() {
+        while (!completions.isEmpty()) {
+            List<Runnable> swap = completing;
+            completing = completions;
+            completions = swap;
+            for (Runnable completion : completing) {
+                completion.run();
+            }
+            completing.clear();
+        }
+    }
+
+    private void run() {
+        Throwable cause = null;
+        boolean failed = false;
+        try {
+            reactor.run();
+        } catch (Throwable t) {
+            cause = t;
+            failed = true;
+        }
+        lock.lock();
+        try {
+            stopped = true;
+        } finally {
+            lock.unlock();
+        }
+        if (cause == null) {
+            cause = new ProtonException("Connection to " + address + " is closed");
+        }
+        failAll(cause);
+        for (Command command : running) {
+            fail(command.future, cause);
+        }
+        for (Command command : commands) {
+            fail(command.future, cause);
+        }
+        fail(opened, cause);
+        runCompletions();
+        reactor.free();
+        if (failed) {
+            closed.completeExceptionally(cause);
+        } else {
+            closed.complete(null);
+        }
+    }
+
+    private void failAll(Throwable cause) {
+        for (AsyncSender sender : senders) {
+            sender.failed(cause);
+        }
+        for (AsyncReceiver receiver : receivers) {
+            receiver.failed(cause);
+        }
+    }
+
+    private class ReactorHandler extends BaseHandler {
+
+        private final ConnectionHandler handler;
+
+        private ReactorHandler(ConnectionHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void onReactorInit(Event event) {
+            connection = event.getReactor().connection(handler);
+            connection.setHostname(address);
+            session = connection.session();
+            connection.open();
+            session.open();
+            runCommands();
+        }
+
+        @Override
+        public void onReactorQuiesced(Event event) {
+            runCommands();
+            runCompletions();
+        }
+    }
+
+    private class ConnectionHandler extends BaseHandler {
+
+        @Override
+        public void onConnectionRemoteOpen(Event event) {
+            complete(opened, null);
+        }
+
+        @Override
+        public void onLinkRemoteOpen(Event event) {
+            Object context = event.getLink().getContext();
+            if (context instanceof AsyncSender) {
+                complete(((AsyncSender)context).opened(), null);
+            } else if (context instanceof AsyncReceiver) {
+                complete(((AsyncReceiver)context).opened(), null);
+            }
+        }
+
+        @Override
+        public void onLinkFlow(Event event) {
+            Object context = event.getLink().getContext();
+            if (context instanceof AsyncSender) {
+                ((AsyncSender)context).pump();
+            }
+        }
+
+        @Override
+        public void onDelivery(Event event) {
+            Delivery delivery = event.getDelivery();
+            Object context = delivery.getLink().getContext();
+            if (context instanceof AsyncSender) {
+                ((AsyncSender)context).updated(delivery);
+            } else if (context instanceof AsyncReceiver) {
+                ((AsyncReceiver)context).delivered(delivery);
+            }
+        }
+
+        @Override
+        public void onLinkRemoteClose(Event event) {
+            Link link = event.getLink();
+            ProtonException cause = error("Link " + link.getName() + " closed by peer", link.getRemoteCondition());
+            Object context = link.getContext();
+            if (context instanceof AsyncSender) {
+                senders.remove(context);
+                ((AsyncSender)context).failed(cause);
+            } else if (context instanceof AsyncReceiver) {
+                receivers.remove(context);
+                ((AsyncReceiver)context).failed(cause);
+            }
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            failAll(error("Connection to " + address + " closed by peer", event.getConnection().getRemoteCondition()));
+        }
+
+        @Override
+        public void onTransportError(Event event) {
+            failAll(error("Connection to " + address + " failed", event.getTransport().getCondition()));
+        }
+
+        @Override
+        public void onTransportClosed(Event event) {
+            event.getConnection().free();
+        }
+    }
+}
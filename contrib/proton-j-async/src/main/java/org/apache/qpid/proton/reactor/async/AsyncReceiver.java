@@ -0,0 +1,142 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.async;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.message.Message;
+
+/**
+ * Receives messages over an {@link AsyncConnection}.  Instances are created
+ * by {@link AsyncConnection#createReceiver(String)}, and may be used from
+ * any thread.  Messages are accepted as soon as they have been received.
+ */
+public final class AsyncReceiver {
+
+    private final AsyncConnection connection;
+    private final CompletableFuture<Void> opened = new CompletableFuture<>();
+
+    // Only used on the reactor thread
+    private Receiver link;
+    private final ArrayDeque<CompletableFuture<Message>> waiting = new ArrayDeque<>();
+    private final ArrayDeque<Message> buffered = new ArrayDeque<>();
+    private Throwable failure;
+
+    AsyncReceiver(AsyncConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @return a future that completes once the peer has attached the link.
+     */
+    public CompletableFuture<Void> opened() {
+        return opened;
+    }
+
+    /**
+     * Receives the next message.  Calls may be made ahead of the messages
+     * arriving, in which case they are completed in the order they were made.
+     * Cancelling the returned future gives up on the receive without losing
+     * a message: one that arrives for it goes to the next receive instead.
+     * @return a future that completes with the message, or exceptionally if
+     *         the link or connection is closed first.
+     */
+    public CompletableFuture<Message> receive() {
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        connection.execute(future, () -> {
+            Message message = buffered.poll();
+            if (message != null) {
+                hand(future, message);
+            } else if (failure != null) {
+                connection.fail(future, failure);
+            } else {
+                // Drop receives that were cancelled while waiting, which
+                // otherwise build up under callers that time out
+                while (!waiting.isEmpty() && waiting.peek().isDone()) {
+                    waiting.poll();
+                }
+                waiting.add(future);
+            }
+        });
+        return future;
+    }
+
+    void open(Session session, String name, String address) {
+        link = session.receiver(name);
+        Source source = new Source();
+        source.setAddress(address);
+        link.setSource(source);
+        link.setTarget(new Target());
+        link.setContext(this);
+        link.open();
+    }
+
+    void delivered(Delivery delivery) {
+        if (!delivery.isReadable() || delivery.isPartial()) {
+            return;
+        }
+        Message message = Transfers.receive(link, delivery);
+        delivery.disposition(Accepted.getInstance());
+        delivery.settle();
+
+        CompletableFuture<Message> future = waiting.poll();
+        if (future != null) {
+            hand(future, message);
+        } else {
+            buffered.add(message);
+        }
+    }
+
+    // Completes a receive with a message.  If the receive has been
+    // cancelled in the meantime, for example by a caller that gave up
+    // waiting, the message goes to the next receive instead.
+    private void hand(CompletableFuture<Message> future, Message message) {
+        connection.defer(() -> {
+            if (!future.complete(message)) {
+                CompletableFuture<Message> next = waiting.poll();
+                if (next != null) {
+                    hand(next, message);
+                } else {
+                    buffered.addFirst(message);
+                }
+            }
+        });
+    }
+
+    void failed(Throwable cause) {
+        connection.fail(opened, cause);
+        if (failure == null) {
+            failure = cause;
+        }
+        CompletableFuture<Message> future;
+        while ((future = waiting.poll()) != null) {
+            connection.fail(future, cause);
+        }
+    }
+}
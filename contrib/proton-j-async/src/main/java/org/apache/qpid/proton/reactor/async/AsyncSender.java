@@ -0,0 +1,147 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.async;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.message.Message;
+
+/**
+ * Sends messages over an {@link AsyncConnection}.  Instances are created by
+ * {@link AsyncConnection#createSender(String)}, and may be used from any
+ * thread.
+ */
+public final class AsyncSender {
+
+    // A message waiting for link credit
+    private static final class Queued {
+        private final byte[] encoded;
+        private final CompletableFuture<DeliveryState> future;
+
+        private Queued(byte[] encoded, CompletableFuture<DeliveryState> future) {
+            this.encoded = encoded;
+            this.future = future;
+        }
+    }
+
+    private final AsyncConnection connection;
+    private final CompletableFuture<Void> opened = new CompletableFuture<>();
+
+    // Only used on the reactor thread
+    private Sender link;
+    private final ArrayDeque<Queued> queued = new ArrayDeque<>();
+    private final Set<Delivery> unsettled = new LinkedHashSet<>();
+    private long nextTag;
+    private Throwable failure;
+
+    AsyncSender(AsyncConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @return a future that completes once the peer has attached the link.
+     */
+    public CompletableFuture<Void> opened() {
+        return opened;
+    }
+
+    /**
+     * Sends a message.  The message is encoded before this method returns,
+     * so it may be changed or reused straight away.
+     * @param message the message to send.
+     * @return a future that completes with the state the peer settled the
+     *         delivery with, for example
+     *         {@link org.apache.qpid.proton.amqp.messaging.Accepted}, or
+     *         exceptionally if the link or connection is closed first.
+     */
+    public CompletableFuture<DeliveryState> send(Message message) {
+        CompletableFuture<DeliveryState> future = new CompletableFuture<>();
+        Queued q = new Queued(Transfers.encode(message), future);
+        connection.execute(future, () -> {
+            if (failure != null) {
+                connection.fail(future, failure);
+            } else {
+                queued.add(q);
+                pump();
+            }
+        });
+        return future;
+    }
+
+    void open(Session session, String name, String address) {
+        link = session.sender(name);
+        Target target = new Target();
+        target.setAddress(address);
+        link.setTarget(target);
+        link.setSource(new Source());
+        link.setContext(this);
+        link.open();
+    }
+
+    // Sends as many queued messages as the link has credit for
+    void pump() {
+        if (link == null) {
+            return;
+        }
+        Queued q;
+        while (link.getCredit() > 0 && (q = queued.poll()) != null) {
+            Delivery delivery = link.delivery(Transfers.tag(nextTag++));
+            delivery.setContext(q.future);
+            link.send(q.encoded, 0, q.encoded.length);
+            link.advance();
+            unsettled.add(delivery);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void updated(Delivery delivery) {
+        if (delivery.remotelySettled() && unsettled.remove(delivery)) {
+            connection.complete((CompletableFuture<DeliveryState>)delivery.getContext(), delivery.getRemoteState());
+            delivery.settle();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void failed(Throwable cause) {
+        connection.fail(opened, cause);
+        if (failure == null) {
+            failure = cause;
+        }
+        for (Delivery delivery : unsettled) {
+            connection.fail((CompletableFuture<DeliveryState>)delivery.getContext(), cause);
+        }
+        unsettled.clear();
+        Queued q;
+        while ((q = queued.poll()) != null) {
+            connection.fail(q.future, cause);
+        }
+    }
+}
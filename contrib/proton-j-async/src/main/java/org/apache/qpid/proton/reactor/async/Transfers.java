@@ -0,0 +1,92 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.async;
+
+import java.nio.BufferOverflowException;
+import java.util.Arrays;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.message.Message;
+
+/**
+ * Moves messages on and off links for the adapters built on
+ * {@link AsyncConnection}.
+ */
+public final class Transfers {
+
+    private Transfers() {
+    }
+
+    /**
+     * @param value a sequence number, unique among the link's unsettled
+     *              deliveries.
+     * @return a delivery tag for the number, as short as it can be.
+     */
+    public static byte[] tag(long value) {
+        int length = 1;
+        for (long v = value >>> 8; v != 0; v >>>= 8) {
+            length++;
+        }
+        byte[] tag = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            tag[i] = (byte)value;
+            value >>>= 8;
+        }
+        return tag;
+    }
+
+    /**
+     * Encodes a message, so it may be sent from another thread while the
+     * caller goes on to change or reuse the message.
+     * @param message the message.
+     * @return the encoded message, exactly as long as its encoding.
+     */
+    public static byte[] encode(Message message) {
+        byte[] encoded = new byte[1024];
+        while (true) {
+            try {
+                int length = message.encode(encoded, 0, encoded.length);
+                return length == encoded.length ? encoded : Arrays.copyOf(encoded, length);
+            } catch (BufferOverflowException e) {
+                encoded = new byte[encoded.length * 2];
+            }
+        }
+    }
+
+    /**
+     * Reads a delivery that has arrived in full, and advances the link past
+     * it.
+     * @param link the link.
+     * @param delivery the link's current delivery.
+     * @return the message the delivery carried.
+     */
+    public static Message receive(Receiver link, Delivery delivery) {
+        byte[] encoded = new byte[delivery.pending()];
+        int length = link.recv(encoded, 0, encoded.length);
+        link.advance();
+        Message message = Proton.message();
+        message.decode(encoded, 0, length);
+        return message;
+    }
+}
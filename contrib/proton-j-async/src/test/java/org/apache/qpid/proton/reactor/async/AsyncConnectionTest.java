@@ -0,0 +1,237 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.reactor.Acceptor;
+import org.apache.qpid.proton.reactor.FlowController;
+import org.apache.qpid.proton.reactor.Handshaker;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.impl.AcceptorImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncConnectionTest {
+
+    // A peer that queues the messages sent to an address until they are
+    // received from it
+    private static class QueuePeer extends BaseHandler {
+        private final Map<String, ArrayDeque<byte[]>> queues = new HashMap<>();
+        private final List<Sender> senders = new ArrayList<>();
+        private Acceptor acceptor;
+        private volatile boolean stopping;
+
+        private ArrayDeque<byte[]> queue(String address) {
+            ArrayDeque<byte[]> queue = queues.get(address);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(address, queue);
+            }
+            return queue;
+        }
+
+        private void pump(Sender sender) {
+            ArrayDeque<byte[]> queue = queue(sender.getRemoteSource().getAddress());
+            while (sender.getCredit() > 0 && !queue.isEmpty()) {
+                byte[] encoded = queue.poll();
+                Delivery delivery = sender.delivery(new byte[0]);
+                sender.send(encoded, 0, encoded.length);
+                delivery.settle();
+                sender.advance();
+            }
+        }
+
+        @Override
+        public void onLinkRemoteOpen(Event event) {
+            if (event.getLink() instanceof Sender) {
+                senders.add((Sender)event.getLink());
+            }
+        }
+
+        @Override
+        public void onLinkFlow(Event event) {
+            if (event.getLink() instanceof Sender) {
+                pump((Sender)event.getLink());
+            }
+        }
+
+        @Override
+        public void onDelivery(Event event) {
+            Delivery delivery = event.getDelivery();
+            Link link = delivery.getLink();
+            if (link instanceof Receiver && delivery.isReadable() && !delivery.isPartial()) {
+                byte[] encoded = new byte[delivery.pending()];
+                ((Receiver)link).recv(encoded, 0, encoded.length);
+                link.advance();
+                queue(link.getRemoteTarget().getAddress()).add(encoded);
+                delivery.disposition(Accepted.getInstance());
+                delivery.settle();
+                for (Sender sender : senders) {
+                    pump(sender);
+                }
+            }
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            senders.clear();
+            event.getConnection().close();
+            event.getConnection().free();
+        }
+
+        @Override
+        public void onReactorQuiesced(Event event) {
+            if (stopping && acceptor != null) {
+                acceptor.close();
+                acceptor = null;
+            }
+        }
+    }
+
+    private QueuePeer peer;
+    private Reactor reactor;
+    private Thread thread;
+    private int port;
+
+    @Before
+    public void setUp() throws IOException {
+        peer = new QueuePeer();
+        reactor = Proton.reactor(peer);
+        peer.add(new Handshaker());
+        peer.add(new FlowController(64));
+        peer.acceptor = reactor.acceptor("127.0.0.1", 0, peer);
+        port = ((AcceptorImpl)peer.acceptor).getPortNumber();
+        thread = new Thread(reactor::run, "peer");
+        thread.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        peer.stopping = true;
+        reactor.wakeup();
+        thread.join(10000);
+        reactor.free();
+    }
+
+    private static Message message(Object body) {
+        Message message = Proton.message();
+        message.setBody(new AmqpValue(body));
+        return message;
+    }
+
+    @Test
+    public void sendCompletesWhenPeerSettles() throws Exception {
+        AsyncConnection connection = AsyncConnection.connect("127.0.0.1", port);
+        AsyncSender sender = connection.createSender("queue");
+        List<CompletableFuture<DeliveryState>> sends = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            sends.add(sender.send(message(i)));
+        }
+        for (CompletableFuture<DeliveryState> send : sends) {
+            assertEquals(Accepted.getInstance(), send.get(10, TimeUnit.SECONDS));
+        }
+        connection.close().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void receiveCompletesInOrder() throws Exception {
+        AsyncConnection connection = AsyncConnection.connect("127.0.0.1", port, 16);
+        AsyncReceiver receiver = connection.createReceiver("queue");
+        List<CompletableFuture<Message>> receives = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            receives.add(receiver.receive());
+        }
+        receiver.opened().get(10, TimeUnit.SECONDS);
+        AsyncSender sender = connection.createSender("queue");
+        for (int i = 0; i < 200; i++) {
+            sender.send(message(i));
+        }
+        for (int i = 0; i < 200; i++) {
+            if (i >= 100) {
+                receives.add(receiver.receive());
+            }
+            Message message = receives.get(i).get(10, TimeUnit.SECONDS);
+            assertEquals(i, ((AmqpValue)message.getBody()).getValue());
+        }
+        connection.close().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void cancelledReceiveDoesNotLoseAMessage() throws Exception {
+        AsyncConnection connection = AsyncConnection.connect("127.0.0.1", port);
+        AsyncReceiver receiver = connection.createReceiver("queue");
+        CompletableFuture<Message> cancelled = receiver.receive();
+        CompletableFuture<Message> next = receiver.receive();
+        receiver.opened().get(10, TimeUnit.SECONDS);
+        cancelled.cancel(false);
+        connection.createSender("queue").send(message("only")).get(10, TimeUnit.SECONDS);
+        assertEquals("only", ((AmqpValue)next.get(10, TimeUnit.SECONDS).getBody()).getValue());
+        connection.close().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void operationsFailOnceClosed() throws Exception {
+        AsyncConnection connection = AsyncConnection.connect("127.0.0.1", port);
+        AsyncReceiver receiver = connection.createReceiver("empty");
+        CompletableFuture<Message> pending = receiver.receive();
+        connection.opened().get(10, TimeUnit.SECONDS);
+        connection.close().get(10, TimeUnit.SECONDS);
+        assertFailed(pending);
+        assertFailed(connection.createSender("queue").send(message("late")));
+        // Closing again is harmless
+        connection.close().get(10, TimeUnit.SECONDS);
+    }
+
+    private static void assertFailed(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected the future to complete exceptionally");
+        } catch (ExecutionException e) {
+            assertTrue(future.isCompletedExceptionally());
+        }
+    }
+}
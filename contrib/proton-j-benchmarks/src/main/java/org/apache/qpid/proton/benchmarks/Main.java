@@ -0,0 +1,55 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * Runs the benchmarks through JMH, adding the GC profiler unless another
+ * profiler is asked for, so that allocation per operation is reported next
+ * to throughput.  Takes the usual JMH options, for example:
+ * <pre>
+ * java -jar target/benchmarks.jar                       # everything
+ * java -jar target/benchmarks.jar StringsBenchmark      # one class
+ * java -jar target/benchmarks.jar -f 1 -wi 2 -i 3 Message
+ * java -jar target/benchmarks.jar -h                    # JMH's help
+ * </pre>
+ */
+public final class Main
+{
+    private Main()
+    {
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        if (!Arrays.asList(args).contains("-prof"))
+        {
+            String[] withGc = new String[args.length + 2];
+            withGc[0] = "-prof";
+            withGc[1] = "gc";
+            System.arraycopy(args, 0, withGc, 2, args.length);
+            args = withGc;
+        }
+        org.openjdk.jmh.Main.main(args);
+    }
+}
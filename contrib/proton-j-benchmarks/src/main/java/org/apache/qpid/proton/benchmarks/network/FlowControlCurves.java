@@ -0,0 +1,208 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.benchmarks.network;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints curves of throughput against round trip time, for a range of link
+ * credit, session incoming capacity and maximum frame size settings, using
+ * a {@link StreamingTransfer} through a {@link NetworkEmulator}.  Each
+ * table varies one setting, with the others chosen so as not to limit the
+ * throughput, and gives the throughput of the payloads in MB/s.  The
+ * results depend only on the options, so they can be compared from run to
+ * run and machine to machine.
+ * <pre>
+ * java -cp target/benchmarks.jar org.apache.qpid.proton.benchmarks.network.FlowControlCurves \
+ *     [--bandwidth MBIT/S] [--size BYTES] [--jitter MS] [--duration S] [--seed N]
+ * </pre>
+ */
+public class FlowControlCurves
+{
+    private static final int[] ROUND_TRIP_TIMES = {0, 1, 5, 10, 20, 40, 80, 160};
+    private static final int[] CREDITS = {10, 100, 1000, 10000};
+    private static final int[] CAPACITIES = {64 * 1024, 256 * 1024, 1024 * 1024, 4 * 1024 * 1024};
+    private static final int[] MAX_FRAME_SIZES = {4096, 16384, 65536, StreamingTransfer.NO_MAX_FRAME_SIZE};
+
+    private static final int DEFAULT_CAPACITY = 1024 * 1024;
+    private static final int AMPLE_CREDIT = 10000;
+    private static final int TABLE_MAX_FRAME_SIZE = 16384;
+
+    private final PrintStream _out;
+    private long _bandwidth = 100;
+    private int _size = 1024;
+    private long _jitter;
+    private long _duration = 2;
+    private long _seed = 1;
+
+    public FlowControlCurves(PrintStream out)
+    {
+        _out = out;
+    }
+
+    public void print()
+    {
+        _out.printf(Locale.ROOT, "Payload throughput in MB/s of %d byte messages over %d Mbit/s with %d ms jitter%n",
+                    _size, _bandwidth, _jitter);
+
+        _out.printf(Locale.ROOT, "%nLink credit (no maximum frame size, so an unlimited session window)%n");
+        header("credit", CREDITS);
+        for (int rtt : ROUND_TRIP_TIMES)
+        {
+            row(rtt);
+            for (int credit : CREDITS)
+            {
+                cell(measure(rtt, credit, DEFAULT_CAPACITY, StreamingTransfer.NO_MAX_FRAME_SIZE));
+            }
+            _out.println();
+        }
+
+        _out.printf(Locale.ROOT, "%nSession incoming capacity (maximum frame size %d, credit %d)%n",
+                    TABLE_MAX_FRAME_SIZE, AMPLE_CREDIT);
+        header("capacity", CAPACITIES);
+        for (int rtt : ROUND_TRIP_TIMES)
+        {
+            row(rtt);
+            for (int capacity : CAPACITIES)
+            {
+                cell(measure(rtt, AMPLE_CREDIT, capacity, TABLE_MAX_FRAME_SIZE));
+            }
+            _out.println();
+        }
+
+        _out.printf(Locale.ROOT, "%nMaximum frame size (incoming capacity %s, credit %d)%n",
+                    size(DEFAULT_CAPACITY), AMPLE_CREDIT);
+        header("max frame", MAX_FRAME_SIZES);
+        for (int rtt : ROUND_TRIP_TIMES)
+        {
+            row(rtt);
+            for (int maxFrameSize : MAX_FRAME_SIZES)
+            {
+                cell(measure(rtt, AMPLE_CREDIT, DEFAULT_CAPACITY, maxFrameSize));
+            }
+            _out.println();
+        }
+    }
+
+    private double measure(int rtt, int credit, int capacity, int maxFrameSize)
+    {
+        NetworkEmulator network = new NetworkEmulator(_seed)
+            .setRoundTripTime(rtt, TimeUnit.MILLISECONDS)
+            .setJitter(_jitter, TimeUnit.MILLISECONDS)
+            .setBandwidth(_bandwidth * 1000000);
+        StreamingTransfer transfer = new StreamingTransfer(network, _size, credit, capacity, maxFrameSize);
+        // Long enough to open the connection and fill the windows
+        long warmup = 100 + 4 * (rtt + _jitter);
+        return transfer.measure(TimeUnit.MILLISECONDS.toNanos(warmup), TimeUnit.SECONDS.toNanos(_duration),
+                                TimeUnit.NANOSECONDS);
+    }
+
+    private void header(String name, int[] values)
+    {
+        _out.printf(Locale.ROOT, "%-10s", "rtt ms");
+        for (int value : values)
+        {
+            _out.printf(Locale.ROOT, "%15s", value < 0 ? "none" : name + " " + size(value));
+        }
+        _out.println();
+    }
+
+    private static String size(int value)
+    {
+        if (value >= 1024 * 1024 && value % (1024 * 1024) == 0)
+        {
+            return value / (1024 * 1024) + "M";
+        }
+        if (value >= 1024 && value % 1024 == 0)
+        {
+            return value / 1024 + "K";
+        }
+        return Integer.toString(value);
+    }
+
+    private void row(int rtt)
+    {
+        _out.printf(Locale.ROOT, "%-10d", rtt);
+    }
+
+    private void cell(double bytesPerSecond)
+    {
+        _out.printf(Locale.ROOT, "%15.2f", bytesPerSecond / 1e6);
+    }
+
+    public static void main(String[] args)
+    {
+        FlowControlCurves curves = new FlowControlCurves(System.out);
+        for (int i = 0; i < args.length; i += 2)
+        {
+            if (i + 1 == args.length)
+            {
+                usage("Missing value for " + args[i]);
+            }
+            long value;
+            try
+            {
+                value = Long.parseLong(args[i + 1]);
+            }
+            catch (NumberFormatException e)
+            {
+                usage(args[i] + " must be a number: " + args[i + 1]);
+                return;
+            }
+            if (value < (args[i].equals("--jitter") ? 0 : 1))
+            {
+                usage(args[i] + " is out of range: " + value);
+            }
+            switch (args[i])
+            {
+            case "--bandwidth":
+                curves._bandwidth = value;
+                break;
+            case "--size":
+                curves._size = (int) value;
+                break;
+            case "--jitter":
+                curves._jitter = value;
+                break;
+            case "--duration":
+                curves._duration = value;
+                break;
+            case "--seed":
+                curves._seed = value;
+                break;
+            default:
+                usage("Unknown option: " + args[i]);
+            }
+        }
+        curves.print();
+    }
+
+    private static void usage(String message)
+    {
+        System.err.println(message);
+        System.err.println("Usage: FlowControlCurves [--bandwidth MBIT/S] [--size BYTES] [--jitter MS]"
+            + " [--duration S] [--seed N]");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.benchmarks.network;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.engine.Transport;
+
+/**
+ * Joins transports in pairs through an emulated network with a given round
+ * trip time, bandwidth and jitter, driven by a virtual clock.  Nothing
+ * waits for real time to pass: the clock jumps from one arrival to the
+ * next, so a run of many seconds over a slow network takes only as long as
+ * the transports take to do their work, and a run with the same settings
+ * and seed always gives the same result.
+ * <p>
+ * Each direction of a pair behaves like a TCP connection with ample
+ * buffers.  What a transport writes leaves as soon as the bandwidth
+ * allows, in segments of up to {@link #SEGMENT_SIZE} bytes, and arrives
+ * half the round trip time later, plus a random jitter of up to the given
+ * amount.  The application is run whenever bytes arrive, and also when a
+ * direction has sent all it was given, as it would be when a socket
+ * becomes writable, so that a sender need only give its transport enough
+ * to keep the network busy until then.  Segments are never lost or reordered; a segment delayed by
+ * jitter holds back those behind it.  Time spent by the transports and the
+ * application is not counted, as if the hosts were infinitely fast, so
+ * throughput is limited only by the network and by flow control.
+ * <pre>
+ * NetworkEmulator network = new NetworkEmulator(1)
+ *     .setRoundTripTime(80, TimeUnit.MILLISECONDS)
+ *     .setBandwidth(100000000);
+ * network.connect(clientTransport, serverTransport);
+ * network.run(10, TimeUnit.SECONDS, application);
+ * </pre>
+ * The emulator must only be used from one thread at a time.
+ */
+public class NetworkEmulator
+{
+    public static final int SEGMENT_SIZE = 16 * 1024;
+
+    private final Random _random;
+    private final List<Path> _paths = new ArrayList<Path>();
+    private final List<Transport> _transports = new ArrayList<Transport>();
+    private long _latency;
+    private long _jitter;
+    private long _bandwidth;
+    private long _now;
+
+    /**
+     * @param seed the seed of the jitter.
+     */
+    public NetworkEmulator(long seed)
+    {
+        _random = new Random(seed);
+    }
+
+    /**
+     * Sets the round trip time, half of which is spent in each direction.
+     * The default is zero.
+     */
+    public NetworkEmulator setRoundTripTime(long time, TimeUnit unit)
+    {
+        _latency = unit.toNanos(time) / 2;
+        return this;
+    }
+
+    public long getRoundTripTime(TimeUnit unit)
+    {
+        return unit.convert(_latency * 2, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the most extra delay a segment may have in each direction.  Each
+     * segment's extra delay is uniformly distributed between zero and the
+     * jitter.  The default is zero.
+     */
+    public NetworkEmulator setJitter(long time, TimeUnit unit)
+    {
+        _jitter = unit.toNanos(time);
+        return this;
+    }
+
+    /**
+     * Sets the bandwidth in each direction.  With no limit and no round trip
+     * time, the clock never advances, however much is sent.
+     * @param bitsPerSecond the bandwidth, or zero, the default, for no limit.
+     */
+    public NetworkEmulator setBandwidth(long bitsPerSecond)
+    {
+        _bandwidth = bitsPerSecond;
+        return this;
+    }
+
+    /**
+     * Joins two transports through the network.
+     */
+    public void connect(Transport first, Transport second)
+    {
+        _paths.add(new Path(first, second));
+        _paths.add(new Path(second, first));
+        _transports.add(first);
+        _transports.add(second);
+    }
+
+    /**
+     * @return the virtual time in nanoseconds, which starts at zero.
+     */
+    public long now()
+    {
+        return _now;
+    }
+
+    /**
+     * Advances the virtual clock by the given time, moving bytes between the
+     * transports as they arrive.  The application is run at the start and
+     * again whenever bytes have arrived, a direction has sent all it was
+     * given or a transport has ticked, to handle what has happened and to
+     * give the transports more to do.
+     */
+    public void run(long time, TimeUnit unit, Runnable application)
+    {
+        long end = _now + unit.toNanos(time);
+        application.run();
+        while (true)
+        {
+            long next = Long.MAX_VALUE;
+            for (Path path : _paths)
+            {
+                path.transmit();
+                next = Math.min(next, path.nextEvent());
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(_now);
+            for (Transport transport : _transports)
+            {
+                long deadline = transport.tick(millis);
+                if (deadline > millis)
+                {
+                    next = Math.min(next, TimeUnit.MILLISECONDS.toNanos(deadline));
+                }
+            }
+            if (next > end)
+            {
+                _now = end;
+                return;
+            }
+            _now = next;
+            for (Path path : _paths)
+            {
+                path.deliver();
+            }
+            application.run();
+        }
+    }
+
+    private long delay()
+    {
+        return _jitter == 0 ? _latency : _latency + (long) (_random.nextDouble() * _jitter);
+    }
+
+    private static final class Segment
+    {
+        private final long _arrival;
+        // Null for the end of the stream
+        private final ByteBuffer _bytes;
+
+        private Segment(long arrival, ByteBuffer bytes)
+        {
+            _arrival = arrival;
+            _bytes = bytes;
+        }
+    }
+
+    /**
+     * One direction between a pair of transports.
+     */
+    private final class Path
+    {
+        private final Transport _from;
+        private final Transport _to;
+        private final ArrayDeque<Segment> _inFlight = new ArrayDeque<Segment>();
+        // When the path will have sent everything it has been given
+        private long _busyUntil;
+        private long _lastArrival;
+        private boolean _closed;
+
+        private Path(Transport from, Transport to)
+        {
+            _from = from;
+            _to = to;
+        }
+
+        /**
+         * Takes what the sending transport has written.
+         */
+        private void transmit()
+        {
+            if (_closed)
+            {
+                return;
+            }
+            int pending;
+            while ((pending = _from.pending()) > 0)
+            {
+                // Asking the transport for its output is not free, so all
+                // it has is taken at once and then cut into segments
+                ByteBuffer head = _from.head().duplicate();
+                for (int offset = 0; offset < pending; offset += SEGMENT_SIZE)
+                {
+                    int size = Math.min(pending - offset, SEGMENT_SIZE);
+                    ByteBuffer bytes = ByteBuffer.allocate(size);
+                    head.limit(head.position() + size);
+                    bytes.put(head);
+                    bytes.flip();
+                    send(bytes, size);
+                }
+                _from.pop(pending);
+            }
+            if (pending == Transport.END_OF_STREAM)
+            {
+                _closed = true;
+                send(null, 0);
+            }
+        }
+
+        private void send(ByteBuffer bytes, int size)
+        {
+            long departure = Math.max(_now, _busyUntil);
+            if (_bandwidth > 0)
+            {
+                departure += size * 8L * 1000000000L / _bandwidth;
+            }
+            _busyUntil = departure;
+            _lastArrival = Math.max(_lastArrival, departure + delay());
+            _inFlight.add(new Segment(_lastArrival, bytes));
+        }
+
+        /**
+         * @return when a segment next arrives or, if sooner, when the path
+         *         has sent everything it has been given and the sending
+         *         application may want to give it more.
+         */
+        private long nextEvent()
+        {
+            Segment segment = _inFlight.peek();
+            long next = segment == null ? Long.MAX_VALUE : segment._arrival;
+            return _busyUntil > _now ? Math.min(next, _busyUntil) : next;
+        }
+
+        /**
+         * Gives the receiving transport what has arrived.
+         */
+        private void deliver()
+        {
+            Segment segment;
+            while ((segment = _inFlight.peek()) != null && segment._arrival <= _now)
+            {
+                _inFlight.remove();
+                if (segment._bytes == null)
+                {
+                    _to.close_tail();
+                    continue;
+                }
+                ByteBuffer bytes = segment._bytes;
+                while (bytes.hasRemaining())
+                {
+                    int capacity = _to.capacity();
+                    if (capacity <= 0)
+                    {
+                        // The transport has stopped reading
+                        break;
+                    }
+                    ByteBuffer tail = _to.tail();
+                    int size = Math.min(capacity, bytes.remaining());
+                    ByteBuffer slice = bytes.duplicate();
+                    slice.limit(slice.position() + size);
+                    tail.put(slice);
+                    bytes.position(bytes.position() + size);
+                    _to.process();
+                }
+            }
+        }
+    }
+}
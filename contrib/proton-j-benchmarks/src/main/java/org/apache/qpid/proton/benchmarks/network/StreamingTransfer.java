@@ -0,0 +1,233 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.benchmarks.network;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.engine.Transport;
+
+/**
+ * A sender streaming messages to a receiver over one link, as fast as flow
+ * control allows, through a {@link NetworkEmulator}.  Like a client
+ * writing to a socket, the sender keeps only a limited number of messages
+ * queued in its transport, topping them up whenever the network has
+ * sent what it was given or flow control lets more go.  The receiver accepts
+ * and settles each message as it arrives and gives back its credit at
+ * once, so the link always has as much credit outstanding as it was given;
+ * the sender settles each message once the receiver has.
+ * <p>
+ * The flow control settings are those of the receiver: its link credit,
+ * its session's {@link Session#setIncomingCapacity(int) incoming capacity},
+ * and its transport's {@link Transport#setMaxFrameSize(int) maximum frame
+ * size}, which is also used by the sender.  The receiver's session grants
+ * an incoming window of its capacity divided by its maximum frame size, in
+ * transfer frames, or an unlimited window when no maximum frame size is set.
+ */
+public class StreamingTransfer
+{
+    /** A maximum frame size meaning none is set. */
+    public static final int NO_MAX_FRAME_SIZE = Transport.DEFAULT_MAX_FRAME_SIZE;
+
+    private static final EnumSet<EndpointState> UNINITIALIZED = EnumSet.of(EndpointState.UNINITIALIZED);
+    private static final EnumSet<EndpointState> ACTIVE = EnumSet.of(EndpointState.ACTIVE);
+    // The most payload bytes the sender queues in its transport
+    private static final int MAX_QUEUED_BYTES = 256 * 1024;
+
+    private final NetworkEmulator _network;
+    private final byte[] _payload;
+    private final byte[] _readBuffer = new byte[64 * 1024];
+    private final int _credit;
+    private final int _maxQueued;
+    private final int _incomingCapacity;
+    private final Connection _senderConnection = Proton.connection();
+    private final Connection _receiverConnection = Proton.connection();
+    private final Sender _sender;
+    private final Runnable _application = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            openReceiver();
+            receive();
+            settle();
+            send();
+        }
+    };
+    private long _nextTag;
+    private long _received;
+
+    /**
+     * Connects a sender and a receiver through the network and opens the
+     * sender's end.  The rest of the connection is opened, and messages
+     * start to flow, once the network is run.
+     *
+     * @param messageSize the size of each message's payload.
+     * @param credit the receiver's link credit.
+     * @param incomingCapacity the receiver's session incoming capacity.
+     * @param maxFrameSize the maximum frame size, or {@link #NO_MAX_FRAME_SIZE}.
+     */
+    public StreamingTransfer(NetworkEmulator network, int messageSize, int credit, int incomingCapacity,
+                             int maxFrameSize)
+    {
+        _network = network;
+        _payload = new byte[messageSize];
+        _credit = credit;
+        _maxQueued = Math.max(1, MAX_QUEUED_BYTES / Math.max(1, messageSize));
+        _incomingCapacity = incomingCapacity;
+
+        Transport senderTransport = Proton.transport();
+        Transport receiverTransport = Proton.transport();
+        senderTransport.setMaxFrameSize(maxFrameSize);
+        receiverTransport.setMaxFrameSize(maxFrameSize);
+        senderTransport.bind(_senderConnection);
+        receiverTransport.bind(_receiverConnection);
+        network.connect(senderTransport, receiverTransport);
+
+        _senderConnection.setContainer("sender");
+        _senderConnection.open();
+        Session session = _senderConnection.session();
+        session.open();
+        _sender = session.sender("stream");
+        _sender.open();
+    }
+
+    /**
+     * Runs the network for the given time.
+     */
+    public void run(long time, TimeUnit unit)
+    {
+        _network.run(time, unit, _application);
+    }
+
+    /**
+     * @return the number of messages received so far.
+     */
+    public long getReceived()
+    {
+        return _received;
+    }
+
+    /**
+     * Measures the throughput of the payloads, after first running for a
+     * while to let the transfer reach a steady state.
+     *
+     * @return the throughput in bytes per second.
+     */
+    public double measure(long warmup, long duration, TimeUnit unit)
+    {
+        run(warmup, unit);
+        long received = _received;
+        run(duration, unit);
+        return (_received - received) * (double) _payload.length / unit.toNanos(duration) * 1e9;
+    }
+
+    private void openReceiver()
+    {
+        if (_receiverConnection.getLocalState() == EndpointState.UNINITIALIZED
+            && _receiverConnection.getRemoteState() == EndpointState.ACTIVE)
+        {
+            _receiverConnection.setContainer("receiver");
+            _receiverConnection.open();
+        }
+        Session session;
+        while ((session = _receiverConnection.sessionHead(UNINITIALIZED, ACTIVE)) != null)
+        {
+            session.setIncomingCapacity(_incomingCapacity);
+            session.open();
+        }
+        Link link;
+        while ((link = _receiverConnection.linkHead(UNINITIALIZED, ACTIVE)) != null)
+        {
+            link.setSource(link.getRemoteSource());
+            link.setTarget(link.getRemoteTarget());
+            link.open();
+            ((Receiver) link).flow(_credit);
+        }
+    }
+
+    private void receive()
+    {
+        Receiver receiver = (Receiver) _receiverConnection.linkHead(ACTIVE, ACTIVE);
+        if (receiver == null)
+        {
+            return;
+        }
+        int count = 0;
+        Delivery delivery;
+        while ((delivery = receiver.current()) != null)
+        {
+            // Reading frees the session's capacity, even for part of a
+            // message that is bigger than it
+            while (receiver.recv(_readBuffer, 0, _readBuffer.length) > 0)
+            {
+            }
+            if (delivery.isPartial())
+            {
+                break;
+            }
+            receiver.advance();
+            delivery.disposition(Accepted.getInstance());
+            delivery.settle();
+            count++;
+        }
+        if (count > 0)
+        {
+            _received += count;
+            receiver.flow(count);
+        }
+    }
+
+    private void settle()
+    {
+        Delivery delivery = _senderConnection.getWorkHead();
+        while (delivery != null)
+        {
+            Delivery next = delivery.getWorkNext();
+            if (delivery.getLink() == _sender && delivery.remotelySettled())
+            {
+                delivery.settle();
+            }
+            delivery = next;
+        }
+    }
+
+    private void send()
+    {
+        while (_sender.getCredit() > 0 && _sender.getQueued() < _maxQueued)
+        {
+            long tag = _nextTag++;
+            _sender.delivery(new byte[] {(byte) (tag >>> 24), (byte) (tag >>> 16), (byte) (tag >>> 8), (byte) tag});
+            _sender.send(_payload, 0, _payload.length);
+            _sender.advance();
+        }
+    }
+}
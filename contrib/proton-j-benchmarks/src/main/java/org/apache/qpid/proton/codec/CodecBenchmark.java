@@ -0,0 +1,103 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.codec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Common state for the codec benchmarks: an encoder and decoder with all
+ * the AMQP defined types registered, as the transport has them, and a
+ * buffer to encode into.
+ * <p>
+ * Encoding benchmarks call {@link #encoder()} and return the resulting
+ * position; decoding benchmarks encode their input once, in setup, with
+ * {@link #encoded(Object)} and decode it again with {@link #decoder(ByteBuffer)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class CodecBenchmark
+{
+    private final DecoderImpl decoder = new DecoderImpl();
+    private final EncoderImpl encoder = new EncoderImpl(decoder);
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    protected CodecBenchmark()
+    {
+        AMQPDefinedTypes.registerAllTypes(decoder, encoder);
+        encoder.setByteBuffer(buffer);
+    }
+
+    /**
+     * @return the encoder, writing to the start of the buffer.
+     */
+    protected EncoderImpl encoder()
+    {
+        buffer.clear();
+        return encoder;
+    }
+
+    /**
+     * @return how much has been encoded since {@link #encoder()}.
+     */
+    protected int encodedSize()
+    {
+        return buffer.position();
+    }
+
+    /**
+     * Encodes a value into a buffer of its own.
+     * @return the buffer, ready to be read.
+     */
+    protected ByteBuffer encoded(Object value)
+    {
+        encoder().writeObject(value);
+        buffer.flip();
+        ByteBuffer encoded = ByteBuffer.allocate(buffer.remaining());
+        encoded.put(buffer);
+        encoded.flip();
+        return encoded;
+    }
+
+    /**
+     * @return the decoder, reading from the start of the given buffer.
+     */
+    protected DecoderImpl decoder(ByteBuffer encoded)
+    {
+        encoded.rewind();
+        decoder.setByteBuffer(encoded);
+        return decoder;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.codec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Encoding and decoding of lists, maps and arrays, of the shapes that
+ * turn up in messages and performatives: empty lists, short lists of mixed
+ * types, symbol keyed maps such as annotations, string keyed maps such as
+ * application properties, and arrays of symbols and of ints.
+ */
+public class CollectionsBenchmark extends CodecBenchmark
+{
+    private final List<Object> emptyList = Collections.emptyList();
+    private final List<Object> mixedList = new ArrayList<Object>();
+    private final List<Object> intList = new ArrayList<Object>();
+    private final Map<Symbol, Object> symbolMap = new LinkedHashMap<Symbol, Object>();
+    private final Map<String, Object> stringMap = new LinkedHashMap<String, Object>();
+    private final Symbol[] symbolArray = new Symbol[8];
+    private final int[] intArray = new int[100];
+
+    private ByteBuffer encodedEmptyList;
+    private ByteBuffer encodedMixedList;
+    private ByteBuffer encodedIntList;
+    private ByteBuffer encodedSymbolMap;
+    private ByteBuffer encodedStringMap;
+    private ByteBuffer encodedSymbolArray;
+    private ByteBuffer encodedIntArray;
+
+    @Setup
+    public void setup()
+    {
+        mixedList.add("queue://orders");
+        mixedList.add(UnsignedInteger.valueOf(7));
+        mixedList.add(true);
+        mixedList.add(null);
+        mixedList.add(Symbol.valueOf("amqp:accepted:list"));
+        mixedList.add(1234567890123L);
+        for (int i = 0; i < 100; i++)
+        {
+            intList.add(i * 1000);
+            intArray[i] = i * 1000;
+        }
+        symbolMap.put(Symbol.valueOf("x-opt-jms-msg-type"), (byte) 5);
+        symbolMap.put(Symbol.valueOf("x-opt-jms-dest"), (byte) 0);
+        symbolMap.put(Symbol.valueOf("x-opt-partition-key"), "customer-1234");
+        symbolMap.put(Symbol.valueOf("x-opt-enqueued-time"), 1234567890123L);
+        for (int i = 0; i < 10; i++)
+        {
+            stringMap.put("property-" + i, i % 2 == 0 ? (Object) ("value-" + i) : (Object) i);
+        }
+        for (int i = 0; i < symbolArray.length; i++)
+        {
+            symbolArray[i] = Symbol.valueOf("capability-" + i);
+        }
+
+        encodedEmptyList = encoded(emptyList);
+        encodedMixedList = encoded(mixedList);
+        encodedIntList = encoded(intList);
+        encodedSymbolMap = encoded(symbolMap);
+        encodedStringMap = encoded(stringMap);
+        encodedSymbolArray = encoded(symbolArray);
+        encodedIntArray = encoded(intArray);
+    }
+
+    @Benchmark
+    public int encodeEmptyList()
+    {
+        encoder().writeList(emptyList);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public List decodeEmptyList()
+    {
+        return decoder(encodedEmptyList).readList();
+    }
+
+    @Benchmark
+    public int encodeMixedList()
+    {
+        encoder().writeList(mixedList);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public List decodeMixedList()
+    {
+        return decoder(encodedMixedList).readList();
+    }
+
+    @Benchmark
+    public int encodeIntList()
+    {
+        encoder().writeList(intList);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public List decodeIntList()
+    {
+        return decoder(encodedIntList).readList();
+    }
+
+    @Benchmark
+    public int encodeSymbolMap()
+    {
+        encoder().writeMap(symbolMap);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Map decodeSymbolMap()
+    {
+        return decoder(encodedSymbolMap).readMap();
+    }
+
+    @Benchmark
+    public int encodeStringMap()
+    {
+        encoder().writeMap(stringMap);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Map decodeStringMap()
+    {
+        return decoder(encodedStringMap).readMap();
+    }
+
+    @Benchmark
+    public int encodeSymbolArray()
+    {
+        encoder().writeArray(symbolArray);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Object decodeSymbolArray()
+    {
+        return decoder(encodedSymbolArray).readObject();
+    }
+
+    @Benchmark
+    public int encodeIntArray()
+    {
+        encoder().writeArray(intArray);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Object decodeIntArray()
+    {
+        return decoder(encodedIntArray).readObject();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.DeliveryAnnotations;
+import org.apache.qpid.proton.amqp.messaging.Footer;
+import org.apache.qpid.proton.amqp.messaging.Header;
+import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
+import org.apache.qpid.proton.amqp.messaging.Properties;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.message.impl.MessageImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Encoding and decoding of whole messages through {@link MessageImpl}, with
+ * different mixes of sections:
+ * <ul>
+ *   <li><code>data</code>: just a 256 byte data body;</li>
+ *   <li><code>value</code>: just a short string value body;</li>
+ *   <li><code>typical</code>: a header, properties, a few application
+ *       properties and a 256 byte data body;</li>
+ *   <li><code>full</code>: every section, with annotations, ten
+ *       application properties and a 4 KiB data body.</li>
+ * </ul>
+ * Decoding creates a new message each time, as a receiver would.
+ */
+public class MessageBenchmark extends CodecBenchmark
+{
+    @Param({"data", "value", "typical", "full"})
+    public String sections;
+
+    private MessageImpl message;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private final WritableBuffer writable = new WritableBuffer.ByteBufferWrapper(buffer);
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setup()
+    {
+        message = create(sections);
+        message.encode(writable);
+        buffer.flip();
+        encoded = ByteBuffer.allocate(buffer.remaining());
+        encoded.put(buffer);
+        encoded.flip();
+    }
+
+    @Benchmark
+    public int encode()
+    {
+        buffer.clear();
+        return message.encode(writable);
+    }
+
+    @Benchmark
+    public Message decode()
+    {
+        MessageImpl decoded = (MessageImpl) Proton.message();
+        encoded.rewind();
+        decoded.decode(encoded);
+        return decoded;
+    }
+
+    private static MessageImpl create(String sections)
+    {
+        MessageImpl message = (MessageImpl) Proton.message();
+        switch (sections)
+        {
+            case "data":
+                message.setBody(new Data(new Binary(new byte[256])));
+                break;
+            case "value":
+                message.setBody(new AmqpValue("Hello, World!"));
+                break;
+            case "typical":
+                typical(message, 3);
+                message.setBody(new Data(new Binary(new byte[256])));
+                break;
+            case "full":
+                typical(message, 10);
+                Map<Symbol, Object> annotations = new HashMap<Symbol, Object>();
+                annotations.put(Symbol.valueOf("x-opt-jms-msg-type"), (byte) 5);
+                annotations.put(Symbol.valueOf("x-opt-partition-key"), "customer-1234");
+                annotations.put(Symbol.valueOf("x-opt-enqueued-time"), 1234567890123L);
+                message.setMessageAnnotations(new MessageAnnotations(annotations));
+                Map<Symbol, Object> deliveryAnnotations = new HashMap<Symbol, Object>();
+                deliveryAnnotations.put(Symbol.valueOf("x-opt-lock-token"), "5b3c1f0e-8c4a-4d7e");
+                message.setDeliveryAnnotations(new DeliveryAnnotations(deliveryAnnotations));
+                Map<Object, Object> footer = new HashMap<Object, Object>();
+                footer.put(Symbol.valueOf("x-opt-checksum"), 0x12345678);
+                message.setFooter(new Footer(footer));
+                message.setBody(new Data(new Binary(new byte[4096])));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown sections: " + sections);
+        }
+        return message;
+    }
+
+    private static void typical(Message message, int applicationProperties)
+    {
+        Header header = new Header();
+        header.setDurable(true);
+        message.setHeader(header);
+        Properties properties = new Properties();
+        properties.setMessageId("ID:client-5b3c1f0e-8c4a-4d7e:1:1:1234");
+        properties.setTo("queue://orders");
+        properties.setSubject("order-placed");
+        properties.setContentType(Symbol.valueOf("application/octet-stream"));
+        properties.setCreationTime(new Date(1234567890123L));
+        message.setProperties(properties);
+        Map<String, Object> values = new HashMap<String, Object>();
+        for (int i = 0; i < applicationProperties; i++)
+        {
+            values.put("property-" + i, i % 2 == 0 ? (Object) ("value-" + i) : (Object) i);
+        }
+        message.setApplicationProperties(new ApplicationProperties(values));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.codec;
+
+import java.nio.ByteBuffer;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.UnsignedShort;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.amqp.transport.Attach;
+import org.apache.qpid.proton.amqp.transport.Begin;
+import org.apache.qpid.proton.amqp.transport.Close;
+import org.apache.qpid.proton.amqp.transport.Detach;
+import org.apache.qpid.proton.amqp.transport.Disposition;
+import org.apache.qpid.proton.amqp.transport.End;
+import org.apache.qpid.proton.amqp.transport.Flow;
+import org.apache.qpid.proton.amqp.transport.Open;
+import org.apache.qpid.proton.amqp.transport.Role;
+import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton.amqp.transport.Transfer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Encoding and decoding of each transport performative, filled in as a
+ * typical client would send it.  Transfer, flow and disposition are the
+ * ones sent for every message; the others once per connection, session or
+ * link.
+ */
+public class PerformativesBenchmark extends CodecBenchmark
+{
+    @Param({"open", "begin", "attach", "flow", "transfer", "disposition", "detach", "end", "close"})
+    public String performative;
+
+    private Object value;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setup()
+    {
+        value = create(performative);
+        encoded = encoded(value);
+    }
+
+    @Benchmark
+    public int encode()
+    {
+        encoder().writeObject(value);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Object decode()
+    {
+        return decoder(encoded).readObject();
+    }
+
+    private static Object create(String performative)
+    {
+        switch (performative)
+        {
+            case "open":
+                Open open = new Open();
+                open.setContainerId("client-5b3c1f0e-8c4a-4d7e-9a62-3f1e2d4c5b6a");
+                open.setHostname("broker.example.com");
+                open.setMaxFrameSize(UnsignedInteger.valueOf(65536));
+                open.setChannelMax(UnsignedShort.valueOf((short) 32767));
+                open.setIdleTimeOut(UnsignedInteger.valueOf(30000));
+                open.setDesiredCapabilities(Symbol.valueOf("ANONYMOUS-RELAY"), Symbol.valueOf("DELAYED_DELIVERY"));
+                return open;
+            case "begin":
+                Begin begin = new Begin();
+                begin.setNextOutgoingId(UnsignedInteger.ONE);
+                begin.setIncomingWindow(UnsignedInteger.valueOf(2048));
+                begin.setOutgoingWindow(UnsignedInteger.valueOf(2048));
+                begin.setHandleMax(UnsignedInteger.valueOf(65535));
+                return begin;
+            case "attach":
+                Source source = new Source();
+                source.setAddress("client-5b3c1f0e/replies");
+                source.setOutcomes(Accepted.DESCRIPTOR_SYMBOL);
+                Target target = new Target();
+                target.setAddress("queue://orders");
+                Attach attach = new Attach();
+                attach.setName("sender-orders-1");
+                attach.setHandle(UnsignedInteger.ZERO);
+                attach.setRole(Role.SENDER);
+                attach.setSndSettleMode(SenderSettleMode.UNSETTLED);
+                attach.setSource(source);
+                attach.setTarget(target);
+                attach.setInitialDeliveryCount(UnsignedInteger.ZERO);
+                return attach;
+            case "flow":
+                Flow flow = new Flow();
+                flow.setNextIncomingId(UnsignedInteger.valueOf(1234));
+                flow.setIncomingWindow(UnsignedInteger.valueOf(2048));
+                flow.setNextOutgoingId(UnsignedInteger.valueOf(1));
+                flow.setOutgoingWindow(UnsignedInteger.valueOf(2048));
+                flow.setHandle(UnsignedInteger.ZERO);
+                flow.setDeliveryCount(UnsignedInteger.valueOf(1234));
+                flow.setLinkCredit(UnsignedInteger.valueOf(1000));
+                return flow;
+            case "transfer":
+                Transfer transfer = new Transfer();
+                transfer.setHandle(UnsignedInteger.ZERO);
+                transfer.setDeliveryId(UnsignedInteger.valueOf(1234));
+                transfer.setDeliveryTag(new Binary(new byte[] {0, 0, 4, (byte) 210}));
+                transfer.setMessageFormat(UnsignedInteger.ZERO);
+                return transfer;
+            case "disposition":
+                Disposition disposition = new Disposition();
+                disposition.setRole(Role.RECEIVER);
+                disposition.setFirst(UnsignedInteger.valueOf(1234));
+                disposition.setSettled(true);
+                disposition.setState(Accepted.getInstance());
+                return disposition;
+            case "detach":
+                Detach detach = new Detach();
+                detach.setHandle(UnsignedInteger.ZERO);
+                detach.setClosed(true);
+                return detach;
+            case "end":
+                return new End();
+            case "close":
+                return new Close();
+            default:
+                throw new IllegalArgumentException("Unknown performative: " + performative);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.UUID;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.UnsignedLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Encoding and decoding of fixed width types, in both their compact and
+ * full width encodings where they have more than one.
+ */
+public class PrimitivesBenchmark extends CodecBenchmark
+{
+    private final UnsignedInteger smallUInt = UnsignedInteger.valueOf(1);
+    private final UnsignedInteger largeUInt = UnsignedInteger.valueOf(0x12345678);
+    private final UnsignedLong ulong = UnsignedLong.valueOf(0x123456789L);
+    private final Date timestamp = new Date(1234567890123L);
+    private final UUID uuid = UUID.randomUUID();
+    private final Binary binary = new Binary(new byte[32]);
+
+    private ByteBuffer encodedBoolean;
+    private ByteBuffer encodedSmallInt;
+    private ByteBuffer encodedLargeInt;
+    private ByteBuffer encodedLong;
+    private ByteBuffer encodedSmallUInt;
+    private ByteBuffer encodedLargeUInt;
+    private ByteBuffer encodedULong;
+    private ByteBuffer encodedDouble;
+    private ByteBuffer encodedTimestamp;
+    private ByteBuffer encodedUUID;
+    private ByteBuffer encodedBinary;
+
+    @Setup
+    public void setup()
+    {
+        encodedBoolean = encoded(true);
+        encodedSmallInt = encoded(42);
+        encodedLargeInt = encoded(0x12345678);
+        encodedLong = encoded(0x123456789L);
+        encodedSmallUInt = encoded(smallUInt);
+        encodedLargeUInt = encoded(largeUInt);
+        encodedULong = encoded(ulong);
+        encodedDouble = encoded(Math.PI);
+        encodedTimestamp = encoded(timestamp);
+        encodedUUID = encoded(uuid);
+        encodedBinary = encoded(binary);
+    }
+
+    @Benchmark
+    public int encodeBoolean()
+    {
+        encoder().writeBoolean(true);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Boolean decodeBoolean()
+    {
+        return decoder(encodedBoolean).readBoolean();
+    }
+
+    @Benchmark
+    public int encodeSmallInt()
+    {
+        encoder().writeInteger(42);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Integer decodeSmallInt()
+    {
+        return decoder(encodedSmallInt).readInteger();
+    }
+
+    @Benchmark
+    public int encodeLargeInt()
+    {
+        encoder().writeInteger(0x12345678);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Integer decodeLargeInt()
+    {
+        return decoder(encodedLargeInt).readInteger();
+    }
+
+    @Benchmark
+    public int encodeLong()
+    {
+        encoder().writeLong(0x123456789L);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Long decodeLong()
+    {
+        return decoder(encodedLong).readLong();
+    }
+
+    @Benchmark
+    public int encodeSmallUInt()
+    {
+        encoder().writeUnsignedInteger(smallUInt);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public UnsignedInteger decodeSmallUInt()
+    {
+        return decoder(encodedSmallUInt).readUnsignedInteger();
+    }
+
+    @Benchmark
+    public int encodeLargeUInt()
+    {
+        encoder().writeUnsignedInteger(largeUInt);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public UnsignedInteger decodeLargeUInt()
+    {
+        return decoder(encodedLargeUInt).readUnsignedInteger();
+    }
+
+    @Benchmark
+    public int encodeULong()
+    {
+        encoder().writeUnsignedLong(ulong);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public UnsignedLong decodeULong()
+    {
+        return decoder(encodedULong).readUnsignedLong();
+    }
+
+    @Benchmark
+    public int encodeDouble()
+    {
+        encoder().writeDouble(Math.PI);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Double decodeDouble()
+    {
+        return decoder(encodedDouble).readDouble();
+    }
+
+    @Benchmark
+    public int encodeTimestamp()
+    {
+        encoder().writeTimestamp(timestamp);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Date decodeTimestamp()
+    {
+        return decoder(encodedTimestamp).readTimestamp();
+    }
+
+    @Benchmark
+    public int encodeUUID()
+    {
+        encoder().writeUUID(uuid);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public UUID decodeUUID()
+    {
+        return decoder(encodedUUID).readUUID();
+    }
+
+    @Benchmark
+    public int encodeBinary()
+    {
+        encoder().writeBinary(binary);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Binary decodeBinary()
+    {
+        return decoder(encodedBinary).readBinary();
+    }
+}
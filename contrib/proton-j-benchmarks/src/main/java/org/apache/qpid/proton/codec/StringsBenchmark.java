@@ -0,0 +1,70 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.codec;
+
+import java.nio.ByteBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Encoding and decoding of strings, short and long, so in both the str8 and
+ * str32 encodings, and with and without characters outside ASCII, which
+ * take the slower UTF-8 path.
+ */
+public class StringsBenchmark extends CodecBenchmark
+{
+    @Param({"short", "long", "short-unicode", "long-unicode"})
+    public String kind;
+
+    private String string;
+
+    private ByteBuffer encodedString;
+
+    @Setup
+    public void setup()
+    {
+        String unit = kind.endsWith("unicode") ? "été 日本 " : "message ";
+        int length = kind.startsWith("short") ? 16 : 1024;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+        {
+            chars[i] = unit.charAt(i % unit.length());
+        }
+        string = new String(chars);
+        encodedString = encoded(string);
+    }
+
+    @Benchmark
+    public int encodeString()
+    {
+        encoder().writeString(string);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public String decodeString()
+    {
+        return decoder(encodedString).readString();
+    }
+}
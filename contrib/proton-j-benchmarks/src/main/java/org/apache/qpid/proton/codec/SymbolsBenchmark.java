@@ -0,0 +1,74 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.codec;
+
+import java.nio.ByteBuffer;
+
+import org.apache.qpid.proton.amqp.Symbol;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Encoding and decoding of symbols.  Decoding a symbol looks it up in the
+ * table of interned symbols, so these measure that as well as the codec.
+ */
+public class SymbolsBenchmark extends CodecBenchmark
+{
+    private final Symbol shortSymbol = Symbol.valueOf("amqp:link:stolen");
+    private final Symbol longSymbol = Symbol.valueOf("com.example.x-opt-some-rather-long-vendor-specific-capability-name");
+
+    private ByteBuffer encodedShortSymbol;
+    private ByteBuffer encodedLongSymbol;
+
+    @Setup
+    public void setup()
+    {
+        encodedShortSymbol = encoded(shortSymbol);
+        encodedLongSymbol = encoded(longSymbol);
+    }
+
+    @Benchmark
+    public int encodeShortSymbol()
+    {
+        encoder().writeSymbol(shortSymbol);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Symbol decodeShortSymbol()
+    {
+        return decoder(encodedShortSymbol).readSymbol();
+    }
+
+    @Benchmark
+    public int encodeLongSymbol()
+    {
+        encoder().writeSymbol(longSymbol);
+        return encodedSize();
+    }
+
+    @Benchmark
+    public Symbol decodeLongSymbol()
+    {
+        return decoder(encodedLongSymbol).readSymbol();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.engine.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Small unsettled messages sent faster than the receiver grants credit.
+ * The whole batch is sent at once, and the sender holds on to what it has
+ * no credit for; the receiver only grants credit back as it takes
+ * messages, so each window's worth of messages waits for a flow frame.
+ */
+public class CreditStarvedBenchmark extends EngineBenchmark
+{
+    @Param({"1", "8"})
+    public int credit;
+
+    private final byte[] payload = new byte[64];
+
+    @Setup
+    public void setup()
+    {
+        open(1, 16 * 1024, false, credit);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void transfer()
+    {
+        for (int i = 0; i < BATCH; i++)
+        {
+            send(sender(0), payload);
+        }
+        exchange(BATCH);
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.engine.impl;
+
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.engine.Transport;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Common state for the engine benchmarks: a sending and a receiving
+ * connection, each bound to its own transport, joined back to back by
+ * copying the bytes from each transport's {@link Transport#head() head} into
+ * the other's {@link Transport#tail() tail}.  Everything a network peer
+ * would see is encoded, framed, parsed and decoded, but there is no socket.
+ * <p>
+ * Each benchmark invocation sends a batch of {@link #BATCH} messages and
+ * {@link #exchange(int) exchanges} frames until the receiver has them all
+ * and, when they are not presettled, the sender has seen them settled.
+ * Results are per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class EngineBenchmark
+{
+    protected static final int BATCH = 128;
+
+    private static final EnumSet<EndpointState> UNINITIALIZED = EnumSet.of(EndpointState.UNINITIALIZED);
+    private static final EnumSet<EndpointState> ACTIVE = EnumSet.of(EndpointState.ACTIVE);
+
+    private final byte[][] _tags = new byte[1024][];
+    private final byte[] _readBuffer = new byte[64 * 1024];
+
+    private Connection _senderConnection;
+    private Connection _receiverConnection;
+    private Transport _senderTransport;
+    private Transport _receiverTransport;
+    private Sender[] _senders;
+    private Receiver[] _receivers;
+    private boolean _presettled;
+    private int _nextTag;
+
+    protected EngineBenchmark()
+    {
+        for (int i = 0; i < _tags.length; i++)
+        {
+            _tags[i] = new byte[] {(byte) (i >> 8), (byte) i};
+        }
+    }
+
+    /**
+     * Opens the connections, one session and the links, and grants the
+     * receivers their initial credit.
+     */
+    protected void open(int links, int maxFrameSize, boolean presettled, int credit)
+    {
+        _presettled = presettled;
+        _senderConnection = Proton.connection();
+        _receiverConnection = Proton.connection();
+        _senderTransport = Proton.transport();
+        _receiverTransport = Proton.transport();
+        _senderTransport.setMaxFrameSize(maxFrameSize);
+        _receiverTransport.setMaxFrameSize(maxFrameSize);
+        _senderTransport.bind(_senderConnection);
+        _receiverTransport.bind(_receiverConnection);
+
+        _senderConnection.setContainer("sender");
+        _senderConnection.open();
+        Session session = _senderConnection.session();
+        session.open();
+        _senders = new Sender[links];
+        for (int i = 0; i < links; i++)
+        {
+            _senders[i] = session.sender("link-" + i);
+            _senders[i].open();
+        }
+        pump();
+
+        _receiverConnection.setContainer("receiver");
+        _receiverConnection.open();
+        Session remoteSession = _receiverConnection.sessionHead(UNINITIALIZED, ACTIVE);
+        remoteSession.open();
+        _receivers = new Receiver[links];
+        for (int i = 0; i < links; i++)
+        {
+            _receivers[i] = (Receiver) _receiverConnection.linkHead(UNINITIALIZED, ACTIVE);
+            _receivers[i].setTarget(_receivers[i].getRemoteTarget());
+            _receivers[i].setSource(_receivers[i].getRemoteSource());
+            _receivers[i].open();
+            _receivers[i].flow(credit);
+        }
+        pump();
+    }
+
+    @TearDown
+    public void close()
+    {
+        _senderConnection.close();
+        pump();
+        _receiverConnection.close();
+        pump();
+    }
+
+    protected Sender sender(int index)
+    {
+        return _senders[index];
+    }
+
+    protected Receiver receiver(int index)
+    {
+        return _receivers[index];
+    }
+
+    /**
+     * Sends a message, settling it at once if the messages are presettled.
+     */
+    protected void send(Sender sender, byte[] payload)
+    {
+        Delivery delivery = sender.delivery(_tags[_nextTag++ & (_tags.length - 1)]);
+        sender.send(payload, 0, payload.length);
+        sender.advance();
+        if (_presettled)
+        {
+            delivery.settle();
+        }
+    }
+
+    /**
+     * Moves frames between the transports, and handles what arrives, until
+     * the given number of messages has been received and, if they are not
+     * presettled, settled by both ends.
+     */
+    protected void exchange(int messages)
+    {
+        int received = 0;
+        int settled = _presettled ? messages : 0;
+        while (received < messages || settled < messages)
+        {
+            boolean moved = pump();
+            int newlyReceived = receive();
+            int newlySettled = _presettled ? 0 : settle();
+            if (!moved && newlyReceived == 0 && newlySettled == 0)
+            {
+                throw new IllegalStateException("Stalled after receiving " + received + " and settling "
+                    + settled + " of " + messages + " messages");
+            }
+            received += newlyReceived;
+            settled += newlySettled;
+        }
+    }
+
+    /**
+     * Called with the number of messages a receiver has just taken, so that
+     * subclasses can replenish its credit.
+     */
+    protected void received(Receiver receiver, int messages)
+    {
+        receiver.flow(messages);
+    }
+
+    /**
+     * Reads, accepts and settles every complete message at the head of a
+     * receiver.
+     */
+    private int receive()
+    {
+        int total = 0;
+        for (Receiver receiver : _receivers)
+        {
+            int count = 0;
+            Delivery delivery;
+            while ((delivery = receiver.current()) != null && !delivery.isPartial())
+            {
+                while (receiver.recv(_readBuffer, 0, _readBuffer.length) > 0)
+                {
+                }
+                receiver.advance();
+                if (!delivery.remotelySettled())
+                {
+                    delivery.disposition(Accepted.getInstance());
+                }
+                delivery.settle();
+                count++;
+            }
+            if (count > 0)
+            {
+                received(receiver, count);
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Settles the sent messages the receiver has settled.
+     */
+    private int settle()
+    {
+        int count = 0;
+        Delivery delivery = _senderConnection.getWorkHead();
+        while (delivery != null)
+        {
+            Delivery next = delivery.getWorkNext();
+            if (delivery.remotelySettled())
+            {
+                delivery.settle();
+                count++;
+            }
+            delivery = next;
+        }
+        return count;
+    }
+
+    private boolean pump()
+    {
+        boolean moved = false;
+        while (pump(_senderTransport, _receiverTransport) | pump(_receiverTransport, _senderTransport))
+        {
+            moved = true;
+        }
+        return moved;
+    }
+
+    private static boolean pump(Transport from, Transport to)
+    {
+        boolean moved = false;
+        int pending;
+        while ((pending = from.pending()) > 0)
+        {
+            int capacity = to.capacity();
+            if (capacity <= 0)
+            {
+                break;
+            }
+            int size = Math.min(pending, capacity);
+            ByteBuffer head = from.head();
+            int limit = head.limit();
+            head.limit(head.position() + size);
+            to.tail().put(head);
+            head.limit(limit);
+            to.process();
+            from.pop(size);
+            moved = true;
+        }
+        return moved;
+    }
+}
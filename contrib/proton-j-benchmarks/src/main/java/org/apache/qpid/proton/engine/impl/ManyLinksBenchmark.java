@@ -0,0 +1,57 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.engine.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Small unsettled messages sent round robin over many links in one session,
+ * for the cost of finding the link and delivery state for each frame as
+ * the number of links grows.
+ */
+public class ManyLinksBenchmark extends EngineBenchmark
+{
+    @Param({"1", "16", "128"})
+    public int links;
+
+    private final byte[] payload = new byte[64];
+
+    @Setup
+    public void setup()
+    {
+        open(links, 16 * 1024, false, BATCH);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void transfer()
+    {
+        for (int i = 0; i < BATCH; i++)
+        {
+            send(sender(i % links), payload);
+        }
+        exchange(BATCH);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.engine.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Messages sent over a single link with plenty of credit, presettled or
+ * unsettled, in sizes that fit in one frame and that take several: the
+ * transports' maximum frame size is 16 KiB, so 64 KiB messages go as five
+ * transfers.
+ */
+public class TransferBenchmark extends EngineBenchmark
+{
+    @Param({"true", "false"})
+    public boolean presettled;
+
+    @Param({"64", "1024", "65536"})
+    public int size;
+
+    private byte[] payload;
+
+    @Setup
+    public void setup()
+    {
+        payload = new byte[size];
+        open(1, 16 * 1024, presettled, BATCH);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void transfer()
+    {
+        for (int i = 0; i < BATCH; i++)
+        {
+            send(sender(0), payload);
+        }
+        exchange(BATCH);
+    }
+}
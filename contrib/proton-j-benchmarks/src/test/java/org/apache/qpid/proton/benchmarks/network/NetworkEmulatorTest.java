@@ -0,0 +1,109 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.benchmarks.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class NetworkEmulatorTest
+{
+    private static final int SIZE = 1024;
+    private static final int AMPLE_CREDIT = 10000;
+    private static final int CAPACITY = 1024 * 1024;
+
+    private static double measure(NetworkEmulator network, int credit, int capacity, int maxFrameSize)
+    {
+        StreamingTransfer transfer = new StreamingTransfer(network, SIZE, credit, capacity, maxFrameSize);
+        return transfer.measure(1, 2, TimeUnit.SECONDS);
+    }
+
+    private static void assertClose(double expected, double actual, double tolerance)
+    {
+        assertTrue("Expected " + expected + " but was " + actual,
+                   Math.abs(actual - expected) <= expected * tolerance);
+    }
+
+    @Test
+    public void testBandwidthLimitsThroughput()
+    {
+        NetworkEmulator network = new NetworkEmulator(1).setBandwidth(10000000);
+        double throughput = measure(network, AMPLE_CREDIT, CAPACITY, StreamingTransfer.NO_MAX_FRAME_SIZE);
+        // Less the framing and the flow and disposition frames
+        assertTrue("Throughput " + throughput, throughput < 1250000);
+        assertTrue("Throughput " + throughput, throughput > 1100000);
+    }
+
+    @Test
+    public void testCreditLimitsThroughput()
+    {
+        NetworkEmulator network = new NetworkEmulator(1).setRoundTripTime(100, TimeUnit.MILLISECONDS);
+        double throughput = measure(network, 10, CAPACITY, StreamingTransfer.NO_MAX_FRAME_SIZE);
+        // A credit's worth of messages each round trip
+        assertClose(10 * SIZE * 10, throughput, 0.05);
+    }
+
+    @Test
+    public void testIncomingWindowIsCountedInFrames()
+    {
+        NetworkEmulator network = new NetworkEmulator(1).setRoundTripTime(100, TimeUnit.MILLISECONDS);
+        double throughput = measure(network, AMPLE_CREDIT, 64 * 1024, 16 * 1024);
+        // A window of four frames, each holding one small message, each
+        // round trip
+        assertClose(4 * SIZE * 10, throughput, 0.05);
+    }
+
+    @Test
+    public void testClockIsVirtual()
+    {
+        NetworkEmulator network = new NetworkEmulator(1).setRoundTripTime(1, TimeUnit.SECONDS);
+        StreamingTransfer transfer = new StreamingTransfer(network, SIZE, 1, CAPACITY,
+                                                           StreamingTransfer.NO_MAX_FRAME_SIZE);
+        long start = System.nanoTime();
+        transfer.run(60, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        assertEquals(TimeUnit.SECONDS.toNanos(60), network.now());
+        // The receiver's end opens, with its credit, half a round trip in,
+        // the first message arrives a round trip later, and each one after
+        // that a round trip after the last
+        assertEquals(59, transfer.getReceived());
+    }
+
+    @Test
+    public void testJitterIsRepeatable()
+    {
+        double[] results = new double[2];
+        for (int i = 0; i < results.length; i++)
+        {
+            NetworkEmulator network = new NetworkEmulator(42)
+                .setRoundTripTime(20, TimeUnit.MILLISECONDS)
+                .setJitter(10, TimeUnit.MILLISECONDS)
+                .setBandwidth(10000000);
+            results[i] = measure(network, 100, CAPACITY, 16 * 1024);
+        }
+        assertEquals(results[0], results[1], 0);
+        assertTrue(results[0] > 0);
+    }
+}
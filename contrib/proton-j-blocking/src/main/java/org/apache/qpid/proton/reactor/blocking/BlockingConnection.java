@@ -0,0 +1,171 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.blocking;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.InterruptException;
+import org.apache.qpid.proton.ProtonException;
+import org.apache.qpid.proton.TimeoutException;
+import org.apache.qpid.proton.reactor.async.AsyncConnection;
+
+/**
+ * An AMQP connection whose operations block the calling thread until they
+ * are done.
+ * <p>
+ * The connection's I/O is driven by the reactor of an underlying
+ * {@link AsyncConnection}; calling threads only hand work to the reactor and
+ * then wait for it, parking rather than holding a monitor, and keep no
+ * per-thread state.  A connection, and the senders and receivers created on
+ * it, can therefore be shared by any number of threads, and is meant to be
+ * shared by many virtual threads: those blocked on it cost no platform
+ * thread.  Use a few connections, each with its own reactor thread, to
+ * spread the work of very many callers over more than one core.
+ */
+public final class BlockingConnection implements AutoCloseable {
+
+    private final AsyncConnection connection;
+
+    private BlockingConnection(AsyncConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Connects to an AMQP peer, with the default prefetch.
+     * @see #connect(String, int, int)
+     */
+    public static BlockingConnection connect(String host, int port) throws IOException {
+        return connect(host, port, AsyncConnection.DEFAULT_PREFETCH);
+    }
+
+    /**
+     * Connects to an AMQP peer, waiting until the peer has opened the
+     * connection.
+     * @param host the host name or address of the peer.
+     * @param port the port the peer is listening on.
+     * @param prefetch how many messages each receiver allows the peer to send
+     *                 ahead of calls to {@link BlockingReceiver#receive()}.
+     * @return the new connection.
+     * @throws IOException if the reactor for the connection cannot be created.
+     * @throws ProtonException if the connection fails to open.
+     */
+    public static BlockingConnection connect(String host, int port, int prefetch) throws IOException {
+        AsyncConnection connection = AsyncConnection.connect(host, port, prefetch);
+        await(connection.opened().copy());
+        return new BlockingConnection(connection);
+    }
+
+    /**
+     * @return the asynchronous connection this one is built on.
+     */
+    public AsyncConnection async() {
+        return connection;
+    }
+
+    /**
+     * Creates a sender, waiting until the peer has attached its link.
+     * @param address the target address.
+     * @return the new sender.
+     */
+    public BlockingSender createSender(String address) {
+        BlockingSender sender = new BlockingSender(connection.createSender(address));
+        await(sender.async().opened().copy());
+        return sender;
+    }
+
+    /**
+     * Creates a receiver, waiting until the peer has attached its link.
+     * @param address the source address.
+     * @return the new receiver.
+     */
+    public BlockingReceiver createReceiver(String address) {
+        BlockingReceiver receiver = new BlockingReceiver(connection.createReceiver(address));
+        await(receiver.async().opened().copy());
+        return receiver;
+    }
+
+    /**
+     * Closes the connection, waiting until its reactor has stopped.
+     */
+    @Override
+    public void close() {
+        await(connection.close().copy());
+    }
+
+    // Cancels the future if the calling thread is interrupted, so callers
+    // pass a copy of any future they share.  If it completes while being
+    // cancelled, its result is returned after all, so that a message
+    // received for it is not lost.
+    static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (future.cancel(false)) {
+                throw new InterruptException(e);
+            }
+        } catch (ExecutionException e) {
+            throw failure(e.getCause());
+        }
+        return join(future);
+    }
+
+    // Also cancels the future if it does not complete in time
+    static <T> T await(CompletableFuture<T> future, long timeout, TimeUnit unit) {
+        try {
+            return future.get(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (future.cancel(false)) {
+                throw new InterruptException(e);
+            }
+        } catch (ExecutionException e) {
+            throw failure(e.getCause());
+        } catch (java.util.concurrent.TimeoutException e) {
+            if (future.cancel(false)) {
+                throw new TimeoutException("Timed out after " + timeout + " "
+                        + unit.toString().toLowerCase(Locale.ROOT), e);
+            }
+        }
+        return join(future);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw failure(e.getCause());
+        }
+    }
+
+    private static ProtonException failure(Throwable cause) {
+        if (cause instanceof ProtonException) {
+            return (ProtonException)cause;
+        }
+        return new ProtonException(cause);
+    }
+}
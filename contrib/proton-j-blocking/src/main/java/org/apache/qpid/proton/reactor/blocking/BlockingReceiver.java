@@ -0,0 +1,77 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.blocking;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.TimeoutException;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.reactor.async.AsyncReceiver;
+
+/**
+ * Receives messages over a {@link BlockingConnection}.  May be shared by any
+ * number of threads, which receive messages in the order they called.
+ */
+public final class BlockingReceiver {
+
+    private final AsyncReceiver receiver;
+
+    BlockingReceiver(AsyncReceiver receiver) {
+        this.receiver = receiver;
+    }
+
+    /**
+     * @return the asynchronous receiver this one is built on.
+     */
+    public AsyncReceiver async() {
+        return receiver;
+    }
+
+    /**
+     * Receives a message, waiting until one arrives.
+     * @return the message.
+     * @throws org.apache.qpid.proton.ProtonException if the link or
+     *         connection closes first.
+     * @throws org.apache.qpid.proton.InterruptException if the calling
+     *         thread is interrupted while waiting.
+     */
+    public Message receive() {
+        return BlockingConnection.await(receiver.receive());
+    }
+
+    /**
+     * Receives a message, waiting at most the given time for one to arrive.
+     * @return the message, or <code>null</code> if none arrived in time.
+     * @see #receive()
+     */
+    public Message receive(long timeout, TimeUnit unit) {
+        CompletableFuture<Message> future = receiver.receive();
+        try {
+            return BlockingConnection.await(future, timeout, unit);
+        } catch (TimeoutException e) {
+            // The receive was cancelled, so a message arriving for it
+            // goes to the next one instead
+            return null;
+        }
+    }
+}
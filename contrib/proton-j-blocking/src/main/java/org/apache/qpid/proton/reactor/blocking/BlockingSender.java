@@ -0,0 +1,72 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.blocking;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.reactor.async.AsyncSender;
+
+/**
+ * Sends messages over a {@link BlockingConnection}.  May be shared by any
+ * number of threads.
+ */
+public final class BlockingSender {
+
+    private final AsyncSender sender;
+
+    BlockingSender(AsyncSender sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * @return the asynchronous sender this one is built on.
+     */
+    public AsyncSender async() {
+        return sender;
+    }
+
+    /**
+     * Sends a message, waiting until the peer settles it.
+     * @param message the message to send.
+     * @return the state the peer settled the message with.
+     * @throws org.apache.qpid.proton.ProtonException if the link or
+     *         connection closes first.
+     * @throws org.apache.qpid.proton.InterruptException if the calling
+     *         thread is interrupted while waiting.
+     */
+    public DeliveryState send(Message message) {
+        return BlockingConnection.await(sender.send(message));
+    }
+
+    /**
+     * Sends a message, waiting at most the given time for the peer to settle
+     * it.  A message that times out may still be delivered.
+     * @throws org.apache.qpid.proton.TimeoutException if the peer does not
+     *         settle the message in time.
+     * @see #send(Message)
+     */
+    public DeliveryState send(Message message, long timeout, TimeUnit unit) {
+        return BlockingConnection.await(sender.send(message), timeout, unit);
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.blocking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.qpid.proton.InterruptException;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.reactor.Acceptor;
+import org.apache.qpid.proton.reactor.FlowController;
+import org.apache.qpid.proton.reactor.Handshaker;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.impl.AcceptorImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlockingConnectionTest {
+
+    // A peer that queues the messages sent to an address until they are
+    // received from it
+    private static class QueuePeer extends BaseHandler {
+        private final Map<String, ArrayDeque<byte[]>> queues = new HashMap<>();
+        private final List<Sender> senders = new ArrayList<>();
+        private Acceptor acceptor;
+        private volatile boolean stopping;
+
+        private ArrayDeque<byte[]> queue(String address) {
+            ArrayDeque<byte[]> queue = queues.get(address);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(address, queue);
+            }
+            return queue;
+        }
+
+        private void pump(Sender sender) {
+            ArrayDeque<byte[]> queue = queue(sender.getRemoteSource().getAddress());
+            while (sender.getCredit() > 0 && !queue.isEmpty()) {
+                byte[] encoded = queue.poll();
+                Delivery delivery = sender.delivery(new byte[0]);
+                sender.send(encoded, 0, encoded.length);
+                delivery.settle();
+                sender.advance();
+            }
+        }
+
+        @Override
+        public void onLinkRemoteOpen(Event event) {
+            if (event.getLink() instanceof Sender) {
+                senders.add((Sender)event.getLink());
+            }
+        }
+
+        @Override
+        public void onLinkFlow(Event event) {
+            if (event.getLink() instanceof Sender) {
+                pump((Sender)event.getLink());
+            }
+        }
+
+        @Override
+        public void onDelivery(Event event) {
+            Delivery delivery = event.getDelivery();
+            Link link = delivery.getLink();
+            if (link instanceof Receiver && delivery.isReadable() && !delivery.isPartial()) {
+                byte[] encoded = new byte[delivery.pending()];
+                ((Receiver)link).recv(encoded, 0, encoded.length);
+                link.advance();
+                queue(link.getRemoteTarget().getAddress()).add(encoded);
+                delivery.disposition(Accepted.getInstance());
+                delivery.settle();
+                for (Sender sender : senders) {
+                    pump(sender);
+                }
+            }
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            senders.clear();
+            event.getConnection().close();
+            event.getConnection().free();
+        }
+
+        @Override
+        public void onReactorQuiesced(Event event) {
+            if (stopping && acceptor != null) {
+                acceptor.close();
+                acceptor = null;
+            }
+        }
+    }
+
+    private QueuePeer peer;
+    private Reactor reactor;
+    private Thread thread;
+    private int port;
+
+    @Before
+    public void setUp() throws IOException {
+        peer = new QueuePeer();
+        reactor = Proton.reactor(peer);
+        peer.add(new Handshaker());
+        peer.add(new FlowController(64));
+        peer.acceptor = reactor.acceptor("127.0.0.1", 0, peer);
+        port = ((AcceptorImpl)peer.acceptor).getPortNumber();
+        thread = new Thread(reactor::run, "peer");
+        thread.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        peer.stopping = true;
+        reactor.wakeup();
+        thread.join(10000);
+        reactor.free();
+    }
+
+    private static Message message(Object body) {
+        Message message = Proton.message();
+        message.setBody(new AmqpValue(body));
+        return message;
+    }
+
+    @Test
+    public void manyVirtualThreadsShareOneConnection() throws Exception {
+        int threads = 10000;
+        try (BlockingConnection connection = BlockingConnection.connect("127.0.0.1", port)) {
+            BlockingSender sender = connection.createSender("queue");
+            BlockingReceiver receiver = connection.createReceiver("queue");
+            List<Future<Object>> received = new ArrayList<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < threads; i++) {
+                    int n = i;
+                    received.add(executor.submit(() -> {
+                        assertEquals(Accepted.getInstance(), sender.send(message(n)));
+                        return ((AmqpValue)receiver.receive().getBody()).getValue();
+                    }));
+                }
+            }
+            Set<Object> values = new HashSet<>();
+            for (Future<Object> value : received) {
+                values.add(value.get());
+            }
+            assertEquals(threads, values.size());
+        }
+    }
+
+    @Test
+    public void receiveTimesOutWithoutLosingMessages() throws Exception {
+        try (BlockingConnection connection = BlockingConnection.connect("127.0.0.1", port)) {
+            BlockingReceiver receiver = connection.createReceiver("queue");
+            for (int i = 0; i < 10; i++) {
+                assertNull(receiver.receive(10, TimeUnit.MILLISECONDS));
+            }
+            BlockingSender sender = connection.createSender("queue");
+            sender.send(message("first"), 10, TimeUnit.SECONDS);
+            sender.send(message("second"));
+            assertEquals("first", ((AmqpValue)receiver.receive(10, TimeUnit.SECONDS).getBody()).getValue());
+            assertEquals("second", ((AmqpValue)receiver.receive().getBody()).getValue());
+        }
+    }
+
+    @Test
+    public void interruptedReceiveDoesNotLoseTheNextMessage() throws Exception {
+        try (BlockingConnection connection = BlockingConnection.connect("127.0.0.1", port)) {
+            BlockingReceiver receiver = connection.createReceiver("queue");
+            AtomicReference<Throwable> thrown = new AtomicReference<>();
+            Thread waiting = Thread.ofVirtual().start(() -> {
+                try {
+                    receiver.receive();
+                } catch (Throwable t) {
+                    thrown.set(t);
+                }
+            });
+            while (waiting.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            waiting.interrupt();
+            waiting.join(10000);
+            assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof InterruptException);
+
+            connection.createSender("queue").send(message("next"));
+            assertEquals("next", ((AmqpValue)receiver.receive(10, TimeUnit.SECONDS).getBody()).getValue());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A time during which a transport had deliveries to send but could not send
+ * them for want of link credit or session window.  The event's duration is
+ * the length of the stall.
+ */
+@Name("org.apache.qpid.proton.FlowControlStall")
+@Label("AMQP Flow Control Stall")
+@Category({"Qpid Proton", "Transport"})
+@StackTrace(false)
+public class FlowControlStallEvent extends jdk.jfr.Event {
+
+    static final String LINK_CREDIT = "link credit";
+    static final String SESSION_WINDOW = "session window";
+
+    @Label("Blocked On")
+    @Description("What the transport waited for: link credit or session window")
+    String blockedOn;
+}
@@ -0,0 +1,50 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An AMQP frame written by a transport.
+ */
+@Name("org.apache.qpid.proton.FrameSent")
+@Label("AMQP Frame Sent")
+@Category({"Qpid Proton", "Transport"})
+@StackTrace(false)
+public class FrameSentEvent extends jdk.jfr.Event {
+
+    @Label("Type")
+    @Description("The frame's performative, or EMPTY for a keepalive")
+    String type;
+
+    @Label("Channel")
+    int channel;
+
+    @Label("Size")
+    @DataAmount
+    int size;
+}
@@ -0,0 +1,50 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.jfr;
+
+import jdk.jfr.EventType;
+
+import org.apache.qpid.proton.engine.DeliveryLatency;
+
+/**
+ * Delivery latency that also emits a {@link DeliverySettledEvent} to Java
+ * Flight Recorder for each delivery the peer settles.  Set on a sender
+ * like any other:
+ * <pre>
+ * sender.setDeliveryLatency(new JfrDeliveryLatency());
+ * </pre>
+ * No events are created while the recorder is not recording them.
+ */
+public class JfrDeliveryLatency extends DeliveryLatency {
+
+    private static final EventType DELIVERY_SETTLED = EventType.getEventType(DeliverySettledEvent.class);
+
+    @Override
+    public void recordSettle(long nanos) {
+        super.recordSettle(nanos);
+        if (DELIVERY_SETTLED.isEnabled()) {
+            DeliverySettledEvent event = new DeliverySettledEvent();
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.jfr;
+
+import org.apache.qpid.proton.engine.EventType;
+import org.apache.qpid.proton.reactor.ReactorMetrics;
+
+/**
+ * Reactor metrics that also emit a {@link ReactorIterationEvent} to Java
+ * Flight Recorder for each iteration of the reactor's loop.  Set on a
+ * reactor like any other:
+ * <pre>
+ * reactor.setMetrics(new JfrReactorMetrics());
+ * </pre>
+ * No events are created while the recorder is not recording them.  As the
+ * length of an iteration is only known at its end, each event is emitted
+ * then, with the length as a field.
+ */
+public class JfrReactorMetrics extends ReactorMetrics {
+
+    private static final jdk.jfr.EventType REACTOR_ITERATION =
+        jdk.jfr.EventType.getEventType(ReactorIterationEvent.class);
+
+    // The events processed since the last iteration ended
+    private int eventCount;
+
+    @Override
+    public void recordEvent(EventType type) {
+        super.recordEvent(type);
+        eventCount++;
+    }
+
+    @Override
+    public void recordIteration(long nanos) {
+        super.recordIteration(nanos);
+        if (REACTOR_ITERATION.isEnabled()) {
+            ReactorIterationEvent event = new ReactorIterationEvent();
+            event.iterationTime = nanos;
+            event.eventCount = eventCount;
+            event.commit();
+        }
+        eventCount = 0;
+    }
+}
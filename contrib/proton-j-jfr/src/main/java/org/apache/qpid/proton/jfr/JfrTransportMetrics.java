@@ -0,0 +1,98 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.jfr;
+
+import jdk.jfr.EventType;
+
+import org.apache.qpid.proton.engine.TransportMetrics;
+
+/**
+ * Transport metrics that also emit {@link FrameSentEvent}s,
+ * {@link FrameReceivedEvent}s and {@link FlowControlStallEvent}s to Java
+ * Flight Recorder.  Set on a transport like any other metrics:
+ * <pre>
+ * transport.setMetrics(new JfrTransportMetrics());
+ * </pre>
+ * or create them from a {@link JfrTransportMetricsGroup}.  No events are
+ * created while the recorder is not recording them.  A stall that began
+ * before recording did is not emitted.
+ */
+public class JfrTransportMetrics extends TransportMetrics {
+
+    private static final EventType FRAME_SENT = EventType.getEventType(FrameSentEvent.class);
+    private static final EventType FRAME_RECEIVED = EventType.getEventType(FrameReceivedEvent.class);
+    private static final EventType FLOW_CONTROL_STALL = EventType.getEventType(FlowControlStallEvent.class);
+
+    // The stalls under way, begun when the transport became blocked
+    private FlowControlStallEvent linkCreditStall;
+    private FlowControlStallEvent sessionWindowStall;
+
+    @Override
+    public void recordFrameSent(int channel, Object body, int size) {
+        super.recordFrameSent(channel, body, size);
+        if (FRAME_SENT.isEnabled()) {
+            FrameSentEvent event = new FrameSentEvent();
+            event.type = typeOf(body);
+            event.channel = channel;
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void recordFrameReceived(int channel, Object body, int size) {
+        super.recordFrameReceived(channel, body, size);
+        if (FRAME_RECEIVED.isEnabled()) {
+            FrameReceivedEvent event = new FrameReceivedEvent();
+            event.type = typeOf(body);
+            event.channel = channel;
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    private static String typeOf(Object body) {
+        FrameType type = FrameType.of(body);
+        return type == null ? body.getClass().getSimpleName() : type.name();
+    }
+
+    @Override
+    public void recordBlocked(boolean onLinkCredit, boolean onSessionWindow) {
+        super.recordBlocked(onLinkCredit, onSessionWindow);
+        linkCreditStall = stall(linkCreditStall, onLinkCredit, FlowControlStallEvent.LINK_CREDIT);
+        sessionWindowStall = stall(sessionWindowStall, onSessionWindow, FlowControlStallEvent.SESSION_WINDOW);
+    }
+
+    private static FlowControlStallEvent stall(FlowControlStallEvent stall, boolean blocked, String blockedOn) {
+        if (blocked) {
+            if (stall == null && FLOW_CONTROL_STALL.isEnabled()) {
+                stall = new FlowControlStallEvent();
+                stall.blockedOn = blockedOn;
+                stall.begin();
+            }
+        } else if (stall != null) {
+            stall.commit();
+            stall = null;
+        }
+        return stall;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One iteration of a reactor's loop, a call to
+ * {@link org.apache.qpid.proton.reactor.Reactor#process()}.
+ */
+@Name("org.apache.qpid.proton.ReactorIteration")
+@Label("Reactor Iteration")
+@Category({"Qpid Proton", "Reactor"})
+@StackTrace(false)
+public class ReactorIterationEvent extends jdk.jfr.Event {
+
+    @Label("Iteration Time")
+    @Description("How long the iteration took, including waiting for I/O")
+    @Timespan
+    long iterationTime;
+
+    @Label("Event Count")
+    @Description("The number of events the iteration dispatched")
+    int eventCount;
+}
@@ -0,0 +1,199 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.engine.Transport;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.junit.Test;
+
+public class JfrEventsTest {
+
+    private static final EnumSet<EndpointState> UNINITIALIZED = EnumSet.of(EndpointState.UNINITIALIZED);
+    private static final EnumSet<EndpointState> ACTIVE = EnumSet.of(EndpointState.ACTIVE);
+
+    private final Transport clientTransport = Proton.transport();
+    private final Transport serverTransport = Proton.transport();
+    private Sender sender;
+    private Receiver receiver;
+
+    private void open() {
+        Connection clientConnection = Proton.connection();
+        Connection serverConnection = Proton.connection();
+        clientTransport.setMetrics(new JfrTransportMetrics());
+        serverTransport.setMetrics(new JfrTransportMetrics());
+        clientTransport.bind(clientConnection);
+        serverTransport.bind(serverConnection);
+
+        clientConnection.open();
+        Session session = clientConnection.session();
+        session.open();
+        sender = session.sender("sender");
+        sender.setDeliveryLatency(new JfrDeliveryLatency());
+        sender.open();
+        pump();
+
+        serverConnection.open();
+        serverConnection.sessionHead(UNINITIALIZED, ACTIVE).open();
+        receiver = (Receiver) serverConnection.linkHead(UNINITIALIZED, ACTIVE);
+        receiver.open();
+        pump();
+    }
+
+    private void pump() {
+        boolean moved = true;
+        while (moved) {
+            moved = false;
+            for (Transport[] pair : new Transport[][] {{clientTransport, serverTransport}, {serverTransport, clientTransport}}) {
+                int size = Math.min(pair[0].pending(), pair[1].capacity());
+                if (size > 0) {
+                    ByteBuffer head = pair[0].head();
+                    int limit = head.limit();
+                    head.limit(head.position() + size);
+                    pair[1].tail().put(head);
+                    head.limit(limit);
+                    pair[1].process();
+                    pair[0].pop(size);
+                    moved = true;
+                }
+            }
+        }
+    }
+
+    private void sendAndSettle() throws InterruptedException {
+        sender.delivery(new byte[] {1});
+        sender.send(new byte[100], 0, 100);
+        sender.advance();
+        pump();
+        // Held back for want of credit
+        Thread.sleep(10);
+        receiver.flow(1);
+        pump();
+        Delivery delivery = receiver.current();
+        receiver.recv(new byte[100], 0, 100);
+        receiver.advance();
+        delivery.settle();
+        pump();
+    }
+
+    private static List<RecordedEvent> events(Recording recording, String name) throws IOException {
+        Path file = Files.createTempFile("proton-j-jfr", ".jfr");
+        try {
+            recording.dump(file);
+            List<RecordedEvent> events = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals(name)) {
+                    events.add(event);
+                }
+            }
+            return events;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEventsAreEmittedWhileRecording() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable(FrameSentEvent.class);
+            recording.enable(FrameReceivedEvent.class);
+            recording.enable(FlowControlStallEvent.class);
+            recording.enable(DeliverySettledEvent.class);
+            recording.enable(ReactorIterationEvent.class);
+            recording.start();
+
+            open();
+            sendAndSettle();
+            Reactor reactor = Proton.reactor();
+            reactor.setMetrics(new JfrReactorMetrics());
+            reactor.run();
+            recording.stop();
+
+            List<RecordedEvent> sent = events(recording, "org.apache.qpid.proton.FrameSent");
+            List<String> types = new ArrayList<>();
+            for (RecordedEvent event : sent) {
+                types.add(event.getString("type"));
+                assertTrue(event.getInt("size") >= 8);
+            }
+            // Both transports' frames
+            assertTrue(types.toString(), types.contains("OPEN") && types.contains("TRANSFER")
+                && types.contains("FLOW") && types.contains("DISPOSITION"));
+            assertEquals(sent.size(), events(recording, "org.apache.qpid.proton.FrameReceived").size());
+
+            List<RecordedEvent> stalls = events(recording, "org.apache.qpid.proton.FlowControlStall");
+            assertEquals(1, stalls.size());
+            assertEquals("link credit", stalls.get(0).getString("blockedOn"));
+            assertTrue(stalls.get(0).getDuration().compareTo(Duration.ofMillis(10)) >= 0);
+
+            List<RecordedEvent> settled = events(recording, "org.apache.qpid.proton.DeliverySettled");
+            assertEquals(1, settled.size());
+            assertTrue(settled.get(0).getDuration("latency").compareTo(Duration.ofMillis(10)) >= 0);
+
+            int eventCount = 0;
+            for (RecordedEvent event : events(recording, "org.apache.qpid.proton.ReactorIteration")) {
+                eventCount += event.getInt("eventCount");
+            }
+            // At least the reactor's init, quiesced and final events
+            assertTrue(eventCount >= 3);
+        }
+    }
+
+    @Test
+    public void testNothingIsEmittedForEventsNotRecorded() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable(FrameReceivedEvent.class);
+            recording.disable(FrameSentEvent.class);
+            recording.disable(FlowControlStallEvent.class);
+            recording.start();
+
+            open();
+            sendAndSettle();
+            recording.stop();
+
+            assertTrue(events(recording, "org.apache.qpid.proton.FrameReceived").size() > 0);
+            assertEquals(0, events(recording, "org.apache.qpid.proton.FrameSent").size());
+            assertEquals(0, events(recording, "org.apache.qpid.proton.FlowControlStall").size());
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.reactor.Acceptor;
+import org.apache.qpid.proton.reactor.IOSettings;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.impl.AcceptorImpl;
+
+/**
+ * A minimal broker, built on the reactor, for measuring clients such as
+ * {@link LoadGenerator} end to end without an external broker.  It creates
+ * a node for each address it is asked for: a queue, which passes each
+ * message to one consumer in turn, or, for addresses starting with the
+ * multicast prefix, a topic, which passes each message to every consumer.
+ * <p>
+ * Messages are passed on as the bytes they arrived as, with their message
+ * format, and are never decoded, so the broker adds little work of its own
+ * to what is measured.  It either settles each message as soon as it has
+ * it, or once every consumer it was passed on to has settled it, with the
+ * first outcome other than accepted that they gave.  It grants each
+ * producer a given amount of credit, and stops granting more while a node
+ * holds too many messages.  Nothing is persisted.
+ * <p>
+ * For example:
+ * <pre>
+ * Broker --host localhost:5672 --settle forward --credit 1000
+ * </pre>
+ */
+public class Broker extends BaseHandler {
+
+    // The longest to wait for the connections to close when stopping
+    private static final int CLOSE_TIMEOUT = 2000;
+
+    private final BrokerOptions options;
+    private final Map<String, Node> nodes = new HashMap<String, Node>();
+    private final List<Connection> connections = new ArrayList<Connection>();
+    private final CountDownLatch listening = new CountDownLatch(1);
+    private volatile Reactor reactor;
+    private volatile int port;
+    private volatile IOException listenFailure;
+    private Acceptor acceptor;
+    private boolean stopping;
+    private boolean finished;
+
+    public Broker(BrokerOptions options) {
+        this.options = options;
+        this.port = options.getPort();
+    }
+
+    /**
+     * Runs the broker on the calling thread until it is stopped.
+     * @throws IOException if the broker cannot listen.
+     */
+    public void run() throws IOException {
+        try {
+            reactor = Proton.reactor(this);
+            reactor.start();
+            while (reactor.process() && !finished) {
+            }
+            reactor.stop();
+            reactor.free();
+        } finally {
+            listening.countDown();
+        }
+        if (listenFailure != null) {
+            throw listenFailure;
+        }
+    }
+
+    /**
+     * Runs the broker on a new daemon thread, returning once it is
+     * listening.
+     * @return the thread.
+     * @throws IOException if the broker cannot listen.
+     */
+    public Thread start() throws IOException {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Broker.this.run();
+                } catch (IOException e) {
+                    // Reported to the starting thread
+                }
+            }
+        }, "broker");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            listening.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (listenFailure != null) {
+            throw listenFailure;
+        }
+        return thread;
+    }
+
+    /**
+     * Stops the broker, closing its connections.  May be called from any
+     * thread; {@link #run()} returns once the connections have closed.
+     */
+    public void stop() {
+        reactor.invoke(new Runnable() {
+            @Override
+            public void run() {
+                stopping = true;
+                if (acceptor != null) {
+                    acceptor.close();
+                }
+                for (Connection connection : connections) {
+                    if (connection.getLocalState() != EndpointState.CLOSED) {
+                        connection.close();
+                    }
+                }
+                if (connections.isEmpty()) {
+                    finished = true;
+                    return;
+                }
+                reactor.schedule(CLOSE_TIMEOUT, new BaseHandler() {
+                    @Override
+                    public void onTimerTask(Event event) {
+                        finished = true;
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return the port the broker listens on, which if it was given port
+     *         zero is the one it was given once it is listening.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    BrokerOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return the node with the given address, created if need be.
+     */
+    Node node(String address) {
+        Node node = nodes.get(address);
+        if (node == null) {
+            if (address.startsWith(options.getMulticastPrefix())) {
+                node = new TopicNode(address, options.getMaxDepth());
+            } else {
+                node = new QueueNode(address, options.getMaxDepth());
+            }
+            nodes.put(address, node);
+        }
+        return node;
+    }
+
+    void opened(Connection connection) {
+        connections.add(connection);
+    }
+
+    void closed(Connection connection) {
+        connections.remove(connection);
+        if (stopping && connections.isEmpty()) {
+            finished = true;
+        }
+    }
+
+    @Override
+    public void onReactorInit(Event event) {
+        Reactor reactor = event.getReactor();
+        // Small frames, such as dispositions, must not wait for Nagle
+        IOSettings.set(reactor.attachments(), new IOSettings().setTcpNoDelay(true));
+        try {
+            acceptor = reactor.acceptor(options.getHost(), options.getPort(), new BrokerHandler(this));
+            port = ((AcceptorImpl)acceptor).getPortNumber();
+        } catch (IOException e) {
+            listenFailure = e;
+            finished = true;
+        }
+        listening.countDown();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 1 && ("--help".equals(args[0]) || "-h".equals(args[0]))) {
+            System.out.print(BrokerOptions.USAGE);
+            return;
+        }
+        BrokerOptions options;
+        try {
+            options = BrokerOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(BrokerOptions.USAGE);
+            System.exit(1);
+            return;
+        }
+        Broker broker = new Broker(options);
+        Thread thread = broker.start();
+        System.out.println("Listening on " + options.getHost() + ":" + broker.getPort());
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            broker.stop();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.amqp.transport.ErrorCondition;
+import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.reactor.Handshaker;
+
+/**
+ * Handles the connections a {@link Broker} accepts.  A receiver link its
+ * peer attaches becomes a {@link Producer} of the node named by the link's
+ * target, and a sender link a {@link Consumer} of the node named by its
+ * source.
+ */
+class BrokerHandler extends BaseHandler {
+
+    private static final Symbol NOT_FOUND = Symbol.valueOf("amqp:not-found");
+
+    private final Broker broker;
+
+    BrokerHandler(Broker broker) {
+        this.broker = broker;
+        add(new Handshaker());
+    }
+
+    @Override
+    public void onConnectionInit(Event event) {
+        broker.opened(event.getConnection());
+    }
+
+    @Override
+    public void onLinkRemoteOpen(Event event) {
+        Link link = event.getLink();
+        if (link.getLocalState() != EndpointState.UNINITIALIZED) {
+            return;
+        }
+        link.setSource(link.getRemoteSource());
+        link.setTarget(link.getRemoteTarget());
+        String address = null;
+        if (link instanceof Receiver && link.getRemoteTarget() instanceof Target) {
+            address = ((Target)link.getRemoteTarget()).getAddress();
+        } else if (link instanceof Sender && link.getRemoteSource() instanceof Source) {
+            address = ((Source)link.getRemoteSource()).getAddress();
+        }
+        if (address == null) {
+            link.open();
+            link.setCondition(new ErrorCondition(NOT_FOUND, "Link has no address"));
+            link.close();
+            return;
+        }
+        Node node = broker.node(address);
+        if (link instanceof Receiver) {
+            Producer producer = new Producer((Receiver)link, node, broker.getOptions().getCredit(),
+                                             broker.getOptions().getSettlement() == BrokerOptions.Settlement.FORWARD);
+            link.setContext(producer);
+            link.open();
+            node.producers.add(producer);
+            producer.flow();
+        } else {
+            link.setSenderSettleMode(link.getRemoteSenderSettleMode());
+            Consumer consumer = new Consumer((Sender)link, node);
+            link.setContext(consumer);
+            link.open();
+            node.addConsumer(consumer);
+        }
+    }
+
+    @Override
+    public void onLinkFlow(Event event) {
+        Object context = event.getLink().getContext();
+        if (context instanceof Consumer) {
+            ((Consumer)context).node.dispatch();
+        }
+    }
+
+    @Override
+    public void onDelivery(Event event) {
+        Delivery delivery = event.getDelivery();
+        Object context = delivery.getLink().getContext();
+        if (context instanceof Producer) {
+            ((Producer)context).receive();
+        } else if (context instanceof Consumer && delivery.remotelySettled()) {
+            Node node = ((Consumer)context).node;
+            node.settled(delivery);
+            node.dispatch();
+        }
+    }
+
+    @Override
+    public void onLinkRemoteClose(Event event) {
+        detach(event.getLink());
+    }
+
+    @Override
+    public void onLinkRemoteDetach(Event event) {
+        detach(event.getLink());
+    }
+
+    @Override
+    public void onTransportClosed(Event event) {
+        Connection connection = event.getConnection();
+        if (connection != null) {
+            for (Link link = connection.linkHead(null, null); link != null; link = link.next(null, null)) {
+                detach(link);
+            }
+            broker.closed(connection);
+        }
+    }
+
+    /**
+     * Takes a link away from its node, passing any messages it was
+     * holding to the node's other consumers.
+     */
+    private static void detach(Link link) {
+        Object context = link.getContext();
+        link.setContext(null);
+        if (context instanceof Producer) {
+            Producer producer = (Producer)context;
+            producer.node.producers.remove(producer);
+        } else if (context instanceof Consumer) {
+            Consumer consumer = (Consumer)context;
+            consumer.node.removeConsumer(consumer);
+        }
+    }
+}
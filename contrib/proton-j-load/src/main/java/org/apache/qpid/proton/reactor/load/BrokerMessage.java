@@ -0,0 +1,81 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+
+/**
+ * A message held by a {@link Broker}: the bytes it arrived as, which are
+ * passed on as they are, and, until it is settled, the delivery it arrived
+ * on.
+ */
+class BrokerMessage {
+
+    final byte[] payload;
+    final int messageFormat;
+    // The delivery to settle once the consumers have, or null
+    private Delivery origin;
+    private int pending;
+    private DeliveryState outcome;
+
+    /**
+     * @param origin the delivery to settle once the message has been settled
+     *               by as many consumers as are given, or null.
+     * @param consumers how many consumers the message will be passed on to.
+     */
+    BrokerMessage(byte[] payload, int messageFormat, Delivery origin, int consumers) {
+        this.payload = payload;
+        this.messageFormat = messageFormat;
+        this.origin = origin;
+        this.pending = consumers;
+        if (consumers == 0) {
+            settleOrigin();
+        }
+    }
+
+    /**
+     * Records that a consumer has settled the message.
+     * @param state the consumer's outcome, or null if it left without one.
+     */
+    void settled(DeliveryState state) {
+        if (state != null && !(state instanceof Accepted) && outcome == null) {
+            outcome = state;
+        }
+        if (--pending == 0) {
+            settleOrigin();
+        }
+    }
+
+    private void settleOrigin() {
+        if (origin != null) {
+            // The producer's link may have gone, with the connection
+            if (origin.getLink().getLocalState() == EndpointState.ACTIVE) {
+                origin.disposition(outcome == null ? Accepted.getInstance() : outcome);
+                origin.settle();
+            }
+            origin = null;
+        }
+    }
+}
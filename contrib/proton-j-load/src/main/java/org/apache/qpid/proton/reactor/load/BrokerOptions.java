@@ -0,0 +1,144 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+/**
+ * The options of a {@link Broker}, normally parsed from its command line.
+ */
+public class BrokerOptions {
+
+    /**
+     * When the broker settles the messages it receives.
+     */
+    public enum Settlement {
+        /** As soon as it has them, before passing them on. */
+        FORWARD,
+        /** Once every consumer they were passed on to has settled them. */
+        ACK
+    }
+
+    static final String USAGE =
+        "Usage: Broker [options]\n"
+        + "  --host HOST:PORT          where to listen (default localhost:5672)\n"
+        + "  --settle forward|ack      settle received messages on receipt, or once\n"
+        + "                            consumers have settled them (default ack)\n"
+        + "  --credit N                credit each producer keeps outstanding\n"
+        + "                            (default 100)\n"
+        + "  --max-depth N             stop granting producers credit while a node\n"
+        + "                            holds this many messages (default 10000)\n"
+        + "  --multicast-prefix PREFIX nodes whose address starts with this are\n"
+        + "                            topics; others are queues (default topic/)\n";
+
+    private String host = "localhost";
+    private int port = 5672;
+    private Settlement settlement = Settlement.ACK;
+    private int credit = 100;
+    private int maxDepth = 10000;
+    private String multicastPrefix = "topic/";
+
+    /**
+     * Parses options from a command line.
+     * @param args the arguments, as described by {@link #USAGE}.
+     * @return the options.
+     * @throws IllegalArgumentException if the arguments are not valid.
+     */
+    public static BrokerOptions parse(String... args) {
+        BrokerOptions options = new BrokerOptions();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+            case "--host":
+                int colon = value.lastIndexOf(':');
+                if (colon < 0) {
+                    options.host = value;
+                } else {
+                    options.host = value.substring(0, colon);
+                    options.port = integer(option, value.substring(colon + 1), 0);
+                }
+                break;
+            case "--settle":
+                try {
+                    options.settlement = Settlement.valueOf(value.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown settlement: " + value);
+                }
+                break;
+            case "--credit":
+                options.credit = integer(option, value, 1);
+                break;
+            case "--max-depth":
+                options.maxDepth = integer(option, value, 1);
+                break;
+            case "--multicast-prefix":
+                options.multicastPrefix = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        return options;
+    }
+
+    private static int integer(String option, String value, int min) {
+        int result;
+        try {
+            result = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " must be a number: " + value);
+        }
+        if (result < min) {
+            throw new IllegalArgumentException(option + " must be at least " + min + ": " + value);
+        }
+        return result;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return the port to listen on, or zero for any free port.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    public Settlement getSettlement() {
+        return settlement;
+    }
+
+    public int getCredit() {
+        return credit;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public String getMulticastPrefix() {
+        return multicastPrefix;
+    }
+}
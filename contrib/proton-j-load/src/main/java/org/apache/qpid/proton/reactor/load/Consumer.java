@@ -0,0 +1,68 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Sender;
+
+/**
+ * A link a {@link Broker} passes messages on to.
+ */
+class Consumer {
+
+    final Sender link;
+    final Node node;
+    // Messages waiting for credit, for a consumer of a topic
+    final Deque<BrokerMessage> backlog = new ArrayDeque<BrokerMessage>();
+    private final boolean presettled;
+    private long nextTag;
+
+    Consumer(Sender link, Node node) {
+        this.link = link;
+        this.node = node;
+        this.presettled = link.getRemoteSenderSettleMode() == SenderSettleMode.SETTLED;
+    }
+
+    boolean hasCredit() {
+        return link.getCredit() > 0;
+    }
+
+    void send(BrokerMessage message) {
+        long tag = nextTag++;
+        Delivery delivery = link.delivery(new byte[] {
+            (byte)(tag >>> 56), (byte)(tag >>> 48), (byte)(tag >>> 40), (byte)(tag >>> 32),
+            (byte)(tag >>> 24), (byte)(tag >>> 16), (byte)(tag >>> 8), (byte)tag});
+        delivery.setMessageFormat(message.messageFormat);
+        link.send(message.payload, 0, message.payload.length);
+        link.advance();
+        if (presettled) {
+            delivery.settle();
+            message.settled(null);
+        } else {
+            delivery.setContext(message);
+        }
+    }
+}
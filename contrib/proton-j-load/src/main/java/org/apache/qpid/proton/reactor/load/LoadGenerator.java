@@ -0,0 +1,266 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.reactor.Acceptor;
+import org.apache.qpid.proton.reactor.IOSettings;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.impl.AcceptorImpl;
+
+/**
+ * A load generator for AMQP, built on the reactor, for measuring brokers and
+ * proton-j itself the same way.  It opens a number of connections, each
+ * with a number of sessions and links, and sends or receives messages of a
+ * given size on each link for a given time, with a given amount of credit
+ * and settlement mode, optionally at a limited rate and after a warm up
+ * that is left out of the results.  It reports the
+ * throughput and the latency from when each message was due to be sent to
+ * when it was settled or received, as described by {@link LoadStats}.
+ * <p>
+ * For example, to measure a broker, or to measure proton-j with no broker
+ * by having the generator send to itself:
+ * <pre>
+ * LoadGenerator --host broker:5672 --node queue1 --connections 4 --size 256
+ * LoadGenerator --listen --host localhost:0 --links 8 --rate 50000 --warmup 5
+ * </pre>
+ * Run with no arguments other than <code>--help</code> for the options.
+ * Like any reactor application, the generator runs on one thread, so a
+ * busy run measures that thread as well as whatever it is talking to.  Its
+ * sockets have <code>TCP_NODELAY</code> set, so that small frames such as
+ * dispositions are not held back.
+ */
+public class LoadGenerator extends BaseHandler {
+
+    // The longest to wait for the connections to close after the run
+    private static final int CLOSE_TIMEOUT = 2000;
+
+    private final LoadOptions options;
+    private final PrintStream out;
+    private final LoadStats stats = new LoadStats();
+    private final byte[] message;
+    private final int expectedSenders;
+    private final long interval;
+    private final List<Connection> connections = new ArrayList<Connection>();
+    private final List<LoadSender> senders = new ArrayList<LoadSender>();
+    private Acceptor acceptor;
+    private int port;
+    private boolean running;
+    private boolean finished;
+
+    /**
+     * @param options the options of the run.
+     * @param out where to report progress and results.
+     */
+    public LoadGenerator(LoadOptions options, PrintStream out) {
+        this.options = options;
+        this.out = out;
+        this.port = options.getPort();
+
+        Message template = Proton.message();
+        template.setBody(new Data(new Binary(new byte[options.getSize()])));
+        byte[] encoded = new byte[options.getSize() + 64];
+        int length = template.encode(encoded, 0, encoded.length);
+        message = new byte[length];
+        System.arraycopy(encoded, 0, message, 0, length);
+
+        expectedSenders = options.getConnections() * options.getSessions() * options.getLinks();
+        interval = options.getRate() == 0 ? 0 : 1000000000L * expectedSenders / options.getRate();
+    }
+
+    /**
+     * Runs the load, returning once the run's duration is up and the
+     * connections have closed.
+     * @return the statistics of the run.
+     */
+    public LoadStats run() throws IOException {
+        Reactor reactor = Proton.reactor(this);
+        reactor.start();
+        while (reactor.process() && !finished) {
+        }
+        reactor.stop();
+        reactor.free();
+        return stats;
+    }
+
+    LoadOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return the port connections are made to, which if the generator is
+     *         listening on an ephemeral port is the one it was given.
+     */
+    int getPort() {
+        return port;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    void opened(Connection connection) {
+        connections.add(connection);
+    }
+
+    void closed(Connection connection) {
+        connections.remove(connection);
+        if (!running && connections.isEmpty()) {
+            finished = true;
+        }
+    }
+
+    LoadSender sender(Sender sender) {
+        // Spreads the senders' messages evenly over each interval
+        long firstDue = System.nanoTime() + interval * (senders.size() % expectedSenders) / expectedSenders;
+        LoadSender loadSender = new LoadSender(sender, stats, message, options.isPresettled(),
+                                               options.getCredit(), interval, firstDue);
+        senders.add(loadSender);
+        return loadSender;
+    }
+
+    LoadReceiver receiver(Receiver receiver) {
+        return new LoadReceiver(receiver, stats, options.getCredit(),
+                                options.getRole() == LoadOptions.Role.BOTH);
+    }
+
+    @Override
+    public void onReactorInit(Event event) {
+        Reactor reactor = event.getReactor();
+        LoadOptions.Role role = options.getRole();
+        // Small frames, such as dispositions, must not wait for Nagle
+        IOSettings.set(reactor.attachments(), new IOSettings().setTcpNoDelay(true));
+        if (options.isListen()) {
+            try {
+                acceptor = reactor.acceptor(options.getHost(), options.getPort(), new LoadHandler(this, null));
+                port = ((AcceptorImpl)acceptor).getPortNumber();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot listen on " + options.getHost() + ":" + options.getPort(), e);
+            }
+            out.println("Listening on " + options.getHost() + ":" + port);
+        }
+        for (int i = 0; i < options.getConnections(); i++) {
+            if (role != LoadOptions.Role.RECEIVE && !(options.isListen() && role == LoadOptions.Role.SEND)) {
+                reactor.connection(new LoadHandler(this, true));
+            }
+            if (role != LoadOptions.Role.SEND && !options.isListen()) {
+                reactor.connection(new LoadHandler(this, false));
+            }
+        }
+
+        running = true;
+        stats.reset();
+        reactor.schedule(options.getWarmup() * 1000, new BaseHandler() {
+            @Override
+            public void onTimerTask(Event event) {
+                if (options.getWarmup() > 0) {
+                    stats.reset();
+                }
+                event.getReactor().schedule(options.getDuration() * 1000, new BaseHandler() {
+                    @Override
+                    public void onTimerTask(Event event) {
+                        finish(event.getReactor());
+                    }
+                });
+            }
+        });
+        if (options.getInterval() > 0) {
+            reactor.schedule(options.getInterval() * 1000, new BaseHandler() {
+                @Override
+                public void onTimerTask(Event event) {
+                    if (running) {
+                        stats.printInterval(out);
+                        event.getReactor().schedule(options.getInterval() * 1000, this);
+                    }
+                }
+            });
+        }
+        if (interval > 0) {
+            reactor.schedule(1, new BaseHandler() {
+                @Override
+                public void onTimerTask(Event event) {
+                    if (running) {
+                        for (LoadSender sender : senders) {
+                            sender.pump();
+                        }
+                        event.getReactor().schedule(1, this);
+                    }
+                }
+            });
+        }
+    }
+
+    private void finish(Reactor reactor) {
+        running = false;
+        stats.finish();
+        stats.print(out);
+        if (acceptor != null) {
+            acceptor.close();
+        }
+        for (Connection connection : connections) {
+            if (connection.getLocalState() != EndpointState.CLOSED) {
+                connection.close();
+            }
+        }
+        if (connections.isEmpty()) {
+            finished = true;
+            return;
+        }
+        reactor.schedule(CLOSE_TIMEOUT, new BaseHandler() {
+            @Override
+            public void onTimerTask(Event event) {
+                finished = true;
+            }
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 1 && ("--help".equals(args[0]) || "-h".equals(args[0]))) {
+            System.out.print(LoadOptions.USAGE);
+            return;
+        }
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadOptions.USAGE);
+            System.exit(1);
+            return;
+        }
+        new LoadGenerator(options, System.out).run();
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.amqp.transport.ErrorCondition;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.reactor.Handshaker;
+
+/**
+ * Handles a connection of a {@link LoadGenerator}.  A connection the
+ * generator makes opens its sessions and links when it is initialised; an
+ * accepted connection opens the links its peer attaches.  Either way, each
+ * sender link sends load and each receiver link receives it.
+ */
+class LoadHandler extends BaseHandler {
+
+    private final LoadGenerator generator;
+    // For a connection the generator makes, whether its links are senders;
+    // null for an accepted connection
+    private final Boolean senders;
+
+    LoadHandler(LoadGenerator generator, Boolean senders) {
+        this.generator = generator;
+        this.senders = senders;
+        add(new Handshaker());
+    }
+
+    @Override
+    public void onConnectionInit(Event event) {
+        Connection connection = event.getConnection();
+        generator.opened(connection);
+        if (senders == null) {
+            return;
+        }
+        LoadOptions options = generator.getOptions();
+        connection.setHostname(options.getHost() + ":" + generator.getPort());
+        connection.setContainer("load-" + connection.hashCode());
+        connection.open();
+        for (int s = 0; s < options.getSessions(); s++) {
+            Session session = connection.session();
+            session.open();
+            for (int l = 0; l < options.getLinks(); l++) {
+                String name = connection.getContainer() + "-" + s + "-" + l;
+                Link link = senders ? session.sender(name) : session.receiver(name);
+                Source source = new Source();
+                Target target = new Target();
+                if (senders) {
+                    target.setAddress(options.getNode());
+                } else {
+                    source.setAddress(options.getNode());
+                }
+                link.setSource(source);
+                link.setTarget(target);
+                start(link);
+                link.open();
+            }
+        }
+    }
+
+    @Override
+    public void onLinkRemoteOpen(Event event) {
+        Link link = event.getLink();
+        if (link.getLocalState() == EndpointState.UNINITIALIZED) {
+            link.setSource(link.getRemoteSource());
+            link.setTarget(link.getRemoteTarget());
+            start(link);
+            link.open();
+        }
+    }
+
+    private void start(Link link) {
+        if (link instanceof Sender) {
+            link.setContext(generator.sender((Sender)link));
+        } else {
+            LoadReceiver receiver = generator.receiver((Receiver)link);
+            link.setContext(receiver);
+            receiver.flow();
+        }
+    }
+
+    @Override
+    public void onLinkFlow(Event event) {
+        Link link = event.getLink();
+        if (link instanceof Sender && generator.isRunning()) {
+            ((LoadSender)link.getContext()).pump();
+        }
+    }
+
+    @Override
+    public void onDelivery(Event event) {
+        Delivery delivery = event.getDelivery();
+        Link link = delivery.getLink();
+        if (link instanceof Sender) {
+            LoadSender sender = (LoadSender)link.getContext();
+            sender.updated(delivery);
+            if (generator.isRunning()) {
+                sender.pump();
+            }
+        } else {
+            ((LoadReceiver)link.getContext()).receive();
+        }
+    }
+
+    @Override
+    public void onConnectionRemoteClose(Event event) {
+        report("Connection closed", event.getConnection().getRemoteCondition());
+    }
+
+    @Override
+    public void onLinkRemoteClose(Event event) {
+        report("Link " + event.getLink().getName() + " closed", event.getLink().getRemoteCondition());
+    }
+
+    @Override
+    public void onTransportClosed(Event event) {
+        generator.closed(event.getConnection());
+    }
+
+    @Override
+    public void onTransportError(Event event) {
+        report("Transport error", event.getTransport().getCondition());
+    }
+
+    private static void report(String what, ErrorCondition condition) {
+        if (condition != null && condition.getCondition() != null) {
+            System.err.println(what + ": " + condition.getCondition()
+                + (condition.getDescription() == null ? "" : " " + condition.getDescription()));
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+/**
+ * The options of a {@link LoadGenerator} run, normally parsed from its
+ * command line.
+ */
+public class LoadOptions {
+
+    /**
+     * What the load generator does on its links.
+     */
+    public enum Role {
+        /** Only sends. */
+        SEND,
+        /** Only receives. */
+        RECEIVE,
+        /** Both sends and receives, on separate connections. */
+        BOTH
+    }
+
+    static final String USAGE =
+        "Usage: LoadGenerator [options]\n"
+        + "  --role send|receive|both  what to do (default both)\n"
+        + "  --host HOST:PORT          where to connect, or with --listen where to\n"
+        + "                            listen (default localhost:5672)\n"
+        + "  --listen                  accept connections rather than making them;\n"
+        + "                            with --role both, the senders connect to the\n"
+        + "                            receivers without a broker in between\n"
+        + "  --node NAME               the node the links attach to (default load)\n"
+        + "  --connections N           connections to make, for each role (default 1)\n"
+        + "  --sessions N              sessions per connection (default 1)\n"
+        + "  --links N                 links per session (default 1)\n"
+        + "  --size BYTES              message body size, at least 8 (default 1024)\n"
+        + "  --credit N                credit each receiver keeps outstanding, and the\n"
+        + "                            most unsettled messages per sender (default 100)\n"
+        + "  --presettled              send messages settled\n"
+        + "  --rate N                  messages per second over all senders, or 0 for\n"
+        + "                            as fast as possible (default 0)\n"
+        + "  --warmup SECONDS          how long to run before measuring (default 0)\n"
+        + "  --duration SECONDS        how long to measure for (default 10)\n"
+        + "  --interval SECONDS        how often to report progress, or 0 for only a\n"
+        + "                            final report (default 1)\n";
+
+    private Role role = Role.BOTH;
+    private String host = "localhost";
+    private int port = 5672;
+    private boolean listen;
+    private String node = "load";
+    private int connections = 1;
+    private int sessions = 1;
+    private int links = 1;
+    private int size = 1024;
+    private int credit = 100;
+    private boolean presettled;
+    private int rate;
+    private int warmup;
+    private int duration = 10;
+    private int interval = 1;
+
+    /**
+     * Parses options from a command line.
+     * @param args the arguments, as described by {@link #USAGE}.
+     * @return the options.
+     * @throws IllegalArgumentException if the arguments are not valid.
+     */
+    public static LoadOptions parse(String... args) {
+        LoadOptions options = new LoadOptions();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if ("--listen".equals(option)) {
+                options.listen = true;
+                continue;
+            }
+            if ("--presettled".equals(option)) {
+                options.presettled = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+            case "--role":
+                try {
+                    options.role = Role.valueOf(value.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown role: " + value);
+                }
+                break;
+            case "--host":
+                int colon = value.lastIndexOf(':');
+                if (colon < 0) {
+                    options.host = value;
+                } else {
+                    options.host = value.substring(0, colon);
+                    options.port = integer(option, value.substring(colon + 1), 0);
+                }
+                break;
+            case "--node":
+                options.node = value;
+                break;
+            case "--connections":
+                options.connections = integer(option, value, 1);
+                break;
+            case "--sessions":
+                options.sessions = integer(option, value, 1);
+                break;
+            case "--links":
+                options.links = integer(option, value, 1);
+                break;
+            case "--size":
+                options.size = integer(option, value, 8);
+                break;
+            case "--credit":
+                options.credit = integer(option, value, 1);
+                break;
+            case "--rate":
+                options.rate = integer(option, value, 0);
+                break;
+            case "--warmup":
+                options.warmup = integer(option, value, 0);
+                break;
+            case "--duration":
+                options.duration = integer(option, value, 1);
+                break;
+            case "--interval":
+                options.interval = integer(option, value, 0);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        return options;
+    }
+
+    private static int integer(String option, String value, int min) {
+        int result;
+        try {
+            result = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " must be a number: " + value);
+        }
+        if (result < min) {
+            throw new IllegalArgumentException(option + " must be at least " + min + ": " + value);
+        }
+        return result;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isListen() {
+        return listen;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public int getSessions() {
+        return sessions;
+    }
+
+    public int getLinks() {
+        return links;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCredit() {
+        return credit;
+    }
+
+    public boolean isPresettled() {
+        return presettled;
+    }
+
+    /**
+     * @return the messages per second to send over all the senders, or zero
+     *         for as fast as possible.
+     */
+    public int getRate() {
+        return rate;
+    }
+
+    /**
+     * @return how long to run before starting to measure, in seconds.
+     */
+    public int getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * @return how long to measure for, after any warm up, in seconds.
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return how often to report progress, in seconds, or zero for never.
+     */
+    public int getInterval() {
+        return interval;
+    }
+}
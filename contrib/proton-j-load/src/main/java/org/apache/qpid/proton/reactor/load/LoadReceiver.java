@@ -0,0 +1,79 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Receiver;
+
+/**
+ * Receives the load on one link, accepting and settling each message and
+ * keeping the link's credit topped up.
+ */
+class LoadReceiver {
+
+    private final Receiver receiver;
+    private final LoadStats stats;
+    private final int credit;
+    private final boolean timed;
+    private byte[] buffer = new byte[1024];
+
+    /**
+     * @param timed whether to record the latency of received messages, which
+     *              is only meaningful if they were sent by the same process.
+     */
+    LoadReceiver(Receiver receiver, LoadStats stats, int credit, boolean timed) {
+        this.receiver = receiver;
+        this.stats = stats;
+        this.credit = credit;
+        this.timed = timed;
+    }
+
+    void flow() {
+        int current = receiver.getCredit();
+        if (current <= credit / 2) {
+            receiver.flow(credit - current);
+        }
+    }
+
+    /**
+     * Receives every complete message at the head of the link.
+     */
+    void receive() {
+        Delivery delivery;
+        while ((delivery = receiver.current()) != null && delivery.isReadable() && !delivery.isPartial()) {
+            int size = delivery.pending();
+            if (size > buffer.length) {
+                buffer = new byte[Math.max(size, buffer.length * 2)];
+            }
+            int read = receiver.recv(buffer, 0, size);
+            receiver.advance();
+            long now = System.nanoTime();
+            stats.received(read, timed && read >= 8 ? now - LoadSender.readLong(buffer, read - 8) : -1);
+            if (!delivery.remotelySettled()) {
+                delivery.disposition(Accepted.getInstance());
+            }
+            delivery.settle();
+        }
+        flow();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Sender;
+
+/**
+ * Sends the load on one link.  Each message is a copy of the same encoded
+ * message with the time it was due to be sent written into the last eight
+ * bytes of its body.
+ */
+class LoadSender {
+
+    private final Sender sender;
+    private final LoadStats stats;
+    private final byte[] message;
+    private final boolean presettled;
+    private final int maxUnsettled;
+    private final long interval;
+    // Tags are reused once their deliveries are settled, and there are twice
+    // as many as may be unsettled at once, so unsettled tags are unique
+    private final byte[][] tags;
+    private final long[] dueTimes;
+    private int nextTag;
+    private int unsettled;
+    private long due;
+
+    /**
+     * @param interval the nanoseconds between messages, or zero to send as
+     *                 fast as credit allows.
+     * @param firstDue when the first message is due, if the rate is limited.
+     */
+    LoadSender(Sender sender, LoadStats stats, byte[] message, boolean presettled, int maxUnsettled,
+               long interval, long firstDue) {
+        this.sender = sender;
+        this.stats = stats;
+        this.message = message;
+        this.presettled = presettled;
+        this.maxUnsettled = maxUnsettled;
+        this.interval = interval;
+        this.due = firstDue;
+        tags = new byte[maxUnsettled * 2][];
+        dueTimes = new long[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = new byte[] {(byte)(i >>> 24), (byte)(i >>> 16), (byte)(i >>> 8), (byte)i};
+        }
+    }
+
+    /**
+     * Sends as many messages as credit, the unsettled limit and the rate
+     * allow.
+     */
+    void pump() {
+        long now = System.nanoTime();
+        while (sender.getCredit() > 0 && (presettled || unsettled < maxUnsettled)) {
+            long dueTime;
+            if (interval > 0) {
+                if (due - now > 0) {
+                    break;
+                }
+                dueTime = due;
+                due += interval;
+            } else {
+                dueTime = now;
+            }
+            send(dueTime);
+            now = System.nanoTime();
+        }
+    }
+
+    private void send(long dueTime) {
+        int index = nextTag;
+        nextTag = (nextTag + 1) % tags.length;
+        dueTimes[index] = dueTime;
+        writeLong(message, message.length - 8, dueTime);
+
+        Delivery delivery = sender.delivery(tags[index]);
+        sender.send(message, 0, message.length);
+        sender.advance();
+        if (presettled) {
+            delivery.settle();
+        } else {
+            unsettled++;
+        }
+        stats.sent(message.length);
+    }
+
+    /**
+     * Handles an update to a sent delivery, settling it if the receiver has.
+     */
+    void updated(Delivery delivery) {
+        if (!delivery.remotelySettled() || delivery.isSettled()) {
+            return;
+        }
+        byte[] tag = delivery.getTag();
+        int index = (tag[0] & 0xff) << 24 | (tag[1] & 0xff) << 16 | (tag[2] & 0xff) << 8 | (tag[3] & 0xff);
+        stats.settled(System.nanoTime() - dueTimes[index], delivery.getRemoteState() instanceof Accepted);
+        delivery.settle();
+        unsettled--;
+    }
+
+    static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte)value;
+            value >>>= 8;
+        }
+    }
+
+    static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+}
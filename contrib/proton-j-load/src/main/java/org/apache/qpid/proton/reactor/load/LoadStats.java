@@ -0,0 +1,231 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.reactor.Histogram;
+
+/**
+ * What a {@link LoadGenerator} run has done: counts of messages sent,
+ * settled and received, and two latencies, in nanoseconds:
+ * <ul>
+ *   <li>settlement latency, from the time a message was due to be sent to
+ *       the time the sender saw it settled by the receiver, for messages that
+ *       are not presettled; and</li>
+ *   <li>receive latency, from the time a message was due to be sent to the
+ *       time it was received, recorded only when the same run both sends and
+ *       receives, so that both times come from the same clock.</li>
+ * </ul>
+ * When the send rate is limited, a message is due to be sent when the rate
+ * says it should be, even if the sender falls behind, so that the time a
+ * backlog waits is counted in the latency rather than hidden by it.
+ * <p>
+ * Percentiles are accurate to within 12.5%, as for any {@link Histogram}.
+ * The statistics are recorded by the reactor's thread and are not safe to
+ * read while the run is in progress from any other.
+ */
+public class LoadStats {
+
+    private final Histogram settleLatency = new Histogram();
+    private final Histogram receiveLatency = new Histogram();
+    private long sent;
+    private long accepted;
+    private long unaccepted;
+    private long received;
+    private long bytesSent;
+    private long bytesReceived;
+    private long start = System.nanoTime();
+    private long end;
+
+    // The counts at the end of the last interval
+    private long intervalStart = start;
+    private long intervalSent;
+    private long intervalReceived;
+    private long intervalSettled;
+    private long intervalLatencyCount;
+    private long intervalLatencyTotal;
+
+    /**
+     * Forgets everything recorded so far, and starts timing again.
+     */
+    void reset() {
+        settleLatency.reset();
+        receiveLatency.reset();
+        sent = 0;
+        accepted = 0;
+        unaccepted = 0;
+        received = 0;
+        bytesSent = 0;
+        bytesReceived = 0;
+        start = System.nanoTime();
+        end = 0;
+        intervalStart = start;
+        intervalSent = 0;
+        intervalReceived = 0;
+        intervalSettled = 0;
+        intervalLatencyCount = 0;
+        intervalLatencyTotal = 0;
+    }
+
+    /**
+     * Stops timing, at the end of the run.
+     */
+    void finish() {
+        end = System.nanoTime();
+    }
+
+    void sent(int bytes) {
+        sent++;
+        bytesSent += bytes;
+    }
+
+    void settled(long latency, boolean wasAccepted) {
+        settleLatency.record(latency);
+        if (wasAccepted) {
+            accepted++;
+        } else {
+            unaccepted++;
+        }
+    }
+
+    void received(int bytes, long latency) {
+        received++;
+        bytesReceived += bytes;
+        if (latency >= 0) {
+            receiveLatency.record(latency);
+        }
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * @return the number of sent messages the receiver settled as accepted.
+     */
+    public long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * @return the number of sent messages the receiver settled in any state
+     *         other than accepted.
+     */
+    public long getUnaccepted() {
+        return unaccepted;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return how long was measured, in nanoseconds, from the end of the
+     *         warm up to the end of the run, or to now while it is running.
+     */
+    public long getDuration() {
+        return (end == 0 ? System.nanoTime() : end) - start;
+    }
+
+    public Histogram getSettleLatency() {
+        return settleLatency;
+    }
+
+    public Histogram getReceiveLatency() {
+        return receiveLatency;
+    }
+
+    /**
+     * Prints a line of progress since the last one.
+     */
+    void printInterval(PrintStream out) {
+        long now = System.nanoTime();
+        double seconds = (now - intervalStart) / 1e9;
+        long settled = accepted + unaccepted;
+        Histogram latency = sent > 0 && settled > 0 ? settleLatency : receiveLatency;
+        long latencyCount = latency.getCount() - intervalLatencyCount;
+        long latencyTotal = latency.getTotal() - intervalLatencyTotal;
+        out.printf("%6.1fs  sent %9.0f/s  settled %9.0f/s  received %9.0f/s  mean latency %8dus%n",
+            (now - start) / 1e9,
+            (sent - intervalSent) / seconds,
+            (settled - intervalSettled) / seconds,
+            (received - intervalReceived) / seconds,
+            latencyCount == 0 ? 0 : micros(latencyTotal / latencyCount));
+        intervalStart = now;
+        intervalSent = sent;
+        intervalSettled = settled;
+        intervalReceived = received;
+        intervalLatencyCount = latency.getCount();
+        intervalLatencyTotal = latency.getTotal();
+    }
+
+    /**
+     * Prints the totals, rates and latency percentiles for the whole run.
+     */
+    public void print(PrintStream out) {
+        double seconds = getDuration() / 1e9;
+        out.printf("Duration   %.1fs%n", seconds);
+        if (sent > 0) {
+            out.printf("Sent       %d messages, %.0f msg/s, %.2f MB/s%n",
+                sent, sent / seconds, bytesSent / seconds / 1e6);
+        }
+        if (accepted + unaccepted > 0) {
+            out.printf("Settled    %d accepted, %d not accepted%n", accepted, unaccepted);
+        }
+        if (received > 0) {
+            out.printf("Received   %d messages, %.0f msg/s, %.2f MB/s%n",
+                received, received / seconds, bytesReceived / seconds / 1e6);
+        }
+        printLatency(out, "Settlement latency", settleLatency);
+        printLatency(out, "Receive latency", receiveLatency);
+    }
+
+    private static void printLatency(PrintStream out, String name, Histogram latency) {
+        if (latency.getCount() == 0) {
+            return;
+        }
+        out.printf("%s (us): min %d, p50 %d, p90 %d, p99 %d, p99.9 %d, p99.99 %d, max %d, mean %.1f%n",
+            name,
+            micros(latency.getMin()),
+            micros(latency.getPercentile(50)),
+            micros(latency.getPercentile(90)),
+            micros(latency.getPercentile(99)),
+            micros(latency.getPercentile(99.9)),
+            micros(latency.getPercentile(99.99)),
+            micros(latency.getMax()),
+            latency.getMean() / 1000);
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton.amqp.messaging.Modified;
+import org.apache.qpid.proton.amqp.messaging.Released;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.engine.Delivery;
+
+/**
+ * A node of a {@link Broker}, which producers send messages to and
+ * consumers receive them from.
+ */
+abstract class Node {
+
+    final String address;
+    final List<Producer> producers = new ArrayList<Producer>();
+    final List<Consumer> consumers = new ArrayList<Consumer>();
+    private final int maxDepth;
+
+    Node(String address, int maxDepth) {
+        this.address = address;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @return the number of consumers a message published now will be
+     *         passed on to.
+     */
+    abstract int fanOut();
+
+    /**
+     * Takes a message from a producer, whose delivery has been told how
+     * many consumers it will be passed on to.
+     */
+    abstract void publish(BrokerMessage message);
+
+    /**
+     * Passes on what messages the consumers have credit for.
+     */
+    abstract void dispatch();
+
+    /**
+     * @return the most messages waiting for any one consumer.
+     */
+    abstract int depth();
+
+    /**
+     * Handles a message a consumer has not taken, because it released the
+     * message or went away before settling it.
+     */
+    abstract void returned(BrokerMessage message);
+
+    boolean isAcceptingMessages() {
+        return depth() < maxDepth;
+    }
+
+    void addConsumer(Consumer consumer) {
+        consumers.add(consumer);
+    }
+
+    void removeConsumer(Consumer consumer) {
+        consumers.remove(consumer);
+        List<BrokerMessage> unsettled = new ArrayList<BrokerMessage>();
+        for (Delivery delivery = consumer.link.head(); delivery != null; delivery = delivery.next()) {
+            BrokerMessage message = (BrokerMessage)delivery.getContext();
+            if (message != null && !delivery.isSettled()) {
+                delivery.setContext(null);
+                unsettled.add(message);
+            }
+        }
+        // Newest first, so that a queue gets them back in order
+        for (int i = unsettled.size() - 1; i >= 0; i--) {
+            returned(unsettled.get(i));
+        }
+        for (BrokerMessage message : consumer.backlog) {
+            message.settled(null);
+        }
+        consumer.backlog.clear();
+        dispatch();
+    }
+
+    /**
+     * Handles a consumer's update to a delivery, once the consumer has
+     * settled it.
+     */
+    void settled(Delivery delivery) {
+        BrokerMessage message = (BrokerMessage)delivery.getContext();
+        delivery.setContext(null);
+        DeliveryState state = delivery.getRemoteState();
+        delivery.settle();
+        if (message == null) {
+            return;
+        }
+        if (state instanceof Released
+            || (state instanceof Modified && !Boolean.TRUE.equals(((Modified)state).getUndeliverableHere()))) {
+            returned(message);
+        } else {
+            message.settled(state);
+        }
+    }
+
+    /**
+     * Tops up the producers' credit if the node has room.
+     */
+    void flowProducers() {
+        if (isAcceptingMessages()) {
+            for (Producer producer : producers) {
+                producer.flow();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Receiver;
+
+/**
+ * A link a {@link Broker} receives messages on.
+ */
+class Producer {
+
+    final Receiver link;
+    final Node node;
+    private final int credit;
+    private final boolean settleOnForward;
+
+    Producer(Receiver link, Node node, int credit, boolean settleOnForward) {
+        this.link = link;
+        this.node = node;
+        this.credit = credit;
+        this.settleOnForward = settleOnForward;
+    }
+
+    /**
+     * Tops up the link's credit once half of it has been used.
+     */
+    void flow() {
+        int current = link.getCredit();
+        if (current <= credit / 2) {
+            link.flow(credit - current);
+        }
+    }
+
+    /**
+     * Publishes every complete message at the head of the link.
+     */
+    void receive() {
+        Delivery delivery;
+        while ((delivery = link.current()) != null && delivery.isReadable() && !delivery.isPartial()) {
+            byte[] payload = new byte[delivery.pending()];
+            link.recv(payload, 0, payload.length);
+            link.advance();
+            Delivery origin = null;
+            if (delivery.remotelySettled()) {
+                delivery.settle();
+            } else if (settleOnForward) {
+                delivery.disposition(Accepted.getInstance());
+                delivery.settle();
+            } else {
+                origin = delivery;
+            }
+            node.publish(new BrokerMessage(payload, delivery.getMessageFormat(), origin, node.fanOut()));
+        }
+        if (node.isAcceptingMessages()) {
+            flow();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * An anycast node: each message goes to one consumer, in turn among those
+ * with credit, and waits in the queue while no consumer has any.
+ */
+class QueueNode extends Node {
+
+    private final Deque<BrokerMessage> messages = new ArrayDeque<BrokerMessage>();
+    private int next;
+
+    QueueNode(String address, int maxDepth) {
+        super(address, maxDepth);
+    }
+
+    @Override
+    int fanOut() {
+        return 1;
+    }
+
+    @Override
+    void publish(BrokerMessage message) {
+        messages.add(message);
+        dispatch();
+    }
+
+    @Override
+    void dispatch() {
+        int count = consumers.size();
+        int withoutCredit = 0;
+        while (!messages.isEmpty() && withoutCredit < count) {
+            next = next % count;
+            Consumer consumer = consumers.get(next++);
+            if (consumer.hasCredit()) {
+                consumer.send(messages.poll());
+                withoutCredit = 0;
+            } else {
+                withoutCredit++;
+            }
+        }
+        flowProducers();
+    }
+
+    @Override
+    int depth() {
+        return messages.size();
+    }
+
+    @Override
+    void returned(BrokerMessage message) {
+        messages.addFirst(message);
+    }
+}
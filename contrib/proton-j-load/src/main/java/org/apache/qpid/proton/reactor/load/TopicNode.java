@@ -0,0 +1,72 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+/**
+ * A multicast node: each message goes to every consumer attached when it is
+ * published, waiting in a backlog for each consumer until that consumer has
+ * credit.  A message published with no consumers is dropped.
+ */
+class TopicNode extends Node {
+
+    TopicNode(String address, int maxDepth) {
+        super(address, maxDepth);
+    }
+
+    @Override
+    int fanOut() {
+        return consumers.size();
+    }
+
+    @Override
+    void publish(BrokerMessage message) {
+        for (Consumer consumer : consumers) {
+            consumer.backlog.add(message);
+        }
+        dispatch();
+    }
+
+    @Override
+    void dispatch() {
+        for (Consumer consumer : consumers) {
+            while (!consumer.backlog.isEmpty() && consumer.hasCredit()) {
+                consumer.send(consumer.backlog.poll());
+            }
+        }
+        flowProducers();
+    }
+
+    @Override
+    int depth() {
+        int depth = 0;
+        for (Consumer consumer : consumers) {
+            depth = Math.max(depth, consumer.backlog.size());
+        }
+        return depth;
+    }
+
+    @Override
+    void returned(BrokerMessage message) {
+        // Not offered to another consumer, since they all had their own copy
+        message.settled(null);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class BrokerTest {
+
+    private Broker broker;
+    private Thread thread;
+
+    private void start(String... args) throws Exception {
+        String[] withHost = Arrays.copyOf(args, args.length + 2);
+        withHost[args.length] = "--host";
+        withHost[args.length + 1] = "127.0.0.1:0";
+        broker = new Broker(BrokerOptions.parse(withHost));
+        thread = broker.start();
+        assertTrue(broker.getPort() > 0);
+    }
+
+    @After
+    public void stop() throws Exception {
+        if (broker != null) {
+            broker.stop();
+            thread.join(10000);
+            assertTrue("Broker did not stop", !thread.isAlive());
+        }
+    }
+
+    private LoadStats load(String... args) throws Exception {
+        String[] withHost = Arrays.copyOf(args, args.length + 6);
+        withHost[args.length] = "--host";
+        withHost[args.length + 1] = "127.0.0.1:" + broker.getPort();
+        withHost[args.length + 2] = "--duration";
+        withHost[args.length + 3] = "1";
+        withHost[args.length + 4] = "--interval";
+        withHost[args.length + 5] = "0";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return new LoadGenerator(LoadOptions.parse(withHost), new PrintStream(out, true)).run();
+    }
+
+    @Test
+    public void testQueue() throws Exception {
+        start();
+        LoadStats stats = load("--node", "queue", "--links", "2", "--size", "256");
+        assertTrue(stats.getSent() > 0);
+        assertTrue(stats.getAccepted() > 0);
+        assertEquals(0, stats.getUnaccepted());
+        assertTrue(stats.getReceived() >= stats.getAccepted());
+        assertTrue(stats.getReceived() <= stats.getSent());
+        assertEquals(stats.getReceived() * stats.getBytesSent() / stats.getSent(), stats.getBytesReceived());
+    }
+
+    @Test
+    public void testPresettledQueue() throws Exception {
+        start("--settle", "forward");
+        LoadStats stats = load("--node", "queue", "--presettled");
+        assertTrue(stats.getSent() > 0);
+        assertTrue(stats.getReceived() > 0);
+        assertEquals(0, stats.getAccepted());
+    }
+
+    @Test
+    public void testTopic() throws Exception {
+        start();
+        LoadStats stats = load("--node", "topic/t", "--links", "2");
+        // Each message goes to both receiving links
+        assertTrue("Sent " + stats.getSent() + ", received " + stats.getReceived(),
+                   stats.getReceived() > stats.getSent() * 3 / 2);
+        assertTrue(stats.getAccepted() > 0);
+    }
+
+    @Test
+    public void testSettleOnAck() throws Exception {
+        start("--settle", "ack", "--credit", "10", "--max-depth", "50");
+        LoadStats stats = load("--node", "queue", "--role", "send");
+        // With no consumers nothing is settled, and the queue stops
+        // granting credit once it is full
+        assertEquals(0, stats.getAccepted());
+        assertTrue("Sent " + stats.getSent(), stats.getSent() >= 50);
+        assertTrue("Sent " + stats.getSent(), stats.getSent() <= 50 + 10);
+    }
+
+    @Test
+    public void testSettleOnForward() throws Exception {
+        start("--settle", "forward", "--max-depth", "50");
+        LoadStats stats = load("--node", "queue", "--role", "send");
+        assertTrue(stats.getAccepted() >= 50);
+        assertEquals(stats.getSent(), stats.getAccepted());
+    }
+
+    @Test
+    public void testParse() {
+        BrokerOptions options = BrokerOptions.parse();
+        assertEquals("localhost", options.getHost());
+        assertEquals(5672, options.getPort());
+        assertEquals(BrokerOptions.Settlement.ACK, options.getSettlement());
+        assertEquals("topic/", options.getMulticastPrefix());
+
+        options = BrokerOptions.parse("--host", "0.0.0.0:0", "--settle", "forward", "--credit", "5",
+                                      "--max-depth", "7", "--multicast-prefix", "mc.");
+        assertEquals("0.0.0.0", options.getHost());
+        assertEquals(0, options.getPort());
+        assertEquals(BrokerOptions.Settlement.FORWARD, options.getSettlement());
+        assertEquals(5, options.getCredit());
+        assertEquals(7, options.getMaxDepth());
+        assertEquals("mc.", options.getMulticastPrefix());
+
+        for (String[] args : new String[][] {{"--settle", "never"}, {"--credit"}, {"--credit", "0"},
+                                             {"--bogus", "1"}}) {
+            try {
+                BrokerOptions.parse(args);
+                fail("Parsed " + Arrays.toString(args));
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+}
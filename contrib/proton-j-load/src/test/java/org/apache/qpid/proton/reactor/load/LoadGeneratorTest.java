@@ -0,0 +1,115 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class LoadGeneratorTest {
+
+    private static LoadStats run(String... args) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LoadStats stats = new LoadGenerator(LoadOptions.parse(args), new PrintStream(out, true)).run();
+        String report = out.toString();
+        assertTrue(report, report.contains("Listening on 127.0.0.1:"));
+        assertTrue(report, report.contains("Duration"));
+        return stats;
+    }
+
+    @Test
+    public void testUnsettledToItself() throws Exception {
+        LoadStats stats = run("--listen", "--host", "127.0.0.1:0", "--connections", "2", "--sessions", "2",
+                              "--links", "2", "--size", "256", "--duration", "1", "--interval", "0");
+        assertTrue(stats.getSent() > 0);
+        assertTrue(stats.getAccepted() > 0);
+        assertEquals(0, stats.getUnaccepted());
+        assertTrue(stats.getReceived() >= stats.getAccepted());
+        assertEquals(stats.getAccepted(), stats.getSettleLatency().getCount());
+        assertEquals(stats.getReceived(), stats.getReceiveLatency().getCount());
+        assertTrue(stats.getSettleLatency().getMin() > 0);
+        assertEquals(stats.getReceived() * stats.getBytesSent() / stats.getSent(), stats.getBytesReceived());
+    }
+
+    @Test
+    public void testPresettledToItself() throws Exception {
+        LoadStats stats = run("--listen", "--host", "127.0.0.1:0", "--presettled", "--credit", "1000",
+                              "--duration", "1", "--interval", "0");
+        assertTrue(stats.getSent() > 0);
+        assertTrue(stats.getReceived() > 0);
+        assertEquals(0, stats.getAccepted());
+        assertEquals(0, stats.getSettleLatency().getCount());
+        assertEquals(stats.getReceived(), stats.getReceiveLatency().getCount());
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        LoadStats stats = run("--listen", "--host", "127.0.0.1:0", "--links", "4", "--rate", "400",
+                              "--warmup", "1", "--duration", "1", "--interval", "0");
+        // Four senders each sending one message every 10ms for as long as
+        // was measured after the warm up, which the timer may overrun, with
+        // leeway for a sender catching up on a message it was late with
+        double seconds = stats.getDuration() / 1e9;
+        String sent = "Sent " + stats.getSent() + " in " + seconds + "s";
+        assertTrue(sent, stats.getSent() <= 400 * seconds * 1.1 + 4);
+        assertTrue(sent, stats.getSent() >= 100 * seconds);
+    }
+
+    @Test
+    public void testCreditOfOne() throws Exception {
+        LoadStats stats = run("--listen", "--host", "127.0.0.1:0", "--credit", "1", "--size", "8",
+                              "--duration", "1", "--interval", "0");
+        assertTrue(stats.getAccepted() > 0);
+    }
+
+    @Test
+    public void testParse() {
+        LoadOptions options = LoadOptions.parse();
+        assertEquals(LoadOptions.Role.BOTH, options.getRole());
+        assertEquals("localhost", options.getHost());
+        assertEquals(5672, options.getPort());
+        assertEquals(1024, options.getSize());
+
+        options = LoadOptions.parse("--role", "send", "--host", "broker:5673", "--node", "q", "--rate", "10");
+        assertEquals(LoadOptions.Role.SEND, options.getRole());
+        assertEquals("broker", options.getHost());
+        assertEquals(5673, options.getPort());
+        assertEquals("q", options.getNode());
+        assertEquals(10, options.getRate());
+
+        for (String[] args : new String[][] {{"--size", "4"}, {"--links"}, {"--role", "forward"}, {"--bogus", "1"},
+                                             {"--credit", "many"}}) {
+            try {
+                LoadOptions.parse(args);
+                fail("Parsed " + Arrays.toString(args));
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.flow;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.qpid.proton.ProtonException;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Released;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.amqp.transport.ErrorCondition;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.reactor.async.AsyncConnection;
+import org.apache.qpid.proton.reactor.async.Transfers;
+
+/**
+ * Publishes the messages received from an address on the peer of an
+ * {@link AsyncConnection}.
+ * <p>
+ * Each subscriber gets its own receiving link, whose credit follows the
+ * subscriber's demand: {@link Flow.Subscription#request(long)} is turned into
+ * {@link Receiver#flow(int)}, with at most <code>maxCredit</code> granted to
+ * the peer at a time.  Once that much is outstanding, more is granted only
+ * after half of it has been used, so that an unbounded demand does not cost
+ * a flow frame per message.  Messages are accepted as they are published,
+ * and released if they arrive after the subscription has been cancelled.
+ * <p>
+ * Subscribers are signalled on the connection's reactor thread, and must not
+ * block it.
+ */
+public final class ReceiverPublisher implements Flow.Publisher<Message> {
+
+    /** The default for the <code>maxCredit</code> argument of {@link #ReceiverPublisher(AsyncConnection, String, int)}. */
+    public static final int DEFAULT_MAX_CREDIT = 1024;
+
+    private static final AtomicLong nextLink = new AtomicLong();
+
+    private final AsyncConnection connection;
+    private final String address;
+    private final int maxCredit;
+
+    public ReceiverPublisher(AsyncConnection connection, String address) {
+        this(connection, address, DEFAULT_MAX_CREDIT);
+    }
+
+    /**
+     * @param connection the connection to receive over.
+     * @param address the source address on the peer.
+     * @param maxCredit the most credit granted to the peer for each
+     *                  subscriber, which must be at least 2.
+     */
+    public ReceiverPublisher(AsyncConnection connection, String address, int maxCredit) {
+        if (maxCredit < 2) {
+            throw new IllegalArgumentException("maxCredit must be at least 2");
+        }
+        this.connection = Objects.requireNonNull(connection, "connection");
+        this.address = Objects.requireNonNull(address, "address");
+        this.maxCredit = maxCredit;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Message> subscriber) {
+        LinkSubscription subscription = new LinkSubscription(Objects.requireNonNull(subscriber, "subscriber"));
+        subscriber.onSubscribe(subscription);
+        connection.submit(session -> subscription.open(session)).whenComplete((link, cause) -> {
+            if (cause != null) {
+                subscription.terminate(cause);
+            }
+        });
+        connection.closed().whenComplete((v, cause) ->
+            subscription.terminate(new ProtonException("Connection closed while receiving from " + address, cause)));
+    }
+
+    private final class LinkSubscription extends BaseHandler implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Message> subscriber;
+        private final AtomicBoolean terminated = new AtomicBoolean();
+
+        // Only used on the reactor thread
+        private Receiver link;
+        private long demand;
+        private boolean cancelled;
+
+        private LinkSubscription(Flow.Subscriber<? super Message> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        private Receiver open(Session session) {
+            // The subscriber may have cancelled from onSubscribe, which is
+            // carried out before this
+            if (cancelled) {
+                return null;
+            }
+            link = session.receiver("publisher-" + nextLink.getAndIncrement());
+            Source source = new Source();
+            source.setAddress(address);
+            link.setSource(source);
+            link.setTarget(new Target());
+            BaseHandler.setHandler(link, this);
+            link.open();
+            grant();
+            return link;
+        }
+
+        @Override
+        public void request(long n) {
+            connection.submit(session -> {
+                if (n <= 0) {
+                    terminate(new IllegalArgumentException("Demand must be positive, was " + n));
+                    cancel(session);
+                } else {
+                    demand += n;
+                    if (demand < 0) {
+                        demand = Long.MAX_VALUE;
+                    }
+                    grant();
+                }
+                return null;
+            });
+        }
+
+        @Override
+        public void cancel() {
+            connection.submit(this::cancel);
+        }
+
+        private Void cancel(Session session) {
+            if (!cancelled) {
+                cancelled = true;
+                terminated.set(true);
+                if (link != null) {
+                    link.close();
+                }
+            }
+            return null;
+        }
+
+        // Tops up the link's credit to cover the demand, once it has fallen
+        // to half of the most that may be outstanding
+        private void grant() {
+            if (link == null || cancelled) {
+                return;
+            }
+            int credit = link.getCredit();
+            long target = Math.min(demand, maxCredit);
+            if (target > credit && (target < maxCredit || credit <= maxCredit / 2)) {
+                link.flow((int)(target - credit));
+            }
+        }
+
+        private void terminate(Throwable cause) {
+            if (terminated.compareAndSet(false, true)) {
+                subscriber.onError(cause);
+            }
+        }
+
+        @Override
+        public void onDelivery(Event event) {
+            Delivery delivery = event.getDelivery();
+            if (!delivery.isReadable() || delivery.isPartial()) {
+                return;
+            }
+            if (cancelled) {
+                // Sent before the peer saw the link close, so let it go to
+                // another receiver
+                link.advance();
+                delivery.disposition(Released.getInstance());
+                delivery.settle();
+                return;
+            }
+            Message message = Transfers.receive(link, delivery);
+            delivery.disposition(Accepted.getInstance());
+            delivery.settle();
+            --demand;
+            try {
+                subscriber.onNext(message);
+            } catch (RuntimeException e) {
+                // The subscriber broke its contract (rule 2.13), so treat
+                // the subscription as cancelled
+                cancel(null);
+                return;
+            }
+            grant();
+        }
+
+        @Override
+        public void onLinkRemoteClose(Event event) {
+            ErrorCondition condition = link.getRemoteCondition();
+            link.close();
+            link.free();
+            if (!cancelled && terminated.compareAndSet(false, true)) {
+                if (condition != null && condition.getCondition() != null) {
+                    subscriber.onError(new ProtonException("Link from " + address + " closed by peer: "
+                            + condition.getCondition() + " " + condition.getDescription()));
+                } else {
+                    subscriber.onComplete();
+                }
+            }
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.flow;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.qpid.proton.ProtonException;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.amqp.transport.ErrorCondition;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.reactor.async.AsyncConnection;
+import org.apache.qpid.proton.reactor.async.Transfers;
+
+/**
+ * Sends the messages it is given to an address on the peer of an
+ * {@link AsyncConnection}.
+ * <p>
+ * The subscriber opens a sending link when it is subscribed, and requests
+ * from its publisher only as many messages as the peer has given the link
+ * credit for.  Requests are made once at least half of the link's credit is
+ * unrequested, or when nothing is requested at all, so that a peer granting
+ * credit a little at a time does not cost a request per message.
+ * <p>
+ * Once the publisher completes and every message sent has been settled by
+ * the peer, the link is closed and {@link #done()} completes.
+ */
+public final class SenderSubscriber implements Flow.Subscriber<Message> {
+
+    private static final AtomicLong nextLink = new AtomicLong();
+
+    private final AsyncConnection connection;
+    private final String address;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    // Only used on the reactor thread
+    private Flow.Subscription subscription;
+    private final LinkHandler handler = new LinkHandler();
+    private Sender link;
+    private final ArrayDeque<byte[]> queued = new ArrayDeque<>();
+    private long requested;
+    private int unsettled;
+    private long nextTag;
+    private boolean completing;
+
+    /**
+     * @param connection the connection to send over.
+     * @param address the target address on the peer.
+     */
+    public SenderSubscriber(AsyncConnection connection, String address) {
+        this.connection = Objects.requireNonNull(connection, "connection");
+        this.address = Objects.requireNonNull(address, "address");
+    }
+
+    /**
+     * @return a future that completes once the publisher has completed and
+     *         everything it published has been settled by the peer, or
+     *         exceptionally if the publisher fails or the link or connection
+     *         is closed first.
+     */
+    public CompletableFuture<Void> done() {
+        return done;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscription.cancel();
+            return;
+        }
+        connection.submit(session -> open(session, subscription)).whenComplete((v, cause) -> {
+            if (cause != null) {
+                subscription.cancel();
+                done.completeExceptionally(cause);
+            }
+        });
+        connection.closed().whenComplete((v, cause) ->
+            done.completeExceptionally(new ProtonException("Connection closed while sending to " + address, cause)));
+    }
+
+    @Override
+    public void onNext(Message message) {
+        // Encode on the publisher's thread rather than the reactor's
+        byte[] bytes = Transfers.encode(message);
+        connection.submit(session -> {
+            if (link != null && !done.isDone()) {
+                --requested;
+                queued.add(bytes);
+                pump();
+                request();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        connection.submit(session -> {
+            if (link != null) {
+                link.setCondition(new ErrorCondition(Symbol.getSymbol("amqp:internal-error"), String.valueOf(throwable)));
+                link.close();
+            }
+            done.completeExceptionally(throwable);
+            return null;
+        });
+    }
+
+    @Override
+    public void onComplete() {
+        connection.submit(session -> {
+            completing = true;
+            closeIfFinished();
+            return null;
+        });
+    }
+
+    private Sender open(Session session, Flow.Subscription subscription) {
+        this.subscription = subscription;
+        link = session.sender("subscriber-" + nextLink.getAndIncrement());
+        Target target = new Target();
+        target.setAddress(address);
+        link.setTarget(target);
+        link.setSource(new Source());
+        BaseHandler.setHandler(link, handler);
+        link.open();
+        return link;
+    }
+
+    // Sends as much of the queue as the link has credit for
+    private void pump() {
+        byte[] bytes;
+        while (link.getCredit() > 0 && (bytes = queued.poll()) != null) {
+            link.delivery(Transfers.tag(nextTag++));
+            link.send(bytes, 0, bytes.length);
+            link.advance();
+            ++unsettled;
+        }
+    }
+
+    // Requests the messages that the link has credit for
+    private void request() {
+        if (completing || done.isDone()) {
+            return;
+        }
+        long available = link.getCredit() - requested - queued.size();
+        if (available > 0 && (requested == 0 || available >= link.getCredit() / 2)) {
+            requested += available;
+            subscription.request(available);
+        }
+    }
+
+    private void closeIfFinished() {
+        if (completing && queued.isEmpty() && unsettled == 0 && link != null) {
+            link.close();
+        }
+    }
+
+    private final class LinkHandler extends BaseHandler {
+
+        @Override
+        public void onLinkFlow(Event event) {
+            pump();
+            request();
+            closeIfFinished();
+        }
+
+        @Override
+        public void onDelivery(Event event) {
+            Delivery delivery = event.getDelivery();
+            if (delivery.remotelySettled()) {
+                delivery.settle();
+                --unsettled;
+                closeIfFinished();
+            }
+        }
+
+        @Override
+        public void onLinkRemoteClose(Event event) {
+            ErrorCondition condition = link.getRemoteCondition();
+            link.close();
+            link.free();
+            if (completing && queued.isEmpty() && unsettled == 0) {
+                done.complete(null);
+            } else if (!done.isDone()) {
+                subscription.cancel();
+                done.completeExceptionally(new ProtonException("Link to " + address + " closed by peer"
+                        + (condition != null && condition.getCondition() != null
+                            ? ": " + condition.getCondition() + " " + condition.getDescription() : "")));
+            }
+        }
+    }
+}
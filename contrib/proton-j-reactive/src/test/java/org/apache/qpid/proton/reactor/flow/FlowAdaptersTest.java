@@ -0,0 +1,270 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.flow;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.reactor.Acceptor;
+import org.apache.qpid.proton.reactor.FlowController;
+import org.apache.qpid.proton.reactor.Handshaker;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.async.AsyncConnection;
+import org.apache.qpid.proton.reactor.impl.AcceptorImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlowAdaptersTest {
+
+    // A peer that queues the messages sent to an address until they are
+    // received from it
+    private static class QueuePeer extends BaseHandler {
+        private final Map<String, ArrayDeque<byte[]>> queues = new HashMap<>();
+        private final List<Sender> senders = new ArrayList<>();
+        private Acceptor acceptor;
+        private volatile boolean stopping;
+        private volatile int sendersOpened;
+
+        private ArrayDeque<byte[]> queue(String address) {
+            ArrayDeque<byte[]> queue = queues.get(address);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(address, queue);
+            }
+            return queue;
+        }
+
+        private void pump(Sender sender) {
+            ArrayDeque<byte[]> queue = queue(sender.getRemoteSource().getAddress());
+            while (sender.getCredit() > 0 && !queue.isEmpty()) {
+                byte[] encoded = queue.poll();
+                Delivery delivery = sender.delivery(new byte[0]);
+                sender.send(encoded, 0, encoded.length);
+                delivery.settle();
+                sender.advance();
+            }
+        }
+
+        @Override
+        public void onLinkRemoteOpen(Event event) {
+            if (event.getLink() instanceof Sender) {
+                senders.add((Sender)event.getLink());
+                sendersOpened++;
+            }
+        }
+
+        @Override
+        public void onLinkFlow(Event event) {
+            if (event.getLink() instanceof Sender) {
+                pump((Sender)event.getLink());
+            }
+        }
+
+        @Override
+        public void onDelivery(Event event) {
+            Delivery delivery = event.getDelivery();
+            Link link = delivery.getLink();
+            if (link instanceof Receiver && delivery.isReadable() && !delivery.isPartial()) {
+                byte[] encoded = new byte[delivery.pending()];
+                ((Receiver)link).recv(encoded, 0, encoded.length);
+                link.advance();
+                queue(link.getRemoteTarget().getAddress()).add(encoded);
+                delivery.disposition(Accepted.getInstance());
+                delivery.settle();
+                for (Sender sender : senders) {
+                    pump(sender);
+                }
+            }
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            senders.clear();
+            event.getConnection().close();
+            event.getConnection().free();
+        }
+
+        @Override
+        public void onReactorQuiesced(Event event) {
+            if (stopping && acceptor != null) {
+                acceptor.close();
+                acceptor = null;
+            }
+        }
+    }
+
+    private QueuePeer peer;
+    private Reactor reactor;
+    private Thread thread;
+    private int port;
+
+    @Before
+    public void setUp() throws IOException {
+        peer = new QueuePeer();
+        reactor = Proton.reactor(peer);
+        peer.add(new Handshaker());
+        peer.add(new FlowController(64));
+        peer.acceptor = reactor.acceptor("127.0.0.1", 0, peer);
+        port = ((AcceptorImpl)peer.acceptor).getPortNumber();
+        thread = new Thread(reactor::run, "peer");
+        thread.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        peer.stopping = true;
+        reactor.wakeup();
+        thread.join(10000);
+        reactor.free();
+    }
+
+    // Collects what it is sent, requesting more only when told to
+    private static class CollectingSubscriber implements Flow.Subscriber<Message> {
+        private final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+        private volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Message message) {
+            received.add(((AmqpValue)message.getBody()).getValue());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            received.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        private Object take() throws InterruptedException {
+            return received.poll(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private void publish(AsyncConnection connection, String address, int count) throws Exception {
+        SenderSubscriber subscriber = new SenderSubscriber(connection, address);
+        try (SubmissionPublisher<Message> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(subscriber);
+            for (int i = 0; i < count; i++) {
+                Message message = Proton.message();
+                message.setBody(new AmqpValue(i));
+                publisher.submit(message);
+            }
+        }
+        subscriber.done().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void publishedMessagesAreReceivedInOrder() throws Exception {
+        AsyncConnection connection = AsyncConnection.connect("127.0.0.1", port);
+        publish(connection, "queue", 2000);
+
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        new ReceiverPublisher(connection, "queue", 64).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i, subscriber.take());
+        }
+        subscriber.subscription.cancel();
+        connection.close().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void demandLimitsWhatIsReceived() throws Exception {
+        AsyncConnection connection = AsyncConnection.connect("127.0.0.1", port);
+        publish(connection, "queue", 10);
+
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        new ReceiverPublisher(connection, "queue").subscribe(subscriber);
+        subscriber.subscription.request(3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, subscriber.take());
+        }
+        Thread.sleep(200);
+        assertEquals("Received more than was requested", 0, subscriber.received.size());
+
+        subscriber.subscription.request(7);
+        for (int i = 3; i < 10; i++) {
+            assertEquals(i, subscriber.take());
+        }
+        connection.close().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void cancellingFromOnSubscribeOpensNoLink() throws Exception {
+        AsyncConnection connection = AsyncConnection.connect("127.0.0.1", port);
+        publish(connection, "queue", 1);
+
+        CollectingSubscriber cancelling = new CollectingSubscriber() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.cancel();
+            }
+        };
+        ReceiverPublisher publisher = new ReceiverPublisher(connection, "queue");
+        publisher.subscribe(cancelling);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        assertEquals(0, subscriber.take());
+        assertEquals("Links opened to the peer", 1, peer.sendersOpened);
+        connection.close().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void invalidDemandFailsTheSubscription() throws Exception {
+        AsyncConnection connection = AsyncConnection.connect("127.0.0.1", port);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        new ReceiverPublisher(connection, "queue").subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertEquals(IllegalArgumentException.class, subscriber.take().getClass());
+        connection.close().get(10, TimeUnit.SECONDS);
+    }
+}
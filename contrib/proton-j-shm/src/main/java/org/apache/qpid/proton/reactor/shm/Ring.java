@@ -0,0 +1,206 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.shm;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * One direction of a shared-memory connection: a single-producer,
+ * single-consumer byte ring in a mapped file.  Each side of the connection
+ * maps the file separately and has its own <code>Ring</code> for each
+ * direction, producing into one and consuming from the other.
+ * <p>
+ * The ring's control block holds the producer's tail and the consumer's head,
+ * published with release stores and read with acquire loads, so the bytes
+ * between them are visible to the other side once the position is.  A side
+ * that is about to sleep waiting for the ring sets its <i>parked</i> flag,
+ * and the other side rings the connection's doorbell only if it claims that
+ * flag, so that a busy connection moves data without any system calls.
+ */
+final class Ring {
+
+    // The control block, each field on its own cache line
+    private static final int TAIL = 0;
+    private static final int HEAD = 64;
+    private static final int PRODUCER_PARKED = 128;
+    private static final int CONSUMER_PARKED = 192;
+    private static final int PRODUCER_CLOSED = 256;
+    private static final int CONSUMER_CLOSED = 320;
+    static final int CONTROL_SIZE = 384;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer data;
+    private final int control;
+    private final int capacity;
+    private final int mask;
+    // The tail for the producer, or the head for the consumer, of which
+    // this side is the only writer
+    private long position;
+
+    /**
+     * @param buffer the mapping of the file.
+     * @param offset the offset of the ring in the file, a multiple of 64.
+     * @param capacity the capacity of the ring, a power of two.
+     * @param producer whether this side produces into the ring.
+     */
+    Ring(ByteBuffer buffer, int offset, int capacity, boolean producer) {
+        this.buffer = buffer;
+        this.control = offset;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + CONTROL_SIZE);
+        view.limit(offset + CONTROL_SIZE + capacity);
+        this.data = view.slice();
+        this.position = (long)LONGS.getAcquire(buffer, control + (producer ? TAIL : HEAD));
+    }
+
+    static int size(int capacity) {
+        return CONTROL_SIZE + capacity;
+    }
+
+    // Producer side
+
+    int write(ByteBuffer src) throws IOException {
+        if (isConsumerClosed()) {
+            throw new IOException("Broken pipe");
+        }
+        long head = (long)LONGS.getAcquire(buffer, control + HEAD);
+        int n = Math.min(capacity - (int)(position - head), src.remaining());
+        if (n > 0) {
+            int index = (int)position & mask;
+            int first = Math.min(n, capacity - index);
+            copyIn(src, index, first);
+            copyIn(src, 0, n - first);
+            position += n;
+            LONGS.setRelease(buffer, control + TAIL, position);
+        }
+        return n;
+    }
+
+    boolean isWritable() {
+        long head = (long)LONGS.getAcquire(buffer, control + HEAD);
+        return position - head < capacity || isConsumerClosed();
+    }
+
+    void closeProducer() {
+        INTS.setRelease(buffer, control + PRODUCER_CLOSED, 1);
+    }
+
+    boolean isConsumerClosed() {
+        return (int)INTS.getAcquire(buffer, control + CONSUMER_CLOSED) != 0;
+    }
+
+    // Consumer side
+
+    // Returns -1 once the producer has closed and the ring is drained.
+    int read(ByteBuffer dst) {
+        boolean closed = (int)INTS.getAcquire(buffer, control + PRODUCER_CLOSED) != 0;
+        long tail = (long)LONGS.getAcquire(buffer, control + TAIL);
+        int available = (int)(tail - position);
+        if (available == 0) {
+            return closed ? -1 : 0;
+        }
+        int n = Math.min(available, dst.remaining());
+        if (n > 0) {
+            int index = (int)position & mask;
+            int first = Math.min(n, capacity - index);
+            copyOut(dst, index, first);
+            copyOut(dst, 0, n - first);
+            position += n;
+            LONGS.setRelease(buffer, control + HEAD, position);
+        }
+        return n;
+    }
+
+    boolean isReadable() {
+        boolean closed = (int)INTS.getAcquire(buffer, control + PRODUCER_CLOSED) != 0;
+        return (long)LONGS.getAcquire(buffer, control + TAIL) != position || closed;
+    }
+
+    void closeConsumer() {
+        INTS.setRelease(buffer, control + CONSUMER_CLOSED, 1);
+    }
+
+    // Parking.  A side sets its flag, and re-checks the ring, before it
+    // sleeps; the other side claims the flag after publishing its position,
+    // and rings the doorbell if it succeeds.  The full fences order each
+    // side's store before its load, so one of them always sees the other.
+
+    boolean parkConsumer() {
+        INTS.setVolatile(buffer, control + CONSUMER_PARKED, 1);
+        VarHandle.fullFence();
+        return !isReadable();
+    }
+
+    void unparkConsumer() {
+        INTS.setOpaque(buffer, control + CONSUMER_PARKED, 0);
+    }
+
+    boolean claimParkedConsumer() {
+        VarHandle.fullFence();
+        return (int)INTS.getVolatile(buffer, control + CONSUMER_PARKED) != 0
+            && INTS.compareAndSet(buffer, control + CONSUMER_PARKED, 1, 0);
+    }
+
+    boolean parkProducer() {
+        INTS.setVolatile(buffer, control + PRODUCER_PARKED, 1);
+        VarHandle.fullFence();
+        return !isWritable();
+    }
+
+    void unparkProducer() {
+        INTS.setOpaque(buffer, control + PRODUCER_PARKED, 0);
+    }
+
+    boolean claimParkedProducer() {
+        VarHandle.fullFence();
+        return (int)INTS.getVolatile(buffer, control + PRODUCER_PARKED) != 0
+            && INTS.compareAndSet(buffer, control + PRODUCER_PARKED, 1, 0);
+    }
+
+    private void copyIn(ByteBuffer src, int index, int length) {
+        if (length == 0) {
+            return;
+        }
+        int limit = src.limit();
+        src.limit(src.position() + length);
+        data.limit(index + length).position(index);
+        data.put(src);
+        src.limit(limit);
+    }
+
+    private void copyOut(ByteBuffer dst, int index, int length) {
+        if (length == 0) {
+            return;
+        }
+        data.limit(index + length).position(index);
+        dst.put(data);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.shm;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// The file shared by the two sides of a connection: a header followed by a
+// ring for each direction.  The connecting side creates the file, and the
+// accepting side removes it once both have mapped it, so that it disappears
+// with the connection.
+final class RingFile {
+
+    static final int MAGIC = 0x414d5152;  // "AMQR"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final String PREFIX = "proton-";
+    private static final String SUFFIX = ".ring";
+
+    private RingFile() {
+    }
+
+    static Path create(Path directory) throws IOException {
+        return Files.createTempFile(directory, PREFIX, SUFFIX);
+    }
+
+    // Sizes and maps a new file, and writes its header.
+    static ByteBuffer map(Path path, int capacity) throws IOException {
+        long size = HEADER_SIZE + 2L * Ring.size(capacity);
+        ByteBuffer buffer;
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(size);
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, capacity);
+        buffer.putInt(0, MAGIC);
+        return buffer;
+    }
+
+    // Maps a file created by the other side, checking that it is one.
+    static ByteBuffer open(Path path) throws IOException {
+        if (!Files.isRegularFile(path) || !path.getFileName().toString().startsWith(PREFIX)
+                || !path.getFileName().toString().endsWith(SUFFIX)) {
+            throw new IOException("Not a ring file: " + path);
+        }
+        ByteBuffer buffer;
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            long size = file.length();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a ring file: " + path);
+            }
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        int capacity = buffer.getInt(8);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || Integer.bitCount(capacity) != 1
+                || buffer.capacity() != HEADER_SIZE + 2L * Ring.size(capacity)) {
+            throw new IOException("Not a ring file: " + path);
+        }
+        return buffer;
+    }
+
+    static int capacity(ByteBuffer buffer) {
+        return buffer.getInt(8);
+    }
+
+    // The ring the connecting side writes into when toServer is true, or the
+    // one it reads from otherwise.
+    static int offset(boolean toServer, int capacity) {
+        return toServer ? HEADER_SIZE : HEADER_SIZE + Ring.size(capacity);
+    }
+}
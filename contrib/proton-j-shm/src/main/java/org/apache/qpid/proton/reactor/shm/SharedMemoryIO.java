@@ -0,0 +1,156 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.shm;
+
+import java.io.IOException;
+import java.net.ProtocolFamily;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Pipe;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.reactor.impl.IO;
+
+/**
+ * An {@link IO} whose connections move their bytes through shared memory,
+ * for reactors in different processes on the same host.
+ * <pre>
+ * Reactor reactor = new ReactorImpl(new SharedMemoryIO());
+ * </pre>
+ * Acceptors and connections are addressed by host and port as usual, and
+ * each connection starts out as a loopback TCP connection.  The connecting
+ * side then creates a file in the {@link #getDirectory() ring directory},
+ * holding a single-producer, single-consumer ring for each direction, and
+ * sends its name to the accepting side, which maps it too.  From then on the
+ * transport's bytes are copied into and out of the rings, and the TCP
+ * connection only carries wake-ups: a reactor with nothing to do spins on
+ * its rings for a while before going to sleep in a real selector, and the
+ * other side writes a byte to the connection only if it finds the reactor
+ * asleep.  The end of the TCP connection is the end of the shared-memory
+ * one, so a process that dies is noticed as it would be on a socket.
+ * <p>
+ * Both sides must use a <code>SharedMemoryIO</code> with the same ring
+ * directory, and the accepting side only maps files in its own ring
+ * directory.  The ring size of the connecting side is used.  Socket options
+ * are not supported on the connections, and only the internet protocol
+ * families are supported.
+ */
+public class SharedMemoryIO implements IO {
+
+    /**
+     * The default size of each direction's ring.
+     */
+    public static final int DEFAULT_RING_SIZE = 256 * 1024;
+
+    /**
+     * The default time, in microseconds, a reactor spins on its rings before
+     * going to sleep.
+     */
+    public static final long DEFAULT_SPIN_MICROS = 20;
+
+    private final ShmSelectorProvider provider;
+
+    /**
+     * Uses the default ring size and spin, and keeps the rings in
+     * <code>/dev/shm</code> where there is one, or the temporary directory
+     * otherwise.
+     */
+    public SharedMemoryIO() {
+        this(defaultDirectory(), DEFAULT_RING_SIZE, DEFAULT_SPIN_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * @param directory the directory in which to create the files holding
+     *                  the rings, which should be on a memory-backed file
+     *                  system.
+     * @param ringSize the size of each direction's ring, a power of two of at
+     *                 least 4096 bytes.
+     * @param spin how long a reactor spins on its rings before going to
+     *             sleep, or zero to go straight to sleep.
+     * @param unit the unit of the spin.
+     */
+    public SharedMemoryIO(Path directory, int ringSize, long spin, TimeUnit unit) {
+        if (ringSize < 4096 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two of at least 4096: " + ringSize);
+        }
+        if (spin < 0) {
+            throw new IllegalArgumentException("Spin must not be negative");
+        }
+        provider = new ShmSelectorProvider(directory.toAbsolutePath().normalize(), ringSize, unit.toNanos(spin));
+    }
+
+    private static Path defaultDirectory() {
+        Path shm = Paths.get("/dev/shm");
+        return Files.isDirectory(shm) && Files.isWritable(shm) ? shm : Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    public Path getDirectory() {
+        return provider.getDirectory();
+    }
+
+    public int getRingSize() {
+        return provider.getRingSize();
+    }
+
+    @Override
+    public Pipe pipe() throws IOException {
+        return provider.openPipe();
+    }
+
+    @Override
+    public Selector selector() throws IOException {
+        return provider.openSelector();
+    }
+
+    @Override
+    public ServerSocketChannel serverSocketChannel() throws IOException {
+        return provider.openServerSocketChannel();
+    }
+
+    @Override
+    public SocketChannel socketChannel() throws IOException {
+        return provider.openSocketChannel();
+    }
+
+    @Override
+    public ServerSocketChannel serverSocketChannel(ProtocolFamily family) throws IOException {
+        checkFamily(family);
+        return provider.openServerSocketChannel();
+    }
+
+    @Override
+    public SocketChannel socketChannel(ProtocolFamily family) throws IOException {
+        checkFamily(family);
+        return provider.openSocketChannel();
+    }
+
+    private static void checkFamily(ProtocolFamily family) {
+        if (family != StandardProtocolFamily.INET && family != StandardProtocolFamily.INET6) {
+            throw new UnsupportedOperationException("Protocol family not supported over shared memory: " + family);
+        }
+    }
+}
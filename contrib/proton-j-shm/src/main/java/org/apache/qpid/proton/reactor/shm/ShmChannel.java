@@ -0,0 +1,53 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.shm;
+
+import java.nio.channels.SelectableChannel;
+
+// A channel that can be registered with a ShmSelector.  Its readiness comes
+// partly from shared memory, which the selector checks itself, and partly
+// from a real channel behind it, which the selector watches with a real
+// selector.
+interface ShmChannel {
+
+    // The real channel to watch, or null if there is none yet.
+    SelectableChannel inner();
+
+    // The operations to watch the real channel for, given the interest in
+    // this one.
+    int innerOps(int interestOps);
+
+    // Called when the real channel is found ready.  Returns the operations
+    // this channel is then ready for, which are reported once.
+    int innerReady(int readyOps);
+
+    // The operations the channel is ready for, as SelectionKey bits, without
+    // asking the real selector.
+    int readyOps();
+
+    // Called before the selector sleeps, to ask to be woken when the channel
+    // becomes ready for the operations of interest.  Returns false if it
+    // already has, in which case the selector does not sleep.
+    boolean park(int interestOps);
+
+    void unpark();
+}
@@ -0,0 +1,148 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.shm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+
+// A real pipe in the clothes of a ShmSelectorProvider, so that the source
+// can be registered with a ShmSelector.  The reactor writes to it to wake
+// itself from other threads, which are rare enough not to need anything
+// cheaper.
+class ShmPipe extends Pipe {
+
+    private final Pipe pipe;
+    private final Source source;
+    private final Sink sink;
+
+    ShmPipe(ShmSelectorProvider provider) throws IOException {
+        pipe = Pipe.open();
+        source = new Source(provider);
+        sink = new Sink(provider);
+    }
+
+    @Override
+    public SourceChannel source() {
+        return source;
+    }
+
+    @Override
+    public SinkChannel sink() {
+        return sink;
+    }
+
+    private class Source extends SourceChannel implements ShmChannel {
+
+        private Source(ShmSelectorProvider provider) {
+            super(provider);
+        }
+
+        @Override
+        public SelectableChannel inner() {
+            return pipe.source();
+        }
+
+        @Override
+        public int innerOps(int interestOps) {
+            return interestOps & SelectionKey.OP_READ;
+        }
+
+        @Override
+        public int innerReady(int readyOps) {
+            return readyOps & SelectionKey.OP_READ;
+        }
+
+        @Override
+        public int readyOps() {
+            return 0;
+        }
+
+        @Override
+        public boolean park(int interestOps) {
+            return true;
+        }
+
+        @Override
+        public void unpark() {
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return pipe.source().read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return pipe.source().read(dsts, offset, length);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts) throws IOException {
+            return pipe.source().read(dsts);
+        }
+
+        @Override
+        protected void implCloseSelectableChannel() throws IOException {
+            pipe.source().close();
+        }
+
+        @Override
+        protected void implConfigureBlocking(boolean block) throws IOException {
+            pipe.source().configureBlocking(block);
+        }
+    }
+
+    private class Sink extends SinkChannel {
+
+        private Sink(ShmSelectorProvider provider) {
+            super(provider);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return pipe.sink().write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return pipe.sink().write(srcs, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return pipe.sink().write(srcs);
+        }
+
+        @Override
+        protected void implCloseSelectableChannel() throws IOException {
+            pipe.sink().close();
+        }
+
+        @Override
+        protected void implConfigureBlocking(boolean block) throws IOException {
+            pipe.sink().configureBlocking(block);
+        }
+    }
+}
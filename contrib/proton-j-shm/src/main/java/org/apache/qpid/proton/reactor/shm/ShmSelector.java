@@ -0,0 +1,378 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.shm;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.IllegalSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.spi.AbstractSelectableChannel;
+import java.nio.channels.spi.AbstractSelectionKey;
+import java.nio.channels.spi.AbstractSelector;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+// A Selector over ShmChannels.  A select checks the rings of the registered
+// channels itself, and spins for a while when none are ready, so that a busy
+// connection is served without system calls.  Only then does it park the
+// channels, asking the other side of each to ring its doorbell, and sleep in
+// a real selector that watches the doorbells along with the listening
+// sockets and pipes behind the other channels.  The real selector is also
+// polled every so often while the rings are busy, so that they do not keep
+// new connections waiting.
+class ShmSelector extends AbstractSelector {
+
+    private static final int POLL_INTERVAL = 64;
+
+    static final class Key extends AbstractSelectionKey {
+
+        private final SelectableChannel channel;
+        private final ShmSelector selector;
+        private volatile int interestOps;
+        private int readyOps;
+        // Readiness found by the real selector, not yet reported
+        private int innerReadyOps;
+        private SelectionKey innerKey;
+
+        private Key(SelectableChannel channel, ShmSelector selector) {
+            this.channel = channel;
+            this.selector = selector;
+        }
+
+        @Override
+        public SelectableChannel channel() {
+            return channel;
+        }
+
+        @Override
+        public Selector selector() {
+            return selector;
+        }
+
+        @Override
+        public int interestOps() {
+            if (!isValid()) {
+                throw new CancelledKeyException();
+            }
+            return interestOps;
+        }
+
+        @Override
+        public SelectionKey interestOps(int ops) {
+            if (!isValid()) {
+                throw new CancelledKeyException();
+            }
+            if ((ops & ~channel.validOps()) != 0) {
+                throw new IllegalArgumentException("Invalid interest ops: " + ops);
+            }
+            interestOps = ops;
+            return this;
+        }
+
+        @Override
+        public int readyOps() {
+            if (!isValid()) {
+                throw new CancelledKeyException();
+            }
+            return readyOps;
+        }
+    }
+
+    private final Selector inner;
+    private final long spinNanos;
+    private final Set<Key> keys = new HashSet<Key>();
+    private final Set<Key> selected = new HashSet<Key>();
+    private final Set<SelectionKey> publicKeys = Collections.<SelectionKey>unmodifiableSet(keys);
+    private final Set<SelectionKey> publicSelected = new Ungrowable(selected);
+    private volatile boolean woken;
+    private int polls;
+
+    ShmSelector(ShmSelectorProvider provider) throws IOException {
+        super(provider);
+        inner = Selector.open();
+        spinNanos = provider.getSpinNanos();
+    }
+
+    @Override
+    protected SelectionKey register(AbstractSelectableChannel channel, int ops, Object attachment) {
+        if (!(channel instanceof ShmChannel)) {
+            throw new IllegalSelectorException();
+        }
+        Key key = new Key(channel, this);
+        key.interestOps(ops);
+        key.attach(attachment);
+        synchronized (keys) {
+            keys.add(key);
+        }
+        return key;
+    }
+
+    @Override
+    protected void implCloseSelector() throws IOException {
+        wakeup();
+        synchronized (keys) {
+            for (Key key : keys) {
+                deregister(key);
+            }
+            keys.clear();
+            selected.clear();
+        }
+        inner.close();
+    }
+
+    @Override
+    public Set<SelectionKey> keys() {
+        ensureOpen();
+        return publicKeys;
+    }
+
+    @Override
+    public Set<SelectionKey> selectedKeys() {
+        ensureOpen();
+        return publicSelected;
+    }
+
+    @Override
+    public int selectNow() throws IOException {
+        return doSelect(-1L);
+    }
+
+    @Override
+    public int select() throws IOException {
+        return doSelect(0L);
+    }
+
+    @Override
+    public int select(long timeout) throws IOException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Negative timeout");
+        }
+        return doSelect(timeout);
+    }
+
+    // A negative timeout does not wait at all, and zero waits indefinitely.
+    private int doSelect(long timeout) throws IOException {
+        ensureOpen();
+        long start = System.nanoTime();
+        int updated = 0;
+        try {
+            begin();
+            synchronized (keys) {
+                processCancelledKeys();
+                updateInnerKeys();
+                updated = updateSelected();
+                if (updated == 0 || ++polls % POLL_INTERVAL == 0) {
+                    inner.selectNow();
+                    updated += processInnerSelected();
+                }
+                long spinEnd = start + spinNanos;
+                while (updated == 0 && !woken && timeout >= 0 && !Thread.currentThread().isInterrupted()) {
+                    long now = System.nanoTime();
+                    long remaining = timeout > 0 ? start + timeout * 1000000 - now : Long.MAX_VALUE;
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    if (now - spinEnd < 0) {
+                        Thread.onSpinWait();
+                        updated = updateSelected();
+                    } else {
+                        updated = park(timeout == 0 ? 0 : Math.max(1, remaining / 1000000));
+                    }
+                }
+                woken = false;
+                processCancelledKeys();
+            }
+        } finally {
+            end();
+        }
+        return updated;
+    }
+
+    // Sleeps in the real selector, unless a channel refuses to park because
+    // it has become ready.
+    private int park(long timeout) throws IOException {
+        boolean sleep = true;
+        try {
+            for (Key key : keys) {
+                if (key.isValid()) {
+                    sleep &= ((ShmChannel)key.channel()).park(key.interestOps);
+                }
+            }
+            if (sleep && !woken) {
+                inner.select(timeout);
+            }
+        } finally {
+            for (Key key : keys) {
+                ((ShmChannel)key.channel()).unpark();
+            }
+        }
+        return processInnerSelected() + updateSelected();
+    }
+
+    @Override
+    public Selector wakeup() {
+        woken = true;
+        inner.wakeup();
+        return this;
+    }
+
+    // Registers the real channels behind the keys with the real selector,
+    // once there are real channels, and keeps their interest up to date.
+    private void updateInnerKeys() throws IOException {
+        for (Key key : keys) {
+            if (!key.isValid()) {
+                continue;
+            }
+            ShmChannel channel = (ShmChannel)key.channel();
+            SelectableChannel innerChannel = channel.inner();
+            if (innerChannel == null) {
+                continue;
+            }
+            int ops = channel.innerOps(key.interestOps);
+            if (key.innerKey == null) {
+                try {
+                    key.innerKey = innerChannel.register(inner, ops, key);
+                } catch (ClosedChannelException e) {
+                    // Seen as a broken connection when next read or written
+                }
+            } else if (key.innerKey.isValid() && key.innerKey.interestOps() != ops) {
+                key.innerKey.interestOps(ops);
+            }
+        }
+    }
+
+    private int processInnerSelected() {
+        Set<SelectionKey> innerSelected = inner.selectedKeys();
+        for (SelectionKey innerKey : innerSelected) {
+            Key key = (Key)innerKey.attachment();
+            if (innerKey.isValid() && key.isValid()) {
+                key.innerReadyOps |= ((ShmChannel)key.channel()).innerReady(innerKey.readyOps());
+            }
+        }
+        innerSelected.clear();
+        return updateSelected();
+    }
+
+    private int updateSelected() {
+        int updated = 0;
+        for (Key key : keys) {
+            if (!key.isValid()) {
+                continue;
+            }
+            int ready = (((ShmChannel)key.channel()).readyOps() | key.innerReadyOps) & key.interestOps;
+            if (ready == 0) {
+                continue;
+            }
+            // Readiness from the real selector is reported once, and found
+            // again by its next select if it still holds
+            key.innerReadyOps &= ~ready;
+            if (selected.add(key)) {
+                key.readyOps = ready;
+                updated++;
+            } else if ((key.readyOps | ready) != key.readyOps) {
+                key.readyOps |= ready;
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    private void processCancelledKeys() {
+        Set<SelectionKey> cancelled = cancelledKeys();
+        synchronized (cancelled) {
+            for (SelectionKey key : cancelled) {
+                keys.remove(key);
+                selected.remove(key);
+                SelectionKey innerKey = ((Key)key).innerKey;
+                if (innerKey != null) {
+                    innerKey.cancel();
+                }
+                deregister((AbstractSelectionKey)key);
+            }
+            cancelled.clear();
+        }
+    }
+
+    private void ensureOpen() {
+        if (!isOpen()) {
+            throw new ClosedSelectorException();
+        }
+    }
+
+    // The selected-key set, from which keys may be removed but not added.
+    private static final class Ungrowable extends AbstractSet<SelectionKey> {
+
+        private final Set<Key> keys;
+
+        private Ungrowable(Set<Key> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public Iterator<SelectionKey> iterator() {
+            final Iterator<Key> iterator = keys.iterator();
+            return new Iterator<SelectionKey>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public SelectionKey next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return keys.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return keys.contains(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return keys.remove(o);
+        }
+
+        @Override
+        public void clear() {
+            keys.clear();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.shm;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+
+// Listens for the doorbells of shared-memory connections on a real socket,
+// which is what makes an acceptor's host and port reachable from other
+// processes.
+class ShmServerSocketChannel extends ServerSocketChannel implements ShmChannel {
+
+    private final ShmSelectorProvider provider;
+    private final ServerSocketChannel listener;
+
+    ShmServerSocketChannel(ShmSelectorProvider provider) throws IOException {
+        super(provider);
+        this.provider = provider;
+        this.listener = ServerSocketChannel.open();
+    }
+
+    @Override
+    public SelectableChannel inner() {
+        return listener;
+    }
+
+    @Override
+    public int innerOps(int interestOps) {
+        return interestOps & SelectionKey.OP_ACCEPT;
+    }
+
+    @Override
+    public int innerReady(int readyOps) {
+        return readyOps & SelectionKey.OP_ACCEPT;
+    }
+
+    @Override
+    public int readyOps() {
+        return 0;
+    }
+
+    @Override
+    public boolean park(int interestOps) {
+        return true;
+    }
+
+    @Override
+    public void unpark() {
+    }
+
+    @Override
+    public ServerSocketChannel bind(SocketAddress local, int backlog) throws IOException {
+        listener.bind(local, backlog);
+        return this;
+    }
+
+    @Override
+    public <T> ServerSocketChannel setOption(SocketOption<T> name, T value) throws IOException {
+        listener.setOption(name, value);
+        return this;
+    }
+
+    @Override
+    public <T> T getOption(SocketOption<T> name) throws IOException {
+        return listener.getOption(name);
+    }
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+        return listener.supportedOptions();
+    }
+
+    @Override
+    public ServerSocket socket() {
+        throw new UnsupportedOperationException("Shared-memory channels have no ServerSocket");
+    }
+
+    // A connection whose handshake fails is still returned, so that a
+    // readable listener always has something to accept, but fails when it
+    // is first read or written.
+    @Override
+    public SocketChannel accept() throws IOException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+        SocketChannel doorbell = listener.accept();
+        return doorbell == null ? null : ShmSocketChannel.accept(provider, doorbell);
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() throws IOException {
+        return listener.getLocalAddress();
+    }
+
+    @Override
+    protected void implCloseSelectableChannel() throws IOException {
+        listener.close();
+    }
+
+    @Override
+    protected void implConfigureBlocking(boolean block) throws IOException {
+        listener.configureBlocking(block);
+    }
+
+    @Override
+    public String toString() {
+        return "ShmServerSocketChannel[listener=" + listener + "]";
+    }
+}
@@ -0,0 +1,499 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.shm;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.NoConnectionPendingException;
+import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.channels.UnsupportedAddressTypeException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// One end of a shared-memory connection.  Bytes move through the rings of a
+// mapped file; the TCP connection alongside, the doorbell, carries only the
+// handshake that names the file, a byte now and then to wake a side that
+// has gone to sleep, and the end of the connection when either side closes
+// or dies.
+class ShmSocketChannel extends SocketChannel implements ShmChannel {
+
+    private static final int MAX_PATH_LENGTH = 4096;
+    private static final long HANDSHAKE_TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+    private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final ShmSelectorProvider provider;
+    private final ByteBuffer bell = ByteBuffer.allocateDirect(1);
+    private final ByteBuffer drain = ByteBuffer.allocateDirect(64);
+    private volatile SocketChannel doorbell;
+    private volatile Ring inbound;
+    private volatile Ring outbound;
+    private volatile IOException pendingFailure;
+    // Set on an accepted channel whose handshake failed
+    private volatile IOException failure;
+    private volatile boolean peerGone;
+    private volatile boolean inputShutdown;
+    private volatile boolean outputShutdown;
+
+    ShmSocketChannel(ShmSelectorProvider provider) {
+        super(provider);
+        this.provider = provider;
+    }
+
+    // Accepts a connection on its doorbell.  The handshake is read here,
+    // without waiting for the selector, since the connecting side sends it
+    // straight after connecting.
+    static ShmSocketChannel accept(ShmSelectorProvider provider, SocketChannel doorbell) throws IOException {
+        ShmSocketChannel channel = new ShmSocketChannel(provider);
+        try {
+            doorbell.configureBlocking(false);
+            ByteBuffer header = ByteBuffer.allocate(8);
+            readFully(doorbell, header);
+            header.flip();
+            int length = header.getInt(4);
+            if (header.getInt(0) != RingFile.MAGIC || length <= 0 || length > MAX_PATH_LENGTH) {
+                throw new IOException("Bad handshake");
+            }
+            ByteBuffer name = ByteBuffer.allocate(length);
+            readFully(doorbell, name);
+            Path path = provider.getDirectory().resolve(new String(name.array(), StandardCharsets.UTF_8)).normalize();
+            if (!provider.getDirectory().equals(path.getParent())) {
+                throw new IOException("Ring file outside " + provider.getDirectory() + ": " + path);
+            }
+            ByteBuffer buffer = RingFile.open(path);
+            Files.deleteIfExists(path);
+            channel.connected(doorbell, buffer, false);
+        } catch (IOException e) {
+            doorbell.close();
+            channel.failure = e;
+        }
+        return channel;
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        long deadline = System.nanoTime() + HANDSHAKE_TIMEOUT;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer);
+            if (n < 0) {
+                throw new IOException("Connection closed during handshake");
+            }
+            if (n == 0) {
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IOException("Timed out waiting for handshake");
+                }
+                LockSupport.parkNanos(POLL_NANOS);
+            }
+        }
+    }
+
+    private void connected(SocketChannel doorbell, ByteBuffer buffer, boolean client) throws IOException {
+        int capacity = RingFile.capacity(buffer);
+        // A wake-up held back by Nagle's algorithm can leave both sides asleep
+        doorbell.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        doorbell.configureBlocking(false);
+        outbound = new Ring(buffer, RingFile.offset(client, capacity), capacity, true);
+        inbound = new Ring(buffer, RingFile.offset(!client, capacity), capacity, false);
+        this.doorbell = doorbell;
+    }
+
+    @Override
+    public SelectableChannel inner() {
+        return doorbell;
+    }
+
+    @Override
+    public int innerOps(int interestOps) {
+        // Always watched, to be woken and to see the other side go
+        return SelectionKey.OP_READ;
+    }
+
+    @Override
+    public int innerReady(int readyOps) {
+        try {
+            int n;
+            do {
+                drain.clear();
+                n = doorbell.read(drain);
+            } while (n > 0);
+            if (n < 0) {
+                peerGone = true;
+            }
+        } catch (IOException e) {
+            peerGone = true;
+        }
+        return 0;
+    }
+
+    @Override
+    public int readyOps() {
+        if (pendingFailure != null) {
+            return SelectionKey.OP_CONNECT;
+        }
+        if (failure != null) {
+            return SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+        }
+        Ring inbound = this.inbound;
+        Ring outbound = this.outbound;
+        if (inbound == null) {
+            return 0;
+        }
+        boolean gone = peerGone;
+        int ops = 0;
+        if (gone || inputShutdown || inbound.isReadable()) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (gone || outputShutdown || outbound.isWritable()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        return ops;
+    }
+
+    @Override
+    public boolean park(int interestOps) {
+        Ring inbound = this.inbound;
+        Ring outbound = this.outbound;
+        if (inbound == null) {
+            return failure == null && pendingFailure == null;
+        }
+        boolean sleep = true;
+        if ((interestOps & SelectionKey.OP_READ) != 0 && !inputShutdown) {
+            sleep &= inbound.parkConsumer();
+        }
+        if ((interestOps & SelectionKey.OP_WRITE) != 0 && !outputShutdown) {
+            sleep &= outbound.parkProducer();
+        }
+        return sleep && !peerGone;
+    }
+
+    @Override
+    public void unpark() {
+        Ring inbound = this.inbound;
+        if (inbound != null) {
+            inbound.unparkConsumer();
+            outbound.unparkProducer();
+        }
+    }
+
+    // Wakes the other side.  A full doorbell already has bytes waiting to
+    // wake it, so a write that makes no progress is not retried.
+    private void ring() {
+        try {
+            bell.clear();
+            doorbell.write(bell);
+        } catch (IOException e) {
+            peerGone = true;
+        }
+    }
+
+    @Override
+    public SocketChannel bind(SocketAddress local) throws IOException {
+        throw new UnsupportedOperationException("Shared-memory channels are bound when they connect");
+    }
+
+    @Override
+    public <T> SocketChannel setOption(SocketOption<T> name, T value) throws IOException {
+        throw new UnsupportedOperationException("'" + name + "' not supported");
+    }
+
+    @Override
+    public <T> T getOption(SocketOption<T> name) throws IOException {
+        throw new UnsupportedOperationException("'" + name + "' not supported");
+    }
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public SocketChannel shutdownInput() throws IOException {
+        ensureConnected();
+        if (!inputShutdown) {
+            inputShutdown = true;
+            inbound.closeConsumer();
+            if (inbound.claimParkedProducer()) {
+                ring();
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public SocketChannel shutdownOutput() throws IOException {
+        ensureConnected();
+        if (!outputShutdown) {
+            outputShutdown = true;
+            outbound.closeProducer();
+            if (outbound.claimParkedConsumer()) {
+                ring();
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Socket socket() {
+        throw new UnsupportedOperationException("Shared-memory channels have no Socket");
+    }
+
+    @Override
+    public boolean isConnected() {
+        return inbound != null || failure != null;
+    }
+
+    @Override
+    public boolean isConnectionPending() {
+        return pendingFailure != null;
+    }
+
+    // The doorbell is connected, and the handshake sent, before returning,
+    // since the other side is on the same host.  A non-blocking connect that
+    // fails is left pending, and fails again when finished.
+    @Override
+    public boolean connect(SocketAddress remote) throws IOException {
+        ensureOpen();
+        if (isConnected()) {
+            throw new AlreadyConnectedException();
+        }
+        if (isConnectionPending()) {
+            throw new ConnectionPendingException();
+        }
+        InetSocketAddress address = checkAddress(remote);
+        SocketChannel doorbell = SocketChannel.open();
+        Path path = null;
+        try {
+            doorbell.connect(address);
+            path = RingFile.create(provider.getDirectory());
+            ByteBuffer buffer = RingFile.map(path, provider.getRingSize());
+            byte[] name = path.getFileName().toString().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer handshake = ByteBuffer.allocate(8 + name.length);
+            handshake.putInt(RingFile.MAGIC).putInt(name.length).put(name).flip();
+            while (handshake.hasRemaining()) {
+                doorbell.write(handshake);
+            }
+            connected(doorbell, buffer, true);
+            return true;
+        } catch (IOException e) {
+            doorbell.close();
+            if (path != null) {
+                Files.deleteIfExists(path);
+            }
+            if (isBlocking()) {
+                close();
+                throw e;
+            }
+            pendingFailure = e;
+            return false;
+        }
+    }
+
+    @Override
+    public boolean finishConnect() throws IOException {
+        ensureOpen();
+        if (isConnected()) {
+            return true;
+        }
+        IOException failure = pendingFailure;
+        if (failure == null) {
+            throw new NoConnectionPendingException();
+        }
+        close();
+        throw failure;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() throws IOException {
+        ensureOpen();
+        SocketChannel doorbell = this.doorbell;
+        return doorbell != null ? doorbell.getRemoteAddress() : null;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() throws IOException {
+        ensureOpen();
+        SocketChannel doorbell = this.doorbell;
+        return doorbell != null ? doorbell.getLocalAddress() : null;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureConnected();
+        if (inputShutdown) {
+            return -1;
+        }
+        while (true) {
+            // Checked before the ring, so that nothing written before the
+            // other side went is missed
+            boolean gone = peerGone;
+            int n = inbound.read(dst);
+            if (n > 0) {
+                if (inbound.claimParkedProducer()) {
+                    ring();
+                }
+                return n;
+            }
+            if (n < 0 || (gone && dst.hasRemaining())) {
+                return -1;
+            }
+            if (!isBlocking() || !dst.hasRemaining()) {
+                return 0;
+            }
+            await();
+        }
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (!dsts[i].hasRemaining()) {
+                continue;
+            }
+            int n = read(dsts[i]);
+            if (n < 0) {
+                return total == 0 ? -1 : total;
+            }
+            total += n;
+            if (dsts[i].hasRemaining()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        ensureConnected();
+        if (outputShutdown) {
+            throw new ClosedChannelException();
+        }
+        int total = 0;
+        while (true) {
+            if (peerGone) {
+                throw new IOException("Broken pipe");
+            }
+            int n = outbound.write(src);
+            if (n > 0 && outbound.claimParkedConsumer()) {
+                ring();
+            }
+            total += n;
+            if (!isBlocking() || !src.hasRemaining()) {
+                return total;
+            }
+            await();
+        }
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            total += write(srcs[i]);
+            if (srcs[i].hasRemaining()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    // Blocking reads and writes poll the ring, since nothing rings the
+    // doorbell of a side that has not parked, and the doorbell, to see the
+    // other side go.
+    private void await() throws IOException {
+        LockSupport.parkNanos(POLL_NANOS);
+        innerReady(0);
+        if (Thread.interrupted()) {
+            close();
+            throw new InterruptedIOException();
+        }
+        ensureOpen();
+    }
+
+    @Override
+    protected void implCloseSelectableChannel() throws IOException {
+        pendingFailure = null;
+        Ring inbound = this.inbound;
+        if (inbound != null) {
+            inbound.closeConsumer();
+            outbound.closeProducer();
+        }
+        SocketChannel doorbell = this.doorbell;
+        if (doorbell != null) {
+            doorbell.close();
+        }
+    }
+
+    @Override
+    protected void implConfigureBlocking(boolean block) throws IOException {
+        // Reads and writes check isBlocking() as they go, and the doorbell
+        // is never blocking
+    }
+
+    @Override
+    public String toString() {
+        return "ShmSocketChannel[doorbell=" + doorbell + "]";
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private void ensureConnected() throws IOException {
+        ensureOpen();
+        if (failure != null) {
+            throw failure;
+        }
+        if (!isConnected()) {
+            throw new NotYetConnectedException();
+        }
+    }
+
+    private static InetSocketAddress checkAddress(SocketAddress address) {
+        if (!(address instanceof InetSocketAddress)) {
+            throw new UnsupportedAddressTypeException();
+        }
+        InetSocketAddress inetAddress = (InetSocketAddress)address;
+        if (inetAddress.isUnresolved()) {
+            throw new UnresolvedAddressException();
+        }
+        return inetAddress;
+    }
+}
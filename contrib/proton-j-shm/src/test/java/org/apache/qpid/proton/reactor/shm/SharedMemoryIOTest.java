@@ -0,0 +1,262 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.shm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.reactor.Acceptor;
+import org.apache.qpid.proton.reactor.FlowController;
+import org.apache.qpid.proton.reactor.Handshaker;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.impl.AcceptorImpl;
+import org.apache.qpid.proton.reactor.impl.ReactorImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SharedMemoryIOTest {
+
+    private Path directory;
+
+    @Before
+    public void before() throws IOException {
+        directory = Files.createTempDirectory("proton-shm");
+    }
+
+    @After
+    public void after() throws IOException {
+        File[] files = directory.toFile().listFiles();
+        for (File file : files) {
+            file.delete();
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void ringWrapsAndDrains() throws IOException {
+        ByteBuffer file = ByteBuffer.allocateDirect(Ring.size(4096));
+        Ring producer = new Ring(file, 0, 4096, true);
+        Ring consumer = new Ring(file, 0, 4096, false);
+        byte[] chunk = new byte[3000];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte)i;
+        }
+        for (int round = 0; round < 5; round++) {
+            assertEquals(3000, producer.write(ByteBuffer.wrap(chunk)));
+            assertTrue(consumer.isReadable());
+            ByteBuffer read = ByteBuffer.allocate(4096);
+            assertEquals(3000, consumer.read(read));
+            assertArrayEquals(chunk, Arrays.copyOf(read.array(), 3000));
+            assertFalse(consumer.isReadable());
+        }
+
+        assertEquals(4096, producer.write(ByteBuffer.allocate(5000)));
+        assertFalse(producer.isWritable());
+        assertEquals(0, producer.write(ByteBuffer.allocate(1)));
+        producer.closeProducer();
+        assertEquals(4096, consumer.read(ByteBuffer.allocate(5000)));
+        assertEquals(-1, consumer.read(ByteBuffer.allocate(1)));
+
+        consumer.closeConsumer();
+        try {
+            producer.write(ByteBuffer.allocate(1));
+            fail("writing to a closed consumer should fail");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void parkedSideIsClaimedOnce() throws IOException {
+        ByteBuffer file = ByteBuffer.allocateDirect(Ring.size(4096));
+        Ring producer = new Ring(file, 0, 4096, true);
+        Ring consumer = new Ring(file, 0, 4096, false);
+
+        assertTrue("nothing to read, so the consumer may sleep", consumer.parkConsumer());
+        producer.write(ByteBuffer.allocate(10));
+        assertTrue(producer.claimParkedConsumer());
+        producer.write(ByteBuffer.allocate(10));
+        assertFalse("only the first write should ring", producer.claimParkedConsumer());
+        assertFalse("something to read, so the consumer may not sleep", consumer.parkConsumer());
+        consumer.unparkConsumer();
+        assertFalse(producer.claimParkedConsumer());
+    }
+
+    private static class SourceHandler extends BaseHandler {
+        private final String hostname;
+        private final byte[] payload;
+        private final int count;
+        private int remaining;
+        private int settled;
+        private String condition;
+
+        private SourceHandler(String hostname, int count, int size) {
+            this.hostname = hostname;
+            this.count = count;
+            remaining = count;
+            payload = new byte[size];
+            for (int i = 0; i < size; i++) {
+                payload[i] = (byte)i;
+            }
+        }
+
+        @Override
+        public void onConnectionInit(Event event) {
+            Connection conn = event.getConnection();
+            conn.setHostname(hostname);
+            Session ssn = conn.session();
+            Sender snd = ssn.sender("sender");
+            conn.open();
+            ssn.open();
+            snd.open();
+        }
+
+        @Override
+        public void onLinkFlow(Event event) {
+            Sender link = (Sender)event.getLink();
+            while (link.getCredit() > 0 && remaining > 0) {
+                Delivery dlv = link.delivery(new byte[] {(byte)remaining});
+                link.send(payload, 0, payload.length);
+                link.advance();
+                --remaining;
+            }
+        }
+
+        // Closing only once everything has been settled by the receiver, as
+        // deliveries still waiting to be sent are dropped by the close
+        @Override
+        public void onDelivery(Event event) {
+            Delivery dlv = event.getDelivery();
+            if (dlv.remotelySettled()) {
+                dlv.settle();
+                if (++settled == count) {
+                    event.getConnection().close();
+                }
+            }
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            event.getConnection().free();
+        }
+
+        @Override
+        public void onTransportClosed(Event event) {
+            if (event.getTransport().getCondition() != null) {
+                condition = event.getTransport().getCondition().getDescription();
+            }
+        }
+    }
+
+    private static class SinkHandler extends BaseHandler {
+        private final byte[] buffer = new byte[65536];
+        private Acceptor acceptor;
+        private int received;
+        private long bytes;
+
+        @Override
+        public void onDelivery(Event event) {
+            Delivery dlv = event.getDelivery();
+            if (!dlv.isPartial()) {
+                bytes += ((Receiver)event.getLink()).recv(buffer, 0, buffer.length);
+                dlv.settle();
+                ++received;
+            }
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            acceptor.close();
+            event.getConnection().close();
+            event.getConnection().free();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void transferBetweenReactorsOnDifferentThreads() throws Exception {
+        // Small rings, so that they wrap and fill
+        final Reactor server = new ReactorImpl(new SharedMemoryIO(directory, 4096, 20, TimeUnit.MICROSECONDS));
+        SinkHandler sink = new SinkHandler();
+        sink.add(new Handshaker());
+        sink.add(new FlowController(256));
+        sink.acceptor = server.acceptor("127.0.0.1", 0, sink);
+        int port = ((AcceptorImpl)sink.acceptor).getPortNumber();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                server.run();
+            }
+        });
+        thread.start();
+
+        Reactor client = new ReactorImpl(new SharedMemoryIO(directory, 4096, 20, TimeUnit.MICROSECONDS));
+        SourceHandler source = new SourceHandler("127.0.0.1:" + port, 10000, 1000);
+        client.connection(source);
+        client.run();
+        client.free();
+        thread.join();
+        server.free();
+
+        assertNull(source.condition);
+        assertEquals(10000, sink.received);
+        assertEquals(10000L * 1000, sink.bytes);
+        assertEquals("the ring file should be removed once mapped", 0, directory.toFile().list().length);
+    }
+
+    @Test(timeout = 60000)
+    public void connectingToNothingFails() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Reactor client = new ReactorImpl(new SharedMemoryIO(directory, 4096, 0, TimeUnit.MICROSECONDS));
+        SourceHandler source = new SourceHandler("127.0.0.1:" + port, 1, 10);
+        client.connection(source);
+        client.run();
+        client.free();
+
+        assertNotNull(source.condition);
+        assertEquals(0, directory.toFile().list().length);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.example.reactor;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.reactor.Acceptor;
+import org.apache.qpid.proton.reactor.FlowController;
+import org.apache.qpid.proton.reactor.Handshaker;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.impl.AcceptorImpl;
+
+// Measures the round trip time of sending a delivery and having the peer
+// settle it, once with reactors that block in select and once with reactors
+// that busy-poll.  The client and server each run a reactor on their own
+// thread, so each round trip crosses two threads and the loopback interface.
+public class PingPong {
+
+    private static class Server extends BaseHandler {
+
+        private Acceptor acceptor;
+
+        private Server() {
+            add(new Handshaker());
+            add(new FlowController());
+        }
+
+        @Override
+        public void onDelivery(Event event) {
+            Receiver recv = (Receiver)event.getLink();
+            Delivery delivery = recv.current();
+            if (delivery != null && delivery.isReadable() && !delivery.isPartial()) {
+                byte[] buffer = new byte[delivery.pending()];
+                recv.recv(buffer, 0, buffer.length);
+                delivery.disposition(Accepted.getInstance());
+                delivery.settle();
+                recv.advance();
+            }
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            acceptor.close();
+        }
+    }
+
+    private static class Client extends BaseHandler {
+
+        private final int port;
+        private final byte[] payload;
+        private final long[] latencies;
+        private int sent;
+        private int settled;
+        private long start;
+
+        private Client(int port, int iterations, int size) {
+            this.port = port;
+            this.payload = new byte[size];
+            this.latencies = new long[iterations];
+            add(new Handshaker());
+        }
+
+        @Override
+        public void onConnectionInit(Event event) {
+            Connection conn = event.getConnection();
+            conn.setHostname("127.0.0.1:" + port);
+            Session ssn = conn.session();
+            Sender snd = ssn.sender("ping");
+            conn.open();
+            ssn.open();
+            snd.open();
+        }
+
+        @Override
+        public void onLinkFlow(Event event) {
+            ping((Sender)event.getLink());
+        }
+
+        @Override
+        public void onDelivery(Event event) {
+            Delivery delivery = event.getDelivery();
+            if (delivery.remotelySettled()) {
+                latencies[settled++] = System.nanoTime() - start;
+                delivery.settle();
+                if (settled == latencies.length) {
+                    event.getConnection().close();
+                } else {
+                    ping((Sender)event.getLink());
+                }
+            }
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            event.getConnection().close();
+        }
+
+        private void ping(Sender snd) {
+            if (sent == settled && sent < latencies.length && snd.getCredit() > 0) {
+                snd.delivery(String.valueOf(sent++).getBytes());
+                start = System.nanoTime();
+                snd.send(payload, 0, payload.length);
+                snd.advance();
+            }
+        }
+    }
+
+    private static long[] run(int iterations, int size, long busyPoll) throws IOException, InterruptedException {
+        Server server = new Server();
+        final Reactor serverReactor = Proton.reactor(server);
+        serverReactor.setBusyPollPeriod(busyPoll);
+        server.acceptor = serverReactor.acceptor("127.0.0.1", 0);
+        int port = ((AcceptorImpl)server.acceptor).getPortNumber();
+        Thread serverThread = new Thread("ping-pong-server") {
+            @Override
+            public void run() {
+                serverReactor.run();
+            }
+        };
+        serverThread.start();
+
+        Client client = new Client(port, iterations, size);
+        Reactor clientReactor = Proton.reactor();
+        clientReactor.setBusyPollPeriod(busyPoll);
+        clientReactor.connection(client);
+        clientReactor.run();
+        serverThread.join();
+        clientReactor.free();
+        serverReactor.free();
+
+        return client.latencies;
+    }
+
+    private static void report(String mode, long[] latencies, int warmup) {
+        long[] sorted = Arrays.copyOfRange(latencies, warmup, latencies.length);
+        Arrays.sort(sorted);
+        System.out.printf("%-10s p50=%6.1fus p90=%6.1fus p99=%6.1fus p99.9=%7.1fus max=%8.1fus%n",
+                          mode,
+                          percentile(sorted, 0.5), percentile(sorted, 0.9),
+                          percentile(sorted, 0.99), percentile(sorted, 0.999),
+                          sorted[sorted.length - 1] / 1000.0);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        long busyPoll = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        int warmup = iterations / 10;
+
+        report("blocking", run(iterations, size, 0), warmup);
+        report("busy-poll", run(iterations, size, busyPoll), warmup);
+    }
+}
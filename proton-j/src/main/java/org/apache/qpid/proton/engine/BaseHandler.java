@@ -20,8 +20,10 @@
  */
 package org.apache.qpid.proton.engine;
 
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.Locale;
 
 
 /**
@@ -48,7 +50,67 @@ public class BaseHandler implements CoreHandler
         ext.attachments().set(Handler.class, Handler.class, handler);
     }
 
+    /**
+     * Works out which core event types a handler, or any of its children,
+     * can act upon. For a {@link BaseHandler} these are the types whose
+     * <code>onXxx</code> method the handler's class overrides. A handler that
+     * overrides {@link #handle(Event)} or {@link #onUnhandled(Event)}, or that
+     * does not extend {@link BaseHandler}, is assumed to be interested in every
+     * event type.
+     *
+     * @param handler the root of the handler tree to inspect
+     * @return the set of event types the handler tree can act upon
+     */
+    public static EnumSet<Event.Type> interest(Handler handler) {
+        EnumSet<Event.Type> result = EnumSet.noneOf(Event.Type.class);
+        addInterest(handler, result);
+        return result;
+    }
+
+    private static void addInterest(Handler handler, EnumSet<Event.Type> result) {
+        if (handler == null) {
+            return;
+        }
+        Class<?> klass = handler.getClass();
+        if (!(handler instanceof BaseHandler) ||
+            overrides(klass, "handle") || overrides(klass, "onUnhandled")) {
+            result.addAll(EnumSet.allOf(Event.Type.class));
+            result.remove(Event.Type.NON_CORE_EVENT);
+        } else {
+            for (Event.Type type : Event.Type.values()) {
+                if (type.isValid() && overrides(klass, methodName(type))) {
+                    result.add(type);
+                }
+            }
+        }
+        Iterator<Handler> children = handler.children();
+        while (children.hasNext()) {
+            addInterest(children.next(), result);
+        }
+    }
+
+    // Maps e.g. CONNECTION_LOCAL_OPEN to onConnectionLocalOpen, matching the
+    // methods that handle(Event) dispatches to.
+    private static String methodName(Event.Type type) {
+        StringBuilder name = new StringBuilder("on");
+        for (String word : type.name().split("_")) {
+            name.append(word.charAt(0)).append(word.substring(1).toLowerCase(Locale.ROOT));
+        }
+        return name.toString();
+    }
+
+    private static boolean overrides(Class<?> klass, String name) {
+        try {
+            return klass.getMethod(name, Event.class).getDeclaringClass() != BaseHandler.class;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final Handler[] NO_CHILDREN = new Handler[0];
+
     private LinkedHashSet<Handler> children = new LinkedHashSet<Handler>();
+    private Handler[] childHandlers = NO_CHILDREN;
 
     @Override public void onConnectionInit(Event e) { onUnhandled(e); }
     @Override public void onConnectionLocalOpen(Event e) { onUnhandled(e); }
@@ -101,12 +163,41 @@ public class BaseHandler implements CoreHandler
 
     @Override
     public void add(Handler child) {
-        children.add(child);
+        if (children.add(child)) {
+            childHandlers = children.toArray(new Handler[children.size()]);
+        }
     }
 
     @Override
     public Iterator<Handler> children() {
-        return children.iterator();
+        final Iterator<Handler> iterator = children.iterator();
+        return new Iterator<Handler>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Handler next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                childHandlers = children.toArray(new Handler[children.size()]);
+            }
+        };
+    }
+
+    /**
+     * @return the children of this handler, in the order they were added, as
+     *         an array that is rebuilt whenever a child is added. This allows
+     *         {@link Event#delegate()} to visit the children without allocating
+     *         an iterator. The returned array must not be modified.
+     */
+    public Handler[] childHandlers() {
+        return childHandlers;
     }
 
 	@Override
@@ -224,7 +315,7 @@ public class BaseHandler implements CoreHandler
             onSelectableReadable(e);
             break;
         case SELECTABLE_UPDATED:
-            onSelectableWritable(e);
+            onSelectableUpdated(e);
             break;
         case SELECTABLE_WRITABLE:
             onSelectableWritable(e);
@@ -0,0 +1,101 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.engine;
+
+import org.apache.qpid.proton.reactor.Histogram;
+
+/**
+ * Where the time goes between creating a delivery and the peer settling it.
+ * Set on a sender with {@link Sender#setDeliveryLatency(DeliveryLatency)},
+ * the engine times each delivery the sender creates from then on, and
+ * records, in nanoseconds:
+ * <ul>
+ *   <li>the write times: from creating the delivery to the transport writing
+ *       its last transfer frame, which includes waiting for credit and
+ *       session window;</li>
+ *   <li>the disposition times: from then to the first disposition the peer
+ *       sends for it; and</li>
+ *   <li>the settle times: from creating the delivery to the peer settling
+ *       it, the whole of its life.</li>
+ * </ul>
+ * Deliveries settled locally before the peer settles them, including those
+ * sent presettled, are not counted in the settle times.
+ * <p>
+ * The same latency may be set on several senders to add them up.  Times are
+ * recorded by the thread using the transport; other threads may read them,
+ * but will not necessarily see the latest values.
+ */
+public class DeliveryLatency
+{
+    private final Histogram _writeTimes = new Histogram();
+    private final Histogram _dispositionTimes = new Histogram();
+    private final Histogram _settleTimes = new Histogram();
+
+    public void recordWrite(long nanos)
+    {
+        _writeTimes.record(nanos);
+    }
+
+    public void recordDisposition(long nanos)
+    {
+        _dispositionTimes.record(nanos);
+    }
+
+    public void recordSettle(long nanos)
+    {
+        _settleTimes.record(nanos);
+    }
+
+    /**
+     * @return the times from creating each delivery to writing its last
+     *         frame, in nanoseconds.
+     */
+    public Histogram getWriteTimes()
+    {
+        return _writeTimes;
+    }
+
+    /**
+     * @return the times from writing each delivery's last frame to receiving
+     *         its first disposition, in nanoseconds.
+     */
+    public Histogram getDispositionTimes()
+    {
+        return _dispositionTimes;
+    }
+
+    /**
+     * @return the times from creating each delivery to the peer settling it,
+     *         in nanoseconds.
+     */
+    public Histogram getSettleTimes()
+    {
+        return _settleTimes;
+    }
+
+    public void reset()
+    {
+        _writeTimes.reset();
+        _dispositionTimes.reset();
+        _settleTimes.reset();
+    }
+}
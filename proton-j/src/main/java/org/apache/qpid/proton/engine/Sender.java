@@ -69,4 +69,19 @@ public interface Sender extends Link
     @Override
     public boolean advance();
 
+    /**
+     * Sets where to record how long the deliveries this sender creates take to
+     * be written and settled.  Latency is not tracked by default, and costs
+     * nothing until it is.
+     *
+     * @param latency the latency to record into, or null to stop tracking
+     *                deliveries created from now on.
+     */
+    public void setDeliveryLatency(DeliveryLatency latency);
+
+    /**
+     * @return the latency the sender records into, or null if none is set.
+     */
+    public DeliveryLatency getDeliveryLatency();
+
 }
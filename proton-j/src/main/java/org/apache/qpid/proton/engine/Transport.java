@@ -282,4 +282,21 @@ public interface Transport extends Endpoint
     void setEmitFlowEventOnSend(boolean emitFlowEventOnSend);
 
     boolean isEmitFlowEventOnSend();
+
+    /**
+     * Sets the metrics that the transport records into the frames, bytes and
+     * deliveries it handles.  Recording costs an ordered store per count,
+     * and a read of the system's nanosecond clock whenever sending becomes,
+     * or stops being, blocked by flow control.
+     *
+     * @param metrics the metrics to record into, or <code>null</code> (the
+     *                default) to record nothing.
+     */
+    void setMetrics(TransportMetrics metrics);
+
+    /**
+     * @return the value previously set using {@link #setMetrics(TransportMetrics)}
+     *         or <code>null</code> if no previous value has been set.
+     */
+    TransportMetrics getMetrics();
 }
@@ -0,0 +1,566 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.qpid.proton.amqp.transport.Attach;
+import org.apache.qpid.proton.amqp.transport.Begin;
+import org.apache.qpid.proton.amqp.transport.Close;
+import org.apache.qpid.proton.amqp.transport.Detach;
+import org.apache.qpid.proton.amqp.transport.Disposition;
+import org.apache.qpid.proton.amqp.transport.EmptyFrame;
+import org.apache.qpid.proton.amqp.transport.End;
+import org.apache.qpid.proton.amqp.transport.Flow;
+import org.apache.qpid.proton.amqp.transport.Open;
+import org.apache.qpid.proton.amqp.transport.Transfer;
+
+/**
+ * Counts of what a transport sends and receives.  Set on a transport with
+ * {@link Transport#setMetrics(TransportMetrics)}, the transport records:
+ * <ul>
+ *   <li>the AMQP frames it sends and receives, by performative, and how many
+ *       of the transfers are only part of a delivery;</li>
+ *   <li>the bytes it reads and writes;</li>
+ *   <li>the current and peak size of its pending output;</li>
+ *   <li>the unsettled deliveries of each of its sessions; and</li>
+ *   <li>how long it has had deliveries to send but no link credit, or no
+ *       session window, to send them with.</li>
+ * </ul>
+ * The transport records on whichever thread is using it, with an ordered
+ * store per count and no locking, so the metrics are cheap enough to leave
+ * on.  They may be read from any other thread with {@link #snapshot()}.
+ * A {@link TransportMetricsGroup} adds up the metrics of many transports
+ * and can make them available through JMX.
+ * <p>
+ * Subclasses may override the methods the transport records with to pass
+ * what is recorded on elsewhere, calling the overridden method to keep
+ * the counts.
+ */
+public class TransportMetrics
+{
+    /**
+     * The kinds of AMQP frame that are counted.
+     */
+    public enum FrameType
+    {
+        OPEN, BEGIN, ATTACH, FLOW, TRANSFER, DISPOSITION, DETACH, END, CLOSE,
+        /** An empty frame, sent to keep a connection alive. */
+        EMPTY;
+
+        /**
+         * @return the type of a frame with the given body, or null for a body
+         *         that is not an AMQP performative.
+         */
+        public static FrameType of(Object body)
+        {
+            // The most frequent first
+            if (body instanceof Transfer)
+            {
+                return TRANSFER;
+            }
+            else if (body instanceof Disposition)
+            {
+                return DISPOSITION;
+            }
+            else if (body instanceof Flow)
+            {
+                return FLOW;
+            }
+            else if (body == null || body instanceof EmptyFrame)
+            {
+                return EMPTY;
+            }
+            else if (body instanceof Attach)
+            {
+                return ATTACH;
+            }
+            else if (body instanceof Detach)
+            {
+                return DETACH;
+            }
+            else if (body instanceof Begin)
+            {
+                return BEGIN;
+            }
+            else if (body instanceof End)
+            {
+                return END;
+            }
+            else if (body instanceof Open)
+            {
+                return OPEN;
+            }
+            else if (body instanceof Close)
+            {
+                return CLOSE;
+            }
+            return null;
+        }
+    }
+
+    private static final FrameType[] FRAME_TYPES = FrameType.values();
+
+    // Indexes into the counters, after the frames sent and received by type
+    private static final int FRAMES_SENT = 0;
+    private static final int FRAMES_RECEIVED = FRAMES_SENT + FRAME_TYPES.length;
+    private static final int PARTIAL_TRANSFERS_SENT = FRAMES_RECEIVED + FRAME_TYPES.length;
+    private static final int PARTIAL_TRANSFERS_RECEIVED = PARTIAL_TRANSFERS_SENT + 1;
+    private static final int BYTES_INPUT = PARTIAL_TRANSFERS_RECEIVED + 1;
+    private static final int BYTES_OUTPUT = BYTES_INPUT + 1;
+    private static final int PENDING_OUTPUT = BYTES_OUTPUT + 1;
+    private static final int PEAK_PENDING_OUTPUT = PENDING_OUTPUT + 1;
+    private static final int LINK_CREDIT_BLOCKED = PEAK_PENDING_OUTPUT + 1;
+    private static final int LINK_CREDIT_BLOCKED_SINCE = LINK_CREDIT_BLOCKED + 1;
+    private static final int SESSION_WINDOW_BLOCKED = LINK_CREDIT_BLOCKED_SINCE + 1;
+    private static final int SESSION_WINDOW_BLOCKED_SINCE = SESSION_WINDOW_BLOCKED + 1;
+    private static final int COUNTERS = SESSION_WINDOW_BLOCKED_SINCE + 1;
+
+    private static final int NO_SESSION = -1;
+
+    // Each count is written only by the thread using the transport, which
+    // reads it back without a fence and writes it with an ordered store
+    private final AtomicLongArray _counters = new AtomicLongArray(COUNTERS);
+    // The unsettled deliveries by local channel, or NO_SESSION
+    private volatile AtomicIntegerArray _unsettled = new AtomicIntegerArray(0);
+    private boolean _linkCreditBlocked;
+    private boolean _sessionWindowBlocked;
+    private volatile boolean _closed;
+
+    private void increment(int index, long delta)
+    {
+        _counters.lazySet(index, _counters.get(index) + delta);
+    }
+
+    /**
+     * Records that a frame was sent.
+     * @param channel the channel the frame was sent on.
+     * @param body the frame's performative, or null for an empty frame.
+     * @param size the size of the frame in bytes.
+     */
+    public void recordFrameSent(int channel, Object body, int size)
+    {
+        if (_closed)
+        {
+            return;
+        }
+        FrameType type = FrameType.of(body);
+        if (type != null)
+        {
+            increment(FRAMES_SENT + type.ordinal(), 1);
+            if (type == FrameType.TRANSFER && ((Transfer) body).getMore())
+            {
+                increment(PARTIAL_TRANSFERS_SENT, 1);
+            }
+        }
+    }
+
+    /**
+     * Records that a frame was received.
+     * @param channel the channel the frame was received on.
+     * @param body the frame's performative, or null for an empty frame.
+     * @param size the size of the frame in bytes.
+     */
+    public void recordFrameReceived(int channel, Object body, int size)
+    {
+        if (_closed)
+        {
+            return;
+        }
+        FrameType type = FrameType.of(body);
+        if (type != null)
+        {
+            increment(FRAMES_RECEIVED + type.ordinal(), 1);
+            if (type == FrameType.TRANSFER && ((Transfer) body).getMore())
+            {
+                increment(PARTIAL_TRANSFERS_RECEIVED, 1);
+            }
+        }
+    }
+
+    public void recordBytesInput(long bytes)
+    {
+        if (_closed)
+        {
+            return;
+        }
+        increment(BYTES_INPUT, bytes);
+    }
+
+    public void recordBytesOutput(long bytes)
+    {
+        if (_closed)
+        {
+            return;
+        }
+        increment(BYTES_OUTPUT, bytes);
+    }
+
+    /**
+     * Records the size of the output waiting to be written.
+     * @param bytes the size, in bytes.
+     */
+    public void recordPendingOutput(int bytes)
+    {
+        if (_closed)
+        {
+            return;
+        }
+        if (_counters.get(PENDING_OUTPUT) != bytes)
+        {
+            _counters.lazySet(PENDING_OUTPUT, bytes);
+            if (bytes > _counters.get(PEAK_PENDING_OUTPUT))
+            {
+                _counters.lazySet(PEAK_PENDING_OUTPUT, bytes);
+            }
+        }
+    }
+
+    /**
+     * Records whether the transport has deliveries it cannot send for want of
+     * link credit or of session window.  The time between a call saying it
+     * has and a later call saying it has not is counted as blocked.
+     */
+    public void recordBlocked(boolean onLinkCredit, boolean onSessionWindow)
+    {
+        if (_closed)
+        {
+            return;
+        }
+        if (onLinkCredit != _linkCreditBlocked || onSessionWindow != _sessionWindowBlocked)
+        {
+            long now = System.nanoTime();
+            if (onLinkCredit != _linkCreditBlocked)
+            {
+                _linkCreditBlocked = onLinkCredit;
+                blocked(LINK_CREDIT_BLOCKED, LINK_CREDIT_BLOCKED_SINCE, onLinkCredit, now);
+            }
+            if (onSessionWindow != _sessionWindowBlocked)
+            {
+                _sessionWindowBlocked = onSessionWindow;
+                blocked(SESSION_WINDOW_BLOCKED, SESSION_WINDOW_BLOCKED_SINCE, onSessionWindow, now);
+            }
+        }
+    }
+
+    private void blocked(int total, int since, boolean blocked, long now)
+    {
+        if (blocked)
+        {
+            _counters.lazySet(since, now);
+        }
+        else
+        {
+            increment(total, now - _counters.get(since));
+            _counters.lazySet(since, 0);
+        }
+    }
+
+    /**
+     * Records the number of unsettled deliveries, sent or received, of a
+     * session.
+     * @param channel the session's local channel.
+     * @param unsettled the number of unsettled deliveries.
+     */
+    public void recordUnsettled(int channel, int unsettled)
+    {
+        if (_closed)
+        {
+            return;
+        }
+        AtomicIntegerArray sessions = _unsettled;
+        if (channel >= sessions.length())
+        {
+            AtomicIntegerArray grown = new AtomicIntegerArray(Math.max(channel + 1, sessions.length() * 2));
+            for (int i = 0; i < grown.length(); i++)
+            {
+                grown.lazySet(i, i < sessions.length() ? sessions.get(i) : NO_SESSION);
+            }
+            _unsettled = grown;
+            sessions = grown;
+        }
+        if (sessions.get(channel) != unsettled)
+        {
+            sessions.lazySet(channel, unsettled);
+        }
+    }
+
+    /**
+     * Records that a session has ended, so that it is no longer reported.
+     * @param channel the session's local channel.
+     */
+    public void recordSessionEnded(int channel)
+    {
+        if (_closed)
+        {
+            return;
+        }
+        AtomicIntegerArray sessions = _unsettled;
+        if (channel < sessions.length())
+        {
+            sessions.lazySet(channel, NO_SESSION);
+        }
+    }
+
+    /**
+     * Records that the transport has closed.  Anything recorded after this is
+     * ignored, so that a {@link TransportMetricsGroup} can add the counts to
+     * its totals once and for all.
+     */
+    public void recordClosed()
+    {
+        if (_closed)
+        {
+            return;
+        }
+        recordBlocked(false, false);
+        recordPendingOutput(0);
+        AtomicIntegerArray sessions = _unsettled;
+        for (int i = 0; i < sessions.length(); i++)
+        {
+            sessions.lazySet(i, NO_SESSION);
+        }
+        _closed = true;
+    }
+
+    /**
+     * @return whether the transport has closed, after which nothing more is
+     *         recorded.
+     */
+    public boolean isClosed()
+    {
+        return _closed;
+    }
+
+    /**
+     * Takes a copy of the metrics.  May be called from any thread; each
+     * count in the copy is one the transport has recorded, but counts
+     * recorded at about the time of the copy may or may not be included.
+     */
+    public Snapshot snapshot()
+    {
+        long[] counters = new long[COUNTERS];
+        for (int i = 0; i < COUNTERS; i++)
+        {
+            counters[i] = _counters.get(i);
+        }
+        long now = System.nanoTime();
+        // Include the time blocked so far
+        if (counters[LINK_CREDIT_BLOCKED_SINCE] != 0)
+        {
+            counters[LINK_CREDIT_BLOCKED] += Math.max(0, now - counters[LINK_CREDIT_BLOCKED_SINCE]);
+        }
+        if (counters[SESSION_WINDOW_BLOCKED_SINCE] != 0)
+        {
+            counters[SESSION_WINDOW_BLOCKED] += Math.max(0, now - counters[SESSION_WINDOW_BLOCKED_SINCE]);
+        }
+        Map<Integer, Integer> unsettled = new LinkedHashMap<Integer, Integer>();
+        AtomicIntegerArray sessions = _unsettled;
+        for (int i = 0; i < sessions.length(); i++)
+        {
+            int count = sessions.get(i);
+            if (count != NO_SESSION)
+            {
+                unsettled.put(i, count);
+            }
+        }
+        return new Snapshot(counters, unsettled, total(unsettled));
+    }
+
+    private static long total(Map<Integer, Integer> unsettled)
+    {
+        long total = 0;
+        for (int count : unsettled.values())
+        {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * An unchanging copy of a transport's metrics, or the total of those of
+     * several transports.  Times are in nanoseconds.
+     */
+    public static final class Snapshot
+    {
+        private final long[] _counters;
+        private final Map<Integer, Integer> _unsettledBySession;
+        private final long _unsettled;
+
+        private Snapshot(long[] counters, Map<Integer, Integer> unsettledBySession, long unsettled)
+        {
+            _counters = counters;
+            _unsettledBySession = Collections.unmodifiableMap(unsettledBySession);
+            _unsettled = unsettled;
+        }
+
+        /**
+         * @return an empty snapshot, to add others to.
+         */
+        public static Snapshot empty()
+        {
+            return new Snapshot(new long[COUNTERS], Collections.<Integer, Integer>emptyMap(), 0);
+        }
+
+        /**
+         * Adds two snapshots together.  The peak pending output of the sum is
+         * the larger of the two, the most any one transport has had pending.
+         * The sum has no unsettled deliveries by session, only their total.
+         */
+        public Snapshot add(Snapshot other)
+        {
+            long[] counters = Arrays.copyOf(_counters, COUNTERS);
+            for (int i = 0; i < COUNTERS; i++)
+            {
+                counters[i] += other._counters[i];
+            }
+            counters[PEAK_PENDING_OUTPUT] = Math.max(_counters[PEAK_PENDING_OUTPUT],
+                                                     other._counters[PEAK_PENDING_OUTPUT]);
+            counters[LINK_CREDIT_BLOCKED_SINCE] = 0;
+            counters[SESSION_WINDOW_BLOCKED_SINCE] = 0;
+            return new Snapshot(counters, Collections.<Integer, Integer>emptyMap(), _unsettled + other._unsettled);
+        }
+
+        public long getFramesSent(FrameType type)
+        {
+            return _counters[FRAMES_SENT + type.ordinal()];
+        }
+
+        public long getFramesReceived(FrameType type)
+        {
+            return _counters[FRAMES_RECEIVED + type.ordinal()];
+        }
+
+        /**
+         * @return the frames sent, by type, leaving out types with none.
+         */
+        public Map<FrameType, Long> getFramesSent()
+        {
+            return frames(FRAMES_SENT);
+        }
+
+        /**
+         * @return the frames received, by type, leaving out types with none.
+         */
+        public Map<FrameType, Long> getFramesReceived()
+        {
+            return frames(FRAMES_RECEIVED);
+        }
+
+        private Map<FrameType, Long> frames(int offset)
+        {
+            Map<FrameType, Long> frames = new EnumMap<FrameType, Long>(FrameType.class);
+            for (FrameType type : FRAME_TYPES)
+            {
+                long count = _counters[offset + type.ordinal()];
+                if (count > 0)
+                {
+                    frames.put(type, count);
+                }
+            }
+            return frames;
+        }
+
+        /**
+         * @return the transfer frames sent that did not complete their
+         *         delivery.
+         */
+        public long getPartialTransfersSent()
+        {
+            return _counters[PARTIAL_TRANSFERS_SENT];
+        }
+
+        /**
+         * @return the transfer frames received that did not complete their
+         *         delivery.
+         */
+        public long getPartialTransfersReceived()
+        {
+            return _counters[PARTIAL_TRANSFERS_RECEIVED];
+        }
+
+        public long getBytesInput()
+        {
+            return _counters[BYTES_INPUT];
+        }
+
+        public long getBytesOutput()
+        {
+            return _counters[BYTES_OUTPUT];
+        }
+
+        /**
+         * @return the bytes of output waiting to be written.
+         */
+        public long getPendingOutput()
+        {
+            return _counters[PENDING_OUTPUT];
+        }
+
+        /**
+         * @return the most bytes of output that have waited to be written.
+         */
+        public long getPeakPendingOutput()
+        {
+            return _counters[PEAK_PENDING_OUTPUT];
+        }
+
+        /**
+         * @return the time deliveries have waited for link credit.
+         */
+        public long getLinkCreditBlockedTime()
+        {
+            return _counters[LINK_CREDIT_BLOCKED];
+        }
+
+        /**
+         * @return the time deliveries have waited for the peer's session
+         *         incoming window to open.
+         */
+        public long getSessionWindowBlockedTime()
+        {
+            return _counters[SESSION_WINDOW_BLOCKED];
+        }
+
+        /**
+         * @return the unsettled deliveries of each session, by local channel.
+         */
+        public Map<Integer, Integer> getUnsettledBySession()
+        {
+            return _unsettledBySession;
+        }
+
+        /**
+         * @return the unsettled deliveries of all sessions.
+         */
+        public long getUnsettled()
+        {
+            return _unsettled;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.engine;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.qpid.proton.engine.TransportMetrics.FrameType;
+import org.apache.qpid.proton.engine.TransportMetrics.Snapshot;
+
+/**
+ * The metrics of a group of transports, such as all the connections of a
+ * container, added up.  Each transport is given metrics created by the
+ * group:
+ * <pre>
+ * transport.setMetrics(group.create());
+ * </pre>
+ * The metrics of a transport that has closed stay in the totals, but the
+ * group lets go of them.  A transport that is dropped without being closed is
+ * never let go of, and counts as open for as long as the group is in use, so
+ * close every transport, for example on an I/O error, before dropping it.
+ * The group may be used from any thread.
+ */
+public class TransportMetricsGroup
+{
+    private final List<TransportMetrics> _metrics = new ArrayList<TransportMetrics>();
+    // The totals of the transports that have closed
+    private Snapshot _closed = Snapshot.empty();
+    private long _closedCount;
+
+    /**
+     * @return new metrics, belonging to the group, to set on a transport.
+     */
+    public synchronized TransportMetrics create()
+    {
+        TransportMetrics metrics = newMetrics();
+        _metrics.add(metrics);
+        return metrics;
+    }
+
+    /**
+     * Creates the metrics {@link #create()} adds to the group, which a
+     * subclass may override to create a subclass of {@link TransportMetrics}.
+     */
+    protected TransportMetrics newMetrics()
+    {
+        return new TransportMetrics();
+    }
+
+    /**
+     * @return the total of the metrics of the group's transports, open and
+     *         closed.
+     */
+    public synchronized Snapshot snapshot()
+    {
+        retire();
+        Snapshot total = _closed;
+        for (TransportMetrics metrics : _metrics)
+        {
+            total = total.add(metrics.snapshot());
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of transports in the group that have not closed.
+     */
+    public synchronized int getOpenCount()
+    {
+        retire();
+        return _metrics.size();
+    }
+
+    /**
+     * @return the number of transports in the group that have closed.
+     */
+    public synchronized long getClosedCount()
+    {
+        retire();
+        return _closedCount;
+    }
+
+    private void retire()
+    {
+        Iterator<TransportMetrics> i = _metrics.iterator();
+        while (i.hasNext())
+        {
+            TransportMetrics metrics = i.next();
+            if (metrics.isClosed())
+            {
+                _closed = _closed.add(metrics.snapshot());
+                _closedCount++;
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Registers the group with an MBean server, as a {@link TransportMetricsMXBean}.
+     * @param server the server, for example the platform MBean server.
+     * @param name the name to register the group under.
+     */
+    public void registerMBean(MBeanServer server, ObjectName name)
+            throws InstanceAlreadyExistsException, MBeanRegistrationException, NotCompliantMBeanException
+    {
+        server.registerMBean(new StandardMBean(new MXBean(), TransportMetricsMXBean.class, true), name);
+    }
+
+    private static Map<String, Long> names(Map<FrameType, Long> frames)
+    {
+        Map<String, Long> named = new TreeMap<String, Long>();
+        for (Map.Entry<FrameType, Long> entry : frames.entrySet())
+        {
+            named.put(entry.getKey().name(), entry.getValue());
+        }
+        return named;
+    }
+
+    private class MXBean implements TransportMetricsMXBean
+    {
+        @Override
+        public int getOpenCount()
+        {
+            return TransportMetricsGroup.this.getOpenCount();
+        }
+
+        @Override
+        public long getClosedCount()
+        {
+            return TransportMetricsGroup.this.getClosedCount();
+        }
+
+        @Override
+        public Map<String, Long> getFramesSent()
+        {
+            return names(snapshot().getFramesSent());
+        }
+
+        @Override
+        public Map<String, Long> getFramesReceived()
+        {
+            return names(snapshot().getFramesReceived());
+        }
+
+        @Override
+        public long getTransfersSent()
+        {
+            return snapshot().getFramesSent(FrameType.TRANSFER);
+        }
+
+        @Override
+        public long getTransfersReceived()
+        {
+            return snapshot().getFramesReceived(FrameType.TRANSFER);
+        }
+
+        @Override
+        public long getPartialTransfersSent()
+        {
+            return snapshot().getPartialTransfersSent();
+        }
+
+        @Override
+        public long getPartialTransfersReceived()
+        {
+            return snapshot().getPartialTransfersReceived();
+        }
+
+        @Override
+        public long getDispositionsSent()
+        {
+            return snapshot().getFramesSent(FrameType.DISPOSITION);
+        }
+
+        @Override
+        public long getDispositionsReceived()
+        {
+            return snapshot().getFramesReceived(FrameType.DISPOSITION);
+        }
+
+        @Override
+        public long getFlowsSent()
+        {
+            return snapshot().getFramesSent(FrameType.FLOW);
+        }
+
+        @Override
+        public long getFlowsReceived()
+        {
+            return snapshot().getFramesReceived(FrameType.FLOW);
+        }
+
+        @Override
+        public long getBytesInput()
+        {
+            return snapshot().getBytesInput();
+        }
+
+        @Override
+        public long getBytesOutput()
+        {
+            return snapshot().getBytesOutput();
+        }
+
+        @Override
+        public long getPendingOutput()
+        {
+            return snapshot().getPendingOutput();
+        }
+
+        @Override
+        public long getPeakPendingOutput()
+        {
+            return snapshot().getPeakPendingOutput();
+        }
+
+        @Override
+        public long getUnsettled()
+        {
+            return snapshot().getUnsettled();
+        }
+
+        @Override
+        public long getLinkCreditBlockedTime()
+        {
+            return TimeUnit.NANOSECONDS.toMillis(snapshot().getLinkCreditBlockedTime());
+        }
+
+        @Override
+        public long getSessionWindowBlockedTime()
+        {
+            return TimeUnit.NANOSECONDS.toMillis(snapshot().getSessionWindowBlockedTime());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.engine;
+
+import java.util.Map;
+
+/**
+ * The management interface of a {@link TransportMetricsGroup}, registered with
+ * {@link TransportMetricsGroup#registerMBean(javax.management.MBeanServer, javax.management.ObjectName)}.
+ * Counts are totals over the group's transports, open and closed.  Times are
+ * in milliseconds.
+ */
+public interface TransportMetricsMXBean
+{
+    int getOpenCount();
+
+    long getClosedCount();
+
+    /**
+     * @return the frames sent, by performative.
+     */
+    Map<String, Long> getFramesSent();
+
+    /**
+     * @return the frames received, by performative.
+     */
+    Map<String, Long> getFramesReceived();
+
+    long getTransfersSent();
+
+    long getTransfersReceived();
+
+    long getPartialTransfersSent();
+
+    long getPartialTransfersReceived();
+
+    long getDispositionsSent();
+
+    long getDispositionsReceived();
+
+    long getFlowsSent();
+
+    long getFlowsReceived();
+
+    long getBytesInput();
+
+    long getBytesOutput();
+
+    /**
+     * @return the output the open transports have waiting to be written, in
+     *         bytes.
+     */
+    long getPendingOutput();
+
+    /**
+     * @return the most output any one transport has had waiting to be
+     *         written, in bytes.
+     */
+    long getPeakPendingOutput();
+
+    /**
+     * @return the unsettled deliveries of the open transports.
+     */
+    long getUnsettled();
+
+    long getLinkCreditBlockedTime();
+
+    long getSessionWindowBlockedTime();
+}
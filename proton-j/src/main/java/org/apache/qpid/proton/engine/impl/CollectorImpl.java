@@ -20,6 +20,9 @@
  */
 package org.apache.qpid.proton.engine.impl;
 
+import java.util.IdentityHashMap;
+import java.util.Set;
+
 import org.apache.qpid.proton.engine.Collector;
 import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.engine.EventType;
@@ -33,13 +36,70 @@ import org.apache.qpid.proton.engine.EventType;
 public class CollectorImpl implements Collector
 {
 
+    // Event types that only tell a handler to re-examine the current state of
+    // their context, so a second queued event for the same context adds nothing.
+    private static final Event.Type[] COALESCED = {
+        Event.Type.LINK_FLOW,
+        Event.Type.DELIVERY,
+        Event.Type.TRANSPORT,
+        Event.Type.SELECTABLE_UPDATED
+    };
+
+    private static final int TYPES = Event.Type.values().length;
+
     private EventImpl head;
     private EventImpl tail;
     private EventImpl free;
 
+    private boolean[] interest;
+    private IdentityHashMap<Object, EventImpl>[] queued;
+
     public CollectorImpl()
     {}
 
+    /**
+     * Restricts the core event types recorded by this collector. Events of
+     * any other core type are discarded by {@link #put(EventType, Object)}.
+     * Event types defined outside of the library are always recorded.
+     *
+     * @param types the core event types to record, or <code>null</code> to
+     *              record every event (the default).
+     */
+    public void setInterest(Set<Event.Type> types)
+    {
+        if (types == null) {
+            interest = null;
+        } else {
+            boolean[] mask = new boolean[TYPES];
+            for (Event.Type type : types) {
+                mask[type.ordinal()] = true;
+            }
+            interest = mask;
+        }
+    }
+
+    /**
+     * When enabled, a {@link Event.Type#LINK_FLOW}, {@link Event.Type#DELIVERY},
+     * {@link Event.Type#TRANSPORT} or {@link Event.Type#SELECTABLE_UPDATED}
+     * event is not recorded if an event of the same type and context is
+     * already queued behind the head of the collector. Without this only the
+     * most recently recorded event is checked.
+     *
+     * @param coalesce whether to coalesce queued events
+     */
+    @SuppressWarnings("unchecked")
+    public void setCoalescing(boolean coalesce)
+    {
+        if (!coalesce) {
+            queued = null;
+        } else if (queued == null) {
+            queued = new IdentityHashMap[TYPES];
+            for (Event.Type type : COALESCED) {
+                queued[type.ordinal()] = new IdentityHashMap<Object, EventImpl>();
+            }
+        }
+    }
+
     @Override
     public Event peek()
     {
@@ -50,6 +110,12 @@ public class CollectorImpl implements Collector
     public void pop()
     {
         if (head != null) {
+            if (queued != null && head.type instanceof Event.Type) {
+                IdentityHashMap<Object, EventImpl> events = queued[((Event.Type) head.type).ordinal()];
+                if (events != null && events.get(head.context) == head) {
+                    events.remove(head.context);
+                }
+            }
             EventImpl next = head.next;
             head.next = free;
             free = head;
@@ -66,10 +132,28 @@ public class CollectorImpl implements Collector
         if (!type.isValid()) {
             throw new IllegalArgumentException("Cannot put events of type " + type);
         }
+        IdentityHashMap<Object, EventImpl> events = null;
+        if (type instanceof Event.Type) {
+            int ordinal = ((Event.Type) type).ordinal();
+            if (interest != null && !interest[ordinal]) {
+                return null;
+            }
+            if (queued != null) {
+                events = queued[ordinal];
+            }
+        }
         if (tail != null && tail.getEventType() == type &&
             tail.getContext() == context) {
             return null;
         }
+        if (events != null) {
+            // The head may already be being dispatched, so it is never
+            // treated as covering a new event.
+            EventImpl existing = events.get(context);
+            if (existing != null && existing != head) {
+                return null;
+            }
+        }
 
         EventImpl event;
         if (free == null) {
@@ -90,6 +174,10 @@ public class CollectorImpl implements Collector
             tail = event;
         }
 
+        if (events != null) {
+            events.put(context, event);
+        }
+
         return event;
     }
 
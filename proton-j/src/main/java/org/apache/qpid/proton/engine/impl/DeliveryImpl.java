@@ -23,6 +23,7 @@ package org.apache.qpid.proton.engine.impl;
 import java.util.Arrays;
 
 import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.DeliveryLatency;
 import org.apache.qpid.proton.engine.Record;
 import org.apache.qpid.proton.engine.Transport;
 import org.apache.qpid.proton.amqp.transport.DeliveryState;
@@ -31,6 +32,11 @@ public class DeliveryImpl implements Delivery
 {
     public static final int DEFAULT_MESSAGE_FORMAT = 0;
 
+    // Indexes into the times of a delivery whose latency is tracked
+    private static final int CREATED = 0;
+    private static final int WRITTEN = 1;
+    private static final int DISPOSITION = 2;
+
     private DeliveryImpl _linkPrevious;
     private DeliveryImpl _linkNext;
 
@@ -67,6 +73,13 @@ public class DeliveryImpl implements Delivery
     private boolean _updated;
     private boolean _done;
     private int _offset;
+    // Whether _data was allocated by this delivery, rather than being the
+    // array a received payload was decoded into
+    private boolean _dataOwned;
+
+    // When the delivery was created, fully written and first given a
+    // disposition by the peer, if its sender tracks latency
+    private long[] _times;
 
     DeliveryImpl(final byte[] tag, final LinkImpl link, DeliveryImpl previous)
     {
@@ -78,6 +91,11 @@ public class DeliveryImpl implements Delivery
         {
             previous._linkNext = this;
         }
+        if(link instanceof SenderImpl && ((SenderImpl) link).getDeliveryLatency() != null)
+        {
+            _times = new long[DISPOSITION + 1];
+            _times[CREATED] = System.nanoTime();
+        }
     }
 
     public byte[] getTag()
@@ -298,6 +316,34 @@ public class DeliveryImpl implements Delivery
         return length;  //TODO - Implement.
     }
 
+    /**
+     * Adds a received payload to the data not yet read.  The first payload is
+     * kept as it is.  Later ones are gathered into an array that at least
+     * doubles when it grows, so the data of a message arriving in many frames
+     * is copied a few times in all, rather than once per frame.
+     */
+    void appendData(byte[] bytes, int offset, int length)
+    {
+        if(_dataSize == 0)
+        {
+            _data = bytes;
+            _offset = offset;
+            _dataSize = length;
+            _dataOwned = false;
+            return;
+        }
+        if(!_dataOwned || _data.length - _offset - _dataSize < length)
+        {
+            byte[] data = new byte[Math.max(_dataSize + length, 2 * _dataSize)];
+            System.arraycopy(_data, _offset, data, 0, _dataSize);
+            _data = data;
+            _offset = 0;
+            _dataOwned = true;
+        }
+        System.arraycopy(bytes, offset, _data, _offset + _dataSize, length);
+        _dataSize += length;
+    }
+
     byte[] getData()
     {
         return _data;
@@ -355,6 +401,10 @@ public class DeliveryImpl implements Delivery
     {
         _remoteDeliveryState = remoteDeliveryState;
         _updated = true;
+        if (_times != null)
+        {
+            recordDisposition();
+        }
     }
 
     public boolean isUpdated()
@@ -372,6 +422,16 @@ public class DeliveryImpl implements Delivery
     void setDone()
     {
         _done = true;
+        if (_times != null)
+        {
+            long now = System.nanoTime();
+            _times[WRITTEN] = now;
+            DeliveryLatency latency = getDeliveryLatency();
+            if (latency != null)
+            {
+                latency.recordWrite(now - _times[CREATED]);
+            }
+        }
     }
 
     boolean isDone()
@@ -383,6 +443,36 @@ public class DeliveryImpl implements Delivery
     {
         _remoteSettled = remoteSettled;
         _updated = true;
+        if (_times != null && remoteSettled)
+        {
+            recordDisposition();
+            DeliveryLatency latency = getDeliveryLatency();
+            if (latency != null && !_settled)
+            {
+                latency.recordSettle(System.nanoTime() - _times[CREATED]);
+            }
+        }
+    }
+
+    private void recordDisposition()
+    {
+        if (_times[DISPOSITION] == 0)
+        {
+            long now = System.nanoTime();
+            _times[DISPOSITION] = now;
+            DeliveryLatency latency = getDeliveryLatency();
+            if (latency != null)
+            {
+                // A peer may settle a delivery before it has all been written
+                long from = _times[WRITTEN] != 0 ? _times[WRITTEN] : _times[CREATED];
+                latency.recordDisposition(now - from);
+            }
+        }
+    }
+
+    private DeliveryLatency getDeliveryLatency()
+    {
+        return ((SenderImpl) _link).getDeliveryLatency();
     }
 
     public boolean isBuffered()
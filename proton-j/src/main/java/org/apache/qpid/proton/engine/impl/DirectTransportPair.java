@@ -0,0 +1,120 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import org.apache.qpid.proton.engine.Transport;
+import org.apache.qpid.proton.framing.TransportFrame;
+
+/**
+ * Two transports joined back to back in the same JVM.  The performatives and
+ * payloads each transport writes are handed to the other as objects, rather
+ * than encoded into frames by one and parsed by the other, so that a hop
+ * between a client and a broker component in the same process costs little
+ * more than the hand-off.  Payloads are passed by reference, and a message
+ * small enough to travel in one transfer reaches the receiving delivery
+ * without being copied.
+ * <p>
+ * Each transport is bound to a connection as usual.  The pair is then driven
+ * with {@link #process()}, in place of moving bytes from each transport's
+ * head to the other's tail, whenever either connection has work to do.
+ * Flow control, settlement and events behave as they do between transports
+ * joined by a network, including the splitting of messages into transfers
+ * no bigger than the receiving transport's maximum frame size.
+ * <pre>
+ * DirectTransportPair pair = new DirectTransportPair();
+ * pair.getFirst().bind(clientConnection);
+ * pair.getSecond().bind(serverConnection);
+ * ...
+ * pair.process();
+ * </pre>
+ * The transports have no byte-level input or output of their own, and
+ * cannot use SASL or SSL.  Like any transport, the pair must only be used
+ * from one thread at a time.
+ */
+public class DirectTransportPair
+{
+    private final TransportImpl _first;
+    private final TransportImpl _second;
+    private final Queue<TransportFrame> _firstToSecond = new ArrayDeque<TransportFrame>();
+    private final Queue<TransportFrame> _secondToFirst = new ArrayDeque<TransportFrame>();
+
+    public DirectTransportPair()
+    {
+        _first = new TransportImpl(Transport.DEFAULT_MAX_FRAME_SIZE);
+        _second = new TransportImpl(Transport.DEFAULT_MAX_FRAME_SIZE);
+        _first.setDirectOutput(_firstToSecond);
+        _second.setDirectOutput(_secondToFirst);
+    }
+
+    public Transport getFirst()
+    {
+        return _first;
+    }
+
+    public Transport getSecond()
+    {
+        return _second;
+    }
+
+    /**
+     * Moves frames between the transports until neither has anything more
+     * to give the other.  Frames for a transport that has received an open
+     * but is not yet bound wait until it is.
+     *
+     * @return whether any frames were moved.
+     */
+    public boolean process()
+    {
+        boolean moved = false;
+        while (transfer(_first, _firstToSecond, _second) | transfer(_second, _secondToFirst, _first))
+        {
+            moved = true;
+        }
+        return moved;
+    }
+
+    private static boolean transfer(TransportImpl from, Queue<TransportFrame> frames, TransportImpl to)
+    {
+        // Asking for the pending output has the transport write its frames
+        int pending = from.pending();
+        boolean moved = false;
+        TransportFrame frame;
+        while ((frame = frames.peek()) != null && to.inputDirect(frame))
+        {
+            frames.remove();
+            moved = true;
+        }
+        if (pending == Transport.END_OF_STREAM)
+        {
+            // Posts the head closed event, once
+            from.pop(0);
+            if (frames.isEmpty() && to.capacity() != Transport.END_OF_STREAM)
+            {
+                to.close_tail();
+                moved = true;
+            }
+        }
+        return moved;
+    }
+}
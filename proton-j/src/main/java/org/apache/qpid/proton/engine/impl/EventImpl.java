@@ -22,6 +22,7 @@ package org.apache.qpid.proton.engine.impl;
 
 import java.util.Iterator;
 
+import org.apache.qpid.proton.engine.BaseHandler;
 import org.apache.qpid.proton.engine.Connection;
 import org.apache.qpid.proton.engine.Delivery;
 import org.apache.qpid.proton.engine.Event;
@@ -123,10 +124,18 @@ class EventImpl implements Event
         if (delegated == null) {
             return; // short circuit
         }
-        Iterator<Handler> children = delegated.children();
+        Handler handler = delegated;
         delegated = null;
-        while(children.hasNext()) {
-            dispatch(children.next());
+        if (handler instanceof BaseHandler) {
+            Handler[] children = ((BaseHandler) handler).childHandlers();
+            for (int i = 0; i < children.length; i++) {
+                dispatch(children[i]);
+            }
+        } else {
+            Iterator<Handler> children = handler.children();
+            while(children.hasNext()) {
+                dispatch(children.next());
+            }
         }
     }
 
@@ -82,6 +82,7 @@ class FrameParser implements TransportInput
     private ByteBuffer _frameBuffer;
 
     private TransportFrame _heldFrame;
+    private int _frameSize;
     private TransportException _parsingError;
 
 
@@ -413,6 +414,7 @@ class FrameParser implements TransportInput
                                 TRACE_LOGGER.log(Level.FINE, "IN: CH["+channel+"] : " + frameBody + (payload == null ? "" : "[" + payload + "]"));
                             }
                             TransportFrame frame = new TransportFrame(channel, frameBody, payload);
+                            _frameSize = size;
 
                             if(_frameHandler.isHandlingFrames())
                             {
@@ -580,6 +582,15 @@ class FrameParser implements TransportInput
         _state = State.SIZE_0;
     }
 
+    /**
+     * @return the size in bytes, header included, of the frame last parsed,
+     *         which is the frame being handled, or held until it can be.
+     */
+    int getFrameSize()
+    {
+        return _frameSize;
+    }
+
     long getFramesInput()
     {
         return _framesInput;
@@ -53,6 +53,7 @@ class FrameWriter
     private int _payloadStart;
     private int _performativeSize;
     private long _framesOutput = 0;
+    private int _lastFrameSize;
 
     FrameWriter(EncoderImpl encoder, int maxFrameSize, byte frameType,
                 Ref<ProtocolTracer> protocolTracer, TransportImpl transport)
@@ -119,6 +120,7 @@ class FrameWriter
     private void endFrame(int channel)
     {
         int frameSize = _buffer.position() - _frameStart;
+        _lastFrameSize = frameSize;
         int limit = _buffer.position();
         _buffer.position(_frameStart);
         _buffer.putInt(frameSize);
@@ -205,6 +207,14 @@ class FrameWriter
         _framesOutput += 1;
     }
 
+    /**
+     * @return the size in bytes, header included, of the frame last written.
+     */
+    int getLastFrameSize()
+    {
+        return _lastFrameSize;
+    }
+
     void writeFrame(Object frameBody)
     {
         writeFrame(0, frameBody, null, null);
@@ -20,6 +20,7 @@
  */
 package org.apache.qpid.proton.engine.impl;
 
+import org.apache.qpid.proton.engine.Handler;
 import org.apache.qpid.proton.engine.Record;
 import java.util.HashMap;
 import java.util.Map;
@@ -28,27 +29,56 @@ import java.util.Map;
 /**
  * RecordImpl
  *
+ * The {@link Handler} attached to an {@link org.apache.qpid.proton.engine.Extendable}
+ * is looked up for every event the reactor dispatches, so it is held in a
+ * dedicated field rather than in the map. The map itself is only allocated
+ * once some other value is stored.
  */
 
 public class RecordImpl implements Record
 {
 
-    private Map<Object,Object> values = new HashMap<Object,Object>();
+    private Handler handler;
+    private Map<Object,Object> values;
 
     public <T> void set(Object key, Class<T> klass, T value) {
+        if (key == Handler.class) {
+            handler = (Handler) value;
+            return;
+        }
+        if (values == null) {
+            values = new HashMap<Object,Object>();
+        }
         values.put(key, value);
     }
 
     public <T> T get(Object key, Class<T> klass) {
+        if (key == Handler.class) {
+            return klass.cast(handler);
+        }
+        if (values == null) {
+            return null;
+        }
         return klass.cast(values.get(key));
     }
 
     public void clear() {
-        values.clear();
+        handler = null;
+        if (values != null) {
+            values.clear();
+        }
     }
 
     void copy(RecordImpl src) {
-        values.putAll(src.values);
+        if (src.handler != null) {
+            handler = src.handler;
+        }
+        if (src.values != null && !src.values.isEmpty()) {
+            if (values == null) {
+                values = new HashMap<Object,Object>();
+            }
+            values.putAll(src.values);
+        }
     }
 
 }
@@ -22,6 +22,7 @@ package org.apache.qpid.proton.engine.impl;
 
 import java.util.Iterator;
 import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.DeliveryLatency;
 import org.apache.qpid.proton.engine.EndpointState;
 import org.apache.qpid.proton.engine.Sender;
 
@@ -29,6 +30,7 @@ public class SenderImpl  extends LinkImpl implements Sender
 {
     private int _offered;
     private TransportSender _transportLink;
+    private DeliveryLatency _deliveryLatency;
 
     SenderImpl(SessionImpl session, String name)
     {
@@ -110,6 +112,18 @@ public class SenderImpl  extends LinkImpl implements Sender
     }
 
 
+    @Override
+    public void setDeliveryLatency(DeliveryLatency latency)
+    {
+        _deliveryLatency = latency;
+    }
+
+    @Override
+    public DeliveryLatency getDeliveryLatency()
+    {
+        return _deliveryLatency;
+    }
+
     @Override
     public void setCredit(int credit)
     {
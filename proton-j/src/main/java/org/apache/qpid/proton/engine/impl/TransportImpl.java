@@ -23,6 +23,7 @@ import static org.apache.qpid.proton.engine.impl.ByteBufferUtils.pourBufferToArr
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.Symbol;
@@ -35,6 +36,7 @@ import org.apache.qpid.proton.amqp.transport.ConnectionError;
 import org.apache.qpid.proton.amqp.transport.DeliveryState;
 import org.apache.qpid.proton.amqp.transport.Detach;
 import org.apache.qpid.proton.amqp.transport.Disposition;
+import org.apache.qpid.proton.amqp.transport.EmptyFrame;
 import org.apache.qpid.proton.amqp.transport.End;
 import org.apache.qpid.proton.amqp.transport.ErrorCondition;
 import org.apache.qpid.proton.amqp.transport.Flow;
@@ -54,6 +56,7 @@ import org.apache.qpid.proton.engine.Ssl;
 import org.apache.qpid.proton.engine.SslDomain;
 import org.apache.qpid.proton.engine.SslPeerDetails;
 import org.apache.qpid.proton.engine.TransportException;
+import org.apache.qpid.proton.engine.TransportMetrics;
 import org.apache.qpid.proton.engine.TransportResult;
 import org.apache.qpid.proton.engine.TransportResultFactory;
 import org.apache.qpid.proton.engine.impl.ssl.SslImpl;
@@ -130,6 +133,10 @@ public class TransportImpl extends EndpointImpl
     private int _remoteIdleTimeout = 0;
     private long _bytesInput = 0;
     private long _bytesOutput = 0;
+    private TransportMetrics _metrics;
+    // Whether the deliveries written so far were held back by flow control
+    private boolean _linkCreditBlocked;
+    private boolean _sessionWindowBlocked;
     private long _localIdleDeadline = 0;
     private long _lastBytesInput = 0;
     private long _lastBytesOutput = 0;
@@ -138,6 +145,13 @@ public class TransportImpl extends EndpointImpl
     private Selectable _selectable;
     private Reactor _reactor;
 
+    // Set on a transport joined to another by a DirectTransportPair, which
+    // takes the frames written in place of the frame writer
+    private Queue<TransportFrame> _directOutput;
+    private boolean _directTailClosed;
+    private long _directFramesInput;
+    private long _directFramesOutput;
+
     /**
      * @deprecated This constructor's visibility will be reduced to the default scope in a future release.
      * Client code outside this module should use {@link org.apache.qpid.proton.engine.Transport.Factory#create()} instead
@@ -322,11 +336,17 @@ public class TransportImpl extends EndpointImpl
         processBegin();
         processAttach();
         processReceiverFlow();
+        _linkCreditBlocked = false;
+        _sessionWindowBlocked = false;
         // we process transport work twice intentionally, the first
         // pass may end up settling deliveries that the second pass
         // can clean up
         processTransportWork();
         processTransportWork();
+        if (_metrics != null && !_isCloseSent)
+        {
+            recordSessionMetrics();
+        }
         processSenderFlow();
         processDetach();
         processEnd();
@@ -342,6 +362,10 @@ public class TransportImpl extends EndpointImpl
     {
         if(_sasl == null)
         {
+            if(_directOutput != null)
+            {
+                throw new IllegalStateException("Sasl can't be used on a directly joined transport");
+            }
             if(_processingStarted)
             {
                 throw new IllegalStateException("Sasl can't be initiated after transport has started processing");
@@ -369,6 +393,10 @@ public class TransportImpl extends EndpointImpl
     {
         if (_ssl == null)
         {
+            if (_directOutput != null)
+            {
+                throw new IllegalStateException("Ssl can't be used on a directly joined transport");
+            }
             init();
             _ssl = new SslImpl(sslDomain, sslPeerDetails);
             TransportWrapper transportWrapper = _ssl.wrap(_inputProcessor, _outputProcessor);
@@ -635,9 +663,32 @@ public class TransportImpl extends EndpointImpl
                        null);
         }
 
+        if (_metrics != null && !delivery.isDone()
+            && (delivery.getDataLength() > 0 || delivery != snd.current()))
+        {
+            // Until the peer's first flow neither is known; it carries credit
+            if (!tpLink.hasCredit())
+            {
+                _linkCreditBlocked = true;
+            }
+            else if (!tpSession.hasOutgoingCredit())
+            {
+                _sessionWindowBlocked = true;
+            }
+        }
+
         return !delivery.isBuffered();
     }
 
+    private void recordSessionMetrics()
+    {
+        _metrics.recordBlocked(_linkCreditBlocked, _sessionWindowBlocked);
+        for (TransportSession session : _localSessions.values())
+        {
+            _metrics.recordUnsettled(session.getLocalChannel(), session.getUnsettledCount());
+        }
+    }
+
     private boolean processTransportWorkReceiver(DeliveryImpl delivery,
                                                  ReceiverImpl rcv)
     {
@@ -918,6 +969,10 @@ public class TransportImpl extends EndpointImpl
         final int channel = transportSession.getLocalChannel();
         _localSessions.remove(channel);
         transportSession.freeLocalChannel();
+        if (_metrics != null)
+        {
+            _metrics.recordSessionEnded(channel);
+        }
         return channel;
     }
 
@@ -1024,7 +1079,117 @@ public class TransportImpl extends EndpointImpl
     protected void writeFrame(int channel, FrameBody frameBody,
                             ByteBuffer payload, Runnable onPayloadTooLarge)
     {
-        _frameWriter.writeFrame(channel, frameBody, payload, onPayloadTooLarge);
+        int size;
+        if (_directOutput != null)
+        {
+            size = writeDirect(channel, frameBody, payload, onPayloadTooLarge);
+        }
+        else
+        {
+            _frameWriter.writeFrame(channel, frameBody, payload, onPayloadTooLarge);
+            size = _frameWriter.getLastFrameSize();
+        }
+        if (_metrics != null)
+        {
+            _metrics.recordFrameSent(channel, frameBody, size);
+        }
+    }
+
+    /**
+     * Joins this transport to another in the same JVM, queueing the frames
+     * it writes as objects rather than encoding them.
+     * @see DirectTransportPair
+     */
+    void setDirectOutput(Queue<TransportFrame> output)
+    {
+        if (_processingStarted || _sasl != null || _ssl != null)
+        {
+            throw new IllegalStateException("Transport can't be joined directly once in use or with Sasl or Ssl");
+        }
+        _directOutput = output;
+        // There is no protocol header without bytes
+        _headerWritten = true;
+    }
+
+    /**
+     * @return the size the frame is counted as, in bytes.
+     */
+    private int writeDirect(int channel, FrameBody frameBody,
+                             ByteBuffer payload, Runnable onPayloadTooLarge)
+    {
+        Binary payloadBin = null;
+        int payloadSize = 0;
+        if (payload != null)
+        {
+            payloadSize = payload.remaining();
+            // The performative takes no space, so the whole frame is payload
+            if (_remoteMaxFrameSize > 0 && payloadSize > _remoteMaxFrameSize)
+            {
+                if (onPayloadTooLarge != null)
+                {
+                    onPayloadTooLarge.run();
+                }
+                payloadSize = _remoteMaxFrameSize;
+            }
+            // A delivery's data is not written to again once it has been
+            // handed to the transport, so it is passed on by reference
+            if (payload.hasArray())
+            {
+                payloadBin = new Binary(payload.array(), payload.arrayOffset() + payload.position(), payloadSize);
+            }
+            else
+            {
+                ByteBuffer slice = payload.duplicate();
+                slice.limit(slice.position() + payloadSize);
+                payloadBin = Binary.create(slice);
+            }
+            payload.position(payload.position() + payloadSize);
+        }
+
+        TransportFrame frame = new TransportFrame(channel, frameBody == null ? new EmptyFrame() : frameBody, payloadBin);
+        log(OUTGOING, frame);
+        ProtocolTracer tracer = _protocolTracer.get();
+        if (tracer != null)
+        {
+            tracer.sentFrame(frame);
+        }
+        _directOutput.add(frame);
+        _directFramesOutput++;
+        // Counted as output, as a written frame would be, for idle timeouts
+        _bytesOutput += payloadSize + 1;
+        if (_metrics != null)
+        {
+            _metrics.recordBytesOutput(payloadSize + 1);
+        }
+        return payloadSize + 1;
+    }
+
+    /**
+     * Hands this transport a frame from the transport it is joined to.
+     * @return false if the frame could not be taken yet, because the
+     *         transport is waiting to be bound to a connection.
+     */
+    boolean inputDirect(TransportFrame frame)
+    {
+        if (!_frameHandler.isHandlingFrames())
+        {
+            return false;
+        }
+        _processingStarted = true;
+        _directFramesInput++;
+        int bytes = directFrameSize(frame);
+        _bytesInput += bytes;
+        if (_metrics != null)
+        {
+            _metrics.recordBytesInput(bytes);
+        }
+        _frameHandler.handleFrame(frame);
+        return true;
+    }
+
+    private static int directFrameSize(TransportFrame frame)
+    {
+        return (frame.getPayload() == null ? 0 : frame.getPayload().getLength()) + 1;
     }
 
     //==================================================================================================================
@@ -1329,6 +1494,12 @@ public class TransportImpl extends EndpointImpl
             tracer.receivedFrame(frame);
         }
 
+        if (_metrics != null)
+        {
+            int size = _directOutput != null ? directFrameSize(frame) : _frameParser.getFrameSize();
+            _metrics.recordFrameReceived(frame.getChannel(), frame.getBody(), size);
+        }
+
         frame.getBody().invoke(this,frame.getPayload(), frame.getChannel());
         return _closeReceived;
     }
@@ -1343,6 +1514,9 @@ public class TransportImpl extends EndpointImpl
     {
         if (postedHeadClosed && postedTailClosed) {
             put(Event.Type.TRANSPORT_CLOSED, this);
+            if (_metrics != null) {
+                _metrics.recordClosed();
+            }
         }
     }
 
@@ -1422,6 +1596,10 @@ public class TransportImpl extends EndpointImpl
     public int capacity()
     {
         init();
+        if (_directOutput != null)
+        {
+            return _directTailClosed ? END_OF_STREAM : 0;
+        }
         return _inputProcessor.capacity();
     }
 
@@ -1441,7 +1619,11 @@ public class TransportImpl extends EndpointImpl
             init();
             int beforePosition = _inputProcessor.position();
             _inputProcessor.process();
-            _bytesInput += beforePosition - _inputProcessor.position();
+            int bytes = beforePosition - _inputProcessor.position();
+            _bytesInput += bytes;
+            if (_metrics != null) {
+                _metrics.recordBytesInput(bytes);
+            }
         } catch (TransportException e) {
             _head_closed = true;
             throw e;
@@ -1452,6 +1634,16 @@ public class TransportImpl extends EndpointImpl
     public void close_tail()
     {
         init();
+        if (_directOutput != null)
+        {
+            // Without bytes there is no partial frame to abort
+            if (!_directTailClosed)
+            {
+                _directTailClosed = true;
+                _frameHandler.closed(null);
+            }
+            return;
+        }
         _inputProcessor.close_tail();
     }
 
@@ -1459,7 +1651,12 @@ public class TransportImpl extends EndpointImpl
     public int pending()
     {
         init();
-        return _outputProcessor.pending();
+        int pending = _outputProcessor.pending();
+        if (_metrics != null && pending >= 0)
+        {
+            _metrics.recordPendingOutput(pending);
+        }
+        return pending;
     }
 
     @Override
@@ -1475,6 +1672,9 @@ public class TransportImpl extends EndpointImpl
         init();
         _outputProcessor.pop(bytes);
         _bytesOutput += bytes;
+        if (_metrics != null) {
+            _metrics.recordBytesOutput(bytes);
+        }
 
         int p = pending();
         if (p < 0 && !postedHeadClosed) {
@@ -1559,13 +1759,13 @@ public class TransportImpl extends EndpointImpl
     @Override
     public long getFramesOutput()
     {
-        return _frameWriter.getFramesOutput();
+        return _frameWriter.getFramesOutput() + _directFramesOutput;
     }
 
     @Override
     public long getFramesInput()
     {
-        return _frameParser.getFramesInput();
+        return _frameParser.getFramesInput() + _directFramesInput;
     }
 
     @Override
@@ -1670,4 +1870,16 @@ public class TransportImpl extends EndpointImpl
     {
         return _emitFlowEventOnSend;
     }
+
+    @Override
+    public void setMetrics(TransportMetrics metrics)
+    {
+        _metrics = metrics;
+    }
+
+    @Override
+    public TransportMetrics getMetrics()
+    {
+        return _metrics;
+    }
 }
@@ -92,6 +92,15 @@ class TransportSession
         return _localChannel;
     }
 
+    /**
+     * @return the deliveries sent or received on the session that have yet
+     *         to be settled.
+     */
+    int getUnsettledCount()
+    {
+        return _unsettledIncomingDeliveriesById.size() + _unsettledOutgoingDeliveriesById.size();
+    }
+
     public void setLocalChannel(int localChannel)
     {
         if (!isLocalChannelSet()) {
@@ -299,21 +308,7 @@ class TransportSession
         // TODO - should this be a copy?
         if(payload != null)
         {
-            if(delivery.getDataLength() == 0)
-            {
-                delivery.setData(payload.getArray());
-                delivery.setDataLength(payload.getLength());
-                delivery.setDataOffset(payload.getArrayOffset());
-            }
-            else
-            {
-                byte[] data = new byte[delivery.getDataLength() + payload.getLength()];
-                System.arraycopy(delivery.getData(), delivery.getDataOffset(), data, 0, delivery.getDataLength());
-                System.arraycopy(payload.getArray(), payload.getArrayOffset(), data, delivery.getDataLength(), payload.getLength());
-                delivery.setData(data);
-                delivery.setDataOffset(0);
-                delivery.setDataLength(data.length);
-            }
+            delivery.appendData(payload.getArray(), payload.getArrayOffset(), payload.getLength());
             getSession().incrementIncomingBytes(payload.getLength());
         }
         delivery.updateWork();
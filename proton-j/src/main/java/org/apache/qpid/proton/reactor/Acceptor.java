@@ -36,4 +36,49 @@ public interface Acceptor extends ReactorChild, Extendable {
      */
     void close();
 
+    /**
+     * Sets the most connections that are accepted each time the listening
+     * socket is found to be readable.  Accepting several at once drains the
+     * listen backlog quickly, for example when many clients reconnect at the
+     * same time, while the limit stops one acceptor monopolising the reactor.
+     * @param maxAccepts the limit, which must be at least one.
+     */
+    void setMaxAcceptsPerEvent(int maxAccepts);
+
+    /**
+     * @return the value set using {@link #setMaxAcceptsPerEvent(int)}.
+     */
+    int getMaxAcceptsPerEvent();
+
+    /**
+     * Limits the rate at which connections are accepted.  When the limit is
+     * reached the acceptor stops reading from the listening socket, leaving
+     * further connections in the listen backlog, until the rate allows another
+     * connection.  Up to one second's worth of connections may be accepted in
+     * a burst.
+     * @param connectionsPerSecond the limit, or zero (the default) for no limit.
+     */
+    void setAcceptRate(int connectionsPerSecond);
+
+    /**
+     * @return the value set using {@link #setAcceptRate(int)}.
+     */
+    int getAcceptRate();
+
+    /**
+     * Hands the sockets accepted by this acceptor to the given reactors in
+     * turn, rather than binding them all to connections on the acceptor's own
+     * reactor.  The acceptor's reactor may be included in the list.  Sockets
+     * handed to another reactor are bound to a connection on that reactor's
+     * thread, with that reactor's own handler: the acceptor's handler is only
+     * used on the acceptor's reactor, as handlers are not generally safe to
+     * use from several threads at once.  Give each reactor a handler of its
+     * own, for example when creating it, to handle the connections it is
+     * given.  The other reactors must be running for the connections to be
+     * serviced.
+     * @param reactors the reactors to hand sockets to, or none to return to
+     *                 binding every socket on the acceptor's own reactor.
+     */
+    void distribute(Reactor... reactors);
+
 }
@@ -52,25 +52,33 @@ public class FlowController extends BaseHandler {
         link.flow(delta);
     }
 
-    @Override
-    public void onUnhandled(Event event) {
-        int window = this.window;
+    private void topup(Event event) {
         Link link = event.getLink();
-
-        switch(event.getType()) {
-        case LINK_LOCAL_OPEN:
-        case LINK_REMOTE_OPEN:
-        case LINK_FLOW:
-        case DELIVERY:
-            if (link instanceof Receiver) {
-                this.drained += link.drained();
-                if (this.drained == 0) {
-                    topup((Receiver)link, window);
-                }
+        if (link instanceof Receiver) {
+            this.drained += link.drained();
+            if (this.drained == 0) {
+                topup((Receiver)link, window);
             }
-            break;
-        default:
-            break;
         }
     }
+
+    @Override
+    public void onLinkLocalOpen(Event event) {
+        topup(event);
+    }
+
+    @Override
+    public void onLinkRemoteOpen(Event event) {
+        topup(event);
+    }
+
+    @Override
+    public void onLinkFlow(Event event) {
+        topup(event);
+    }
+
+    @Override
+    public void onDelivery(Event event) {
+        topup(event);
+    }
 }
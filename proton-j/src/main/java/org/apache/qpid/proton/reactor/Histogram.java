@@ -0,0 +1,158 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations, or other non-negative values, cheap enough to
+ * record into on every event.
+ * <p>
+ * Values are counted in buckets that split each power of two into eight, so
+ * percentiles are accurate to within 12.5%.  The count, total, minimum and
+ * maximum are exact.  Values are recorded by a single thread, normally the
+ * one running the reactor; other threads may read the histogram, but will
+ * not necessarily see the latest values, nor ones recorded at the same time
+ * as each other.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private static final int COUNT = 0;
+    private static final int TOTAL = COUNT + 1;
+    private static final int MIN = TOTAL + 1;
+    private static final int MAX = MIN + 1;
+
+    // Written only by the recording thread, which reads them back without a
+    // fence and writes them with an ordered store
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray summary = new AtomicLongArray(MAX + 1);
+
+    public Histogram() {
+        summary.lazySet(MIN, Long.MAX_VALUE);
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int)value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // The largest value counted in the given bucket
+    private static long highest(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowest = (long)(SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Records a value.  Negative values are recorded as zero.
+     * @param value the value to record.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int index = index(value);
+        counts.lazySet(index, counts.get(index) + 1);
+        summary.lazySet(COUNT, summary.get(COUNT) + 1);
+        summary.lazySet(TOTAL, summary.get(TOTAL) + value);
+        if (value < summary.get(MIN)) {
+            summary.lazySet(MIN, value);
+        }
+        if (value > summary.get(MAX)) {
+            summary.lazySet(MAX, value);
+        }
+    }
+
+    public long getCount() {
+        return summary.get(COUNT);
+    }
+
+    public long getTotal() {
+        return summary.get(TOTAL);
+    }
+
+    /**
+     * @return the smallest value recorded, or zero if none have been.
+     */
+    public long getMin() {
+        return summary.get(COUNT) == 0 ? 0 : summary.get(MIN);
+    }
+
+    public long getMax() {
+        return summary.get(MAX);
+    }
+
+    public double getMean() {
+        long count = summary.get(COUNT);
+        return count == 0 ? 0 : (double)summary.get(TOTAL) / count;
+    }
+
+    /**
+     * @param percentile the percentile, from 0 to 100.
+     * @return a value that at least the given percentage of the values
+     *         recorded do not exceed, or zero if none have been recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long rank = (long)Math.ceil(summary.get(COUNT) * percentile / 100);
+        if (rank == 0) {
+            return getMin();
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highest(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.lazySet(i, 0);
+        }
+        summary.lazySet(COUNT, 0);
+        summary.lazySet(TOTAL, 0);
+        summary.lazySet(MIN, Long.MAX_VALUE);
+        summary.lazySet(MAX, 0);
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram[count=" + getCount() + ", min=" + getMin() + ", mean=" + (long)getMean()
+            + ", p50=" + getPercentile(50) + ", p99=" + getPercentile(99) + ", max=" + getMax() + "]";
+    }
+}
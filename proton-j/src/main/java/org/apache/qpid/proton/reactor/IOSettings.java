@@ -0,0 +1,266 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import org.apache.qpid.proton.engine.Extendable;
+import org.apache.qpid.proton.engine.Record;
+
+/**
+ * Settings that control how the reactor performs I/O for a connection.
+ * <p>
+ * Settings can be attached to a {@link org.apache.qpid.proton.engine.Connection}
+ * before it is bound, to an {@link Acceptor} for the connections it accepts,
+ * or to the {@link Reactor#attachments()} of a reactor as the default for all
+ * of its connections.  For example:
+ * <pre>
+ *   IOSettings.set(reactor.attachments(), new IOSettings().setReadBudget(256 * 1024));
+ * </pre>
+ * The settings are looked up once, when the connection's socket is attached
+ * to the reactor.  An instance may be shared by several connections.
+ */
+public class IOSettings {
+
+    /** The default for {@link #setReadBudget(int)}. */
+    public static final int DEFAULT_READ_BUDGET = 64 * 1024;
+
+    /** The default for {@link #setWriteBudget(int)}. */
+    public static final int DEFAULT_WRITE_BUDGET = 64 * 1024;
+
+    /**
+     * When the reactor writes a connection's pending output to its socket.
+     */
+    public enum FlushPolicy {
+        /**
+         * Output is written as soon as the transport reports that it has
+         * some, without waiting for the reactor to finish dispatching the
+         * current batch of events.  Gives the lowest latency, at the cost
+         * of more, smaller writes.
+         */
+        IMMEDIATE,
+        /**
+         * Output is written once the reactor has dispatched all outstanding
+         * events, so that output generated by several handler callbacks is
+         * written together.  This is the default.
+         */
+        END_OF_ITERATION,
+        /**
+         * Output is held back until either the amount pending reaches the
+         * flush threshold or the oldest pending output has waited for the
+         * flush delay, much like Nagle's algorithm but applied before the
+         * data reaches the socket.
+         */
+        DELAYED
+    }
+
+    private static final IOSettings DEFAULTS = new IOSettings();
+
+    public static IOSettings get(Record r) {
+        return r.get(IOSettings.class, IOSettings.class);
+    }
+
+    public static void set(Record r, IOSettings settings) {
+        r.set(IOSettings.class, IOSettings.class, settings);
+    }
+
+    public static IOSettings get(Extendable ext) {
+        return get(ext.attachments());
+    }
+
+    public static void set(Extendable ext, IOSettings settings) {
+        set(ext.attachments(), settings);
+    }
+
+    /**
+     * @return the first settings found attached to the given records, in
+     *         order, or the default settings if none are attached.
+     */
+    public static IOSettings resolve(Record... records) {
+        for (Record r : records) {
+            if (r != null) {
+                IOSettings settings = get(r);
+                if (settings != null) {
+                    return settings;
+                }
+            }
+        }
+        return DEFAULTS;
+    }
+
+    private int readBudget = DEFAULT_READ_BUDGET;
+    private int writeBudget = DEFAULT_WRITE_BUDGET;
+    private FlushPolicy flushPolicy = FlushPolicy.END_OF_ITERATION;
+    private long flushDelay = 1000;
+    private int flushThreshold = 16 * 1024;
+    private Boolean tcpNoDelay;
+    private Integer sendBufferSize;
+    private Integer receiveBufferSize;
+
+    /**
+     * Sets how many bytes the reactor reads from the connection's socket each
+     * time it is found to be readable.  The reactor keeps reading until the
+     * socket has no more data, the transport has no more capacity, or this
+     * many bytes have been read, after which other connections are serviced.
+     * @param bytes the read budget, which must be positive.
+     * @return this instance.
+     */
+    public IOSettings setReadBudget(int bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Read budget must be positive");
+        }
+        readBudget = bytes;
+        return this;
+    }
+
+    public int getReadBudget() {
+        return readBudget;
+    }
+
+    /**
+     * Sets how many bytes the reactor writes to the connection's socket each
+     * time it is found to be writable.  The reactor keeps writing until the
+     * socket accepts no more data, the transport has no more output, or this
+     * many bytes have been written.
+     * @param bytes the write budget, which must be positive.
+     * @return this instance.
+     */
+    public IOSettings setWriteBudget(int bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Write budget must be positive");
+        }
+        writeBudget = bytes;
+        return this;
+    }
+
+    public int getWriteBudget() {
+        return writeBudget;
+    }
+
+    /**
+     * Sets when the reactor writes pending output to the connection's
+     * socket.  The default is {@link FlushPolicy#END_OF_ITERATION}.
+     * @param policy the flush policy.
+     * @return this instance.
+     */
+    public IOSettings setFlushPolicy(FlushPolicy policy) {
+        if (policy == null) {
+            throw new NullPointerException("policy");
+        }
+        flushPolicy = policy;
+        return this;
+    }
+
+    public FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    /**
+     * Sets the longest time that output is held back under the
+     * {@link FlushPolicy#DELAYED} policy.  The reactor's clock ticks in
+     * milliseconds, so the delay is rounded up to a whole millisecond.
+     * @param micros the flush delay in microseconds, which must not be negative.
+     * @return this instance.
+     */
+    public IOSettings setFlushDelay(long micros) {
+        if (micros < 0) {
+            throw new IllegalArgumentException("Flush delay must not be negative");
+        }
+        flushDelay = micros;
+        return this;
+    }
+
+    public long getFlushDelay() {
+        return flushDelay;
+    }
+
+    /**
+     * Sets how many bytes of output cause a flush under the
+     * {@link FlushPolicy#DELAYED} policy, without waiting for the flush delay.
+     * @param bytes the flush threshold, which must be positive.
+     * @return this instance.
+     */
+    public IOSettings setFlushThreshold(int bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Flush threshold must be positive");
+        }
+        flushThreshold = bytes;
+        return this;
+    }
+
+    public int getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    /**
+     * Sets the <code>TCP_NODELAY</code> option of the connection's socket.
+     * It is ignored for Unix domain sockets, which have no such option.
+     * @param tcpNoDelay the option value, or <code>null</code> to leave the
+     *                   platform default.
+     * @return this instance.
+     */
+    public IOSettings setTcpNoDelay(Boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+        return this;
+    }
+
+    public Boolean getTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * Sets the <code>SO_SNDBUF</code> option of the connection's socket.
+     * @param bytes the option value, or <code>null</code> to leave the
+     *              platform default.
+     * @return this instance.
+     */
+    public IOSettings setSendBufferSize(Integer bytes) {
+        if (bytes != null && bytes <= 0) {
+            throw new IllegalArgumentException("Send buffer size must be positive");
+        }
+        sendBufferSize = bytes;
+        return this;
+    }
+
+    public Integer getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    /**
+     * Sets the <code>SO_RCVBUF</code> option of the connection's socket.
+     * For accepted connections the option is applied once the socket has
+     * been accepted, so the platform may not advertise a TCP window larger
+     * than 64 KiB to the peer.
+     * @param bytes the option value, or <code>null</code> to leave the
+     *              platform default.
+     * @return this instance.
+     */
+    public IOSettings setReceiveBufferSize(Integer bytes) {
+        if (bytes != null && bytes <= 0) {
+            throw new IllegalArgumentException("Receive buffer size must be positive");
+        }
+        receiveBufferSize = bytes;
+        return this;
+    }
+
+    public Integer getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Session;
+
+/**
+ * A snapshot of an event, taken by an {@link Offloader} on the thread running
+ * the reactor, for an {@link OffloadedHandler} to handle on another thread.
+ * <p>
+ * The engine objects returned by this class are not thread safe.  They may be
+ * passed around, but must only be used in tasks given to
+ * {@link #execute(Runnable)}, which runs them on the reactor's thread.
+ */
+public final class OffloadedEvent {
+
+    private final Event.Type type;
+    private final Reactor reactor;
+    private final Connection connection;
+    private final Session session;
+    private final Link link;
+    private final Delivery delivery;
+    private final byte[] payload;
+
+    OffloadedEvent(Event event, byte[] payload) {
+        type = event.getType();
+        reactor = event.getReactor();
+        connection = event.getConnection();
+        session = event.getSession();
+        link = event.getLink();
+        delivery = event.getDelivery();
+        this.payload = payload;
+    }
+
+    public Event.Type getType() {
+        return type;
+    }
+
+    public Reactor getReactor() {
+        return reactor;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public Link getLink() {
+        return link;
+    }
+
+    public Delivery getDelivery() {
+        return delivery;
+    }
+
+    /**
+     * @return for a {@link Event.Type#DELIVERY} event that completed an
+     *         incoming delivery, the delivery's bytes, which the offloader has
+     *         already read and advanced past.  Otherwise <code>null</code>.
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Runs a task on the thread running the reactor, after any previously
+     * given to the same reactor.
+     * @param task the task to run.
+     */
+    public void execute(Runnable task) {
+        reactor.invoke(task);
+    }
+
+    /**
+     * Updates the state of the event's delivery and settles it, on the thread
+     * running the reactor.
+     * @param state the state to settle the delivery with, or <code>null</code>
+     *              to leave its state alone.
+     */
+    public void settle(final DeliveryState state) {
+        final Delivery target = delivery;
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                if (state != null) {
+                    target.disposition(state);
+                }
+                target.settle();
+            }
+        });
+    }
+
+    /**
+     * Grants credit on the event's link, which must be a {@link Receiver},
+     * on the thread running the reactor.
+     * @param credit the credit to grant.
+     */
+    public void flow(final int credit) {
+        final Receiver target = (Receiver)link;
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                target.flow(credit);
+            }
+        });
+    }
+}
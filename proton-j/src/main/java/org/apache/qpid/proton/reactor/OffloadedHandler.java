@@ -0,0 +1,41 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+/**
+ * Handles events away from the thread running the reactor.  Instances are
+ * run by an {@link Offloader}.
+ */
+public interface OffloadedHandler {
+
+    /**
+     * Handles an event.  Called on a thread of the offloader's executor,
+     * and never for more than one event of the same connection at a time.
+     * The engine objects referred to by the event must only be used in tasks
+     * passed to {@link OffloadedEvent#execute(Runnable)}.
+     * @param event a snapshot of the event.
+     * @throws Exception if the event can't be handled, in which case the
+     *         exception is re-thrown by the reactor, attached to a
+     *         {@link org.apache.qpid.proton.engine.HandlerException}.
+     */
+    void handle(OffloadedEvent event) throws Exception;
+}
@@ -0,0 +1,150 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import java.util.EnumSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.HandlerException;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+
+/**
+ * A handler that passes events to an {@link OffloadedHandler} running on an
+ * {@link Executor}, so that slow work, such as a database lookup for each
+ * delivery received, does not hold up the reactor and every other connection
+ * it serves.
+ * <p>
+ * Each event is snapshotted as an {@link OffloadedEvent}.  Incoming
+ * deliveries are read, and advanced past, on the reactor's thread, so that
+ * the offloaded handler gets their bytes.  Changes to the engine, such as
+ * settling a delivery or granting credit, are handed back to the reactor's
+ * thread with {@link OffloadedEvent#execute(Runnable)}.
+ * <p>
+ * Events of the same connection are handled one at a time, in the order they
+ * occurred, whatever the executor; events of different connections may be
+ * handled concurrently.  Events with no connection, such as those of the
+ * reactor itself, are likewise handled in order.
+ */
+public class Offloader extends BaseHandler {
+
+    // Runs the events of one connection in order, on the executor
+    private final class Serial implements Runnable {
+        private final Queue<OffloadedEvent> events = new ConcurrentLinkedQueue<OffloadedEvent>();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private void add(OffloadedEvent event) {
+            events.add(event);
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                OffloadedEvent event = events.poll();
+                try {
+                    handler.handle(event);
+                } catch (final Throwable t) {
+                    event.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            throw new HandlerException(Offloader.this, t);
+                        }
+                    });
+                }
+            } while (pending.decrementAndGet() != 0);
+        }
+    }
+
+    private final Executor executor;
+    private final OffloadedHandler handler;
+    private final Set<Event.Type> types;
+    private final Serial unattached = new Serial();
+
+    /**
+     * @param executor the executor to handle events on.
+     * @param handler the handler for the events.
+     * @param types the types of event to pass on, or none to pass on every
+     *              event.
+     */
+    public Offloader(Executor executor, OffloadedHandler handler, Event.Type... types) {
+        if (executor == null || handler == null) {
+            throw new NullPointerException();
+        }
+        this.executor = executor;
+        this.handler = handler;
+        this.types = types.length == 0 ? EnumSet.allOf(Event.Type.class) : EnumSet.of(types[0], types);
+    }
+
+    @Override
+    public void onUnhandled(Event event) {
+        if (!types.contains(event.getType())) {
+            return;
+        }
+        serial(event.getConnection()).add(new OffloadedEvent(event, payload(event)));
+    }
+
+    private Serial serial(Connection connection) {
+        if (connection == null) {
+            return unattached;
+        }
+        Serial serial = connection.attachments().get(this, Serial.class);
+        if (serial == null) {
+            serial = new Serial();
+            connection.attachments().set(this, Serial.class, serial);
+        }
+        return serial;
+    }
+
+    // Reads a completed incoming delivery, which can't be done off the
+    // reactor's thread
+    private static byte[] payload(Event event) {
+        if (event.getType() != Event.Type.DELIVERY) {
+            return null;
+        }
+        Delivery delivery = event.getDelivery();
+        Link link = delivery.getLink();
+        if (!(link instanceof Receiver) || !delivery.isReadable() || delivery.isPartial()
+                || link.current() != delivery) {
+            return null;
+        }
+        byte[] payload = new byte[delivery.pending()];
+        int length = ((Receiver)link).recv(payload, 0, payload.length);
+        link.advance();
+        if (length != payload.length) {
+            byte[] trimmed = new byte[Math.max(length, 0)];
+            System.arraycopy(payload, 0, trimmed, 0, trimmed.length);
+            payload = trimmed;
+        }
+        return payload;
+    }
+}
@@ -42,7 +42,8 @@ import org.apache.qpid.proton.reactor.impl.ReactorImpl;
  * implement methods for.
  * <p>
  * This class is not thread safe (with the exception of the {@link #wakeup()}
- * method) and should only be used by a single thread at any given time.
+ * and {@link #invoke(Runnable)} methods) and should only be used by a single
+ * thread at any given time.
  */
 public interface Reactor {
 
@@ -56,8 +57,10 @@ public interface Reactor {
     /**
      * Updates the last time that the reactor's state has changed, potentially
      * resulting in events being generated.
-     * @return the current time in milliseconds
-     *         {@link System#currentTimeMillis()}.
+     * @return the current time in milliseconds.  This is taken from a
+     *         monotonic clock, aligned with {@link System#currentTimeMillis()}
+     *         when the reactor classes were loaded, so it is not affected by
+     *         changes to the system clock.
      */
     long mark();
 
@@ -85,6 +88,42 @@ public interface Reactor {
      */
     long getTimeout();
 
+    /**
+     * Sets the period for which the reactor keeps polling its selectables,
+     * without blocking, after one of them was last found to be ready.  Only
+     * once nothing has been ready for this long does the reactor block in
+     * {@link Selector#select(long)}.  This keeps a CPU core busy while there is
+     * traffic but avoids the latency of the thread being descheduled and
+     * woken up again.
+     *
+     * @param period the busy-poll period in microseconds, or zero (the
+     *               default) to always block when there is nothing to do.
+     */
+    void setBusyPollPeriod(long period);
+
+    /**
+     * @return the value previously set using {@link #setBusyPollPeriod(long)}
+     *         or 0 if no previous value has been set.
+     */
+    long getBusyPollPeriod();
+
+    /**
+     * Sets the metrics that the reactor records into, while it runs, how long
+     * its loop iterations take, how long it waits for I/O, how many events it
+     * processes and how long its handlers take.  Recording costs a few reads
+     * of the system's nanosecond clock per event.
+     *
+     * @param metrics the metrics to record into, or <code>null</code> (the
+     *                default) to record nothing.
+     */
+    void setMetrics(ReactorMetrics metrics);
+
+    /**
+     * @return the value previously set using {@link #setMetrics(ReactorMetrics)}
+     *         or <code>null</code> if no previous value has been set.
+     */
+    ReactorMetrics getMetrics();
+
     /**
      * @return the global handler for this reactor.  Every event the reactor
      *         sees is dispatched to the global handler.  To receive every
@@ -147,6 +186,24 @@ public interface Reactor {
      */
     Collector collector();
 
+    /**
+     * Restricts the events recorded by this reactor to those that its handlers
+     * can act upon, as determined by {@link BaseHandler#interest(Handler)} for
+     * the global handler, the reactor's handler and the supplied handlers.
+     * Events of any other core type are discarded before they are queued.
+     * Repeated {@link Type#LINK_FLOW}, {@link Type#DELIVERY},
+     * {@link Type#TRANSPORT} and {@link Type#SELECTABLE_UPDATED} events for the
+     * same context are also coalesced while they are waiting to be dispatched.
+     * <p>
+     * Handlers that are, or will be, associated with connections, sessions,
+     * links, acceptors or tasks must be passed to this method, otherwise they
+     * may not see the events they expect.  The events the reactor itself relies
+     * on are always recorded.  Call this method again after changing handlers.
+     *
+     * @param handlers the handlers attached to children of this reactor.
+     */
+    void restrictEvents(Handler... handlers);
+
     /**
      * Creates a new <code>Selectable</code> as a child of this reactor.
      * @return the newly created <code>Selectable</code>.
@@ -194,11 +251,22 @@ public interface Reactor {
 
     /**
      * Wakes up the thread (if any) blocked in the {@link #process()} method.
-     * This is the only method of this class that is thread safe, in that it
-     * can be used at the same time as another thread is using the reactor.
+     * This method, and {@link #invoke(Runnable)}, are the only methods of this
+     * class that are thread safe, in that they can be used at the same time as
+     * another thread is using the reactor.
      */
     void wakeup();
 
+    /**
+     * Queues a task to be run by the thread running the reactor, and wakes
+     * that thread up.  Tasks are run in the order they were queued, while the
+     * reactor is processing I/O, and may use the reactor and the engine
+     * objects it manages.  This method is thread safe; tasks queued once the
+     * reactor has stopped are never run.
+     * @param task the task to run.
+     */
+    void invoke(Runnable task);
+
     /**
      * Starts the reactor.  This method should be invoked before the first call
      * to {@link #process()}.
@@ -245,7 +313,10 @@ public interface Reactor {
      *                connection.  Typically the host and port to connect to
      *                would be supplied to the connection object inside the
      *                logic which handles the {@link Type#CONNECTION_INIT}
-     *                event.
+     *                event, by setting its host name to
+     *                <code>host:port</code>, or to <code>unix:</code>
+     *                followed by a path to connect to a Unix domain socket
+     *                (on Java 16 and later).
      * @return the newly created connection object.
      */
     Connection connection(Handler handler);
@@ -264,8 +335,11 @@ public interface Reactor {
 
     /**
      * Creates a new acceptor.  This acceptor listens for in-bound connections.
-     * @param host the host name or address of the NIC to listen on.
-     * @param port the port number to listen on.
+     * @param host the host name or address of the NIC to listen on, or
+     *             <code>unix:</code> followed by the path of a Unix domain
+     *             socket to listen on (on Java 16 and later).
+     * @param port the port number to listen on, ignored for a Unix domain
+     *             socket.
      * @param handler if non-<code>null</code> this handler is registered with
      *                each new connection accepted by the acceptor.
      * @return the newly created acceptor object.
@@ -274,6 +348,24 @@ public interface Reactor {
     Acceptor acceptor(String host, int port, Handler handler)
             throws IOException;
 
+    /**
+     * Creates a new acceptor.  This acceptor listens for in-bound connections.
+     * @param host the host name or address of the NIC to listen on, or
+     *             <code>unix:</code> followed by the path of a Unix domain
+     *             socket to listen on (on Java 16 and later).
+     * @param port the port number to listen on, ignored for a Unix domain
+     *             socket.
+     * @param handler if non-<code>null</code> this handler is registered with
+     *                each new connection accepted by the acceptor.
+     * @param backlog the maximum number of pending connections the operating
+     *                system should queue for the acceptor.  A value of zero or
+     *                less selects the platform default.
+     * @return the newly created acceptor object.
+     * @throws IOException
+     */
+    Acceptor acceptor(String host, int port, Handler handler, int backlog)
+            throws IOException;
+
     /**
      * Frees any resources (such as sockets and selectors) held by the reactor
      * or its children.
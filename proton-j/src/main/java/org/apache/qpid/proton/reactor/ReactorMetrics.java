@@ -0,0 +1,336 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.EventType;
+import org.apache.qpid.proton.engine.Handler;
+
+/**
+ * Measurements of what a reactor spends its time on.  Set on a reactor with
+ * {@link Reactor#setMetrics(ReactorMetrics)}, the reactor records:
+ * <ul>
+ *   <li>how long each call to {@link Reactor#process()}, one iteration of the
+ *       reactor's loop, takes;</li>
+ *   <li>how long each iteration waits for I/O in its selector;</li>
+ *   <li>how many events of each type it processes; and</li>
+ *   <li>how long each handler the reactor dispatches events to takes, by the
+ *       handler's class, not counting time spent waiting for I/O.  Events
+ *       passed on to child handlers are counted against the handler they
+ *       were dispatched to.</li>
+ * </ul>
+ * Handlers that take longer than the {@link #setSlowHandlerThreshold(long, TimeUnit)
+ * slow handler threshold} are logged to the <code>proton.reactor</code>
+ * logger.
+ * <p>
+ * The reactor records into the metrics on its own thread.  They may be read
+ * from other threads, including through JMX, but may then be slightly out of
+ * date.  Other threads reset them with {@link #requestReset()}, which the
+ * reactor carries out at the end of its current iteration.
+ */
+public class ReactorMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger("proton.reactor");
+
+    // The counts of events by type are followed by these
+    private static final int OTHER_EVENTS = Event.Type.values().length;
+    private static final int SLOW_HANDLERS = OTHER_EVENTS + 1;
+    private static final int COUNTERS = SLOW_HANDLERS + 1;
+
+    private final Histogram iterationTimes = new Histogram();
+    private final Histogram selectWaits = new Histogram();
+    // Each count is written only by the reactor's thread, which reads it back
+    // without a fence and writes it with an ordered store
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTERS);
+    private final ConcurrentMap<Class<?>, Histogram> handlerTimes = new ConcurrentHashMap<Class<?>, Histogram>();
+    private volatile long slowHandlerThreshold;
+    // Time spent waiting for I/O since the last handler time was recorded,
+    // which is not counted against the handler
+    private long unaccountedSelectWait;
+    private volatile boolean resetRequested;
+
+    private void increment(int index) {
+        counters.lazySet(index, counters.get(index) + 1);
+    }
+
+    /**
+     * Sets how long a handler may take over an event before it is logged as
+     * slow.  The threshold is off by default.
+     * @param threshold the threshold, or zero to turn it off.
+     * @param unit the unit of the threshold.
+     */
+    public void setSlowHandlerThreshold(long threshold, TimeUnit unit) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative");
+        }
+        slowHandlerThreshold = unit.toNanos(threshold);
+    }
+
+    /**
+     * @return the slow handler threshold in nanoseconds, or zero if it is off.
+     */
+    public long getSlowHandlerThreshold() {
+        return slowHandlerThreshold;
+    }
+
+    /**
+     * Records the duration of one iteration of the reactor's loop.
+     * @param nanos the duration in nanoseconds.
+     */
+    public void recordIteration(long nanos) {
+        iterationTimes.record(nanos);
+        if (resetRequested) {
+            resetRequested = false;
+            reset();
+        }
+    }
+
+    /**
+     * Records how long the reactor waited for I/O.
+     * @param nanos the wait in nanoseconds.
+     */
+    public void recordSelectWait(long nanos) {
+        selectWaits.record(nanos);
+        unaccountedSelectWait += nanos;
+    }
+
+    /**
+     * Records that a handler handled an event.
+     * @param handler the handler.
+     * @param type the type of the event.
+     * @param nanos how long the handler took, in nanoseconds, including any
+     *              time spent waiting for I/O that has been recorded with
+     *              {@link #recordSelectWait(long)} since.
+     */
+    public void recordHandler(Handler handler, EventType type, long nanos) {
+        nanos -= unaccountedSelectWait;
+        unaccountedSelectWait = 0;
+        Class<?> handlerClass = handler.getClass();
+        Histogram histogram = handlerTimes.get(handlerClass);
+        if (histogram == null) {
+            histogram = new Histogram();
+            handlerTimes.put(handlerClass, histogram);
+        }
+        histogram.record(nanos);
+        if (slowHandlerThreshold > 0 && nanos > slowHandlerThreshold) {
+            increment(SLOW_HANDLERS);
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.warning("Slow handler: " + handlerClass.getName() + " took "
+                    + TimeUnit.NANOSECONDS.toMicros(nanos) + "us to handle " + type);
+            }
+        }
+    }
+
+    /**
+     * Records that an event was processed.
+     * @param type the type of the event.
+     */
+    public void recordEvent(EventType type) {
+        if (type instanceof Event.Type) {
+            increment(((Event.Type)type).ordinal());
+        } else {
+            increment(OTHER_EVENTS);
+        }
+    }
+
+    /**
+     * @return the durations of the reactor's loop iterations, in nanoseconds.
+     */
+    public Histogram getIterationTimes() {
+        return iterationTimes;
+    }
+
+    /**
+     * @return how long the reactor waited for I/O in each iteration, in
+     *         nanoseconds.
+     */
+    public Histogram getSelectWaits() {
+        return selectWaits;
+    }
+
+    public long getEventCount(Event.Type type) {
+        return counters.get(type.ordinal());
+    }
+
+    /**
+     * @return the number of events processed whose type is not an
+     *         {@link Event.Type}.
+     */
+    public long getOtherEventCount() {
+        return counters.get(OTHER_EVENTS);
+    }
+
+    /**
+     * @return the counts of the events processed, by type, leaving out types
+     *         with no events.
+     */
+    public Map<Event.Type, Long> getEventCounts() {
+        Map<Event.Type, Long> counts = new EnumMap<Event.Type, Long>(Event.Type.class);
+        for (Event.Type type : Event.Type.values()) {
+            long count = counters.get(type.ordinal());
+            if (count > 0) {
+                counts.put(type, count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the time taken to handle events, in nanoseconds, by handler class.
+     */
+    public Map<Class<?>, Histogram> getHandlerTimes() {
+        return Collections.unmodifiableMap(handlerTimes);
+    }
+
+    /**
+     * @return the number of times a handler has exceeded the slow handler
+     *         threshold.
+     */
+    public long getSlowHandlerCount() {
+        return counters.get(SLOW_HANDLERS);
+    }
+
+    /**
+     * Clears the metrics.  This must be called on the thread recording into
+     * them, or while nothing is; other threads use {@link #requestReset()}.
+     */
+    public void reset() {
+        iterationTimes.reset();
+        selectWaits.reset();
+        for (int i = 0; i < COUNTERS; i++) {
+            counters.lazySet(i, 0);
+        }
+        handlerTimes.clear();
+        unaccountedSelectWait = 0;
+    }
+
+    /**
+     * Asks for the metrics to be cleared the next time an iteration is
+     * recorded, on the reactor's thread, so that they are not cleared while
+     * the reactor is recording into them.  This method is thread safe.
+     */
+    public void requestReset() {
+        resetRequested = true;
+    }
+
+    /**
+     * Registers the metrics with an MBean server, as a {@link ReactorMetricsMXBean}.
+     * @param server the server, for example the platform MBean server.
+     * @param name the name to register the metrics under.
+     */
+    public void registerMBean(MBeanServer server, ObjectName name)
+            throws InstanceAlreadyExistsException, MBeanRegistrationException, NotCompliantMBeanException {
+        server.registerMBean(new StandardMBean(new MXBean(), ReactorMetricsMXBean.class, true), name);
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private class MXBean implements ReactorMetricsMXBean {
+
+        @Override
+        public long getIterationCount() {
+            return iterationTimes.getCount();
+        }
+
+        @Override
+        public double getIterationTimeMean() {
+            return iterationTimes.getMean() / 1000;
+        }
+
+        @Override
+        public long getIterationTimeP99() {
+            return micros(iterationTimes.getPercentile(99));
+        }
+
+        @Override
+        public long getIterationTimeMax() {
+            return micros(iterationTimes.getMax());
+        }
+
+        @Override
+        public double getSelectWaitMean() {
+            return selectWaits.getMean() / 1000;
+        }
+
+        @Override
+        public long getSelectWaitMax() {
+            return micros(selectWaits.getMax());
+        }
+
+        @Override
+        public long getSlowHandlerCount() {
+            return ReactorMetrics.this.getSlowHandlerCount();
+        }
+
+        @Override
+        public Map<String, Long> getEventCounts() {
+            Map<String, Long> counts = new TreeMap<String, Long>();
+            for (Map.Entry<Event.Type, Long> entry : ReactorMetrics.this.getEventCounts().entrySet()) {
+                counts.put(entry.getKey().name(), entry.getValue());
+            }
+            return counts;
+        }
+
+        @Override
+        public Map<String, Double> getHandlerTimeMeans() {
+            Map<String, Double> means = new TreeMap<String, Double>();
+            for (Map.Entry<Class<?>, Histogram> entry : handlerTimes.entrySet()) {
+                means.put(entry.getKey().getName(), entry.getValue().getMean() / 1000);
+            }
+            return means;
+        }
+
+        @Override
+        public Map<String, Long> getHandlerTimeP99s() {
+            Map<String, Long> p99s = new TreeMap<String, Long>();
+            for (Map.Entry<Class<?>, Histogram> entry : handlerTimes.entrySet()) {
+                p99s.put(entry.getKey().getName(), micros(entry.getValue().getPercentile(99)));
+            }
+            return p99s;
+        }
+
+        @Override
+        public void reset() {
+            requestReset();
+        }
+    }
+}
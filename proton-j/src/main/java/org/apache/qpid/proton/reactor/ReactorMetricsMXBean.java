@@ -0,0 +1,67 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link ReactorMetrics}, registered with
+ * {@link ReactorMetrics#registerMBean(javax.management.MBeanServer, javax.management.ObjectName)}.
+ * Times are in microseconds.
+ */
+public interface ReactorMetricsMXBean {
+
+    long getIterationCount();
+
+    double getIterationTimeMean();
+
+    long getIterationTimeP99();
+
+    long getIterationTimeMax();
+
+    double getSelectWaitMean();
+
+    long getSelectWaitMax();
+
+    long getSlowHandlerCount();
+
+    /**
+     * @return the number of events processed, by event type.
+     */
+    Map<String, Long> getEventCounts();
+
+    /**
+     * @return the mean time taken to handle an event, by handler class.
+     */
+    Map<String, Double> getHandlerTimeMeans();
+
+    /**
+     * @return the 99th percentile of the time taken to handle an event, by
+     *         handler class.
+     */
+    Map<String, Long> getHandlerTimeP99s();
+
+    /**
+     * Clears the metrics once the reactor finishes its current iteration.
+     */
+    void reset();
+}
@@ -74,7 +74,7 @@ public interface Selectable extends ReactorChild, Extendable {
      * @return a deadline after which this selectable can expect to receive
      *         a notification (via the {@link #expired()} method that indicates
      *         that the deadline has past.  The deadline is expressed in the
-     *         same format as {@link System#currentTimeMillis()}.  Returning
+     *         same format as {@link Reactor#now()}.  Returning
      *         a deadline of zero (or a negative number) indicates that the
      *         selectable does not wish to be notified of expiry.
      */
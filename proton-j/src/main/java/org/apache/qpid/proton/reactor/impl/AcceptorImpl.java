@@ -25,10 +25,13 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.engine.BaseHandler;
 import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.engine.Handler;
 import org.apache.qpid.proton.engine.Record;
 import org.apache.qpid.proton.engine.Sasl;
@@ -36,38 +39,65 @@ import org.apache.qpid.proton.engine.Sasl.SaslOutcome;
 import org.apache.qpid.proton.engine.Transport;
 import org.apache.qpid.proton.engine.impl.RecordImpl;
 import org.apache.qpid.proton.reactor.Acceptor;
+import org.apache.qpid.proton.reactor.IOSettings;
 import org.apache.qpid.proton.reactor.Reactor;
 import org.apache.qpid.proton.reactor.Selectable;
 import org.apache.qpid.proton.reactor.Selectable.Callback;
 
 public class AcceptorImpl implements Acceptor {
 
+    /** The default for {@link #setMaxAcceptsPerEvent(int)}. */
+    public static final int DEFAULT_MAX_ACCEPTS_PER_EVENT = 64;
+
     private Record attachments = new RecordImpl();
     private final SelectableImpl sel;
+    private int maxAccepts = DEFAULT_MAX_ACCEPTS_PER_EVENT;
+    private int acceptRate;
+    private double tokens;
+    private long refilled;
+    private boolean paused;
+    private ReactorImpl[] targets;
+    private int nextTarget;
 
+    // pni_acceptor_readable from acceptor.c, extended to accept several
+    // sockets for a single readable event.
     private class AcceptorReadable implements Callback {
         @Override
         public void run(Selectable selectable) {
             Reactor reactor = selectable.getReactor();
+            int allowed = Math.min(maxAccepts, allowance(reactor.now()));
             try {
-                SocketChannel socketChannel = ((ServerSocketChannel)selectable.getChannel()).accept();
-                if (socketChannel == null) {
-                    throw new ReactorInternalException("Selectable readable, but no socket to accept");
-                }
-                Handler handler = BaseHandler.getHandler(AcceptorImpl.this);
-                if (handler == null) {
-                    handler = reactor.getHandler();
+                for (int accepted = 0; accepted < allowed; accepted++) {
+                    SocketChannel socketChannel = ((ServerSocketChannel)selectable.getChannel()).accept();
+                    if (socketChannel == null) {
+                        if (accepted == 0) {
+                            throw new ReactorInternalException("Selectable readable, but no socket to accept");
+                        }
+                        return;
+                    }
+                    if (acceptRate > 0) {
+                        tokens -= 1;
+                    }
+                    dispatch(reactor, socketChannel);
                 }
-                Connection conn = reactor.connection(handler);
-                Transport trans = Proton.transport();
-                Sasl sasl = trans.sasl();
-                sasl.server();
-                sasl.setMechanisms("ANONYMOUS");
-                sasl.done(SaslOutcome.PN_SASL_OK);
-                trans.bind(conn);
-                IOHandler.selectableTransport(reactor, socketChannel.socket(), trans);
             } catch(IOException ioException) {
                 sel.error();
+                return;
+            }
+            if (acceptRate > 0 && tokens < 1) {
+                pause(reactor);
+            }
+        }
+    }
+
+    // Re-enables accepting once the accept rate allows another connection.
+    private class AcceptorResume extends BaseHandler {
+        @Override
+        public void onTimerTask(Event event) {
+            paused = false;
+            if (!sel.isTerminal()) {
+                sel.setReading(true);
+                event.getReactor().update(sel);
             }
         }
     }
@@ -77,7 +107,7 @@ public class AcceptorImpl implements Acceptor {
         public void run(Selectable selectable) {
             try {
                 if (selectable.getChannel() != null) {
-                    selectable.getChannel().close();
+                    closeChannel((ServerSocketChannel)selectable.getChannel());
                 }
             } catch(IOException ioException) {
                 // Ignore - as we can't make the channel any more closed...
@@ -86,8 +116,26 @@ public class AcceptorImpl implements Acceptor {
     }
 
     protected AcceptorImpl(Reactor reactor, String host, int port, Handler handler) throws IOException {
-        ServerSocketChannel ssc = ((ReactorImpl)reactor).getIO().serverSocketChannel();
-        ssc.bind(new InetSocketAddress(host, port));
+        this(reactor, host, port, handler, 0);
+    }
+
+    protected AcceptorImpl(Reactor reactor, String host, int port, Handler handler, int backlog) throws IOException {
+        IO io = ((ReactorImpl)reactor).getIO();
+        ServerSocketChannel ssc;
+        if (UnixDomainSockets.isUnixHost(host)) {
+            // The port is ignored.  The socket file is removed when the
+            // acceptor is closed, but a stale one must be removed by hand.
+            ssc = io.serverSocketChannel(UnixDomainSockets.family());
+            try {
+                ssc.bind(UnixDomainSockets.address(UnixDomainSockets.path(host)), backlog);
+            } catch(IOException ioException) {
+                ssc.close();
+                throw ioException;
+            }
+        } else {
+            ssc = io.serverSocketChannel();
+            ssc.bind(new InetSocketAddress(host, port), backlog);
+        }
         sel = ((ReactorImpl)reactor).selectable(this);
         sel.setChannel(ssc);
         sel.onReadable(new AcceptorReadable());
@@ -98,12 +146,110 @@ public class AcceptorImpl implements Acceptor {
         reactor.update(sel);
     }
 
+    private int allowance(long now) {
+        if (acceptRate <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        tokens = Math.min(acceptRate, tokens + (now - refilled) * acceptRate / 1000.0);
+        refilled = now;
+        return (int) tokens;
+    }
+
+    private void pause(Reactor reactor) {
+        if (paused) {
+            return;
+        }
+        paused = true;
+        sel.setReading(false);
+        reactor.update(sel);
+        int delay = (int) Math.ceil((1 - tokens) * 1000 / acceptRate);
+        reactor.schedule(Math.max(1, delay), new AcceptorResume());
+    }
+
+    private void dispatch(Reactor reactor, SocketChannel socketChannel) {
+        Handler handler = BaseHandler.getHandler(this);
+        IOSettings settings = IOSettings.get(this);
+        if (targets == null) {
+            accepted((ReactorImpl)reactor, socketChannel, handler, settings);
+        } else {
+            ReactorImpl target = targets[nextTarget];
+            nextTarget = (nextTarget + 1) % targets.length;
+            if (target == reactor) {
+                accepted(target, socketChannel, handler, settings);
+            } else {
+                // The target's own handler, as it runs on the target's thread
+                target.adopt(socketChannel, null, settings);
+            }
+        }
+    }
+
+    // Binds an accepted socket to a new server connection on the reactor.
+    // Must be called on the thread running the reactor.  If the acceptor had
+    // no I/O settings attached, those of the reactor (if any) are used.
+    static void accepted(ReactorImpl reactor, SocketChannel socketChannel, Handler handler, IOSettings settings) {
+        if (handler == null) {
+            handler = reactor.getHandler();
+        }
+        if (settings == null) {
+            settings = IOSettings.resolve(reactor.attachments());
+        }
+        Connection conn = reactor.connection(handler);
+        Transport trans = Proton.transport();
+        Sasl sasl = trans.sasl();
+        sasl.server();
+        sasl.setMechanisms("ANONYMOUS");
+        sasl.done(SaslOutcome.PN_SASL_OK);
+        trans.bind(conn);
+        IOHandler.selectableTransport(reactor, socketChannel, trans, settings);
+    }
+
+    @Override
+    public void setMaxAcceptsPerEvent(int maxAccepts) {
+        if (maxAccepts < 1) {
+            throw new IllegalArgumentException("Must accept at least one connection per event");
+        }
+        this.maxAccepts = maxAccepts;
+    }
+
+    @Override
+    public int getMaxAcceptsPerEvent() {
+        return maxAccepts;
+    }
+
+    @Override
+    public void setAcceptRate(int connectionsPerSecond) {
+        if (connectionsPerSecond < 0) {
+            throw new IllegalArgumentException("Accept rate cannot be negative");
+        }
+        acceptRate = connectionsPerSecond;
+        tokens = connectionsPerSecond;
+        refilled = sel.getReactor().now();
+    }
+
+    @Override
+    public int getAcceptRate() {
+        return acceptRate;
+    }
+
+    @Override
+    public void distribute(Reactor... reactors) {
+        if (reactors == null || reactors.length == 0) {
+            targets = null;
+        } else {
+            targets = new ReactorImpl[reactors.length];
+            for (int i = 0; i < reactors.length; i++) {
+                targets[i] = (ReactorImpl)reactors[i];
+            }
+        }
+        nextTarget = 0;
+    }
+
     @Override
     public void close() {
         if (!sel.isTerminal()) {
             Reactor reactor = sel.getReactor();
             try {
-                sel.getChannel().close();
+                closeChannel((ServerSocketChannel)sel.getChannel());
             } catch(IOException ioException) {
                 // Ignore.
             }
@@ -113,6 +259,15 @@ public class AcceptorImpl implements Acceptor {
         }
     }
 
+    // Closes the listening channel, removing the file of a Unix domain socket
+    private static void closeChannel(ServerSocketChannel ssc) throws IOException {
+        String path = ssc.isOpen() ? UnixDomainSockets.path(ssc.getLocalAddress()) : null;
+        ssc.close();
+        if (path != null) {
+            Files.deleteIfExists(Paths.get(path));
+        }
+    }
+
     // Used for unit tests, where acceptor is bound to an ephemeral port
     public int getPortNumber() throws IOException {
         ServerSocketChannel ssc = (ServerSocketChannel)sel.getChannel();
@@ -22,6 +22,7 @@
 package org.apache.qpid.proton.reactor.impl;
 
 import java.io.IOException;
+import java.net.ProtocolFamily;
 import java.nio.channels.Pipe;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
@@ -41,4 +42,11 @@ public interface IO {
     ServerSocketChannel serverSocketChannel() throws IOException;
 
     SocketChannel socketChannel() throws IOException;
+
+    // Open channels of a particular protocol family, such as the UNIX family
+    // of Java 16 and later.  These throw UnsupportedOperationException for a
+    // family that is not supported.
+    ServerSocketChannel serverSocketChannel(ProtocolFamily family) throws IOException;
+
+    SocketChannel socketChannel(ProtocolFamily family) throws IOException;
 }
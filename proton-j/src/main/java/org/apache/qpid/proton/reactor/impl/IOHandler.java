@@ -24,6 +24,8 @@ package org.apache.qpid.proton.reactor.impl;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.nio.channels.Channel;
 import java.nio.channels.SocketChannel;
 import java.util.Iterator;
@@ -38,7 +40,9 @@ import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.engine.Sasl;
 import org.apache.qpid.proton.engine.Transport;
 import org.apache.qpid.proton.engine.impl.TransportImpl;
+import org.apache.qpid.proton.reactor.IOSettings;
 import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.ReactorMetrics;
 import org.apache.qpid.proton.reactor.Selectable;
 import org.apache.qpid.proton.reactor.Selectable.Callback;
 import org.apache.qpid.proton.reactor.Selector;
@@ -50,23 +54,53 @@ public class IOHandler extends BaseHandler {
         // check if we are still quiesced, other handlers of
         // PN_REACTOR_QUIESCED could have produced more events to process
         if (!reactor.quiesced()) return;
-        selector.select(reactor.getTimeout());
-        reactor.mark();
-        Iterator<Selectable> selectables = selector.readable();
-        while(selectables.hasNext()) {
-            selectables.next().readable();
-        }
-        selectables = selector.writeable();
-        while(selectables.hasNext()) {
-            selectables.next().writeable();
+        ReactorMetrics metrics = reactor.getMetrics();
+        long start = metrics == null ? 0 : System.nanoTime();
+        long busyPoll = reactor.getBusyPollPeriod();
+        if (busyPoll > 0 && selector instanceof SelectorImpl) {
+            ((SelectorImpl)selector).select(reactor.getTimeout(), busyPoll * 1000);
+        } else {
+            selector.select(reactor.getTimeout());
         }
-        selectables = selector.expired();
-        while(selectables.hasNext()) {
-            selectables.next().expired();
+        if (metrics != null) {
+            metrics.recordSelectWait(System.nanoTime() - start);
         }
-        selectables = selector.error();
-        while(selectables.hasNext()) {
-            selectables.next().error();
+        reactor.mark();
+        if (selector instanceof SelectorImpl) {
+            SelectorImpl selectorImpl = (SelectorImpl)selector;
+            SelectorImpl.ReadySet ready = selectorImpl.readableSet();
+            for (int i = 0; i < ready.size(); i++) {
+                ready.get(i).readable();
+            }
+            ready = selectorImpl.writeableSet();
+            for (int i = 0; i < ready.size(); i++) {
+                ready.get(i).writeable();
+            }
+            ready = selectorImpl.expiredSet();
+            for (int i = 0; i < ready.size(); i++) {
+                ready.get(i).expired();
+            }
+            ready = selectorImpl.errorSet();
+            for (int i = 0; i < ready.size(); i++) {
+                ready.get(i).error();
+            }
+        } else {
+            Iterator<Selectable> selectables = selector.readable();
+            while(selectables.hasNext()) {
+                selectables.next().readable();
+            }
+            selectables = selector.writeable();
+            while(selectables.hasNext()) {
+                selectables.next().writeable();
+            }
+            selectables = selector.expired();
+            while(selectables.hasNext()) {
+                selectables.next().expired();
+            }
+            selectables = selector.error();
+            while(selectables.hasNext()) {
+                selectables.next().error();
+            }
         }
         reactor.yield();
     }
@@ -92,34 +126,48 @@ public class IOHandler extends BaseHandler {
             return;
         }
 
-        int colonIndex = hostname.indexOf(':');
-        int port = 5672;
-        if (colonIndex >= 0) {
-            try {
-                port = Integer.parseInt(hostname.substring(colonIndex+1));
-            } catch(NumberFormatException nfe) {
-                throw new IllegalArgumentException("Not a valid host: " + hostname, nfe);
-            }
-            hostname = hostname.substring(0, colonIndex);
-        }
-
         Transport transport = event.getConnection().getTransport();
-        Socket socket = null;   // In this case, 'null' is the proton-j equivalent of PN_INVALID_SOCKET
+        SocketChannel socketChannel = null;   // In this case, 'null' is the proton-j equivalent of PN_INVALID_SOCKET
         try {
-            SocketChannel socketChannel = ((ReactorImpl)reactor).getIO().socketChannel();
-            socketChannel.configureBlocking(false);
-            socketChannel.connect(new InetSocketAddress(hostname, port));
-            socket = socketChannel.socket();
-        } catch(IOException ioException) {
+            IO io = ((ReactorImpl)reactor).getIO();
+            if (UnixDomainSockets.isUnixHost(hostname)) {
+                socketChannel = io.socketChannel(UnixDomainSockets.family());
+                socketChannel.configureBlocking(false);
+                socketChannel.connect(UnixDomainSockets.address(UnixDomainSockets.path(hostname)));
+            } else {
+                int colonIndex = hostname.indexOf(':');
+                int port = 5672;
+                if (colonIndex >= 0) {
+                    try {
+                        port = Integer.parseInt(hostname.substring(colonIndex+1));
+                    } catch(NumberFormatException nfe) {
+                        throw new IllegalArgumentException("Not a valid host: " + hostname, nfe);
+                    }
+                    hostname = hostname.substring(0, colonIndex);
+                }
+                socketChannel = io.socketChannel();
+                socketChannel.configureBlocking(false);
+                socketChannel.connect(new InetSocketAddress(hostname, port));
+            }
+        } catch(IOException | UnsupportedOperationException exception) {
+            if (socketChannel != null) {
+                try {
+                    socketChannel.close();
+                } catch(IOException e) {
+                    // Ignore
+                }
+                socketChannel = null;
+            }
             ErrorCondition condition = new ErrorCondition();
             condition.setCondition(Symbol.getSymbol("proton:io"));
-            condition.setDescription(ioException.getMessage());
+            condition.setDescription(exception.getMessage());
             transport.setCondition(condition);
             transport.close_tail();
             transport.close_head();
             transport.pop(transport.pending());   // Force generation of TRANSPORT_HEAD_CLOSE (not in C code)
         }
-        selectableTransport(reactor, socket, transport);
+        selectableTransport(reactor, socketChannel, transport,
+                IOSettings.resolve(connection.attachments(), reactor.attachments()));
     }
 
     // pni_connection_capacity from connection.c
@@ -157,28 +205,64 @@ public class IOHandler extends BaseHandler {
     // pni_connection_update from connection.c
     private static void update(Selectable selectable) {
         SelectableImpl selectableImpl = (SelectableImpl)selectable;
+        // Ticks first: an expiring deadline may write an empty frame that
+        // pending must see, or it would sit unflushed until the next wakeup
+        long deadline = deadline(selectableImpl);
         int c = capacity(selectableImpl);
         int p = pending(selectableImpl);
+        boolean writing = p > 0;
+        if (!writing) {
+            selectableImpl.setPendingSince(0);
+        } else {
+            IOSettings settings = selectableImpl.getIOSettings();
+            if (settings.getFlushPolicy() == IOSettings.FlushPolicy.DELAYED && p < settings.getFlushThreshold()) {
+                // Hold the output back until the flush delay expires, using
+                // the selectable's deadline to be woken up when it does
+                long now = selectable.getReactor().now();
+                if (selectableImpl.getPendingSince() == 0) {
+                    selectableImpl.setPendingSince(now);
+                }
+                long flushAt = selectableImpl.getPendingSince() + (settings.getFlushDelay() + 999) / 1000;
+                if (now < flushAt) {
+                    writing = false;
+                    if (deadline == 0 || flushAt < deadline) {
+                        deadline = flushAt;
+                    }
+                }
+            }
+        }
         selectable.setReading(c > 0);
-        selectable.setWriting(p > 0);
-        selectable.setDeadline(deadline(selectableImpl));
+        selectable.setWriting(writing);
+        selectable.setDeadline(deadline);
     }
 
     // pni_connection_readable from connection.c
+    // Unlike the C code, keeps reading until the socket is drained, the
+    // transport is full, or the connection's read budget is used up.
     private static Callback connectionReadable = new Callback() {
         @Override
         public void run(Selectable selectable) {
             Reactor reactor = selectable.getReactor();
-            Transport transport = ((SelectableImpl)selectable).getTransport();
+            SelectableImpl selectableImpl = (SelectableImpl)selectable;
+            Transport transport = selectableImpl.getTransport();
             int capacity = transport.capacity();
             if (capacity > 0) {
                 SocketChannel socketChannel = (SocketChannel)selectable.getChannel();
+                int budget = selectableImpl.getIOSettings().getReadBudget();
+                int total = 0;
                 try {
-                    int n = socketChannel.read(transport.tail());
-                    if (n == -1) {
-                        transport.close_tail();
-                    } else {
+                    while (capacity > 0) {
+                        int n = socketChannel.read(transport.tail());
+                        if (n == -1) {
+                            transport.close_tail();
+                            break;
+                        }
                         transport.process();
+                        total += n;
+                        if (n == 0 || total >= budget) {
+                            break;
+                        }
+                        capacity = transport.capacity();
                     }
                 } catch (IOException e) {
                     ErrorCondition condition = new ErrorCondition();
@@ -197,20 +281,34 @@ public class IOHandler extends BaseHandler {
     };
 
     // pni_connection_writable from connection.c
+    // Unlike the C code, keeps writing until the socket stops accepting
+    // data, the transport has no more output, or the connection's write
+    // budget is used up.
     private static Callback connectionWritable = new Callback() {
         @Override
         public void run(Selectable selectable) {
             Reactor reactor = selectable.getReactor();
-            Transport transport = ((SelectableImpl)selectable).getTransport();
+            SelectableImpl selectableImpl = (SelectableImpl)selectable;
+            Transport transport = selectableImpl.getTransport();
             int pending = transport.pending();
             if (pending > 0) {
                 SocketChannel channel = (SocketChannel)selectable.getChannel();
+                int budget = selectableImpl.getIOSettings().getWriteBudget();
+                int total = 0;
+                int remaining = pending;
                 try {
-                    int n = channel.write(transport.head());
-                    if (n < 0) {
-                        transport.close_head();
-                    } else {
+                    while (remaining > 0) {
+                        int n = channel.write(transport.head());
+                        if (n < 0) {
+                            transport.close_head();
+                            break;
+                        }
                         transport.pop(n);
+                        total += n;
+                        if (n == 0 || total >= budget) {
+                            break;
+                        }
+                        remaining = transport.pending();
                     }
                 } catch(IOException ioException) {
                     ErrorCondition condition = new ErrorCondition();
@@ -244,13 +342,7 @@ public class IOHandler extends BaseHandler {
         @Override
         public void run(Selectable selectable) {
             Reactor reactor = selectable.getReactor();
-            Transport transport = ((SelectableImpl)selectable).getTransport();
-            long deadline = transport.tick(reactor.now());
-            selectable.setDeadline(deadline);
-            int c = capacity(selectable);
-            int p = pending(selectable);
-            selectable.setReading(c > 0);
-            selectable.setWriting(p > 0);
+            update(selectable);
             reactor.update(selectable);
         }
     };
@@ -272,14 +364,38 @@ public class IOHandler extends BaseHandler {
     // pn_reactor_selectable_transport
     // Note the socket argument can, validly be 'null' this is the equivalent of proton-c's PN_INVALID_SOCKET
     protected static Selectable selectableTransport(Reactor reactor, Socket socket, Transport transport) {
+        return selectableTransport(reactor, socket, transport, IOSettings.resolve(reactor.attachments()));
+    }
+
+    protected static Selectable selectableTransport(Reactor reactor, Socket socket, Transport transport, IOSettings settings) {
+        return selectableTransport(reactor, socket != null ? socket.getChannel() : null, transport, settings);
+    }
+
+    // As above, for a channel with no Socket, such as a Unix domain socket.
+    static Selectable selectableTransport(Reactor reactor, SocketChannel channel, Transport transport, IOSettings settings) {
         Selectable selectable = reactor.selectable();
-        selectable.setChannel(socket != null ? socket.getChannel() : null);
+        selectable.setChannel(channel);
         selectable.onReadable(connectionReadable);
         selectable.onWritable(connectionWritable);
         selectable.onError(connectionError);
         selectable.onExpired(connectionExpired);
         selectable.onFree(connectionFree);
         ((SelectableImpl)selectable).setTransport(transport);
+        ((SelectableImpl)selectable).setIOSettings(settings);
+        if (channel != null) {
+            try {
+                setOption(channel, StandardSocketOptions.TCP_NODELAY, settings.getTcpNoDelay());
+                setOption(channel, StandardSocketOptions.SO_SNDBUF, settings.getSendBufferSize());
+                setOption(channel, StandardSocketOptions.SO_RCVBUF, settings.getReceiveBufferSize());
+            } catch(IOException ioException) {
+                ErrorCondition condition = new ErrorCondition();
+                condition.setCondition(Symbol.getSymbol("proton:io"));
+                condition.setDescription(ioException.getMessage());
+                transport.setCondition(condition);
+                transport.close_tail();
+                transport.close_head();
+            }
+        }
         ((TransportImpl)transport).setSelectable(selectable);
         ((TransportImpl)transport).setReactor(reactor);
         update(selectable);
@@ -287,17 +403,45 @@ public class IOHandler extends BaseHandler {
         return selectable;
     }
 
+    // Sets an option that has been configured, if the channel supports it:
+    // Unix domain sockets have no TCP_NODELAY, for example.
+    private static <T> void setOption(SocketChannel channel, SocketOption<T> option, T value) throws IOException {
+        if (value != null && channel.supportedOptions().contains(option)) {
+            channel.setOption(option, value);
+        }
+    }
+
     private void handleTransport(Reactor reactor, Event event) {
         TransportImpl transport = (TransportImpl)event.getTransport();
         Selectable selectable = transport.getSelectable();
         if (selectable != null && !selectable.isTerminal()) {
+            if (((SelectableImpl)selectable).getIOSettings().getFlushPolicy() == IOSettings.FlushPolicy.IMMEDIATE
+                    && transport.pending() > 0) {
+                SocketChannel channel = (SocketChannel)selectable.getChannel();
+                if (channel != null && channel.isConnected()) {
+                    // Write now rather than waiting for the selector to
+                    // report the socket as writable once the reactor quiesces
+                    selectable.writeable();
+                }
+            }
             update(selectable);
             reactor.update(selectable);
         }
     }
 
-    @Override
-    public void onUnhandled(Event event) {
+    // Each event type IOHandler acts upon is routed through an explicit
+    // override, so that BaseHandler.interest(Handler) can tell which event
+    // types the reactor itself depends on.
+    @Override public void onSelectableInit(Event event) { handle(event.getType(), event); }
+    @Override public void onSelectableUpdated(Event event) { handle(event.getType(), event); }
+    @Override public void onSelectableFinal(Event event) { handle(event.getType(), event); }
+    @Override public void onConnectionLocalOpen(Event event) { handle(event.getType(), event); }
+    @Override public void onConnectionBound(Event event) { handle(event.getType(), event); }
+    @Override public void onTransport(Event event) { handle(event.getType(), event); }
+    @Override public void onTransportClosed(Event event) { handle(event.getType(), event); }
+    @Override public void onReactorQuiesced(Event event) { handle(event.getType(), event); }
+
+    private void handle(Event.Type type, Event event) {
         try {
             ReactorImpl reactor = (ReactorImpl)event.getReactor();
             Selector selector = reactor.getSelector();
@@ -307,7 +451,7 @@ public class IOHandler extends BaseHandler {
             }
 
             Selectable selectable;
-            switch(event.getType()) {
+            switch(type) {
             case SELECTABLE_INIT:
                 selectable = event.getSelectable();
                 selector.add(selectable);
@@ -22,6 +22,7 @@
 package org.apache.qpid.proton.reactor.impl;
 
 import java.io.IOException;
+import java.net.ProtocolFamily;
 import java.nio.channels.Pipe;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
@@ -49,4 +50,14 @@ public class IOImpl implements IO {
         return SocketChannel.open();
     }
 
+    @Override
+    public ServerSocketChannel serverSocketChannel(ProtocolFamily family) throws IOException {
+        return UnixDomainSockets.openServerSocketChannel(family);
+    }
+
+    @Override
+    public SocketChannel socketChannel(ProtocolFamily family) throws IOException {
+        return UnixDomainSockets.openSocketChannel(family);
+    }
+
 }
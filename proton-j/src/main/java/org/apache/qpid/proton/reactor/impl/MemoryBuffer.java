@@ -0,0 +1,169 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+
+// A bounded byte queue from one MemoryChannel to another: one direction of
+// an in-memory socket, or an in-memory pipe.  Blocking reads and writes wait
+// on the buffer; selectors are signalled through the channels' registrations
+// whenever the buffer becomes readable or writable.
+class MemoryBuffer {
+
+    private final byte[] data;
+    private int head;
+    private int count;
+    private boolean writerClosed;
+    private boolean readerClosed;
+    private int waiters;
+    private volatile MemoryChannel.Registrations reader = new MemoryChannel.Registrations();
+    private volatile MemoryChannel.Registrations writer = new MemoryChannel.Registrations();
+
+    MemoryBuffer(int capacity) {
+        data = new byte[capacity];
+    }
+
+    void setReader(MemoryChannel reader) {
+        this.reader = reader.registrations();
+    }
+
+    void setWriter(MemoryChannel writer) {
+        this.writer = writer.registrations();
+    }
+
+    synchronized boolean isReadable() {
+        return count > 0 || writerClosed;
+    }
+
+    synchronized boolean isWritable() {
+        return count < data.length || readerClosed;
+    }
+
+    // Returns -1 once the writer has closed and the buffer is drained.
+    int read(ByteBuffer dst, boolean block) throws IOException {
+        int n;
+        boolean wasFull;
+        synchronized (this) {
+            while (block && count == 0 && !writerClosed && !readerClosed) {
+                await();
+            }
+            if (readerClosed) {
+                throw new ClosedChannelException();
+            }
+            if (count == 0) {
+                return writerClosed ? -1 : 0;
+            }
+            wasFull = count == data.length;
+            n = Math.min(count, dst.remaining());
+            int first = Math.min(n, data.length - head);
+            dst.put(data, head, first);
+            dst.put(data, 0, n - first);
+            head = (head + n) % data.length;
+            count -= n;
+            if (wasFull && waiters > 0) {
+                notifyAll();
+            }
+        }
+        if (wasFull && n > 0) {
+            writer.signal();
+        }
+        return n;
+    }
+
+    // A blocking write returns only once all of src is written.
+    int write(ByteBuffer src, boolean block) throws IOException {
+        int total = 0;
+        do {
+            total += writeSome(src, block);
+        } while (block && src.hasRemaining());
+        return total;
+    }
+
+    private int writeSome(ByteBuffer src, boolean block) throws IOException {
+        int n;
+        boolean wasEmpty;
+        synchronized (this) {
+            while (block && count == data.length && !writerClosed && !readerClosed) {
+                await();
+            }
+            if (writerClosed) {
+                throw new ClosedChannelException();
+            }
+            if (readerClosed) {
+                throw new IOException("Broken pipe");
+            }
+            wasEmpty = count == 0;
+            n = Math.min(data.length - count, src.remaining());
+            int tail = (head + count) % data.length;
+            int first = Math.min(n, data.length - tail);
+            src.get(data, tail, first);
+            src.get(data, 0, n - first);
+            count += n;
+            if (wasEmpty && waiters > 0) {
+                notifyAll();
+            }
+        }
+        if (wasEmpty && n > 0) {
+            reader.signal();
+        }
+        return n;
+    }
+
+    void closeWriter() {
+        synchronized (this) {
+            if (writerClosed) {
+                return;
+            }
+            writerClosed = true;
+            notifyAll();
+        }
+        reader.signal();
+    }
+
+    void closeReader() {
+        synchronized (this) {
+            if (readerClosed) {
+                return;
+            }
+            readerClosed = true;
+            head = 0;
+            count = 0;
+            notifyAll();
+        }
+        writer.signal();
+    }
+
+    private void await() throws InterruptedIOException {
+        waiters++;
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            waiters--;
+        }
+    }
+}
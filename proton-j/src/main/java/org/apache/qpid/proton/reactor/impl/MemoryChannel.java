@@ -0,0 +1,56 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// A channel that can be registered with a MemorySelector.
+interface MemoryChannel {
+
+    // The operations the channel is ready for, as SelectionKey bits.
+    int readyOps();
+
+    Registrations registrations();
+
+    // The keys a channel is registered with, used to wake up the selectors
+    // of a channel whose readiness might have changed.
+    final class Registrations {
+
+        private final CopyOnWriteArrayList<MemorySelector.Key> keys = new CopyOnWriteArrayList<MemorySelector.Key>();
+
+        void add(MemorySelector.Key key) {
+            keys.add(key);
+        }
+
+        void remove(MemorySelector.Key key) {
+            keys.remove(key);
+        }
+
+        // Must not be called holding a lock the selectors take while
+        // checking readiness.
+        void signal() {
+            for (MemorySelector.Key key : keys) {
+                ((MemorySelector)key.selector()).signal();
+            }
+        }
+    }
+}
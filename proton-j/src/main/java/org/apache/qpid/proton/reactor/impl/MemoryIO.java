@@ -0,0 +1,115 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+import java.io.IOException;
+import java.net.ProtocolFamily;
+import java.nio.channels.Pipe;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * An {@link IO} whose sockets, pipes and selectors live entirely in memory.
+ * Reactors created with the same <code>MemoryIO</code> share a network: an
+ * acceptor on one can be connected to from any of them, whatever host name
+ * the connection uses, by its port number alone.  Data is copied between
+ * bounded buffers, one per direction of each connection, without involving
+ * the kernel, which makes for repeatable measurements of the engine and
+ * reactor and for tests that need no real sockets.
+ * <pre>
+ * MemoryIO io = new MemoryIO();
+ * Reactor server = new ReactorImpl(io);
+ * Reactor client = new ReactorImpl(io);
+ * </pre>
+ * Socket options may be set on the channels, but have no effect.  Only the
+ * internet protocol families are supported, so there are no in-memory Unix
+ * domain sockets.
+ */
+public class MemoryIO implements IO {
+
+    /**
+     * The default number of bytes that can be buffered in each direction of
+     * a connection.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final MemorySelectorProvider provider;
+
+    public MemoryIO() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize the number of bytes that can be buffered in each
+     *                   direction of a connection before writes stop
+     *                   making progress.
+     */
+    public MemoryIO(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        provider = new MemorySelectorProvider(bufferSize);
+    }
+
+    public int getBufferSize() {
+        return provider.getBufferSize();
+    }
+
+    @Override
+    public Pipe pipe() throws IOException {
+        return provider.openPipe();
+    }
+
+    @Override
+    public Selector selector() throws IOException {
+        return provider.openSelector();
+    }
+
+    @Override
+    public ServerSocketChannel serverSocketChannel() throws IOException {
+        return provider.openServerSocketChannel();
+    }
+
+    @Override
+    public SocketChannel socketChannel() throws IOException {
+        return provider.openSocketChannel();
+    }
+
+    @Override
+    public ServerSocketChannel serverSocketChannel(ProtocolFamily family) throws IOException {
+        checkFamily(family);
+        return provider.openServerSocketChannel();
+    }
+
+    @Override
+    public SocketChannel socketChannel(ProtocolFamily family) throws IOException {
+        checkFamily(family);
+        return provider.openSocketChannel();
+    }
+
+    private static void checkFamily(ProtocolFamily family) {
+        if (!UnixDomainSockets.isInet(family)) {
+            throw new UnsupportedOperationException("Protocol family not supported in memory: " + family);
+        }
+    }
+}
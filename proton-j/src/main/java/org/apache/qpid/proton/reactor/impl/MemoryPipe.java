@@ -0,0 +1,169 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+
+// A Pipe over a MemoryBuffer, for waking up a MemorySelector.
+class MemoryPipe extends Pipe {
+
+    private final MemoryBuffer buffer;
+    private final Source source;
+    private final Sink sink;
+
+    MemoryPipe(MemorySelectorProvider provider) {
+        buffer = new MemoryBuffer(provider.getBufferSize());
+        source = new Source(provider);
+        sink = new Sink(provider);
+        buffer.setReader(source);
+        buffer.setWriter(sink);
+    }
+
+    @Override
+    public SourceChannel source() {
+        return source;
+    }
+
+    @Override
+    public SinkChannel sink() {
+        return sink;
+    }
+
+    private class Source extends SourceChannel implements MemoryChannel {
+
+        private final Registrations registrations = new Registrations();
+
+        private Source(MemorySelectorProvider provider) {
+            super(provider);
+        }
+
+        @Override
+        public Registrations registrations() {
+            return registrations;
+        }
+
+        @Override
+        public int readyOps() {
+            return buffer.isReadable() ? SelectionKey.OP_READ : 0;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!isOpen()) {
+                throw new ClosedChannelException();
+            }
+            return buffer.read(dst, isBlocking());
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                if (!dsts[i].hasRemaining()) {
+                    continue;
+                }
+                int n = read(dsts[i]);
+                if (n < 0) {
+                    return total == 0 ? -1 : total;
+                }
+                total += n;
+                if (dsts[i].hasRemaining()) {
+                    break;
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts) throws IOException {
+            return read(dsts, 0, dsts.length);
+        }
+
+        @Override
+        protected void implCloseSelectableChannel() throws IOException {
+            buffer.closeReader();
+        }
+
+        @Override
+        protected void implConfigureBlocking(boolean block) throws IOException {
+            // Reads check isBlocking() as they go
+        }
+    }
+
+    private class Sink extends SinkChannel implements MemoryChannel {
+
+        private final Registrations registrations = new Registrations();
+
+        private Sink(MemorySelectorProvider provider) {
+            super(provider);
+        }
+
+        @Override
+        public Registrations registrations() {
+            return registrations;
+        }
+
+        @Override
+        public int readyOps() {
+            return buffer.isWritable() ? SelectionKey.OP_WRITE : 0;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!isOpen()) {
+                throw new ClosedChannelException();
+            }
+            return buffer.write(src, isBlocking());
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                total += write(srcs[i]);
+                if (srcs[i].hasRemaining()) {
+                    break;
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        protected void implCloseSelectableChannel() throws IOException {
+            buffer.closeWriter();
+        }
+
+        @Override
+        protected void implConfigureBlocking(boolean block) throws IOException {
+            // Writes check isBlocking() as they go
+        }
+    }
+}
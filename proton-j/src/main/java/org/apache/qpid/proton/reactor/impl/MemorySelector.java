@@ -0,0 +1,306 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.IllegalSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.spi.AbstractSelectableChannel;
+import java.nio.channels.spi.AbstractSelectionKey;
+import java.nio.channels.spi.AbstractSelector;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+// A Selector over MemoryChannels.  Rather than asking the kernel, a select
+// asks each registered channel whether it is ready, and waits to be signalled
+// by a channel whose state changes when none are.
+class MemorySelector extends AbstractSelector {
+
+    static final class Key extends AbstractSelectionKey {
+
+        private final SelectableChannel channel;
+        private final MemorySelector selector;
+        private volatile int interestOps;
+        private int readyOps;
+
+        private Key(SelectableChannel channel, MemorySelector selector) {
+            this.channel = channel;
+            this.selector = selector;
+        }
+
+        @Override
+        public SelectableChannel channel() {
+            return channel;
+        }
+
+        @Override
+        public Selector selector() {
+            return selector;
+        }
+
+        @Override
+        public int interestOps() {
+            if (!isValid()) {
+                throw new CancelledKeyException();
+            }
+            return interestOps;
+        }
+
+        @Override
+        public SelectionKey interestOps(int ops) {
+            if (!isValid()) {
+                throw new CancelledKeyException();
+            }
+            if ((ops & ~channel.validOps()) != 0) {
+                throw new IllegalArgumentException("Invalid interest ops: " + ops);
+            }
+            interestOps = ops;
+            return this;
+        }
+
+        @Override
+        public int readyOps() {
+            if (!isValid()) {
+                throw new CancelledKeyException();
+            }
+            return readyOps;
+        }
+    }
+
+    private final Object lock = new Object();
+    private final Set<Key> keys = new HashSet<Key>();
+    private final Set<Key> selected = new HashSet<Key>();
+    private final Set<SelectionKey> publicKeys = Collections.<SelectionKey>unmodifiableSet(keys);
+    private final Set<SelectionKey> publicSelected = new Ungrowable(selected);
+    private boolean woken;
+
+    MemorySelector(MemorySelectorProvider provider) {
+        super(provider);
+    }
+
+    @Override
+    protected SelectionKey register(AbstractSelectableChannel channel, int ops, Object attachment) {
+        if (!(channel instanceof MemoryChannel)) {
+            throw new IllegalSelectorException();
+        }
+        Key key = new Key(channel, this);
+        key.interestOps(ops);
+        key.attach(attachment);
+        synchronized (lock) {
+            keys.add(key);
+        }
+        ((MemoryChannel)channel).registrations().add(key);
+        return key;
+    }
+
+    @Override
+    protected void implCloseSelector() throws IOException {
+        wakeup();
+        synchronized (lock) {
+            for (Key key : keys) {
+                ((MemoryChannel)key.channel()).registrations().remove(key);
+                deregister(key);
+            }
+            keys.clear();
+            selected.clear();
+        }
+    }
+
+    @Override
+    public Set<SelectionKey> keys() {
+        ensureOpen();
+        return publicKeys;
+    }
+
+    @Override
+    public Set<SelectionKey> selectedKeys() {
+        ensureOpen();
+        return publicSelected;
+    }
+
+    @Override
+    public int selectNow() throws IOException {
+        return doSelect(-1L);
+    }
+
+    @Override
+    public int select() throws IOException {
+        return doSelect(0L);
+    }
+
+    @Override
+    public int select(long timeout) throws IOException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Negative timeout");
+        }
+        return doSelect(timeout);
+    }
+
+    // A negative timeout does not wait at all, and zero waits indefinitely.
+    private int doSelect(long timeout) throws IOException {
+        ensureOpen();
+        long deadline = timeout > 0 ? System.nanoTime() + timeout * 1000000 : 0;
+        int updated = 0;
+        try {
+            begin();
+            synchronized (lock) {
+                processCancelledKeys();
+                while (true) {
+                    updated = updateSelected();
+                    if (updated > 0 || woken || timeout < 0 || Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                    if (timeout == 0) {
+                        lock.wait();
+                    } else {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        lock.wait(remaining / 1000000, (int)(remaining % 1000000));
+                    }
+                }
+                woken = false;
+                processCancelledKeys();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            end();
+        }
+        return updated;
+    }
+
+    @Override
+    public Selector wakeup() {
+        synchronized (lock) {
+            woken = true;
+            lock.notifyAll();
+        }
+        return this;
+    }
+
+    // Called by a channel whose readiness might have changed.
+    void signal() {
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    private int updateSelected() {
+        int updated = 0;
+        for (Key key : keys) {
+            if (!key.isValid()) {
+                continue;
+            }
+            int ready = ((MemoryChannel)key.channel()).readyOps() & key.interestOps;
+            if (ready == 0) {
+                continue;
+            }
+            if (selected.add(key)) {
+                key.readyOps = ready;
+                updated++;
+            } else if ((key.readyOps | ready) != key.readyOps) {
+                key.readyOps |= ready;
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    private void processCancelledKeys() {
+        Set<SelectionKey> cancelled = cancelledKeys();
+        synchronized (cancelled) {
+            for (SelectionKey key : cancelled) {
+                keys.remove(key);
+                selected.remove(key);
+                ((MemoryChannel)key.channel()).registrations().remove((Key)key);
+                deregister((AbstractSelectionKey)key);
+            }
+            cancelled.clear();
+        }
+    }
+
+    private void ensureOpen() {
+        if (!isOpen()) {
+            throw new ClosedSelectorException();
+        }
+    }
+
+    // The selected-key set, from which keys may be removed but not added.
+    private static final class Ungrowable extends AbstractSet<SelectionKey> {
+
+        private final Set<Key> keys;
+
+        private Ungrowable(Set<Key> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public Iterator<SelectionKey> iterator() {
+            final Iterator<Key> iterator = keys.iterator();
+            return new Iterator<SelectionKey>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public SelectionKey next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return keys.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return keys.contains(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return keys.remove(o);
+        }
+
+        @Override
+        public void clear() {
+            keys.clear();
+        }
+    }
+}
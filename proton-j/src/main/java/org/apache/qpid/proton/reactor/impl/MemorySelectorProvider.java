@@ -0,0 +1,141 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.AbstractSelector;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// The provider of the selectors and channels of a MemoryIO, and the network
+// they share.  Listening channels are bound by port number alone, so every
+// host name reaches the same listener.
+class MemorySelectorProvider extends SelectorProvider {
+
+    private static final int FIRST_EPHEMERAL_PORT = 32768;
+    private static final int LAST_PORT = 65535;
+
+    private final int bufferSize;
+    private final ConcurrentMap<Integer, MemoryServerSocketChannel> listeners =
+            new ConcurrentHashMap<Integer, MemoryServerSocketChannel>();
+    private int nextEphemeralPort = FIRST_EPHEMERAL_PORT;
+
+    MemorySelectorProvider(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public DatagramChannel openDatagramChannel() throws IOException {
+        throw new UnsupportedOperationException("Datagrams are not supported in memory");
+    }
+
+    @Override
+    public DatagramChannel openDatagramChannel(ProtocolFamily family) throws IOException {
+        throw new UnsupportedOperationException("Datagrams are not supported in memory");
+    }
+
+    @Override
+    public Pipe openPipe() throws IOException {
+        return new MemoryPipe(this);
+    }
+
+    @Override
+    public AbstractSelector openSelector() throws IOException {
+        return new MemorySelector(this);
+    }
+
+    @Override
+    public ServerSocketChannel openServerSocketChannel() throws IOException {
+        return new MemoryServerSocketChannel(this);
+    }
+
+    @Override
+    public SocketChannel openSocketChannel() throws IOException {
+        return new MemorySocketChannel(this);
+    }
+
+    static InetSocketAddress address(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    // Binds a listener, choosing an unused ephemeral port if port is zero.
+    int bind(MemoryServerSocketChannel listener, int port) throws IOException {
+        if (port != 0) {
+            if (listeners.putIfAbsent(port, listener) != null) {
+                throw new BindException("Address already in use: " + port);
+            }
+            return port;
+        }
+        synchronized (this) {
+            for (int i = FIRST_EPHEMERAL_PORT; i <= LAST_PORT; i++) {
+                int candidate = nextEphemeralPort();
+                if (listeners.putIfAbsent(candidate, listener) == null) {
+                    return candidate;
+                }
+            }
+        }
+        throw new BindException("No ephemeral ports available");
+    }
+
+    void unbind(MemoryServerSocketChannel listener, int port) {
+        listeners.remove(port, listener);
+    }
+
+    // The local port of a connecting channel, which is never listened on.
+    synchronized int nextEphemeralPort() {
+        int port = nextEphemeralPort;
+        nextEphemeralPort = port == LAST_PORT ? FIRST_EPHEMERAL_PORT : port + 1;
+        return port;
+    }
+
+    // Connects a channel to the listener on a port by queueing the
+    // listener's end of the connection to be accepted.
+    void connect(MemorySocketChannel client, int localPort, int port) throws IOException {
+        MemoryServerSocketChannel listener = listeners.get(port);
+        if (listener == null) {
+            throw new ConnectException("Connection refused: " + port);
+        }
+        MemoryBuffer up = new MemoryBuffer(bufferSize);
+        MemoryBuffer down = new MemoryBuffer(bufferSize);
+        MemorySocketChannel server = new MemorySocketChannel(this);
+        server.connected(down, up, port, localPort);
+        if (!listener.offer(server)) {
+            server.close();
+            throw new ConnectException("Connection refused: " + port);
+        }
+        client.connected(up, down, localPort, port);
+    }
+}
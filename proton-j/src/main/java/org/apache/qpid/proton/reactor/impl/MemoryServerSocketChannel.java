@@ -0,0 +1,201 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ServerSocket;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AlreadyBoundException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NotYetBoundException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Listens on a port of a MemoryIO's network, queueing the server ends of the
+// connections made to it until they are accepted.
+class MemoryServerSocketChannel extends ServerSocketChannel implements MemoryChannel {
+
+    private static final int DEFAULT_BACKLOG = 50;
+    private static final Set<SocketOption<?>> OPTIONS;
+    static {
+        Set<SocketOption<?>> options = new HashSet<SocketOption<?>>();
+        options.add(StandardSocketOptions.SO_RCVBUF);
+        options.add(StandardSocketOptions.SO_REUSEADDR);
+        OPTIONS = Collections.unmodifiableSet(options);
+    }
+
+    private final MemorySelectorProvider provider;
+    private final Registrations registrations = new Registrations();
+    private final Map<SocketOption<?>, Object> options = new HashMap<SocketOption<?>, Object>();
+    private final ArrayDeque<MemorySocketChannel> pending = new ArrayDeque<MemorySocketChannel>();
+    private int backlog;
+    private volatile int port;
+
+    MemoryServerSocketChannel(MemorySelectorProvider provider) {
+        super(provider);
+        this.provider = provider;
+        options.put(StandardSocketOptions.SO_RCVBUF, provider.getBufferSize());
+        options.put(StandardSocketOptions.SO_REUSEADDR, true);
+    }
+
+    @Override
+    public Registrations registrations() {
+        return registrations;
+    }
+
+    @Override
+    public int readyOps() {
+        synchronized (pending) {
+            return pending.isEmpty() ? 0 : SelectionKey.OP_ACCEPT;
+        }
+    }
+
+    // Queues a connection to be accepted, unless the backlog is full or the
+    // channel is closed.
+    boolean offer(MemorySocketChannel channel) {
+        synchronized (pending) {
+            if (!isOpen() || pending.size() >= backlog) {
+                return false;
+            }
+            pending.add(channel);
+            pending.notifyAll();
+        }
+        registrations.signal();
+        return true;
+    }
+
+    @Override
+    public ServerSocketChannel bind(SocketAddress local, int backlog) throws IOException {
+        ensureOpen();
+        if (port != 0) {
+            throw new AlreadyBoundException();
+        }
+        int requested = local == null ? 0 : MemorySocketChannel.checkAddress(local).getPort();
+        synchronized (pending) {
+            this.backlog = backlog > 0 ? backlog : DEFAULT_BACKLOG;
+        }
+        port = provider.bind(this, requested);
+        return this;
+    }
+
+    @Override
+    public <T> ServerSocketChannel setOption(SocketOption<T> name, T value) throws IOException {
+        ensureOpen();
+        if (!OPTIONS.contains(name)) {
+            throw new UnsupportedOperationException("'" + name + "' not supported");
+        }
+        synchronized (options) {
+            options.put(name, value);
+        }
+        return this;
+    }
+
+    @Override
+    public <T> T getOption(SocketOption<T> name) throws IOException {
+        ensureOpen();
+        if (!OPTIONS.contains(name)) {
+            throw new UnsupportedOperationException("'" + name + "' not supported");
+        }
+        synchronized (options) {
+            return name.type().cast(options.get(name));
+        }
+    }
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+        return OPTIONS;
+    }
+
+    @Override
+    public ServerSocket socket() {
+        throw new UnsupportedOperationException("In-memory channels have no ServerSocket");
+    }
+
+    @Override
+    public SocketChannel accept() throws IOException {
+        ensureOpen();
+        if (port == 0) {
+            throw new NotYetBoundException();
+        }
+        synchronized (pending) {
+            while (isBlocking() && pending.isEmpty() && isOpen()) {
+                try {
+                    pending.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            ensureOpen();
+            return pending.poll();
+        }
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() throws IOException {
+        ensureOpen();
+        return port != 0 ? MemorySelectorProvider.address(port) : null;
+    }
+
+    @Override
+    protected void implCloseSelectableChannel() throws IOException {
+        if (port != 0) {
+            provider.unbind(this, port);
+        }
+        // Connections that were never accepted are refused
+        MemorySocketChannel[] refused;
+        synchronized (pending) {
+            refused = pending.toArray(new MemorySocketChannel[pending.size()]);
+            pending.clear();
+            pending.notifyAll();
+        }
+        for (MemorySocketChannel channel : refused) {
+            channel.close();
+        }
+    }
+
+    @Override
+    protected void implConfigureBlocking(boolean block) throws IOException {
+        // accept() checks isBlocking() as it goes
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryServerSocketChannel[port=" + port + "]";
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+}
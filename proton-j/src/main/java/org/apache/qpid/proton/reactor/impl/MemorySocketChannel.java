@@ -0,0 +1,513 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketImpl;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AlreadyBoundException;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.NoConnectionPendingException;
+import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.channels.UnsupportedAddressTypeException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// One end of an in-memory connection.  Connecting completes immediately if
+// something is listening on the port.  If nothing is, a non-blocking connect
+// is left pending and fails when finished, as a refused socket would.
+class MemorySocketChannel extends SocketChannel implements MemoryChannel {
+
+    private static final Set<SocketOption<?>> OPTIONS;
+    static {
+        Set<SocketOption<?>> options = new HashSet<SocketOption<?>>();
+        options.add(StandardSocketOptions.SO_SNDBUF);
+        options.add(StandardSocketOptions.SO_RCVBUF);
+        options.add(StandardSocketOptions.SO_KEEPALIVE);
+        options.add(StandardSocketOptions.SO_REUSEADDR);
+        options.add(StandardSocketOptions.SO_LINGER);
+        options.add(StandardSocketOptions.TCP_NODELAY);
+        OPTIONS = Collections.unmodifiableSet(options);
+    }
+
+    private final MemorySelectorProvider provider;
+    private final Registrations registrations = new Registrations();
+    // Options are recorded, but have no effect on the connection
+    private final Map<SocketOption<?>, Object> options = new HashMap<SocketOption<?>, Object>();
+    private volatile MemoryBuffer inbound;
+    private volatile MemoryBuffer outbound;
+    private volatile int localPort;
+    private volatile int remotePort;
+    private volatile ConnectException pendingFailure;
+    private volatile boolean inputShutdown;
+    private volatile boolean outputShutdown;
+    private Socket socket;
+
+    MemorySocketChannel(MemorySelectorProvider provider) {
+        super(provider);
+        this.provider = provider;
+        options.put(StandardSocketOptions.SO_SNDBUF, provider.getBufferSize());
+        options.put(StandardSocketOptions.SO_RCVBUF, provider.getBufferSize());
+        options.put(StandardSocketOptions.SO_KEEPALIVE, false);
+        options.put(StandardSocketOptions.SO_REUSEADDR, false);
+        options.put(StandardSocketOptions.SO_LINGER, -1);
+        options.put(StandardSocketOptions.TCP_NODELAY, false);
+    }
+
+    void connected(MemoryBuffer outbound, MemoryBuffer inbound, int localPort, int remotePort) {
+        outbound.setWriter(this);
+        inbound.setReader(this);
+        this.localPort = localPort;
+        this.remotePort = remotePort;
+        this.inbound = inbound;
+        this.outbound = outbound;
+    }
+
+    @Override
+    public Registrations registrations() {
+        return registrations;
+    }
+
+    @Override
+    public int readyOps() {
+        if (pendingFailure != null) {
+            return SelectionKey.OP_CONNECT;
+        }
+        MemoryBuffer inbound = this.inbound;
+        MemoryBuffer outbound = this.outbound;
+        if (inbound == null) {
+            return 0;
+        }
+        int ops = 0;
+        if (inputShutdown || inbound.isReadable()) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (outputShutdown || outbound.isWritable()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        return ops;
+    }
+
+    @Override
+    public SocketChannel bind(SocketAddress local) throws IOException {
+        ensureOpen();
+        if (localPort != 0) {
+            throw new AlreadyBoundException();
+        }
+        int port = local == null ? 0 : checkAddress(local).getPort();
+        localPort = port == 0 ? provider.nextEphemeralPort() : port;
+        return this;
+    }
+
+    @Override
+    public <T> SocketChannel setOption(SocketOption<T> name, T value) throws IOException {
+        ensureOpen();
+        if (!OPTIONS.contains(name)) {
+            throw new UnsupportedOperationException("'" + name + "' not supported");
+        }
+        synchronized (options) {
+            options.put(name, value);
+        }
+        return this;
+    }
+
+    @Override
+    public <T> T getOption(SocketOption<T> name) throws IOException {
+        ensureOpen();
+        if (!OPTIONS.contains(name)) {
+            throw new UnsupportedOperationException("'" + name + "' not supported");
+        }
+        synchronized (options) {
+            return name.type().cast(options.get(name));
+        }
+    }
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+        return OPTIONS;
+    }
+
+    @Override
+    public SocketChannel shutdownInput() throws IOException {
+        ensureConnected();
+        if (!inputShutdown) {
+            inputShutdown = true;
+            registrations.signal();
+        }
+        return this;
+    }
+
+    @Override
+    public SocketChannel shutdownOutput() throws IOException {
+        ensureConnected();
+        outputShutdown = true;
+        outbound.closeWriter();
+        return this;
+    }
+
+    @Override
+    public synchronized Socket socket() {
+        if (socket == null) {
+            try {
+                socket = new MemorySocket();
+            } catch (SocketException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return socket;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return inbound != null;
+    }
+
+    @Override
+    public boolean isConnectionPending() {
+        return pendingFailure != null;
+    }
+
+    @Override
+    public boolean connect(SocketAddress remote) throws IOException {
+        ensureOpen();
+        if (isConnected()) {
+            throw new AlreadyConnectedException();
+        }
+        if (isConnectionPending()) {
+            throw new ConnectionPendingException();
+        }
+        InetSocketAddress address = checkAddress(remote);
+        if (localPort == 0) {
+            localPort = provider.nextEphemeralPort();
+        }
+        try {
+            provider.connect(this, localPort, address.getPort());
+            return true;
+        } catch (ConnectException e) {
+            if (isBlocking()) {
+                close();
+                throw e;
+            }
+            pendingFailure = e;
+            return false;
+        }
+    }
+
+    @Override
+    public boolean finishConnect() throws IOException {
+        ensureOpen();
+        if (isConnected()) {
+            return true;
+        }
+        ConnectException failure = pendingFailure;
+        if (failure == null) {
+            throw new NoConnectionPendingException();
+        }
+        close();
+        throw failure;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() throws IOException {
+        ensureOpen();
+        return isConnected() ? MemorySelectorProvider.address(remotePort) : null;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() throws IOException {
+        ensureOpen();
+        return localPort != 0 ? MemorySelectorProvider.address(localPort) : null;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureConnected();
+        if (inputShutdown) {
+            return -1;
+        }
+        return inbound.read(dst, isBlocking());
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (!dsts[i].hasRemaining()) {
+                continue;
+            }
+            int n = read(dsts[i]);
+            if (n < 0) {
+                return total == 0 ? -1 : total;
+            }
+            total += n;
+            if (dsts[i].hasRemaining()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        ensureConnected();
+        if (outputShutdown) {
+            throw new ClosedChannelException();
+        }
+        return outbound.write(src, isBlocking());
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            total += write(srcs[i]);
+            if (srcs[i].hasRemaining()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    protected void implCloseSelectableChannel() throws IOException {
+        pendingFailure = null;
+        MemoryBuffer inbound = this.inbound;
+        if (inbound != null) {
+            inbound.closeReader();
+            outbound.closeWriter();
+        }
+    }
+
+    @Override
+    protected void implConfigureBlocking(boolean block) throws IOException {
+        // Reads and writes check isBlocking() as they go
+    }
+
+    @Override
+    public String toString() {
+        return "MemorySocketChannel[local=" + localPort + ", remote=" + remotePort + "]";
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private void ensureConnected() throws ClosedChannelException {
+        ensureOpen();
+        if (!isConnected()) {
+            throw new NotYetConnectedException();
+        }
+    }
+
+    static InetSocketAddress checkAddress(SocketAddress address) {
+        if (!(address instanceof InetSocketAddress)) {
+            throw new UnsupportedAddressTypeException();
+        }
+        InetSocketAddress inetAddress = (InetSocketAddress)address;
+        if (inetAddress.isUnresolved()) {
+            throw new UnresolvedAddressException();
+        }
+        return inetAddress;
+    }
+
+    // The Socket view of the channel, which the reactor uses to find the
+    // channel and to set socket options.  There is no SocketImpl behind it,
+    // so everything it does is done through the channel.
+    private class MemorySocket extends Socket {
+
+        private MemorySocket() throws SocketException {
+            super((SocketImpl)null);
+        }
+
+        @Override
+        public SocketChannel getChannel() {
+            return MemorySocketChannel.this;
+        }
+
+        private <T> void set(SocketOption<T> name, T value) throws SocketException {
+            try {
+                setOption(name, value);
+            } catch (IOException e) {
+                throw new SocketException(e.getMessage());
+            }
+        }
+
+        private <T> T get(SocketOption<T> name) throws SocketException {
+            try {
+                return getOption(name);
+            } catch (IOException e) {
+                throw new SocketException(e.getMessage());
+            }
+        }
+
+        @Override
+        public void setTcpNoDelay(boolean on) throws SocketException {
+            set(StandardSocketOptions.TCP_NODELAY, on);
+        }
+
+        @Override
+        public boolean getTcpNoDelay() throws SocketException {
+            return get(StandardSocketOptions.TCP_NODELAY);
+        }
+
+        @Override
+        public synchronized void setSendBufferSize(int size) throws SocketException {
+            if (size <= 0) {
+                throw new IllegalArgumentException("negative send size");
+            }
+            set(StandardSocketOptions.SO_SNDBUF, size);
+        }
+
+        @Override
+        public synchronized int getSendBufferSize() throws SocketException {
+            return get(StandardSocketOptions.SO_SNDBUF);
+        }
+
+        @Override
+        public synchronized void setReceiveBufferSize(int size) throws SocketException {
+            if (size <= 0) {
+                throw new IllegalArgumentException("invalid receive size");
+            }
+            set(StandardSocketOptions.SO_RCVBUF, size);
+        }
+
+        @Override
+        public synchronized int getReceiveBufferSize() throws SocketException {
+            return get(StandardSocketOptions.SO_RCVBUF);
+        }
+
+        @Override
+        public void setKeepAlive(boolean on) throws SocketException {
+            set(StandardSocketOptions.SO_KEEPALIVE, on);
+        }
+
+        @Override
+        public boolean getKeepAlive() throws SocketException {
+            return get(StandardSocketOptions.SO_KEEPALIVE);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            throw new IOException("In-memory sockets have no streams");
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            throw new IOException("In-memory sockets have no streams");
+        }
+
+        @Override
+        public InetAddress getInetAddress() {
+            return isConnected() ? InetAddress.getLoopbackAddress() : null;
+        }
+
+        @Override
+        public InetAddress getLocalAddress() {
+            return InetAddress.getLoopbackAddress();
+        }
+
+        @Override
+        public int getPort() {
+            return isConnected() ? remotePort : 0;
+        }
+
+        @Override
+        public int getLocalPort() {
+            return localPort != 0 ? localPort : -1;
+        }
+
+        @Override
+        public SocketAddress getRemoteSocketAddress() {
+            return isConnected() ? MemorySelectorProvider.address(remotePort) : null;
+        }
+
+        @Override
+        public SocketAddress getLocalSocketAddress() {
+            return localPort != 0 ? MemorySelectorProvider.address(localPort) : null;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return MemorySocketChannel.this.isConnected();
+        }
+
+        @Override
+        public boolean isBound() {
+            return localPort != 0;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return !isOpen();
+        }
+
+        @Override
+        public boolean isInputShutdown() {
+            return inputShutdown;
+        }
+
+        @Override
+        public boolean isOutputShutdown() {
+            return outputShutdown;
+        }
+
+        @Override
+        public void shutdownInput() throws IOException {
+            MemorySocketChannel.this.shutdownInput();
+        }
+
+        @Override
+        public void shutdownOutput() throws IOException {
+            MemorySocketChannel.this.shutdownOutput();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            MemorySocketChannel.this.close();
+        }
+
+        @Override
+        public String toString() {
+            return MemorySocketChannel.this.toString();
+        }
+    }
+}
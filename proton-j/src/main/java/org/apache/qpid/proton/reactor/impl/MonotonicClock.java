@@ -0,0 +1,42 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+/**
+ * A millisecond clock for reactor deadlines that never runs backwards.
+ * Values are derived from {@link System#nanoTime()} but are offset to line up
+ * with {@link System#currentTimeMillis()} as it was when the class was loaded,
+ * so they stay positive and can still be read as a wall-clock time. Zero
+ * keeps its meaning of "no deadline" for selectables and transports.
+ */
+final class MonotonicClock {
+
+    private static final long ORIGIN_MILLIS = System.currentTimeMillis();
+    private static final long ORIGIN_NANOS = System.nanoTime();
+
+    private MonotonicClock() {
+    }
+
+    static long millis() {
+        return ORIGIN_MILLIS + (System.nanoTime() - ORIGIN_NANOS) / 1000000;
+    }
+}
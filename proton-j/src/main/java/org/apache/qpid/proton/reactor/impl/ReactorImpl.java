@@ -25,13 +25,19 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.Pipe;
+import java.nio.channels.SocketChannel;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.engine.BaseHandler;
 import org.apache.qpid.proton.engine.Collector;
 import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
 import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.engine.Event.Type;
 import org.apache.qpid.proton.engine.EventType;
@@ -39,13 +45,18 @@ import org.apache.qpid.proton.engine.Extendable;
 import org.apache.qpid.proton.engine.ExtendableAccessor;
 import org.apache.qpid.proton.engine.Handler;
 import org.apache.qpid.proton.engine.HandlerException;
+import org.apache.qpid.proton.engine.Link;
 import org.apache.qpid.proton.engine.Record;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.engine.Transport;
 import org.apache.qpid.proton.engine.impl.CollectorImpl;
 import org.apache.qpid.proton.engine.impl.ConnectionImpl;
 import org.apache.qpid.proton.engine.impl.RecordImpl;
 import org.apache.qpid.proton.reactor.Acceptor;
+import org.apache.qpid.proton.reactor.IOSettings;
 import org.apache.qpid.proton.reactor.Reactor;
 import org.apache.qpid.proton.reactor.ReactorChild;
+import org.apache.qpid.proton.reactor.ReactorMetrics;
 import org.apache.qpid.proton.reactor.Selectable;
 import org.apache.qpid.proton.reactor.Selectable.Callback;
 import org.apache.qpid.proton.reactor.Selector;
@@ -57,6 +68,8 @@ public class ReactorImpl implements Reactor, Extendable {
     private CollectorImpl collector;
     private long now;
     private long timeout;
+    private long busyPollPeriod;
+    private ReactorMetrics metrics;
     private Handler global;
     private Handler handler;
     private Set<ReactorChild> children;
@@ -69,10 +82,29 @@ public class ReactorImpl implements Reactor, Extendable {
     private Selector selector;
     private Record attachments;
     private final IO io;
+    private final Queue<Adoption> adopted = new ConcurrentLinkedQueue<Adoption>();
+    private final Queue<Runnable> invoked = new ConcurrentLinkedQueue<Runnable>();
+    // Set while a wakeup for invoked tasks is outstanding, so that a burst
+    // of invocations writes to the wakeup pipe only once
+    private final AtomicBoolean invokeWakeup = new AtomicBoolean();
+
+    // A socket accepted on another reactor's thread, waiting to be bound to
+    // a connection on this reactor's thread.
+    private static final class Adoption {
+        private final SocketChannel channel;
+        private final Handler handler;
+        private final IOSettings settings;
+
+        private Adoption(SocketChannel channel, Handler handler, IOSettings settings) {
+            this.channel = channel;
+            this.handler = handler;
+            this.settings = settings;
+        }
+    }
 
     @Override
     public long mark() {
-        now = System.currentTimeMillis();
+        now = MonotonicClock.millis();
         return now;
     }
 
@@ -81,7 +113,11 @@ public class ReactorImpl implements Reactor, Extendable {
         return now;
     }
 
-    protected ReactorImpl(IO io) throws IOException {
+    /**
+     * Creates a reactor that does its I/O through <code>io</code>, for
+     * example a {@link MemoryIO}.
+     */
+    public ReactorImpl(IO io) throws IOException {
         collector = (CollectorImpl)Proton.collector();
         global = new IOHandler();
         handler = new BaseHandler();
@@ -122,6 +158,15 @@ public class ReactorImpl implements Reactor, Extendable {
         for (ReactorChild child : children) {
             child.free();
         }
+
+        Adoption adoption;
+        while ((adoption = adopted.poll()) != null) {
+            try {
+                adoption.channel.close();
+            } catch(IOException e) {
+                // Ignore
+            }
+        }
     }
 
     @Override
@@ -139,6 +184,29 @@ public class ReactorImpl implements Reactor, Extendable {
         this.timeout = timeout;
     }
 
+    @Override
+    public void setMetrics(ReactorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ReactorMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public long getBusyPollPeriod() {
+        return busyPollPeriod;
+    }
+
+    @Override
+    public void setBusyPollPeriod(long busyPollPeriod) {
+        if (busyPollPeriod < 0) {
+            throw new IllegalArgumentException("Busy-poll period cannot be negative");
+        }
+        this.busyPollPeriod = busyPollPeriod;
+    }
+
     @Override
     public Handler getGlobalHandler() {
         return global;
@@ -169,6 +237,20 @@ public class ReactorImpl implements Reactor, Extendable {
         return collector;
     }
 
+    @Override
+    public void restrictEvents(Handler... handlers) {
+        EnumSet<Type> interest = EnumSet.of(Type.REACTOR_INIT, Type.REACTOR_QUIESCED,
+                                            Type.REACTOR_FINAL, Type.TIMER_TASK,
+                                            Type.CONNECTION_FINAL);
+        interest.addAll(BaseHandler.interest(global));
+        interest.addAll(BaseHandler.interest(handler));
+        for (Handler h : handlers) {
+            interest.addAll(BaseHandler.interest(h));
+        }
+        collector.setInterest(interest);
+        collector.setCoalescing(true);
+    }
+
     private class ReleaseCallback implements Callback {
         private final ReactorImpl reactor;
         private final ReactorChild child;
@@ -215,28 +297,39 @@ public class ReactorImpl implements Reactor, Extendable {
     }
 
     // pn_event_handler
+    //
+    // Walks outwards from the event context (delivery -> link -> session ->
+    // connection, or task / selectable) so that each candidate is resolved
+    // once, rather than re-deriving it through the Event getters per probe.
     private Handler eventHandler(Event event) {
+        Object context = event.getContext();
         Handler result;
-        if (event.getLink() != null) {
-            result = BaseHandler.getHandler(event.getLink());
-            if (result != null) return result;
+        if (context instanceof Delivery) {
+            context = ((Delivery) context).getLink();
         }
-        if (event.getSession() != null) {
-            result = BaseHandler.getHandler(event.getSession());
+        if (context instanceof Link) {
+            Link link = (Link) context;
+            result = BaseHandler.getHandler(link);
             if (result != null) return result;
+            context = link.getSession();
         }
-        if (event.getConnection() != null) {
-            result = BaseHandler.getHandler(event.getConnection());
+        if (context instanceof Session) {
+            Session session = (Session) context;
+            result = BaseHandler.getHandler(session);
             if (result != null) return result;
+            context = session.getConnection();
         }
-
-        if (event.getTask() != null) {
-            result = BaseHandler.getHandler(event.getTask());
-            if (result != null) return result;
+        if (context instanceof Transport) {
+            context = event.getConnection();
         }
-
-        if (event.getSelectable() != null) {
-            result = BaseHandler.getHandler(event.getSelectable());
+        if (context instanceof Connection) {
+            result = BaseHandler.getHandler((Connection) context);
+            if (result != null) return result;
+        } else if (context instanceof Task) {
+            result = BaseHandler.getHandler((Task) context);
+            if (result != null) return result;
+        } else if (context instanceof Selectable) {
+            result = BaseHandler.getHandler((Selectable) context);
             if (result != null) return result;
         }
 
@@ -259,6 +352,19 @@ public class ReactorImpl implements Reactor, Extendable {
 
     @Override
     public boolean process() throws HandlerException {
+        ReactorMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return processEvents(null);
+        }
+        long start = System.nanoTime();
+        try {
+            return processEvents(metrics);
+        } finally {
+            metrics.recordIteration(System.nanoTime() - start);
+        }
+    }
+
+    private boolean processEvents(ReactorMetrics metrics) throws HandlerException {
         mark();
         EventType previous = null;
         while (true) {
@@ -269,8 +375,19 @@ public class ReactorImpl implements Reactor, Extendable {
                     return true;
                 }
                 Handler handler = eventHandler(event);
-                dispatch(event, handler);
-                dispatch(event, global);
+                if (metrics == null) {
+                    dispatch(event, handler);
+                    dispatch(event, global);
+                } else {
+                    EventType type = event.getEventType();
+                    long start = System.nanoTime();
+                    dispatch(event, handler);
+                    metrics.recordHandler(handler, type, System.nanoTime() - start);
+                    start = System.nanoTime();
+                    dispatch(event, global);
+                    metrics.recordHandler(global, type, System.nanoTime() - start);
+                    metrics.recordEvent(type);
+                }
 
                 if (event.getEventType() == Type.CONNECTION_FINAL) {
                     children.remove(event.getConnection());
@@ -315,6 +432,14 @@ public class ReactorImpl implements Reactor, Extendable {
         }
     }
 
+    @Override
+    public void invoke(Runnable task) {
+        invoked.add(task);
+        if (invokeWakeup.compareAndSet(false, true)) {
+            wakeup();
+        }
+    }
+
     @Override
     public void start() {
         collector.put(Type.REACTOR_INIT, this);
@@ -370,7 +495,24 @@ public class ReactorImpl implements Reactor, Extendable {
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-            expireSelectable(selectable);
+            Adoption adoption;
+            while ((adoption = adopted.poll()) != null) {
+                AcceptorImpl.accepted(ReactorImpl.this, adoption.channel, adoption.handler, adoption.settings);
+            }
+            invokeWakeup.set(false);
+            try {
+                Runnable task;
+                while ((task = invoked.poll()) != null) {
+                    task.run();
+                }
+            } finally {
+                // A task threw: the ones queued behind it run once the
+                // reactor is processed again
+                if (!invoked.isEmpty() && invokeWakeup.compareAndSet(false, true)) {
+                    wakeup();
+                }
+                expireSelectable(selectable);
+            }
         }
 
     }
@@ -436,6 +578,28 @@ public class ReactorImpl implements Reactor, Extendable {
         return new AcceptorImpl(this, host, port, handler);
     }
 
+    @Override
+    public Acceptor acceptor(String host, int port, Handler handler, int backlog) throws IOException {
+        return new AcceptorImpl(this, host, port, handler, backlog);
+    }
+
+    /**
+     * Queues a socket, accepted on another thread, to be bound to a new
+     * connection by this reactor.  Unlike most methods of the reactor, this
+     * may be called from any thread.
+     * @param channel the accepted socket.
+     * @param handler the handler for the new connection, or <code>null</code>
+     *                to use this reactor's handler.  It is used on this
+     *                reactor's thread, so must be thread safe if other
+     *                reactors use it too.
+     * @param settings the I/O settings for the new connection, or
+     *                 <code>null</code> to use those attached to this reactor.
+     */
+    public void adopt(SocketChannel channel, Handler handler, IOSettings settings) {
+        adopted.add(new Adoption(channel, handler, settings));
+        wakeup();
+    }
+
     public IO getIO() {
         return io;
     }
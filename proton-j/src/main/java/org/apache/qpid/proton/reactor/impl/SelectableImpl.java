@@ -29,6 +29,7 @@ import org.apache.qpid.proton.engine.Record;
 import org.apache.qpid.proton.engine.Transport;
 import org.apache.qpid.proton.engine.impl.CollectorImpl;
 import org.apache.qpid.proton.engine.impl.RecordImpl;
+import org.apache.qpid.proton.reactor.IOSettings;
 import org.apache.qpid.proton.reactor.Reactor;
 import org.apache.qpid.proton.reactor.Selectable;
 
@@ -49,6 +50,10 @@ public class SelectableImpl implements Selectable {
     private boolean registered;
     private Reactor reactor;
     private Transport transport;
+    private IOSettings settings = IOSettings.resolve();
+    private long pendingSince;
+    // Where the selectable is in its selector's list, or -1 if it is not in one
+    private int selectorIndex = -1;
     private boolean terminal;
     private boolean terminated;
 
@@ -227,6 +232,32 @@ public class SelectableImpl implements Selectable {
         this.transport = transport;
     }
 
+    protected IOSettings getIOSettings() {
+        return settings;
+    }
+
+    protected void setIOSettings(IOSettings settings) {
+        this.settings = settings;
+    }
+
+    // When the transport's oldest unwritten output was first seen, or 0 if
+    // there is none.  Used to apply a delayed flush policy.
+    protected long getPendingSince() {
+        return pendingSince;
+    }
+
+    protected void setPendingSince(long pendingSince) {
+        this.pendingSince = pendingSince;
+    }
+
+    int getSelectorIndex() {
+        return selectorIndex;
+    }
+
+    void setSelectorIndex(int selectorIndex) {
+        this.selectorIndex = selectorIndex;
+    }
+
     protected void setReactor(Reactor reactor) {
         this.reactor = reactor;
     }
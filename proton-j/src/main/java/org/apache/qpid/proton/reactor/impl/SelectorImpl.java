@@ -25,8 +25,10 @@ import java.io.IOException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.transport.ErrorCondition;
@@ -37,14 +39,93 @@ import org.apache.qpid.proton.reactor.Selector;
 class SelectorImpl implements Selector {
 
     private final java.nio.channels.Selector selector;
-    private final HashSet<Selectable> selectables = new HashSet<Selectable>();
-    private final HashSet<Selectable> readable = new HashSet<Selectable>();
-    private final HashSet<Selectable> writeable = new HashSet<Selectable>();
-    private final HashSet<Selectable> expired = new HashSet<Selectable>();
-    private final HashSet<Selectable> error = new HashSet<Selectable>();
+    // The ready sets are refilled on every select, so they are kept as flat
+    // arrays that are reused rather than hashed sets. A selection key is
+    // reported at most once per select, so the readable and writeable sets
+    // cannot contain duplicates.
+    static final class ReadySet {
+        private Selectable[] items = new Selectable[16];
+        private int size;
+
+        void add(Selectable selectable) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = selectable;
+        }
+
+        boolean contains(Selectable selectable) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == selectable) return true;
+            }
+            return false;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        Selectable get(int index) {
+            return items[index];
+        }
+
+        void clear() {
+            Arrays.fill(items, 0, size, null);
+            size = 0;
+        }
+
+        // Each iterator has its own cursor, so a handler may ask for a set
+        // while the reactor is iterating over it
+        Iterator<Selectable> iterator() {
+            return new Cursor(items, size);
+        }
+    }
+
+    private static final class Cursor implements Iterator<Selectable> {
+        private final Selectable[] items;
+        private final int size;
+        private int cursor;
+
+        Cursor(Selectable[] items, int size) {
+            this.items = items;
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @Override
+        public Selectable next() {
+            if (cursor >= size) {
+                throw new NoSuchElementException();
+            }
+            return items[cursor++];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // In no particular order, so that a selectable can be removed by swapping
+    // the last one into its place
+    private final ArrayList<Selectable> selectables = new ArrayList<Selectable>();
+    private final ReadySet readable = new ReadySet();
+    private final ReadySet writeable = new ReadySet();
+    private final ReadySet expired = new ReadySet();
+    private final ReadySet error = new ReadySet();
+    private long lastReady;
 
     protected SelectorImpl(IO io) throws IOException {
         selector = io.selector();
+        lastReady = System.nanoTime();
     }
 
     @Override
@@ -55,6 +136,9 @@ class SelectorImpl implements Selector {
             SelectionKey key = selectable.getChannel().register(selector, 0);
             key.attach(selectable);
         }
+        if (selectable instanceof SelectableImpl) {
+            ((SelectableImpl)selectable).setSelectorIndex(selectables.size());
+        }
         selectables.add(selectable);
         update(selectable);
     }
@@ -90,18 +174,46 @@ class SelectorImpl implements Selector {
                 key.attach(null);
             }
         }
-        selectables.remove(selectable);
+        int index;
+        if (selectable instanceof SelectableImpl) {
+            index = ((SelectableImpl)selectable).getSelectorIndex();
+            if (index >= selectables.size() || index >= 0 && selectables.get(index) != selectable) {
+                index = -1;
+            }
+            ((SelectableImpl)selectable).setSelectorIndex(-1);
+        } else {
+            index = selectables.indexOf(selectable);
+        }
+        if (index >= 0) {
+            Selectable last = selectables.remove(selectables.size() - 1);
+            if (last != selectable) {
+                selectables.set(index, last);
+                if (last instanceof SelectableImpl) {
+                    ((SelectableImpl)last).setSelectorIndex(index);
+                }
+            }
+        }
     }
 
     @Override
     public void select(long timeout) throws IOException {
+        select(timeout, 0);
+    }
+
+    /**
+     * As {@link #select(long)}, but if a selectable was last found ready less
+     * than <code>busyPoll</code> nanoseconds ago, the selector is polled
+     * without blocking until something is ready, the busy-poll period lapses
+     * or the timeout expires. Only then does it fall back to blocking.
+     */
+    void select(long timeout, long busyPoll) throws IOException {
 
-        long now = System.currentTimeMillis();
+        long now = MonotonicClock.millis();
         if (timeout > 0) {
             long deadline = 0;
             // XXX: Note: this differs from the C code which requires a call to update() to make deadline changes take affect
-            for (Selectable selectable : selectables) {
-                long d = selectable.getDeadline();
+            for (int i = 0; i < selectables.size(); i++) {
+                long d = selectables.get(i).getDeadline();
                 if (d > 0) {
                     deadline = (deadline == 0) ? d : Math.min(deadline,  d);
                 }
@@ -119,44 +231,44 @@ class SelectorImpl implements Selector {
 
         error.clear();
 
+        if (timeout > 0 && busyPoll > 0) {
+            long start = System.nanoTime();
+            long spinUntil = Math.min(lastReady + busyPoll, start + timeout * 1000000);
+            long spun = start;
+            while (spun - spinUntil < 0) {
+                selector.selectNow();
+                finishConnect();
+                if (!selector.selectedKeys().isEmpty() || !error.isEmpty()) {
+                    break;
+                }
+                spun = System.nanoTime();
+            }
+            if (!selector.selectedKeys().isEmpty() || !error.isEmpty()) {
+                timeout = 0;
+            } else {
+                timeout -= (spun - start) / 1000000;
+                now = MonotonicClock.millis();
+            }
+        }
+
         long awoken = 0;
         if (timeout > 0) {
             long remainingTimeout = timeout;
             while(remainingTimeout > 0) {
                 selector.select(remainingTimeout);
-                awoken = System.currentTimeMillis();
-
-                for (Iterator<SelectionKey> iterator = selector.selectedKeys().iterator(); iterator.hasNext();) {
-                    SelectionKey key = iterator.next();
-                    if (key.isConnectable()) {
-                        try {
-                            ((SocketChannel)key.channel()).finishConnect();
-                            update((Selectable)key.attachment());
-                        } catch(IOException ioException) {
-                            SelectableImpl selectable = (SelectableImpl)key.attachment();
-                            ErrorCondition condition = new ErrorCondition();
-                            condition.setCondition(Symbol.getSymbol("proton:io"));
-                            condition.setDescription(ioException.getMessage());
-                            Transport transport = selectable.getTransport();
-                            if (transport != null) {
-                                transport.setCondition(condition);
-                                transport.close_tail();
-                                transport.close_head();
-                                transport.pop(transport.pending());
-                            }
-                            error.add(selectable);
-                        }
-                        iterator.remove();
-                    }
-                }
-                if (!selector.selectedKeys().isEmpty()) {
+                awoken = MonotonicClock.millis();
+                finishConnect();
+                // A failed connection is removed from the selected keys, but
+                // must still be reported without waiting out the timeout
+                if (!selector.selectedKeys().isEmpty() || !error.isEmpty()) {
                     break;
                 }
                 remainingTimeout = remainingTimeout - (awoken - now);
             }
         } else {
             selector.selectNow();
-            awoken = System.currentTimeMillis();
+            awoken = MonotonicClock.millis();
+            finishConnect();
         }
 
         readable.clear();
@@ -168,9 +280,13 @@ class SelectorImpl implements Selector {
             if (key.isAcceptable()) readable.add(selectable);
             if (key.isWritable()) writeable.add(selectable);
         }
+        if (!selector.selectedKeys().isEmpty() || !error.isEmpty()) {
+            lastReady = System.nanoTime();
+        }
         selector.selectedKeys().clear();
         // XXX: Note: this is different to the C code which evaluates expiry at the point the selectable is iterated over.
-        for (Selectable selectable : selectables) {
+        for (int i = 0; i < selectables.size(); i++) {
+            Selectable selectable = selectables.get(i);
             long deadline = selectable.getDeadline();
             if (deadline > 0 && awoken >= deadline) {
                 expired.add(selectable);
@@ -178,6 +294,39 @@ class SelectorImpl implements Selector {
         }
     }
 
+    // Completes any pending connections, removing their keys from the
+    // selected set.
+    private void finishConnect() {
+        if (selector.selectedKeys().isEmpty()) {
+            return;
+        }
+        for (Iterator<SelectionKey> iterator = selector.selectedKeys().iterator(); iterator.hasNext();) {
+            SelectionKey key = iterator.next();
+            if (key.isConnectable()) {
+                try {
+                    ((SocketChannel)key.channel()).finishConnect();
+                    update((Selectable)key.attachment());
+                } catch(IOException ioException) {
+                    SelectableImpl selectable = (SelectableImpl)key.attachment();
+                    ErrorCondition condition = new ErrorCondition();
+                    condition.setCondition(Symbol.getSymbol("proton:io"));
+                    condition.setDescription(ioException.getMessage());
+                    Transport transport = selectable.getTransport();
+                    if (transport != null) {
+                        transport.setCondition(condition);
+                        transport.close_tail();
+                        transport.close_head();
+                        transport.pop(transport.pending());
+                    }
+                    if (!error.contains(selectable)) {
+                        error.add(selectable);
+                    }
+                }
+                iterator.remove();
+            }
+        }
+    }
+
     @Override
     public Iterator<Selectable> readable() {
         return readable.iterator();
@@ -198,6 +347,24 @@ class SelectorImpl implements Selector {
         return error.iterator();
     }
 
+    // The reactor walks the ready sets by index, rather than through the
+    // iterators above, so as not to allocate on every loop turn
+    ReadySet readableSet() {
+        return readable;
+    }
+
+    ReadySet writeableSet() {
+        return writeable;
+    }
+
+    ReadySet expiredSet() {
+        return expired;
+    }
+
+    ReadySet errorSet() {
+        return error;
+    }
+
     @Override
     public void free() {
         try {
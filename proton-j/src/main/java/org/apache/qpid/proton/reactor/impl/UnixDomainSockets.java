@@ -0,0 +1,166 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+
+// Access to the Unix domain sockets of Java 16 and later.  proton-j is
+// built for older versions of Java, so the channels and addresses are
+// reached by reflection, and are unsupported where they do not exist.
+//
+// A host name of the form "unix:<path>" names a Unix domain socket.
+final class UnixDomainSockets {
+
+    static final String SCHEME = "unix:";
+
+    private static final ProtocolFamily UNIX;
+    private static final Method OPEN_SOCKET_CHANNEL;
+    private static final Method OPEN_SERVER_SOCKET_CHANNEL;
+    private static final Method ADDRESS_OF;
+    private static final Method ADDRESS_PATH;
+    static {
+        ProtocolFamily unix = null;
+        Method openSocketChannel = null;
+        Method openServerSocketChannel = null;
+        Method addressOf = null;
+        Method addressPath = null;
+        try {
+            openSocketChannel = SelectorProvider.class.getMethod("openSocketChannel", ProtocolFamily.class);
+            openServerSocketChannel = SelectorProvider.class.getMethod("openServerSocketChannel", ProtocolFamily.class);
+            Class<?> address = Class.forName("java.net.UnixDomainSocketAddress");
+            addressOf = address.getMethod("of", String.class);
+            addressPath = address.getMethod("getPath");
+            unix = StandardProtocolFamily.valueOf("UNIX");
+        } catch (ClassNotFoundException e) {
+            // Before Java 16
+        } catch (NoSuchMethodException e) {
+            // Before Java 15
+        } catch (IllegalArgumentException e) {
+            // No UNIX protocol family
+        }
+        UNIX = unix;
+        OPEN_SOCKET_CHANNEL = openSocketChannel;
+        OPEN_SERVER_SOCKET_CHANNEL = openServerSocketChannel;
+        ADDRESS_OF = addressOf;
+        ADDRESS_PATH = addressPath;
+    }
+
+    private UnixDomainSockets() {
+    }
+
+    static boolean isSupported() {
+        return UNIX != null;
+    }
+
+    static ProtocolFamily family() {
+        if (UNIX == null) {
+            throw new UnsupportedOperationException("Unix domain sockets require Java 16 or later");
+        }
+        return UNIX;
+    }
+
+    static boolean isUnixHost(String host) {
+        return host != null && host.startsWith(SCHEME);
+    }
+
+    static String path(String host) {
+        return host.substring(SCHEME.length());
+    }
+
+    static SocketAddress address(String path) {
+        family();
+        return (SocketAddress)invoke(ADDRESS_OF, null, path);
+    }
+
+    // The path of a Unix domain socket address, or null for any other address.
+    static String path(SocketAddress address) {
+        if (UNIX == null || !ADDRESS_PATH.getDeclaringClass().isInstance(address)) {
+            return null;
+        }
+        return invoke(ADDRESS_PATH, address).toString();
+    }
+
+    // Opens a socket channel of any protocol family, on Java 15 and later.
+    static SocketChannel openSocketChannel(ProtocolFamily family) throws IOException {
+        if (OPEN_SOCKET_CHANNEL == null) {
+            if (isInet(family)) {
+                return SocketChannel.open();
+            }
+            throw new UnsupportedOperationException("Protocol family not supported: " + family);
+        }
+        return (SocketChannel)invokeIO(OPEN_SOCKET_CHANNEL, SelectorProvider.provider(), family);
+    }
+
+    static ServerSocketChannel openServerSocketChannel(ProtocolFamily family) throws IOException {
+        if (OPEN_SERVER_SOCKET_CHANNEL == null) {
+            if (isInet(family)) {
+                return ServerSocketChannel.open();
+            }
+            throw new UnsupportedOperationException("Protocol family not supported: " + family);
+        }
+        return (ServerSocketChannel)invokeIO(OPEN_SERVER_SOCKET_CHANNEL, SelectorProvider.provider(), family);
+    }
+
+    static boolean isInet(ProtocolFamily family) {
+        return family == StandardProtocolFamily.INET || family == StandardProtocolFamily.INET6;
+    }
+
+    private static Object invokeIO(Method method, Object target, Object... args) throws IOException {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            throw rethrow(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return invokeIO(method, target, args);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException)cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error)cause;
+        }
+        return new IllegalStateException(cause);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.systemtests.engine.TransportPumper;
+import org.junit.Test;
+
+public class DeliveryLatencyTest
+{
+    private static final EnumSet<EndpointState> UNINITIALIZED = EnumSet.of(EndpointState.UNINITIALIZED);
+    private static final EnumSet<EndpointState> ACTIVE = EnumSet.of(EndpointState.ACTIVE);
+
+    private final Connection _clientConnection = Proton.connection();
+    private final Connection _serverConnection = Proton.connection();
+    private final Transport _clientTransport = Proton.transport();
+    private final Transport _serverTransport = Proton.transport();
+    private final TransportPumper _pumper = new TransportPumper(_clientTransport, _serverTransport);
+    private final DeliveryLatency _latency = new DeliveryLatency();
+    private Sender _sender;
+    private Receiver _receiver;
+    private int _tag;
+
+    private void open()
+    {
+        _clientTransport.bind(_clientConnection);
+        _serverTransport.bind(_serverConnection);
+
+        _clientConnection.open();
+        Session session = _clientConnection.session();
+        session.open();
+        _sender = session.sender("sender");
+        _sender.open();
+        _pumper.pumpAll();
+
+        _serverConnection.open();
+        Session serverSession = _serverConnection.sessionHead(UNINITIALIZED, ACTIVE);
+        serverSession.open();
+        _receiver = (Receiver) _serverConnection.linkHead(UNINITIALIZED, ACTIVE);
+        _receiver.open();
+        _pumper.pumpAll();
+    }
+
+    private Delivery send()
+    {
+        Delivery delivery = _sender.delivery(new byte[] {(byte) _tag++});
+        _sender.send(new byte[100], 0, 100);
+        _sender.advance();
+        return delivery;
+    }
+
+    private Delivery receive()
+    {
+        Delivery delivery = _receiver.current();
+        _receiver.recv(new byte[100], 0, 100);
+        _receiver.advance();
+        return delivery;
+    }
+
+    @Test
+    public void testLatencyIsNotTrackedByDefault()
+    {
+        open();
+        assertNull(_sender.getDeliveryLatency());
+        _receiver.flow(1);
+        send();
+        _pumper.pumpAll();
+        receive().settle();
+        _pumper.pumpAll();
+        assertNull(_sender.current());
+    }
+
+    @Test
+    public void testEachStageIsTimed() throws InterruptedException
+    {
+        open();
+        _sender.setDeliveryLatency(_latency);
+        assertEquals(_latency, _sender.getDeliveryLatency());
+        send();
+        send();
+        _pumper.pumpAll();
+        // Held back for want of credit
+        Thread.sleep(10);
+        _receiver.flow(2);
+        _pumper.pumpAll();
+        assertEquals(2, _latency.getWriteTimes().getCount());
+        assertTrue(_latency.getWriteTimes().getMin() >= 10000000);
+        assertEquals(0, _latency.getDispositionTimes().getCount());
+
+        Delivery first = receive();
+        Delivery second = receive();
+        Thread.sleep(10);
+        first.disposition(Accepted.getInstance());
+        second.disposition(Accepted.getInstance());
+        _pumper.pumpAll();
+        assertEquals(2, _latency.getDispositionTimes().getCount());
+        assertTrue(_latency.getDispositionTimes().getMin() >= 10000000);
+        assertEquals(0, _latency.getSettleTimes().getCount());
+
+        first.settle();
+        second.settle();
+        _pumper.pumpAll();
+        assertEquals(2, _latency.getDispositionTimes().getCount());
+        assertEquals(2, _latency.getSettleTimes().getCount());
+        assertTrue(_latency.getSettleTimes().getMin() >= 20000000);
+    }
+
+    @Test
+    public void testSettlingWithoutStateCountsAsTheFirstDisposition()
+    {
+        open();
+        _sender.setDeliveryLatency(_latency);
+        _receiver.flow(1);
+        send();
+        _pumper.pumpAll();
+        receive().settle();
+        _pumper.pumpAll();
+        assertEquals(1, _latency.getWriteTimes().getCount());
+        assertEquals(1, _latency.getDispositionTimes().getCount());
+        assertEquals(1, _latency.getSettleTimes().getCount());
+    }
+
+    @Test
+    public void testPresettledDeliveriesAreOnlyTimedUntilWritten()
+    {
+        open();
+        _sender.setDeliveryLatency(_latency);
+        _receiver.flow(1);
+        send().settle();
+        _pumper.pumpAll();
+        receive().settle();
+        _pumper.pumpAll();
+        assertEquals(1, _latency.getWriteTimes().getCount());
+        assertEquals(0, _latency.getDispositionTimes().getCount());
+        assertEquals(0, _latency.getSettleTimes().getCount());
+    }
+
+    @Test
+    public void testDeliveriesCreatedBeforeTrackingAreNotTimed()
+    {
+        open();
+        _receiver.flow(2);
+        send();
+        _sender.setDeliveryLatency(_latency);
+        send();
+        _pumper.pumpAll();
+        receive().settle();
+        receive().settle();
+        _pumper.pumpAll();
+        assertEquals(1, _latency.getWriteTimes().getCount());
+        assertEquals(1, _latency.getSettleTimes().getCount());
+
+        _latency.reset();
+        assertEquals(0, _latency.getSettleTimes().getCount());
+    }
+}
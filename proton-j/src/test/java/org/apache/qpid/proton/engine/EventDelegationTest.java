@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 
 import org.apache.qpid.proton.reactor.Reactor;
 import org.junit.Test;
@@ -85,4 +86,45 @@ public class EventDelegationTest {
         assertArrayEquals(new String[]{"A", "(A.A", "A.A.A", "A.A.B", "A.A)", "A.B"}, trace.toArray());
     }
 
+    @Test
+    public void testChildAddedDuringDispatchIsDelegated() throws IOException {
+        final Handler late = new ExecutionFlowTracer("A.B");
+        Handler h =
+                assemble(
+                        new ExecutionFlowTracer("A") {
+                            @Override
+                            public void onReactorInit(Event e) {
+                                super.onReactorInit(e);
+                                add(late);
+                            }
+                        },
+                        new ExecutionFlowTracer("A.A")
+                );
+        Reactor r = Reactor.Factory.create();
+        r.getHandler().add(h);
+        r.run();
+        assertArrayEquals(new String[]{"A", "A.A", "A.B"}, trace.toArray());
+    }
+
+    @Test
+    public void testChildRemovedThroughIteratorIsNotDelegated() throws IOException {
+        Handler removed = new ExecutionFlowTracer("A.A");
+        Handler h =
+                assemble(
+                        new ExecutionFlowTracer("A"),
+                        removed,
+                        new ExecutionFlowTracer("A.B")
+                );
+        Iterator<Handler> children = h.children();
+        while (children.hasNext()) {
+            if (children.next() == removed) {
+                children.remove();
+            }
+        }
+        Reactor r = Reactor.Factory.create();
+        r.getHandler().add(h);
+        r.run();
+        assertArrayEquals(new String[]{"A", "A.B"}, trace.toArray());
+    }
+
 }
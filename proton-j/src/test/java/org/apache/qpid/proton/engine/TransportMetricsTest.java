@@ -0,0 +1,293 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.engine.TransportMetrics.FrameType;
+import org.apache.qpid.proton.engine.TransportMetrics.Snapshot;
+import org.apache.qpid.proton.systemtests.engine.TransportPumper;
+import org.junit.Test;
+
+public class TransportMetricsTest
+{
+    private static final EnumSet<EndpointState> UNINITIALIZED = EnumSet.of(EndpointState.UNINITIALIZED);
+    private static final EnumSet<EndpointState> ACTIVE = EnumSet.of(EndpointState.ACTIVE);
+
+    private final TransportMetricsGroup _group = new TransportMetricsGroup()
+    {
+        @Override
+        protected TransportMetrics newMetrics()
+        {
+            return new SizedMetrics();
+        }
+    };
+    private final Connection _clientConnection = Proton.connection();
+    private final Connection _serverConnection = Proton.connection();
+    private final Transport _clientTransport = Proton.transport();
+    private final Transport _serverTransport = Proton.transport();
+    private final SizedMetrics _clientMetrics = (SizedMetrics) _group.create();
+    private final SizedMetrics _serverMetrics = (SizedMetrics) _group.create();
+    private final TransportPumper _pumper = new TransportPumper(_clientTransport, _serverTransport);
+    private Sender _sender;
+    private Receiver _receiver;
+    private int _tag;
+
+    // Adds up the sizes of the frames sent and received
+    private static class SizedMetrics extends TransportMetrics
+    {
+        private long _sizeSent;
+        private long _sizeReceived;
+
+        @Override
+        public void recordFrameSent(int channel, Object body, int size)
+        {
+            super.recordFrameSent(channel, body, size);
+            _sizeSent += size;
+        }
+
+        @Override
+        public void recordFrameReceived(int channel, Object body, int size)
+        {
+            super.recordFrameReceived(channel, body, size);
+            _sizeReceived += size;
+        }
+    }
+
+    private void open(int serverMaxFrameSize, int serverCapacity)
+    {
+        _clientTransport.setMetrics(_clientMetrics);
+        _serverTransport.setMetrics(_serverMetrics);
+        _serverTransport.setMaxFrameSize(serverMaxFrameSize);
+        _clientTransport.bind(_clientConnection);
+        _serverTransport.bind(_serverConnection);
+
+        _clientConnection.open();
+        Session session = _clientConnection.session();
+        session.open();
+        _sender = session.sender("sender");
+        _sender.open();
+        _pumper.pumpAll();
+
+        _serverConnection.open();
+        Session serverSession = _serverConnection.sessionHead(UNINITIALIZED, ACTIVE);
+        serverSession.setIncomingCapacity(serverCapacity);
+        serverSession.open();
+        _receiver = (Receiver) _serverConnection.linkHead(UNINITIALIZED, ACTIVE);
+        _receiver.open();
+        _pumper.pumpAll();
+    }
+
+    private void send(int size)
+    {
+        _sender.delivery(new byte[] {(byte) _tag++});
+        _sender.send(new byte[size], 0, size);
+        _sender.advance();
+    }
+
+    private int receive()
+    {
+        int received = 0;
+        byte[] buffer = new byte[1024];
+        Delivery delivery;
+        while ((delivery = _receiver.current()) != null && !delivery.isPartial())
+        {
+            while (_receiver.recv(buffer, 0, buffer.length) > 0)
+            {
+            }
+            _receiver.advance();
+            delivery.disposition(Accepted.getInstance());
+            delivery.settle();
+            received++;
+        }
+        return received;
+    }
+
+    @Test
+    public void testFramesBytesAndUnsettledAreCounted()
+    {
+        open(1024, 1024 * 1024);
+        _receiver.flow(10);
+        _pumper.pumpAll();
+        send(100);
+        send(100);
+        // Split into three transfers by the server's maximum frame size
+        send(2500);
+        _pumper.pumpAll();
+
+        Snapshot client = _clientMetrics.snapshot();
+        Snapshot server = _serverMetrics.snapshot();
+        assertEquals(1, client.getFramesSent(FrameType.OPEN));
+        assertEquals(1, client.getFramesSent(FrameType.BEGIN));
+        assertEquals(1, client.getFramesSent(FrameType.ATTACH));
+        assertEquals(5, client.getFramesSent(FrameType.TRANSFER));
+        assertEquals(2, client.getPartialTransfersSent());
+        assertEquals(5, server.getFramesReceived(FrameType.TRANSFER));
+        assertEquals(2, server.getPartialTransfersReceived());
+        assertEquals(1, server.getFramesSent(FrameType.FLOW));
+        assertEquals(client.getFramesSent(), server.getFramesReceived());
+        assertEquals(server.getFramesSent(), client.getFramesReceived());
+        assertEquals(_clientTransport.getFramesOutput(), total(client.getFramesSent()));
+        assertEquals(client.getBytesOutput(), server.getBytesInput());
+        // Every byte but the protocol header is in a frame
+        assertEquals(client.getBytesOutput() - 8, _clientMetrics._sizeSent);
+        assertEquals(_clientMetrics._sizeSent, _serverMetrics._sizeReceived);
+        assertEquals(server.getBytesOutput(), client.getBytesInput());
+        assertTrue(client.getPeakPendingOutput() > 0);
+        assertEquals(0, client.getPendingOutput());
+        assertEquals(Collections.singletonMap(0, 3), client.getUnsettledBySession());
+        assertEquals(3, server.getUnsettled());
+
+        assertEquals(3, receive());
+        _pumper.pumpAll();
+        client = _clientMetrics.snapshot();
+        assertEquals(3, client.getFramesReceived(FrameType.DISPOSITION));
+        assertEquals(Collections.singletonMap(0, 0), client.getUnsettledBySession());
+        assertEquals(0, _serverMetrics.snapshot().getUnsettled());
+        assertEquals(0, client.getLinkCreditBlockedTime());
+        assertEquals(0, client.getSessionWindowBlockedTime());
+    }
+
+    private static long total(Map<FrameType, Long> frames)
+    {
+        long total = 0;
+        for (long count : frames.values())
+        {
+            total += count;
+        }
+        return total;
+    }
+
+    @Test
+    public void testTimeBlockedOnLinkCreditIsCounted() throws InterruptedException
+    {
+        open(1024, 1024 * 1024);
+        send(100);
+        _pumper.pumpAll();
+        Thread.sleep(20);
+        assertTrue(_clientMetrics.snapshot().getLinkCreditBlockedTime() >= 20000000);
+
+        _receiver.flow(1);
+        _pumper.pumpAll();
+        assertEquals(1, receive());
+        long blocked = _clientMetrics.snapshot().getLinkCreditBlockedTime();
+        Thread.sleep(5);
+        assertEquals(blocked, _clientMetrics.snapshot().getLinkCreditBlockedTime());
+        assertEquals(0, _clientMetrics.snapshot().getSessionWindowBlockedTime());
+    }
+
+    @Test
+    public void testTimeBlockedOnSessionWindowIsCounted() throws InterruptedException
+    {
+        // A window of one frame, which the first message fills until it is read
+        open(1024, 1024);
+        _receiver.flow(10);
+        _pumper.pumpAll();
+        send(100);
+        send(100);
+        _pumper.pumpAll();
+        Thread.sleep(20);
+        assertTrue(_clientMetrics.snapshot().getSessionWindowBlockedTime() >= 20000000);
+        assertEquals(0, _clientMetrics.snapshot().getLinkCreditBlockedTime());
+    }
+
+    @Test
+    public void testGroupAddsUpOpenAndClosedTransports() throws Exception
+    {
+        open(1024, 1024 * 1024);
+        _receiver.flow(1);
+        _pumper.pumpAll();
+        send(100);
+        _pumper.pumpAll();
+        assertEquals(2, _group.getOpenCount());
+
+        _clientConnection.close();
+        _pumper.pumpAll();
+        _serverConnection.close();
+        _pumper.pumpAll();
+        _clientTransport.close_tail();
+        _serverTransport.close_tail();
+        // The transports post that their heads have closed when popped
+        _clientTransport.pop(0);
+        _serverTransport.pop(0);
+        assertTrue(_clientMetrics.isClosed());
+        assertTrue(_serverMetrics.isClosed());
+        assertEquals(0, _group.getOpenCount());
+        assertEquals(2, _group.getClosedCount());
+
+        Snapshot total = _group.snapshot();
+        assertEquals(1, total.getFramesSent(FrameType.TRANSFER));
+        assertEquals(1, total.getFramesReceived(FrameType.TRANSFER));
+        assertEquals(2, total.getFramesSent(FrameType.CLOSE));
+        assertEquals(0, total.getUnsettled());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.apache.qpid.proton:type=TransportMetrics,name=test");
+        _group.registerMBean(server, name);
+        try
+        {
+            TransportMetricsMXBean bean = JMX.newMXBeanProxy(server, name, TransportMetricsMXBean.class);
+            assertEquals(2, bean.getClosedCount());
+            assertEquals(1, bean.getTransfersSent());
+            assertEquals(Long.valueOf(2), bean.getFramesSent().get("CLOSE"));
+            assertEquals(total.getBytesOutput(), bean.getBytesOutput());
+            assertNull(bean.getFramesSent().get("EMPTY"));
+        }
+        finally
+        {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void testNothingIsRecordedAfterClosing()
+    {
+        TransportMetrics metrics = new TransportMetrics();
+        metrics.recordBytesOutput(10);
+        metrics.recordUnsettled(0, 3);
+        metrics.recordClosed();
+
+        metrics.recordBytesOutput(10);
+        metrics.recordFrameSent(0, null, 8);
+        metrics.recordUnsettled(0, 4);
+        metrics.recordPendingOutput(100);
+
+        Snapshot snapshot = metrics.snapshot();
+        assertEquals(10, snapshot.getBytesOutput());
+        assertEquals(0, snapshot.getFramesSent(FrameType.EMPTY));
+        assertEquals(0, snapshot.getUnsettled());
+        assertEquals(0, snapshot.getPendingOutput());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.EventType;
+import org.junit.Test;
+
+public class CollectorImplTest
+{
+    private static final EventType CUSTOM = new EventType() {
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+    };
+
+    @Test
+    public void testInterestDiscardsOtherCoreTypes()
+    {
+        CollectorImpl collector = new CollectorImpl();
+        collector.setInterest(EnumSet.of(Event.Type.DELIVERY));
+        Object context = new Object();
+
+        assertNull(collector.put(Event.Type.LINK_FLOW, context));
+        assertNotNull(collector.put(Event.Type.DELIVERY, context));
+        assertNotNull(collector.put(CUSTOM, context));
+        assertEquals(asList(Event.Type.DELIVERY, CUSTOM), drain(collector));
+
+        collector.setInterest(null);
+        assertNotNull(collector.put(Event.Type.LINK_FLOW, context));
+    }
+
+    @Test
+    public void testCoalescingSkipsQueuedDuplicates()
+    {
+        CollectorImpl collector = new CollectorImpl();
+        collector.setCoalescing(true);
+        Object a = new Object();
+        Object b = new Object();
+
+        assertNotNull(collector.put(Event.Type.REACTOR_INIT, a));
+        assertNotNull(collector.put(Event.Type.TRANSPORT, a));
+        assertNotNull(collector.put(Event.Type.TRANSPORT, b));
+        assertNull(collector.put(Event.Type.TRANSPORT, a));
+        assertNotNull(collector.put(Event.Type.CONNECTION_INIT, a));
+        assertNotNull(collector.put(Event.Type.CONNECTION_INIT, b));
+        assertNotNull(collector.put(Event.Type.CONNECTION_INIT, a));
+
+        assertEquals(6, drain(collector).size());
+    }
+
+    @Test
+    public void testCoalescingDoesNotSkipEventBeingDispatched()
+    {
+        CollectorImpl collector = new CollectorImpl();
+        collector.setCoalescing(true);
+        Object a = new Object();
+
+        collector.put(Event.Type.DELIVERY, a);
+        collector.put(Event.Type.LINK_FLOW, a);
+        assertSame(Event.Type.DELIVERY, collector.peek().getEventType());
+        // A handler of the head event may generate another for the same context.
+        assertNotNull(collector.put(Event.Type.DELIVERY, a));
+        collector.pop();
+        // The second event is still queued, so a third is redundant.
+        assertNull(collector.put(Event.Type.DELIVERY, a));
+
+        assertEquals(asList(Event.Type.LINK_FLOW, Event.Type.DELIVERY), drain(collector));
+        assertNotNull(collector.put(Event.Type.DELIVERY, a));
+    }
+
+    @Test
+    public void testHandlerInterest()
+    {
+        BaseHandler handler = new BaseHandler() {
+            @Override
+            public void onDelivery(Event e) {}
+        };
+        handler.add(new BaseHandler() {
+            @Override
+            public void onSelectableUpdated(Event e) {}
+        });
+        assertEquals(EnumSet.of(Event.Type.DELIVERY, Event.Type.SELECTABLE_UPDATED), BaseHandler.interest(handler));
+
+        handler.add(new BaseHandler() {
+            @Override
+            public void onUnhandled(Event e) {}
+        });
+        assertEquals(EnumSet.complementOf(EnumSet.of(Event.Type.NON_CORE_EVENT)), BaseHandler.interest(handler));
+    }
+
+    private static List<EventType> asList(EventType... types)
+    {
+        List<EventType> result = new ArrayList<EventType>();
+        for (EventType type : types) {
+            result.add(type);
+        }
+        return result;
+    }
+
+    private static List<EventType> drain(CollectorImpl collector)
+    {
+        List<EventType> result = new ArrayList<EventType>();
+        Event event;
+        while ((event = collector.peek()) != null) {
+            result.add(event.getEventType());
+            collector.pop();
+        }
+        return result;
+    }
+}
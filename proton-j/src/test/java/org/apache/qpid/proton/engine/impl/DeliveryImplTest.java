@@ -19,6 +19,7 @@
  */
 package org.apache.qpid.proton.engine.impl;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
@@ -74,4 +75,25 @@ public class DeliveryImplTest
         Record attachments2 = delivery.attachments();
         assertSame("Expected to get the same attachments", attachments, attachments2);
     }
+
+    @Test
+    public void testAppendedDataIsReadInOrder() throws Exception
+    {
+        DeliveryImpl delivery = new DeliveryImpl(null, Mockito.mock(LinkImpl.class), null);
+
+        // The first payload is kept in the array it arrived in, which must not
+        // be written to when more arrives
+        byte[] first = new byte[] {9, 1, 2, 9};
+        delivery.appendData(first, 1, 2);
+        delivery.appendData(new byte[] {3, 4, 5}, 0, 3);
+
+        byte[] buffer = new byte[10];
+        assertEquals("Unexpected number of bytes read", 2, delivery.recv(buffer, 0, 2));
+        delivery.appendData(new byte[] {0, 6}, 1, 1);
+        assertEquals("Unexpected number of bytes read", 4, delivery.recv(buffer, 2, 8));
+
+        assertArrayEquals("Unexpected data", new byte[] {1, 2, 3, 4, 5, 6, 0, 0, 0, 0}, buffer);
+        assertArrayEquals("First payload was modified", new byte[] {9, 1, 2, 9}, first);
+        assertEquals("Unexpected data length", 0, delivery.getDataLength());
+    }
 }
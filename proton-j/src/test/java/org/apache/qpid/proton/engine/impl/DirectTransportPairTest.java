@@ -0,0 +1,206 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.engine.Collector;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.junit.Test;
+
+public class DirectTransportPairTest
+{
+    private final DirectTransportPair _pair = new DirectTransportPair();
+    private final Connection _client = Proton.connection();
+    private final Connection _server = Proton.connection();
+    private final Collector _clientEvents = Proton.collector();
+    private final Collector _serverEvents = Proton.collector();
+    private Sender _sender;
+    private Receiver _receiver;
+    private int _tag;
+
+    private void openLink()
+    {
+        _client.collect(_clientEvents);
+        _server.collect(_serverEvents);
+        _pair.getFirst().bind(_client);
+        _pair.getSecond().bind(_server);
+
+        _client.open();
+        Session session = _client.session();
+        session.open();
+        _sender = session.sender("sender");
+        _sender.open();
+        _pair.process();
+
+        _server.open();
+        Session serverSession = _server.sessionHead(null, null);
+        serverSession.open();
+        _receiver = (Receiver)_server.linkHead(null, null);
+        _receiver.open();
+        _pair.process();
+
+        assertEquals(EndpointState.ACTIVE, _sender.getRemoteState());
+        assertEquals(EndpointState.ACTIVE, _receiver.getRemoteState());
+    }
+
+    private void send(byte[] payload)
+    {
+        _sender.delivery(Integer.toString(_tag++).getBytes());
+        _sender.send(payload, 0, payload.length);
+        _sender.advance();
+    }
+
+    private List<byte[]> receiveAll()
+    {
+        List<byte[]> received = new ArrayList<byte[]>();
+        Delivery delivery = _receiver.current();
+        while (delivery != null && !delivery.isPartial())
+        {
+            byte[] data = new byte[delivery.pending()];
+            _receiver.recv(data, 0, data.length);
+            received.add(data);
+            _receiver.advance();
+            delivery.disposition(Accepted.getInstance());
+            delivery.settle();
+            delivery = _receiver.current();
+        }
+        return received;
+    }
+
+    private static List<Event.Type> drain(Collector collector)
+    {
+        List<Event.Type> types = new ArrayList<Event.Type>();
+        Event event;
+        while ((event = collector.peek()) != null)
+        {
+            types.add(event.getType());
+            collector.pop();
+        }
+        return types;
+    }
+
+    @Test
+    public void testTransfersAreLimitedByCreditAndSettledByThePeer()
+    {
+        openLink();
+        byte[] payload = new byte[100];
+        for (int i = 0; i < 25; i++)
+        {
+            payload[0] = (byte) i;
+            send(payload);
+        }
+        _pair.process();
+        assertEquals(0, receiveAll().size());
+
+        _receiver.flow(10);
+        _pair.process();
+        List<byte[]> received = receiveAll();
+        assertEquals(10, received.size());
+        assertEquals(9, received.get(9)[0]);
+        _pair.process();
+        assertEquals(15, _sender.getQueued());
+
+        int settled = 0;
+        for (Delivery delivery = _sender.getSession().getConnection().getWorkHead(); delivery != null; delivery = delivery.getWorkNext())
+        {
+            if (delivery.remotelySettled())
+            {
+                assertEquals(Accepted.getInstance(), delivery.getRemoteState());
+                delivery.settle();
+                settled++;
+            }
+        }
+        assertEquals(10, settled);
+
+        _receiver.flow(100);
+        _pair.process();
+        assertEquals(15, receiveAll().size());
+        assertEquals(0, _sender.getQueued());
+    }
+
+    @Test
+    public void testMessagesAreSplitByTheReceiversMaxFrameSize()
+    {
+        _pair.getSecond().setMaxFrameSize(1024);
+        openLink();
+        _receiver.flow(1);
+        _pair.process();
+
+        byte[] payload = new byte[5000];
+        for (int i = 0; i < payload.length; i++)
+        {
+            payload[i] = (byte) i;
+        }
+        send(payload);
+        long framesBefore = _pair.getSecond().getFramesInput();
+        _pair.process();
+
+        assertEquals(5, _pair.getSecond().getFramesInput() - framesBefore);
+        List<byte[]> received = receiveAll();
+        assertEquals(1, received.size());
+        assertArrayEquals(payload, received.get(0));
+    }
+
+    @Test
+    public void testClosingEndsBothTransports()
+    {
+        openLink();
+        drain(_clientEvents);
+        drain(_serverEvents);
+
+        _client.close();
+        _pair.process();
+        assertEquals(EndpointState.CLOSED, _server.getRemoteState());
+        _server.close();
+        _pair.process();
+
+        List<Event.Type> clientEvents = drain(_clientEvents);
+        List<Event.Type> serverEvents = drain(_serverEvents);
+        assertTrue(clientEvents.toString(), clientEvents.contains(Event.Type.TRANSPORT_CLOSED));
+        assertTrue(serverEvents.toString(), serverEvents.contains(Event.Type.TRANSPORT_CLOSED));
+        assertFalse(clientEvents.contains(Event.Type.TRANSPORT_ERROR));
+        assertFalse(serverEvents.contains(Event.Type.TRANSPORT_ERROR));
+        assertNull(_pair.getFirst().getCondition());
+        assertFalse(_pair.process());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSaslIsNotAvailable()
+    {
+        _pair.getFirst().sasl();
+    }
+}
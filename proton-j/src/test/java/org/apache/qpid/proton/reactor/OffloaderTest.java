@@ -0,0 +1,197 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.HandlerException;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.reactor.impl.AcceptorImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffloaderTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    // Sends deliveries whose payload is their sequence number, and closes the
+    // connection once the peer has settled them all
+    private static class SourceHandler extends BaseHandler {
+        private final int port;
+        private final int count;
+        private int sent;
+        private int settled;
+        private int accepted;
+
+        private SourceHandler(int port, int count) {
+            this.port = port;
+            this.count = count;
+        }
+
+        @Override
+        public void onConnectionInit(Event event) {
+            Connection conn = event.getConnection();
+            conn.setHostname("127.0.0.1:" + port);
+            Session ssn = conn.session();
+            Sender snd = ssn.sender("sender");
+            conn.open();
+            ssn.open();
+            snd.open();
+        }
+
+        @Override
+        public void onLinkFlow(Event event) {
+            Sender link = (Sender)event.getLink();
+            while (link.getCredit() > 0 && sent < count) {
+                link.delivery(new byte[] {(byte)(sent >> 8), (byte)sent});
+                link.send(new byte[] {(byte)(sent >> 8), (byte)sent}, 0, 2);
+                link.advance();
+                ++sent;
+            }
+        }
+
+        @Override
+        public void onDelivery(Event event) {
+            Delivery dlv = event.getDelivery();
+            if (dlv.remotelySettled()) {
+                if (dlv.getRemoteState() instanceof Accepted) {
+                    ++accepted;
+                }
+                dlv.settle();
+                if (++settled == count) {
+                    event.getConnection().close();
+                }
+            }
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            event.getConnection().free();
+        }
+    }
+
+    private static class ServerHandler extends BaseHandler {
+        private Acceptor acceptor;
+
+        @Override
+        public void onConnectionRemoteOpen(Event event) {
+            event.getConnection().open();
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            acceptor.close();
+            event.getConnection().close();
+            event.getConnection().free();
+        }
+    }
+
+    // Runs a reactor where the server side's deliveries are handled, and
+    // settled, by the given offloaded handler
+    private SourceHandler transfer(int count, OffloadedHandler offloaded) throws IOException {
+        Reactor reactor = Proton.reactor();
+        ServerHandler sh = new ServerHandler();
+        sh.add(new Handshaker());
+        sh.add(new FlowController(64));
+        sh.add(new Offloader(executor, offloaded, Event.Type.DELIVERY));
+        sh.acceptor = reactor.acceptor("127.0.0.1", 0, sh);
+        SourceHandler src = new SourceHandler(((AcceptorImpl)sh.acceptor).getPortNumber(), count);
+        reactor.connection(src);
+        reactor.run();
+        reactor.free();
+        return src;
+    }
+
+    @Test
+    public void deliveriesAreHandledInOrderOffTheReactorThread() throws IOException {
+        final Thread reactorThread = Thread.currentThread();
+        final List<Integer> handled = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        SourceHandler src = transfer(500, new OffloadedHandler() {
+            @Override
+            public void handle(OffloadedEvent event) throws Exception {
+                byte[] payload = event.getPayload();
+                if (payload != null) {
+                    threads.add(Thread.currentThread());
+                    handled.add(((payload[0] & 0xff) << 8) | (payload[1] & 0xff));
+                    if (handled.size() % 50 == 0) {
+                        // Slow work must not reorder what follows
+                        Thread.sleep(5);
+                    }
+                    event.settle(Accepted.getInstance());
+                }
+            }
+        });
+
+        assertEquals(500, src.accepted);
+        assertEquals(500, handled.size());
+        for (int i = 0; i < handled.size(); i++) {
+            assertEquals(Integer.valueOf(i), handled.get(i));
+        }
+        assertFalse(threads.contains(reactorThread));
+    }
+
+    @Test
+    public void offloadedFailureIsRethrownByTheReactor() throws IOException {
+        final RuntimeException failure = new RuntimeException("offloaded failure");
+        try {
+            transfer(10, new OffloadedHandler() {
+                @Override
+                public void handle(OffloadedEvent event) throws Exception {
+                    throw failure;
+                }
+            });
+        } catch (HandlerException e) {
+            assertTrue(e.getHandler() instanceof Offloader);
+            assertEquals(failure, e.getCause());
+            return;
+        }
+        throw new AssertionError("Expected the reactor to re-throw the offloaded failure");
+    }
+}
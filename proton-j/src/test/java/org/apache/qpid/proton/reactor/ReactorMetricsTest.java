@@ -0,0 +1,146 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Event.Type;
+import org.apache.qpid.proton.reactor.impl.IOHandler;
+import org.junit.Test;
+
+public class ReactorMetricsTest {
+
+    private static class TaskHandler extends BaseHandler {
+        private final long sleep;
+
+        private TaskHandler(long sleep) {
+            this.sleep = sleep;
+        }
+
+        @Override
+        public void onTimerTask(Event event) {
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reactorRecordsEventsHandlersAndIterations() throws IOException {
+        Reactor reactor = Proton.reactor();
+        ReactorMetrics metrics = new ReactorMetrics();
+        reactor.setMetrics(metrics);
+        TaskHandler handler = new TaskHandler(0);
+        for (int i = 0; i < 10; i++) {
+            reactor.schedule(i, handler);
+        }
+        reactor.run();
+        reactor.free();
+
+        assertEquals(10, metrics.getEventCount(Type.TIMER_TASK));
+        assertEquals(1, metrics.getEventCount(Type.REACTOR_INIT));
+        assertTrue(metrics.getIterationTimes().getCount() > 0);
+        assertTrue(metrics.getSelectWaits().getCount() > 0);
+        Map<Class<?>, Histogram> handlers = metrics.getHandlerTimes();
+        assertEquals(10, handlers.get(TaskHandler.class).getCount());
+        assertTrue(handlers.containsKey(IOHandler.class));
+        assertEquals(0, metrics.getSlowHandlerCount());
+    }
+
+    @Test
+    public void selectWaitsAreNotCountedAgainstHandlers() throws IOException {
+        Reactor reactor = Proton.reactor();
+        ReactorMetrics metrics = new ReactorMetrics();
+        metrics.setSlowHandlerThreshold(20, TimeUnit.MILLISECONDS);
+        reactor.setMetrics(metrics);
+        // The reactor waits for the second task in its selector
+        reactor.schedule(0, new TaskHandler(0));
+        reactor.schedule(200, new TaskHandler(0));
+        reactor.run();
+        reactor.free();
+
+        assertTrue(metrics.getSelectWaits().getMax() >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(metrics.getHandlerTimes().get(IOHandler.class).getMax() < TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, metrics.getSlowHandlerCount());
+    }
+
+    @Test
+    public void slowHandlersAreCounted() throws IOException {
+        Reactor reactor = Proton.reactor();
+        ReactorMetrics metrics = new ReactorMetrics();
+        metrics.setSlowHandlerThreshold(10, TimeUnit.MILLISECONDS);
+        reactor.setMetrics(metrics);
+        reactor.schedule(0, new TaskHandler(30));
+        reactor.schedule(0, new TaskHandler(0));
+        reactor.run();
+        reactor.free();
+
+        assertEquals(1, metrics.getSlowHandlerCount());
+        assertTrue(metrics.getHandlerTimes().get(TaskHandler.class).getMax() >= TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    @Test
+    public void metricsCanBeReadThroughJmx() throws Exception {
+        Reactor reactor = Proton.reactor();
+        ReactorMetrics metrics = new ReactorMetrics();
+        reactor.setMetrics(metrics);
+        reactor.schedule(0, new TaskHandler(0));
+        reactor.run();
+        reactor.free();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.apache.qpid.proton:type=Reactor,name=ReactorMetricsTest");
+        metrics.registerMBean(server, name);
+        try {
+            assertEquals(metrics.getIterationTimes().getCount(), server.getAttribute(name, "IterationCount"));
+            ReactorMetricsMXBean bean = JMX.newMXBeanProxy(server, name, ReactorMetricsMXBean.class);
+            assertEquals(Long.valueOf(1), bean.getEventCounts().get("TIMER_TASK"));
+            assertTrue(bean.getHandlerTimeMeans().containsKey(TaskHandler.class.getName()));
+            long iterations = metrics.getIterationTimes().getCount();
+            bean.reset();
+            // Left to the reactor's thread, at the end of its next iteration
+            assertEquals(iterations, metrics.getIterationTimes().getCount());
+            metrics.recordIteration(1000);
+            assertEquals(0, metrics.getIterationTimes().getCount());
+            assertTrue(metrics.getEventCounts().isEmpty());
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -33,6 +33,7 @@ import java.net.ServerSocket;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import junit.framework.AssertionFailedError;
 
@@ -40,14 +41,18 @@ import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.engine.BaseHandler;
 import org.apache.qpid.proton.engine.Connection;
 import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
 import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.engine.Event.Type;
 import org.apache.qpid.proton.engine.Handler;
 import org.apache.qpid.proton.engine.HandlerException;
 import org.apache.qpid.proton.engine.Sender;
 import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.engine.impl.TransportImpl;
 import org.apache.qpid.proton.reactor.impl.AcceptorImpl;
 import org.apache.qpid.proton.reactor.impl.LeakTestReactor;
+import org.apache.qpid.proton.reactor.impl.MemoryIO;
+import org.apache.qpid.proton.reactor.impl.ReactorImpl;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -66,7 +71,8 @@ public class ReactorTest {
     }
 
     // Parameterize the tests, and run them once with a reactor obtained by calling
-    // 'Proton.reactor()' and once with the LeakTestReactor.
+    // 'Proton.reactor()', once with the LeakTestReactor and once with a reactor
+    // that does its I/O in memory.
     @Parameters
     public static Collection<ReactorFactory[]> data() throws IOException {
         ReactorFactory classicReactor = new ReactorFactory() {
@@ -79,7 +85,12 @@ public class ReactorTest {
                 return new LeakTestReactor();
             }
         };
-        return Arrays.asList(new ReactorFactory[][]{{classicReactor}, {newLeakDetection}});
+        ReactorFactory memoryReactor = new ReactorFactory() {
+            @Override public Reactor newReactor() throws IOException {
+                return new ReactorImpl(new MemoryIO());
+            }
+        };
+        return Arrays.asList(new ReactorFactory[][]{{classicReactor}, {newLeakDetection}, {memoryReactor}});
     }
 
     public ReactorTest(ReactorFactory reactorFactory) {
@@ -341,7 +352,16 @@ public class ReactorTest {
     }
 
     private void transfer(int count, int window) throws IOException {
+        transfer(count, window, false, 0, null);
+    }
+
+    private void transfer(int count, int window, boolean restrictEvents, long busyPollPeriod,
+                          IOSettings settings) throws IOException {
         reactor = reactorFactory.newReactor();
+        reactor.setBusyPollPeriod(busyPollPeriod);
+        if (settings != null) {
+            IOSettings.set(reactor.attachments(), settings);
+        }
         ServerHandler sh = new ServerHandler();
         Acceptor acceptor = reactor.acceptor("127.0.0.1", 0, sh);
         sh.setAcceptor(acceptor);
@@ -354,6 +374,9 @@ public class ReactorTest {
 
         SourceHandler src = new SourceHandler(count, ((AcceptorImpl)acceptor).getPortNumber());
         reactor.connection(src);
+        if (restrictEvents) {
+            reactor.restrictEvents(sh, src);
+        }
 
         reactor.run();
         reactor.free();
@@ -378,6 +401,55 @@ public class ReactorTest {
         transfer(4*1024, 1024);
     }
 
+    /**
+     * Tests that transferring messages still works when the reactor only
+     * records the events its handlers override an onXxx method for.
+     */
+    @Test
+    public void transfer_1024_64_restricted() throws IOException {
+        transfer(1024, 64, true, 0, null);
+    }
+
+    /**
+     * Tests that transferring messages works when the reactor busy-polls
+     * its selector rather than blocking straight away.
+     */
+    @Test
+    public void transfer_1024_64_busyPoll() throws IOException {
+        transfer(1024, 64, false, 1000, null);
+    }
+
+    /**
+     * Tests that transferring messages works when each readiness event may
+     * only read or write a few bytes of a connection's socket.
+     */
+    @Test
+    public void transfer_1024_64_smallBudgets() throws IOException {
+        transfer(1024, 64, false, 0, new IOSettings().setReadBudget(7).setWriteBudget(5));
+    }
+
+    /**
+     * Tests that transferring messages works when output is written as soon
+     * as the transport produces it, on sockets with Nagle's algorithm off.
+     */
+    @Test
+    public void transfer_1024_64_immediateFlush() throws IOException {
+        transfer(1024, 64, false, 0,
+                new IOSettings().setFlushPolicy(IOSettings.FlushPolicy.IMMEDIATE).setTcpNoDelay(true));
+    }
+
+    /**
+     * Tests that transferring messages works when output is held back until
+     * enough has built up or it has waited for the flush delay.
+     */
+    @Test
+    public void transfer_1024_64_delayedFlush() throws IOException {
+        transfer(1024, 64, false, 0,
+                new IOSettings().setFlushPolicy(IOSettings.FlushPolicy.DELAYED)
+                        .setFlushDelay(500).setFlushThreshold(4096)
+                        .setSendBufferSize(32 * 1024).setReceiveBufferSize(32 * 1024));
+    }
+
     @Test
     public void schedule() throws IOException {
         TestHandler reactorHandler = new TestHandler();
@@ -566,6 +638,103 @@ public class ReactorTest {
         reactor.free();
     }
 
+    /**
+     * Tests that the empty frame a connection writes to keep itself alive is
+     * flushed as soon as its deadline expires, rather than waiting for the
+     * connection to be woken up again, by which time the peer may have timed
+     * it out.
+     */
+    @Test
+    public void heartbeatIsFlushedOnExpiry() throws IOException {
+        final Acceptor acceptor = reactor.acceptor("127.0.0.1", 0, new Handshaker() {
+            @Override
+            public void onConnectionBound(Event event) {
+                // Asks the client for a frame at least every 100 ms
+                event.getTransport().setIdleTimeout(200);
+            }
+        });
+        final int listeningPort = ((AcceptorImpl)acceptor).getPortNumber();
+        Connection connection = reactor.connection(new BaseHandler() {
+            @Override
+            public void onConnectionInit(Event event) {
+                event.getConnection().setHostname("127.0.0.1:" + listeningPort);
+                event.getConnection().open();
+            }
+        });
+
+        reactor.start();
+        long end = System.currentTimeMillis() + 1000;
+        int checked = 0;
+        while (System.currentTimeMillis() < end) {
+            reactor.process();
+            TransportImpl transport = (TransportImpl)connection.getTransport();
+            if (transport != null && connection.getRemoteState() == EndpointState.ACTIVE) {
+                if (transport.pending() > 0) {
+                    assertTrue("Output held back after iteration " + checked,
+                            transport.getSelectable().isWriting());
+                }
+                checked++;
+            }
+        }
+        assertTrue(checked > 5);
+        assertEquals("Connection timed out", EndpointState.ACTIVE, connection.getRemoteState());
+
+        connection.close();
+        acceptor.close();
+        while (reactor.process()) {
+            if (connection.getRemoteState() == EndpointState.CLOSED && connection.getTransport() != null) {
+                connection.free();
+            }
+        }
+        reactor.stop();
+        reactor.free();
+    }
+
+    /**
+     * Tests that a task passed to invoke() which throws does not strand the
+     * tasks queued behind it: they run when the reactor is processed again.
+     */
+    @Test
+    public void invokedTasksRunAfterAFailingTask() throws IOException {
+        final RuntimeException failure = new RuntimeException("invoked failure");
+        final List<String> ran = new ArrayList<String>();
+        // Keeps the reactor running, and checks the timer still fires
+        reactor.schedule(100, new BaseHandler() {
+            @Override
+            public void onTimerTask(Event event) {
+                ran.add("timer");
+            }
+        });
+        reactor.start();
+        reactor.invoke(new Runnable() {
+            @Override
+            public void run() {
+                throw failure;
+            }
+        });
+        reactor.invoke(new Runnable() {
+            @Override
+            public void run() {
+                ran.add("invoked");
+            }
+        });
+        int failures = 0;
+        long end = System.currentTimeMillis() + 2000;
+        while (ran.size() < 2 && System.currentTimeMillis() < end) {
+            try {
+                reactor.process();
+            } catch (HandlerException e) {
+                assertSame(failure, e.getCause());
+                failures++;
+            }
+        }
+        assertEquals(1, failures);
+        assertEquals(Arrays.asList("invoked", "timer"), ran);
+
+        reactor.stop();
+        reactor.free();
+    }
+
     @Test
     public void connectionRefused() throws IOException {
         final ServerSocket serverSocket = new ServerSocket(0, 0);
@@ -0,0 +1,170 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+// Unix domain sockets need Java 16 or later, so these tests are skipped on
+// older versions.
+public class UnixDomainSocketTest {
+
+    private File path;
+
+    @Before
+    public void before() throws IOException {
+        boolean supported;
+        try {
+            Class.forName("java.net.UnixDomainSocketAddress");
+            supported = true;
+        } catch (ClassNotFoundException e) {
+            supported = false;
+        }
+        Assume.assumeTrue(supported);
+        path = File.createTempFile("proton", ".sock");
+        path.delete();
+    }
+
+    @After
+    public void after() {
+        if (path != null) {
+            path.delete();
+        }
+    }
+
+    private static class SourceHandler extends BaseHandler {
+        private final String hostname;
+        private int remaining;
+        private String condition;
+
+        private SourceHandler(String hostname, int count) {
+            this.hostname = hostname;
+            remaining = count;
+        }
+
+        @Override
+        public void onConnectionInit(Event event) {
+            Connection conn = event.getConnection();
+            conn.setHostname(hostname);
+            Session ssn = conn.session();
+            Sender snd = ssn.sender("sender");
+            conn.open();
+            ssn.open();
+            snd.open();
+        }
+
+        @Override
+        public void onLinkFlow(Event event) {
+            Sender link = (Sender)event.getLink();
+            while (link.getCredit() > 0 && remaining > 0) {
+                Delivery dlv = link.delivery(new byte[0]);
+                dlv.settle();
+                link.advance();
+                --remaining;
+            }
+            if (remaining == 0) {
+                event.getConnection().close();
+            }
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            event.getConnection().free();
+        }
+
+        @Override
+        public void onTransportClosed(Event event) {
+            if (event.getTransport().getCondition() != null) {
+                condition = event.getTransport().getCondition().getDescription();
+            }
+        }
+    }
+
+    private static class SinkHandler extends BaseHandler {
+        private Acceptor acceptor;
+        private int received;
+
+        @Override
+        public void onDelivery(Event event) {
+            Delivery dlv = event.getDelivery();
+            if (!dlv.isPartial()) {
+                dlv.settle();
+                ++received;
+            }
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            acceptor.close();
+            event.getConnection().close();
+            event.getConnection().free();
+        }
+    }
+
+    @Test
+    public void transferOverAUnixDomainSocket() throws IOException {
+        Reactor reactor = Proton.reactor();
+        IOSettings.set(reactor.attachments(), new IOSettings().setTcpNoDelay(true).setSendBufferSize(32768));
+        SinkHandler sink = new SinkHandler();
+        sink.add(new Handshaker());
+        sink.add(new FlowController(64));
+        sink.acceptor = reactor.acceptor("unix:" + path.getPath(), 0, sink);
+        assertTrue("socket file should exist while listening", path.exists());
+
+        SourceHandler source = new SourceHandler("unix:" + path.getPath(), 1024);
+        reactor.connection(source);
+        reactor.run();
+        reactor.free();
+
+        assertEquals(null, source.condition);
+        assertEquals(1024, sink.received);
+        assertFalse("socket file should be removed by closing the acceptor", path.exists());
+    }
+
+    @Test
+    public void connectingToAMissingSocketFails() throws IOException {
+        Reactor reactor = Proton.reactor();
+        SourceHandler source = new SourceHandler("unix:" + path.getPath(), 1);
+        reactor.connection(source);
+        reactor.run();
+        reactor.free();
+
+        assertNotNull(source.condition);
+    }
+}
@@ -21,13 +21,20 @@
 
 package org.apache.qpid.proton.reactor.impl;
 
+import static org.junit.Assert.assertFalse;
+
 import java.io.IOException;
 import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Handler;
+import org.apache.qpid.proton.reactor.IOSettings;
 import org.apache.qpid.proton.reactor.ReactorChild;
 import org.apache.qpid.proton.reactor.Selectable.Callback;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.stubbing.OngoingStubbing;
 
 public class AcceptorImplTest {
 
@@ -84,4 +91,65 @@ public class AcceptorImplTest {
         new AcceptorImpl(mockReactor, "host", 1234, null);
         selectable.readable();
     }
+
+    private AcceptorImpl acceptorWithSockets(final SelectableImpl selectable, ReactorImpl mockReactor, final int available) throws IOException {
+        class MockIO extends IOImpl {
+            @Override
+            public ServerSocketChannel serverSocketChannel() throws IOException {
+                ServerSocketChannel result = Mockito.mock(ServerSocketChannel.class);
+                OngoingStubbing<SocketChannel> stubbing = Mockito.when(result.accept());
+                for (int i = 0; i < available; ++i) {
+                    stubbing = stubbing.thenReturn(Mockito.mock(SocketChannel.class));
+                }
+                stubbing.thenReturn(null);
+                return result;
+            }
+        }
+        Mockito.when(mockReactor.getIO()).thenReturn(new MockIO());
+        Mockito.when(mockReactor.selectable(Mockito.any(ReactorChild.class))).thenReturn(selectable);
+        return new AcceptorImpl(mockReactor, "host", 1234, null);
+    }
+
+    /**
+     * Tests that a single readable event accepts every pending socket, up to
+     * the configured maximum, and that sockets can be handed to another reactor,
+     * which binds them with its own handler rather than the acceptor's.
+     * @throws IOException
+     */
+    @Test
+    public void acceptsSeveralSocketsPerEvent() throws IOException {
+        SelectableImpl selectable = new SelectableImpl();
+        ReactorImpl mockReactor = Mockito.mock(ReactorImpl.class);
+        ReactorImpl target = Mockito.mock(ReactorImpl.class);
+        AcceptorImpl acceptor = acceptorWithSockets(selectable, mockReactor, 5);
+        BaseHandler.setHandler(acceptor, new BaseHandler());
+        acceptor.distribute(target);
+        acceptor.setMaxAcceptsPerEvent(3);
+
+        selectable.readable();
+        Mockito.verify(target, Mockito.times(3)).adopt(Mockito.any(SocketChannel.class), (Handler)Mockito.isNull(), Mockito.any(IOSettings.class));
+
+        selectable.readable();
+        Mockito.verify(target, Mockito.times(5)).adopt(Mockito.any(SocketChannel.class), (Handler)Mockito.isNull(), Mockito.any(IOSettings.class));
+    }
+
+    /**
+     * Tests that once the accept rate is exhausted the acceptor stops reading
+     * and schedules a task to resume.
+     * @throws IOException
+     */
+    @Test
+    public void acceptRateLimitsAccepts() throws IOException {
+        SelectableImpl selectable = new SelectableImpl();
+        ReactorImpl mockReactor = Mockito.mock(ReactorImpl.class);
+        ReactorImpl target = Mockito.mock(ReactorImpl.class);
+        AcceptorImpl acceptor = acceptorWithSockets(selectable, mockReactor, 10);
+        acceptor.distribute(target);
+        acceptor.setAcceptRate(2);
+
+        selectable.readable();
+        Mockito.verify(target, Mockito.times(2)).adopt(Mockito.any(SocketChannel.class), Mockito.any(Handler.class), Mockito.any(IOSettings.class));
+        assertFalse("acceptor should stop reading once the rate is reached", selectable.isReading());
+        Mockito.verify(mockReactor).schedule(Mockito.anyInt(), Mockito.any(Handler.class));
+    }
 }
@@ -22,6 +22,7 @@
 package org.apache.qpid.proton.reactor.impl;
 
 import java.io.IOException;
+import java.net.ProtocolFamily;
 import java.nio.channels.Pipe;
 import java.nio.channels.Pipe.SinkChannel;
 import java.nio.channels.Pipe.SourceChannel;
@@ -72,6 +73,20 @@ public class LeakTestReactor extends ReactorImpl {
             return socketChannel;
         }
 
+        @Override
+        public ServerSocketChannel serverSocketChannel(ProtocolFamily family) throws IOException {
+            ServerSocketChannel serverSocketChannel = UnixDomainSockets.openServerSocketChannel(family);
+            resources.put(serverSocketChannel, new Exception());
+            return serverSocketChannel;
+        }
+
+        @Override
+        public SocketChannel socketChannel(ProtocolFamily family) throws IOException {
+            SocketChannel socketChannel = UnixDomainSockets.openSocketChannel(family);
+            resources.put(socketChannel, new Exception());
+            return socketChannel;
+        }
+
         private boolean isOpen(Object resource) {
             if (resource instanceof SourceChannel) {
                 return ((SourceChannel)resource).isOpen();
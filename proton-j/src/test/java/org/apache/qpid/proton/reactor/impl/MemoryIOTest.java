@@ -0,0 +1,273 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.reactor.Acceptor;
+import org.apache.qpid.proton.reactor.FlowController;
+import org.apache.qpid.proton.reactor.Handshaker;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.junit.Test;
+
+public class MemoryIOTest {
+
+    private static class SourceHandler extends BaseHandler {
+        private final String hostname;
+        private int remaining;
+        private String condition;
+
+        private SourceHandler(String hostname, int count) {
+            this.hostname = hostname;
+            remaining = count;
+        }
+
+        @Override
+        public void onConnectionInit(Event event) {
+            Connection conn = event.getConnection();
+            conn.setHostname(hostname);
+            Session ssn = conn.session();
+            Sender snd = ssn.sender("sender");
+            conn.open();
+            ssn.open();
+            snd.open();
+        }
+
+        @Override
+        public void onLinkFlow(Event event) {
+            Sender link = (Sender)event.getLink();
+            while (link.getCredit() > 0 && remaining > 0) {
+                Delivery dlv = link.delivery(new byte[0]);
+                link.send(new byte[256], 0, 256);
+                link.advance();
+                dlv.settle();
+                --remaining;
+            }
+            if (remaining == 0) {
+                event.getConnection().close();
+            }
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            event.getConnection().free();
+        }
+
+        @Override
+        public void onTransportClosed(Event event) {
+            if (event.getTransport().getCondition() != null) {
+                condition = event.getTransport().getCondition().getDescription();
+            }
+        }
+    }
+
+    private static class SinkHandler extends BaseHandler {
+        private Acceptor acceptor;
+        private int received;
+
+        @Override
+        public void onDelivery(Event event) {
+            Delivery dlv = event.getDelivery();
+            if (!dlv.isPartial()) {
+                dlv.settle();
+                ++received;
+            }
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            acceptor.close();
+            event.getConnection().close();
+            event.getConnection().free();
+        }
+    }
+
+    @Test
+    public void reactorsOnDifferentThreadsTalkThroughMemory() throws Exception {
+        MemoryIO io = new MemoryIO(4096);
+        final Reactor server = new ReactorImpl(io);
+        Reactor client = new ReactorImpl(io);
+
+        SinkHandler sink = new SinkHandler();
+        sink.add(new Handshaker());
+        sink.add(new FlowController(64));
+        sink.acceptor = server.acceptor("0.0.0.0", 5672, sink);
+        final Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    server.run();
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        };
+        thread.start();
+
+        // Any host name reaches the listener on the port
+        SourceHandler source = new SourceHandler("localhost:5672", 1000);
+        client.connection(source);
+        client.run();
+        client.free();
+        thread.join(10000);
+        server.free();
+
+        assertFalse("server reactor did not stop", thread.isAlive());
+        assertEquals(null, failure[0]);
+        assertEquals(null, source.condition);
+        assertEquals(1000, sink.received);
+    }
+
+    @Test
+    public void connectingToAPortNobodyListensOnIsRefused() throws IOException {
+        Reactor reactor = new ReactorImpl(new MemoryIO());
+        SourceHandler source = new SourceHandler("127.0.0.1:5672", 1);
+        reactor.connection(source);
+        reactor.run();
+        reactor.free();
+
+        // As with a real socket, the transport is closed with an error
+        assertNotNull(source.condition);
+    }
+
+    @Test
+    public void aPortCanOnlyBeBoundOnce() throws IOException {
+        MemoryIO io = new MemoryIO();
+        ServerSocketChannel first = io.serverSocketChannel();
+        first.bind(new InetSocketAddress("127.0.0.1", 0));
+        int port = ((InetSocketAddress)first.getLocalAddress()).getPort();
+        assertTrue(port > 0);
+
+        ServerSocketChannel second = io.serverSocketChannel();
+        try {
+            second.bind(new InetSocketAddress("127.0.0.1", port));
+            fail("Expected the port to be in use");
+        } catch (BindException e) {
+            // Expected
+        }
+        first.close();
+        second.bind(new InetSocketAddress("127.0.0.1", port));
+        second.close();
+    }
+
+    @Test
+    public void channelsSelectReadWriteAndEndOfStream() throws IOException {
+        MemoryIO io = new MemoryIO(16);
+        Selector selector = io.selector();
+        ServerSocketChannel listener = io.serverSocketChannel();
+        listener.configureBlocking(false);
+        listener.bind(new InetSocketAddress("127.0.0.1", 0));
+        SelectionKey acceptKey = listener.register(selector, SelectionKey.OP_ACCEPT);
+
+        SocketChannel client = io.socketChannel();
+        client.configureBlocking(false);
+        assertTrue(client.connect(listener.getLocalAddress()));
+        assertEquals(1, selector.selectNow());
+        assertTrue(acceptKey.isAcceptable());
+        selector.selectedKeys().clear();
+        SocketChannel server = listener.accept();
+        assertNotNull(server);
+        server.configureBlocking(false);
+        SelectionKey readKey = server.register(selector, SelectionKey.OP_READ);
+        SelectionKey writeKey = client.register(selector, SelectionKey.OP_WRITE);
+
+        // A full buffer stops the writer, until the reader makes space
+        assertEquals(1, selector.selectNow());
+        assertTrue(writeKey.isWritable());
+        selector.selectedKeys().clear();
+        assertEquals(16, client.write(ByteBuffer.allocate(20)));
+        assertEquals(1, selector.selectNow());
+        assertTrue(selector.selectedKeys().contains(readKey));
+        selector.selectedKeys().clear();
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        assertEquals(8, server.read(buffer));
+        assertEquals(2, selector.selectNow());
+        assertTrue(selector.selectedKeys().contains(writeKey));
+        assertTrue(selector.selectedKeys().contains(readKey));
+        selector.selectedKeys().clear();
+
+        client.close();
+        buffer.clear();
+        assertEquals(8, server.read(buffer));
+        buffer.clear();
+        assertEquals(-1, server.read(buffer));
+
+        server.close();
+        listener.close();
+        selector.close();
+    }
+
+    @Test(timeout = 10000)
+    public void aSelectIsWokenByAnotherThread() throws Exception {
+        final MemoryIO io = new MemoryIO();
+        Selector selector = io.selector();
+        ServerSocketChannel listener = io.serverSocketChannel();
+        listener.configureBlocking(false);
+        listener.bind(new InetSocketAddress("127.0.0.1", 0));
+        listener.register(selector, SelectionKey.OP_ACCEPT);
+        final InetSocketAddress address = (InetSocketAddress)listener.getLocalAddress();
+
+        Thread connector = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                    io.socketChannel().connect(address);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        connector.start();
+        assertEquals(1, selector.select());
+        connector.join();
+
+        // A wakeup before the select makes it return at once
+        selector.selectedKeys().clear();
+        listener.accept().close();
+        selector.wakeup();
+        assertEquals(0, selector.select());
+
+        listener.close();
+        selector.close();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.qpid.proton.reactor.Selectable;
+import org.junit.After;
+import org.junit.Test;
+
+public class SelectorImplTest {
+
+    private final SelectorImpl selector;
+
+    public SelectorImplTest() throws IOException {
+        selector = new SelectorImpl(new IOImpl());
+    }
+
+    @After
+    public void tearDown() {
+        selector.free();
+    }
+
+    // Adds a selectable without a channel that expires on the next select
+    private Selectable expiring() throws IOException {
+        Selectable selectable = new SelectableImpl();
+        selectable.setDeadline(1);
+        selector.add(selectable);
+        return selectable;
+    }
+
+    private Set<Selectable> expired() throws IOException {
+        selector.select(0);
+        Set<Selectable> expired = new HashSet<Selectable>();
+        for (Iterator<Selectable> i = selector.expired(); i.hasNext();) {
+            expired.add(i.next());
+        }
+        return expired;
+    }
+
+    @Test
+    public void testNestedIterationsDoNotShareACursor() throws IOException {
+        List<Selectable> selectables = Arrays.asList(expiring(), expiring(), expiring());
+        selector.select(0);
+        List<Selectable> outer = new ArrayList<Selectable>();
+        for (Iterator<Selectable> i = selector.expired(); i.hasNext();) {
+            outer.add(i.next());
+            int inner = 0;
+            for (Iterator<Selectable> j = selector.expired(); j.hasNext(); j.next()) {
+                inner++;
+            }
+            assertEquals(3, inner);
+        }
+        assertEquals(new HashSet<Selectable>(selectables), new HashSet<Selectable>(outer));
+        assertEquals(3, outer.size());
+    }
+
+    @Test
+    public void testRemoveKeepsTheOthers() throws IOException {
+        Selectable first = expiring();
+        Selectable second = expiring();
+        Selectable third = expiring();
+        Selectable fourth = expiring();
+
+        selector.remove(second);
+        assertEquals(new HashSet<Selectable>(Arrays.asList(first, third, fourth)), expired());
+        selector.remove(first);
+        assertEquals(new HashSet<Selectable>(Arrays.asList(third, fourth)), expired());
+        // Removing one that has already gone changes nothing
+        selector.remove(first);
+        assertEquals(new HashSet<Selectable>(Arrays.asList(third, fourth)), expired());
+        selector.remove(fourth);
+        selector.remove(third);
+        assertEquals(new HashSet<Selectable>(), expired());
+
+        selector.add(second);
+        assertEquals(new HashSet<Selectable>(Arrays.asList(second)), expired());
+    }
+}